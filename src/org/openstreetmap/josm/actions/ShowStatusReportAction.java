@@ -35,6 +35,7 @@ import org.openstreetmap.josm.data.preferences.sources.ValidatorPrefHelper;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.bugreport.DebugTextDisplay;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
 import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.io.OsmApi;
 import org.openstreetmap.josm.plugins.PluginHandler;
@@ -189,6 +190,7 @@ public final class ShowStatusReportAction extends JosmAction {
                 text.append("\nDataset consistency test:\n").append(result).append('\n');
             }
         }
+        text.append("Map paint style cache: ").append(MapPaintStyles.getStyles().getSignatureCache()).append('\n');
         text.append('\n');
         appendCollection(text, "Plugins", Utils.transform(PluginHandler.getBugReportInformation(), i -> "+ " + i));
         appendCollection(text, "Tagging presets", getCustomUrls(PresetPrefHelper.INSTANCE));
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.Collections;
 
 import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.search.SearchCompiler.InArea;
 import org.openstreetmap.josm.gui.MainApplication;
@@ -27,6 +28,12 @@ class InView extends InArea {
         return Collections.singleton(MainApplication.getMap().mapView.getRealBounds());
     }
 
+    @Override
+    protected Collection<Bounds> getBounds(DataSet ds) {
+        // the bounds do not depend on the primitive
+        return getBounds((OsmPrimitive) null);
+    }
+
     @Override
     public String toString() {
         return all ? "allinview" : "inview";
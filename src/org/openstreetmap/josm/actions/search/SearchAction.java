@@ -25,7 +25,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
@@ -43,15 +46,18 @@ import org.openstreetmap.josm.actions.ActionParameter;
 import org.openstreetmap.josm.actions.ExpertToggleAction;
 import org.openstreetmap.josm.actions.JosmAction;
 import org.openstreetmap.josm.actions.ParameterizedAction;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Filter;
 import org.openstreetmap.josm.data.osm.IPrimitive;
 import org.openstreetmap.josm.data.osm.OsmData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.search.PushbackTokenizer;
 import org.openstreetmap.josm.data.osm.search.SearchCompiler;
 import org.openstreetmap.josm.data.osm.search.SearchCompiler.Match;
 import org.openstreetmap.josm.data.osm.search.SearchCompiler.SimpleMatchFactory;
 import org.openstreetmap.josm.data.osm.search.SearchMode;
 import org.openstreetmap.josm.data.osm.search.SearchParseError;
+import org.openstreetmap.josm.data.osm.search.SearchPlanner;
 import org.openstreetmap.josm.data.osm.search.SearchSetting;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.MainApplication;
@@ -744,6 +750,11 @@ public class SearchAction extends JosmAction implements ParameterizedAction {
     }
 
     static final class SearchTask extends PleaseWaitRunnable {
+        /** The number of primitives tested between two progress updates, in parallel if there are enough of them */
+        private static final int BATCH_SIZE = 1 << 14;
+        private static final int PARALLEL_THRESHOLD = 1 << 10;
+        private static ForkJoinPool threadPool;
+
         private final OsmData<?, ?, ?, ?> ds;
         private final SearchSetting setting;
         private final Collection<IPrimitive> selection;
@@ -800,34 +811,48 @@ public class SearchAction extends JosmAction implements ParameterizedAction {
                 }
 
                 Collection<? extends IPrimitive> all;
-                if (setting.allElements) {
+                Collection<OsmPrimitive> candidates = getCandidates(matcher);
+                if (ds instanceof DataSet) {
+                    matcher = SearchPlanner.optimize(matcher, (DataSet) ds);
+                }
+                if (candidates != null) {
+                    // only the primitives found in the tag index can match
+                    all = setting.allElements ? candidates
+                            : candidates.stream().filter(OsmPrimitive::isSelectable).collect(Collectors.toList());
+                } else if (setting.allElements) {
                     all = ds.allPrimitives();
                 } else {
                     all = ds.getPrimitives(p -> p.isSelectable()); // Do not use method reference before Java 11!
                 }
-                final ProgressMonitor subMonitor = getProgressMonitor().createSubTaskMonitor(all.size(), false);
-                subMonitor.beginTask(trn("Searching in {0} object", "Searching in {0} objects", all.size(), all.size()));
+                final List<? extends IPrimitive> primitives = new ArrayList<>(all);
+                final ProgressMonitor subMonitor = getProgressMonitor().createSubTaskMonitor(primitives.size(), false);
+                subMonitor.beginTask(trn("Searching in {0} object", "Searching in {0} objects", primitives.size(), primitives.size()));
 
-                for (IPrimitive osm : all) {
+                final Predicate<IPrimitive> hit = getHitPredicate(matcher);
+                for (int start = 0; start < primitives.size(); start += BATCH_SIZE) {
                     if (canceled) {
                         return;
                     }
-                    if (setting.mode == SearchMode.replace) {
-                        if (matcher.match(osm)) {
+                    // the primitives may be tested in parallel, the selection is updated afterwards in this thread
+                    List<? extends IPrimitive> batch = primitives.subList(start, Math.min(start + BATCH_SIZE, primitives.size()));
+                    boolean[] hits = test(batch, hit, matcher.isThreadSafe());
+                    for (int i = 0; i < hits.length; i++) {
+                        if (!hits[i]) {
+                            continue;
+                        }
+                        IPrimitive osm = batch.get(i);
+                        if (setting.mode == SearchMode.replace || setting.mode == SearchMode.add) {
                             selection.add(osm);
                             ++foundMatches;
+                        } else if (setting.mode == SearchMode.remove) {
+                            selection.remove(osm);
+                            ++foundMatches;
+                        } else if (setting.mode == SearchMode.in_selection) {
+                            selection.remove(osm);
+                            --foundMatches;
                         }
-                    } else if (setting.mode == SearchMode.add && !predicate.test(osm) && matcher.match(osm)) {
-                        selection.add(osm);
-                        ++foundMatches;
-                    } else if (setting.mode == SearchMode.remove && predicate.test(osm) && matcher.match(osm)) {
-                        selection.remove(osm);
-                        ++foundMatches;
-                    } else if (setting.mode == SearchMode.in_selection && predicate.test(osm) && !matcher.match(osm)) {
-                        selection.remove(osm);
-                        --foundMatches;
                     }
-                    subMonitor.worked(1);
+                    subMonitor.worked(batch.size());
                 }
                 subMonitor.finishTask();
             } catch (SearchParseError e) {
@@ -841,6 +866,72 @@ public class SearchAction extends JosmAction implements ParameterizedAction {
             }
         }
 
+        /**
+         * Returns the primitives which may match, if they can be found with the indexes of the data set.
+         * The indexes cannot be used when searching in the selection, as non matching primitives must be removed from it.
+         * @param matcher the search criterion
+         * @return the primitives which may match, or {@code null} if all primitives must be tested
+         */
+        private Collection<OsmPrimitive> getCandidates(SearchCompiler.Match matcher) {
+            if (setting.mode == SearchMode.in_selection || !(ds instanceof DataSet)) {
+                return null;
+            }
+            return SearchPlanner.getCandidates(matcher, (DataSet) ds);
+        }
+
+        /**
+         * Returns the predicate determining if a primitive changes the selection, according to the search mode.
+         * @param matcher the search criterion
+         * @return the predicate determining if a primitive is added to or removed from the selection
+         */
+        private Predicate<IPrimitive> getHitPredicate(SearchCompiler.Match matcher) {
+            switch (setting.mode) {
+            case replace:
+                return matcher::match;
+            case add:
+                return osm -> !predicate.test(osm) && matcher.match(osm);
+            case remove:
+                return osm -> predicate.test(osm) && matcher.match(osm);
+            case in_selection:
+                return osm -> predicate.test(osm) && !matcher.match(osm);
+            default:
+                return osm -> false;
+            }
+        }
+
+        /**
+         * Tests primitives, in parallel if the test is thread safe and if there are enough of them.
+         * @param primitives the primitives to test
+         * @param hit the test
+         * @param threadSafe if the test can be run from several threads at the same time, see {@link Match#isThreadSafe()}
+         * @return the results of the test, in the order of the primitives
+         */
+        private static boolean[] test(List<? extends IPrimitive> primitives, Predicate<IPrimitive> hit, boolean threadSafe) {
+            boolean[] hits = new boolean[primitives.size()];
+            ForkJoinPool pool = threadSafe && primitives.size() >= PARALLEL_THRESHOLD ? getThreadPool() : null;
+            if (pool != null) {
+                // a parallel stream started from a pool runs in this pool
+                pool.submit(() -> IntStream.range(0, hits.length).parallel().forEach(i -> hits[i] = hit.test(primitives.get(i))))
+                    .join();
+            } else {
+                for (int i = 0; i < hits.length; i++) {
+                    hits[i] = hit.test(primitives.get(i));
+                }
+            }
+            return hits;
+        }
+
+        private static synchronized ForkJoinPool getThreadPool() {
+            if (threadPool == null) {
+                try {
+                    threadPool = Utils.newForkJoinPool("search.numberOfThreads", "search-%d", Thread.NORM_PRIORITY);
+                } catch (SecurityException e) {
+                    Logging.log(Logging.LEVEL_ERROR, "Unable to create new ForkJoinPool", e);
+                }
+            }
+            return threadPool;
+        }
+
         @Override
         protected void finish() {
             if (canceled) {
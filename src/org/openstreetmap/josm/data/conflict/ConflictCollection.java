@@ -5,7 +5,9 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
@@ -113,8 +115,19 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
      */
     public void add(Collection<Conflict<?>> otherConflicts) {
         if (otherConflicts == null) return;
+        // same checks as addConflict(), without searching the list of conflicts for each added conflict
+        Set<OsmPrimitive> myParties = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Conflict<?> c : conflicts) {
+            myParties.add(c.getMy());
+        }
+        Set<Conflict<?>> known = new HashSet<>(conflicts);
         for (Conflict<?> c : otherConflicts) {
-            addConflict(c);
+            if (myParties.contains(c.getMy()))
+                throw new IllegalStateException(tr("Already registered a conflict for primitive ''{0}''.", c.getMy().toString()));
+            if (known.add(c)) {
+                conflicts.add(c);
+                myParties.add(c.getMy());
+            }
         }
         fireConflictAdded();
     }
@@ -289,8 +302,8 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
      * @param other The other collection of conflicts to add
      */
     public void add(ConflictCollection other) {
-        for (Conflict<?> c : other) {
-            add(c);
+        if (!other.isEmpty()) {
+            add(other.get());
         }
     }
 
@@ -448,9 +448,21 @@ public abstract class AbstractPrimitive implements IPrimitive {
      *     https://en.wikipedia.org/wiki/Read-copy-update</a> (mind that we have a Garbage collector,
      *     {@code rcu_assign_pointer} and {@code rcu_dereference} are ensured by the {@code volatile} keyword)</li>
      * </ul>
+     * <p>
+     * The arrays are shared by the primitives having the same tags, see {@link #internKeys(String[])}.
+     * They must never be modified.
      */
     protected volatile String[] keys;
 
+    /**
+     * Returns the array with the same tags shared by all primitives, to be assigned to {@link #keys}.
+     * @param keys key/value array, not modified afterwards. May be {@code null}
+     * @return the shared array
+     */
+    protected static String[] internKeys(String[] keys) {
+        return TagSetInterner.INSTANCE.intern(keys);
+    }
+
     /**
      * Replies the map of key/value pairs. Never replies null. The map can be empty, though.
      *
@@ -497,7 +509,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
             newKeys[index++] = entry.getKey();
             newKeys[index++] = entry.getValue();
         }
-        this.keys = newKeys;
+        this.keys = internKeys(newKeys);
         keysChangedImpl(originalKeys);
     }
 
@@ -514,7 +526,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
             if (arr.length == 0) {
                 this.keys = null;
             } else {
-                this.keys = arr;
+                this.keys = internKeys(arr);
             }
         }
         keysChangedImpl(originalKeys);
@@ -540,7 +552,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
         else if (value == null) {
             remove(key);
         } else if (keys == null) {
-            keys = new String[] {key, value};
+            keys = internKeys(new String[] {key, value});
             keysChangedImpl(originalKeys);
         } else {
             int keyIndex = indexOfKey(keys, key);
@@ -557,7 +569,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
             String[] newKeys = Arrays.copyOf(keys, tagArrayLength);
             newKeys[keyIndex] = key;
             newKeys[keyIndex + 1] = value;
-            keys = newKeys;
+            keys = internKeys(newKeys);
             keysChangedImpl(originalKeys);
         }
     }
@@ -572,8 +584,9 @@ public abstract class AbstractPrimitive implements IPrimitive {
         if (keys == null) {
             return -1;
         }
+        // keys are usually interned, the reference comparison short-circuits most hits
         for (int i = 0; i < keys.length; i += 2) {
-            if (keys[i].equals(key)) {
+            if (keys[i] == key || keys[i].equals(key)) { // NOPMD
                 return i;
             }
         }
@@ -607,7 +620,7 @@ public abstract class AbstractPrimitive implements IPrimitive {
                 newKeys[j++] = keys[i+1];
             }
         }
-        keys = newKeys;
+        keys = internKeys(newKeys);
         keysChangedImpl(originalKeys);
     }
 
@@ -638,12 +651,8 @@ public abstract class AbstractPrimitive implements IPrimitive {
         String[] keys = this.keys;
         if (key == null)
             return null;
-        if (keys == null)
-            return null;
-        for (int i = 0; i < keys.length; i += 2) {
-            if (keys[i].equals(key)) return keys[i+1];
-        }
-        return null;
+        int index = indexOfKey(keys, key);
+        return index < 0 ? null : keys[index + 1];
     }
 
     /**
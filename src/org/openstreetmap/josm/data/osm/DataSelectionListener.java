@@ -94,12 +94,26 @@ public interface DataSelectionListener {
     abstract class AbstractSelectionEvent implements SelectionChangeEvent {
         private final DataSet source;
         private final Set<OsmPrimitive> old;
+        private final PrimitiveBitSet oldBits;
+        private final int slotGeneration;
 
         public AbstractSelectionEvent(DataSet source, Set<OsmPrimitive> old) {
+            this(source, old, null);
+        }
+
+        /**
+         * Create a selection event with the bits of the old selection.
+         * @param source The source dataset
+         * @param old The old primitves that were previously selected.
+         * @param oldBits The bits of the old primitives, see {@link PrimitiveBitSet}. If {@code null}, they are computed.
+         */
+        AbstractSelectionEvent(DataSet source, Set<OsmPrimitive> old, PrimitiveBitSet oldBits) {
             CheckParameterUtil.ensureParameterNotNull(source, "source");
             CheckParameterUtil.ensureParameterNotNull(old, "old");
             this.source = source;
             this.old = Collections.unmodifiableSet(old);
+            this.slotGeneration = source.getSlotGeneration();
+            this.oldBits = oldBits != null ? oldBits : PrimitiveBitSet.of(source, old);
         }
 
         @Override
@@ -111,6 +125,51 @@ public interface DataSelectionListener {
         public DataSet getSource() {
             return source;
         }
+
+        /**
+         * Gets the bits of the old selection.
+         * @return the bits of the old selection, or {@code null} if it contains primitives that are not in the source dataset
+         */
+        PrimitiveBitSet getOldSelectionBits() {
+            return oldBits;
+        }
+
+        /**
+         * Gets the bits of the new selection. The selection events of the dataset compute them along with the new selection.
+         * @return the bits of the new selection, or {@code null} if it contains primitives that are not in the source dataset
+         */
+        PrimitiveBitSet getSelectionBits() {
+            return PrimitiveBitSet.of(source, getSelection());
+        }
+
+        /**
+         * Determines if the bits computed by this event still match the slots of the primitives of the source dataset.
+         * @return {@code true} if no primitive has been removed from the source dataset since this event was created
+         */
+        boolean isSlotGenerationCurrent() {
+            return source.getSlotGeneration() == slotGeneration;
+        }
+
+        /**
+         * Determines if a primitive is contained in a set, by its bit if possible.
+         * Must only be called while {@link #isSlotGenerationCurrent()}.
+         * @param set the set
+         * @param bits the bits of the set, or {@code null}
+         * @param p the primitive
+         * @return {@code true} if the set contains the primitive
+         */
+        boolean contains(Set<OsmPrimitive> set, PrimitiveBitSet bits, OsmPrimitive p) {
+            return bits != null && p.getDataSet() == source ? bits.contains(p) : set.contains(p);
+        }
+
+        /**
+         * Returns a copy of the given bits, to be modified.
+         * @param bits the bits, or {@code null}
+         * @return a copy of the bits, or {@code null}
+         */
+        static PrimitiveBitSet copy(PrimitiveBitSet bits) {
+            return bits != null ? bits.copy() : null;
+        }
     }
 
 
@@ -121,6 +180,7 @@ public interface DataSelectionListener {
      */
     class SelectionReplaceEvent extends AbstractSelectionEvent {
         private final Set<OsmPrimitive> current;
+        private final PrimitiveBitSet currentBits;
         private Set<OsmPrimitive> removed;
         private Set<OsmPrimitive> added;
 
@@ -131,8 +191,13 @@ public interface DataSelectionListener {
          * @param newSelection The primitives of the new selection.
          */
         public SelectionReplaceEvent(DataSet source, Set<OsmPrimitive> old, Stream<OsmPrimitive> newSelection) {
-            super(source, old);
+            this(source, old, null, newSelection);
+        }
+
+        SelectionReplaceEvent(DataSet source, Set<OsmPrimitive> old, PrimitiveBitSet oldBits, Stream<OsmPrimitive> newSelection) {
+            super(source, old, oldBits);
             this.current = newSelection.collect(Collectors.toCollection(LinkedHashSet::new));
+            this.currentBits = PrimitiveBitSet.of(source, current);
         }
 
         @Override
@@ -140,12 +205,22 @@ public interface DataSelectionListener {
             return current;
         }
 
+        @Override
+        PrimitiveBitSet getSelectionBits() {
+            return currentBits;
+        }
+
         @Override
         public synchronized Set<OsmPrimitive> getRemoved() {
             if (removed == null) {
-                removed = getOldSelection().stream()
-                        .filter(p -> !current.contains(p))
-                        .collect(Collectors.toCollection(LinkedHashSet::new));
+                // selecting from scratch or clearing a large selection does not need to copy it
+                if (current.isEmpty()) {
+                    removed = getOldSelection();
+                } else if (getOldSelection().isEmpty()) {
+                    removed = Collections.emptySet();
+                } else {
+                    removed = difference(getOldSelection(), current, currentBits);
+                }
             }
             return removed;
         }
@@ -153,12 +228,51 @@ public interface DataSelectionListener {
         @Override
         public synchronized Set<OsmPrimitive> getAdded() {
             if (added == null) {
-                added = current.stream()
-                        .filter(p -> !getOldSelection().contains(p)).collect(Collectors.toCollection(LinkedHashSet::new));
+                if (getOldSelection().isEmpty()) {
+                    added = current;
+                } else if (current.isEmpty()) {
+                    added = Collections.emptySet();
+                } else {
+                    added = difference(current, getOldSelection(), getOldSelectionBits());
+                }
             }
             return added;
         }
 
+        /**
+         * Computes the primitives of a selection that are not in another one, keeping their order.
+         * The other selection is tested by its bits, unless primitives have been removed from the dataset
+         * since this event was created, as the differences may be computed lazily by the listeners.
+         * @param from the selection to filter
+         * @param other the other selection
+         * @param otherBits the bits of the other selection, or {@code null}
+         * @return the primitives of {@code from} that are not in {@code other}
+         */
+        private Set<OsmPrimitive> difference(Set<OsmPrimitive> from, Set<OsmPrimitive> other, PrimitiveBitSet otherBits) {
+            if (otherBits != null && isSlotGenerationCurrent()) {
+                Set<OsmPrimitive> result = from.stream()
+                        .filter(p -> !contains(other, otherBits, p))
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+                if (isSlotGenerationCurrent()) {
+                    return result;
+                }
+            }
+            return from.stream()
+                    .filter(p -> !other.contains(p))
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+
+        @Override
+        public boolean isNop() {
+            // avoids computing the differences, which are not needed if the listeners only use the new selection
+            if (current.size() != getOldSelection().size()) {
+                return false;
+            } else if (currentBits != null && getOldSelectionBits() != null && isSlotGenerationCurrent()) {
+                return currentBits.equals(getOldSelectionBits());
+            }
+            return getOldSelection().containsAll(current);
+        }
+
         @Override
         public String toString() {
             return "SelectionReplaceEvent [current=" + current + ", removed=" + removed + ", added=" + added + ']';
@@ -173,6 +287,7 @@ public interface DataSelectionListener {
     class SelectionAddEvent extends AbstractSelectionEvent {
         private final Set<OsmPrimitive> add;
         private final Set<OsmPrimitive> current;
+        private final PrimitiveBitSet currentBits;
 
         /**
          * Create a {@link SelectionAddEvent}
@@ -181,15 +296,32 @@ public interface DataSelectionListener {
          * @param toAdd The primitives to add.
          */
         public SelectionAddEvent(DataSet source, Set<OsmPrimitive> old, Stream<OsmPrimitive> toAdd) {
-            super(source, old);
+            this(source, old, null, toAdd);
+        }
+
+        SelectionAddEvent(DataSet source, Set<OsmPrimitive> old, PrimitiveBitSet oldBits, Stream<OsmPrimitive> toAdd) {
+            super(source, old, oldBits);
+            PrimitiveBitSet bits = getOldSelectionBits();
             this.add = toAdd
-                    .filter(p -> !old.contains(p))
+                    .filter(p -> !contains(old, bits, p))
                     .collect(Collectors.toCollection(LinkedHashSet::new));
             if (this.add.isEmpty()) {
                 this.current = this.getOldSelection();
+                this.currentBits = bits;
             } else {
-                this.current = new LinkedHashSet<>(old);
-                this.current.addAll(add);
+                if (old.isEmpty()) {
+                    this.current = this.add;
+                } else {
+                    this.current = new LinkedHashSet<>(old);
+                    this.current.addAll(add);
+                }
+                PrimitiveBitSet newBits = copy(bits);
+                for (OsmPrimitive p : add) {
+                    if (newBits != null && !newBits.add(p)) {
+                        newBits = null;
+                    }
+                }
+                this.currentBits = newBits;
             }
         }
 
@@ -198,6 +330,11 @@ public interface DataSelectionListener {
             return Collections.unmodifiableSet(current);
         }
 
+        @Override
+        PrimitiveBitSet getSelectionBits() {
+            return currentBits;
+        }
+
         @Override
         public Set<OsmPrimitive> getRemoved() {
             return Collections.emptySet();
@@ -222,6 +359,7 @@ public interface DataSelectionListener {
     class SelectionRemoveEvent extends AbstractSelectionEvent {
         private final Set<OsmPrimitive> remove;
         private final Set<OsmPrimitive> current;
+        private final PrimitiveBitSet currentBits;
 
         /**
          * Create a {@link SelectionRemoveEvent}
@@ -230,16 +368,32 @@ public interface DataSelectionListener {
          * @param toRemove The primitives to remove.
          */
         public SelectionRemoveEvent(DataSet source, Set<OsmPrimitive> old, Stream<OsmPrimitive> toRemove) {
-            super(source, old);
+            this(source, old, null, toRemove);
+        }
+
+        SelectionRemoveEvent(DataSet source, Set<OsmPrimitive> old, PrimitiveBitSet oldBits, Stream<OsmPrimitive> toRemove) {
+            super(source, old, oldBits);
+            PrimitiveBitSet bits = getOldSelectionBits();
             this.remove = toRemove
-                    .filter(old::contains)
+                    .filter(p -> contains(old, bits, p))
                     .collect(Collectors.toCollection(LinkedHashSet::new));
             if (this.remove.isEmpty()) {
                 this.current = this.getOldSelection();
+                this.currentBits = bits;
+            } else if (this.remove.size() == old.size()) {
+                this.current = Collections.emptySet();
+                this.currentBits = new PrimitiveBitSet(source);
             } else {
+                PrimitiveBitSet newBits = copy(bits);
+                for (OsmPrimitive p : remove) {
+                    if (newBits != null && !newBits.remove(p)) {
+                        newBits = null;
+                    }
+                }
                 HashSet<OsmPrimitive> currentSet = new LinkedHashSet<>(old);
                 currentSet.removeAll(remove);
                 current = currentSet;
+                currentBits = newBits;
             }
         }
 
@@ -248,6 +402,11 @@ public interface DataSelectionListener {
             return Collections.unmodifiableSet(current);
         }
 
+        @Override
+        PrimitiveBitSet getSelectionBits() {
+            return currentBits;
+        }
+
         @Override
         public Set<OsmPrimitive> getRemoved() {
             return Collections.unmodifiableSet(remove);
@@ -271,6 +430,7 @@ public interface DataSelectionListener {
      */
     class SelectionToggleEvent extends AbstractSelectionEvent {
         private final Set<OsmPrimitive> current;
+        private final PrimitiveBitSet currentBits;
         private final Set<OsmPrimitive> remove;
         private final Set<OsmPrimitive> add;
 
@@ -281,7 +441,11 @@ public interface DataSelectionListener {
          * @param toToggle The primitives to toggle.
          */
         public SelectionToggleEvent(DataSet source, Set<OsmPrimitive> old, Stream<OsmPrimitive> toToggle) {
-            super(source, old);
+            this(source, old, null, toToggle);
+        }
+
+        SelectionToggleEvent(DataSet source, Set<OsmPrimitive> old, PrimitiveBitSet oldBits, Stream<OsmPrimitive> toToggle) {
+            super(source, old, oldBits);
             HashSet<OsmPrimitive> currentSet = new LinkedHashSet<>(old);
             HashSet<OsmPrimitive> removeSet = new LinkedHashSet<>();
             HashSet<OsmPrimitive> addSet = new LinkedHashSet<>();
@@ -293,7 +457,19 @@ public interface DataSelectionListener {
                     currentSet.add(p);
                 }
             });
+            PrimitiveBitSet newBits = removeSet.isEmpty() && addSet.isEmpty() ? getOldSelectionBits() : copy(getOldSelectionBits());
+            for (OsmPrimitive p : removeSet) {
+                if (newBits != null && !newBits.remove(p)) {
+                    newBits = null;
+                }
+            }
+            for (OsmPrimitive p : addSet) {
+                if (newBits != null && !newBits.add(p)) {
+                    newBits = null;
+                }
+            }
             this.current = Collections.unmodifiableSet(currentSet);
+            this.currentBits = newBits;
             this.remove = Collections.unmodifiableSet(removeSet);
             this.add = Collections.unmodifiableSet(addSet);
         }
@@ -303,6 +479,11 @@ public interface DataSelectionListener {
             return Collections.unmodifiableSet(current);
         }
 
+        @Override
+        PrimitiveBitSet getSelectionBits() {
+            return currentBits;
+        }
+
         @Override
         public Set<OsmPrimitive> getRemoved() {
             return Collections.unmodifiableSet(remove);
@@ -4,9 +4,11 @@ package org.openstreetmap.josm.data.osm;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.geom.Area;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -20,8 +22,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.openstreetmap.josm.data.APIDataSet.APIOperation;
@@ -31,6 +34,7 @@ import org.openstreetmap.josm.data.ProjectionBounds;
 import org.openstreetmap.josm.data.conflict.ConflictCollection;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSelectionListener.AbstractSelectionEvent;
 import org.openstreetmap.josm.data.osm.DataSelectionListener.SelectionAddEvent;
 import org.openstreetmap.josm.data.osm.DataSelectionListener.SelectionChangeEvent;
 import org.openstreetmap.josm.data.osm.DataSelectionListener.SelectionRemoveEvent;
@@ -40,6 +44,8 @@ import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
 import org.openstreetmap.josm.data.osm.event.ChangesetIdChangedEvent;
 import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
 import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
+import org.openstreetmap.josm.data.osm.event.DatasetDeltaListener;
 import org.openstreetmap.josm.data.osm.event.FilterChangedEvent;
 import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
 import org.openstreetmap.josm.data.osm.event.PrimitiveFlagsChangedEvent;
@@ -54,8 +60,10 @@ import org.openstreetmap.josm.data.projection.ProjectionChangeListener;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Geometry;
 import org.openstreetmap.josm.tools.ListenerList;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Pair;
 import org.openstreetmap.josm.tools.SubclassFilteredCollection;
 
 /**
@@ -116,10 +124,25 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
 
     private final QuadBucketPrimitiveStore<Node, Way, Relation> store = new QuadBucketPrimitiveStore<>();
 
-    private final Storage<OsmPrimitive> allPrimitives = new Storage<>(new Storage.PrimitiveIdHash(), true);
-    private final Map<PrimitiveId, OsmPrimitive> primitivesMap = allPrimitives
-            .foreignKey(new Storage.PrimitiveIdHash());
+    /**
+     * Projected coordinates of all nodes, see {@link NodeCoordinateStore}.
+     * Stored outside of the Java heap if the {@code osm.node-coordinates.off-heap} preference is set.
+     */
+    private final NodeCoordinateStore nodeCoordinates = new NodeCoordinateStore(
+            Config.getPref() != null && Config.getPref().getBoolean("osm.node-coordinates.off-heap", false));
+    /** Slots of the ways and relations, see {@link PrimitiveSlots} */
+    private final PrimitiveSlots primitiveSlots = new PrimitiveSlots();
+    /** Incremented each time primitives are removed, and their slots released, see {@link #getSlotGeneration()} */
+    private volatile int slotGeneration;
+
+    private final PrimitiveIdIndex<OsmPrimitive> allPrimitives = new PrimitiveIdIndex<>();
+    /** The tag index, created on demand */
+    private volatile TagIndex tagIndex;
+    private final Object tagIndexLock = new Object();
     private final CopyOnWriteArrayList<DataSetListener> listeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<DatasetDeltaListener> deltaListeners = new CopyOnWriteArrayList<>();
+    /** The changes since the outermost {@link #beginUpdate()}, only recorded when there are delta listeners */
+    private DatasetDelta delta;
 
     // provide means to highlight map elements that are not osm primitives
     private Collection<WaySegment> highlightedVirtualNodes = new LinkedList<>();
@@ -149,6 +172,11 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
      * The set should be ordered in the order in which the primitives have been added to the selection.
      */
     private Set<OsmPrimitive> currentSelectedPrimitives = Collections.emptySet();
+    /**
+     * The bits of the current selected primitives, see {@link PrimitiveBitSet}, or {@code null} if unknown.
+     * Selected primitives are deselected before they are removed from this dataset, so that these bits always match the current slots.
+     */
+    private volatile PrimitiveBitSet currentSelectedBits = new PrimitiveBitSet(this);
 
     /**
      * A list of listeners that listen to selection changes on this layer.
@@ -183,51 +211,39 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
      * @since 10346
      */
     public DataSet(DataSet copyFrom) {
+        this(copyFrom.snapshot());
+    }
+
+    /**
+     * Creates a new {@link DataSet} from a snapshot of another data set.
+     * @param snapshot the snapshot to copy the contents of this dataset from
+     * @see #snapshot()
+     */
+    public DataSet(DataSetSnapshot snapshot) {
         this();
-        copyFrom.getReadLock().lock();
+        snapshot.load(this);
+        for (DataSource source : snapshot.getDataSources()) {
+            dataSources.add(new DataSource(source));
+        }
+        version = snapshot.getVersion();
+        uploadPolicy = snapshot.getUploadPolicy();
+        downloadPolicy = snapshot.getDownloadPolicy();
+        isReadOnly.set(snapshot.isLocked());
+    }
+
+    /**
+     * Takes an immutable snapshot of the contents of this data set.
+     * <p>
+     * The read lock is only held while the primitives are saved, so that the snapshot can then be used
+     * by a background task (e.g. to save the data) without blocking the edition of the data set.
+     * @return a point-in-time snapshot of this data set
+     */
+    public DataSetSnapshot snapshot() {
+        lock.readLock().lock();
         try {
-            Map<OsmPrimitive, OsmPrimitive> primMap = new HashMap<>();
-            for (Node n : copyFrom.getNodes()) {
-                Node newNode = new Node(n);
-                primMap.put(n, newNode);
-                addPrimitive(newNode);
-            }
-            for (Way w : copyFrom.getWays()) {
-                Way newWay = new Way(w);
-                primMap.put(w, newWay);
-                List<Node> newNodes = new ArrayList<>();
-                for (Node n : w.getNodes()) {
-                    newNodes.add((Node) primMap.get(n));
-                }
-                newWay.setNodes(newNodes);
-                addPrimitive(newWay);
-            }
-            // Because relations can have other relations as members we first clone all relations
-            // and then get the cloned members
-            Collection<Relation> relations = copyFrom.getRelations();
-            for (Relation r : relations) {
-                Relation newRelation = new Relation(r);
-                newRelation.setMembers(null);
-                primMap.put(r, newRelation);
-                addPrimitive(newRelation);
-            }
-            for (Relation r : relations) {
-                Relation newRelation = (Relation) primMap.get(r);
-                List<RelationMember> newMembers = new ArrayList<>();
-                for (RelationMember rm : r.getMembers()) {
-                    newMembers.add(new RelationMember(rm.getRole(), primMap.get(rm.getMember())));
-                }
-                newRelation.setMembers(newMembers);
-            }
-            for (DataSource source : copyFrom.dataSources) {
-                dataSources.add(new DataSource(source));
-            }
-            version = copyFrom.version;
-            uploadPolicy = copyFrom.uploadPolicy;
-            downloadPolicy = copyFrom.downloadPolicy;
-            isReadOnly.set(copyFrom.isReadOnly.get());
+            return new DataSetSnapshot(this);
         } finally {
-            copyFrom.getReadLock().unlock();
+            lock.readLock().unlock();
         }
     }
 
@@ -364,6 +380,22 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
         this.changeSetTags.put(k, v);
     }
 
+    @Override
+    public Collection<OsmPrimitive> allPrimitives() {
+        // unlike a filtered collection, its size is known without iterating over the primitives
+        return new AbstractCollection<OsmPrimitive>() {
+            @Override
+            public Iterator<OsmPrimitive> iterator() {
+                return allPrimitives.iterator();
+            }
+
+            @Override
+            public int size() {
+                return allPrimitives.size();
+            }
+        };
+    }
+
     @Override
     public <T extends OsmPrimitive> Collection<T> getPrimitives(Predicate<? super OsmPrimitive> predicate) {
         return new SubclassFilteredCollection<>(allPrimitives, predicate);
@@ -409,6 +441,101 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
         }
     }
 
+    /**
+     * Searches the segments of the ways whose bounding box intersects the given one.
+     * The segments are found in the {@linkplain Way#getSegmentIndex() segment index} of each way,
+     * so that the cost of a search does not depend on the length of the ways.
+     * @param bbox the bounding box
+     * @param predicate the condition on the ways whose segments are searched
+     * @return the segments whose bounding box intersects {@code bbox}, in the order of their way
+     */
+    public List<WaySegment> searchWaySegments(BBox bbox, Predicate<? super Way> predicate) {
+        List<WaySegment> result = new ArrayList<>();
+        for (Way w : searchWays(bbox)) {
+            if (w.getNodesCount() >= 2 && predicate.test(w)) {
+                for (int i : w.getSegmentIndex().search(bbox)) {
+                    result.add(new WaySegment(w, i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Searches the nodes closest to a point, in the current projection.
+     * @param center the point
+     * @param maxDistance the maximum distance of the nodes to the point, in east/north units
+     * @param k the maximum number of nodes to return
+     * @param predicate the condition on the returned nodes
+     * @return at most {@code k} nodes within {@code maxDistance} of the point, the closest first
+     */
+    public List<Node> searchNearestNodes(EastNorth center, double maxDistance, int k, Predicate<? super Node> predicate) {
+        List<Pair<Double, Node>> found = new ArrayList<>();
+        for (Node n : searchNodes(getBBox(center, maxDistance))) {
+            EastNorth en = n.getEastNorth();
+            if (en != null && predicate.test(n)) {
+                double distance = en.distance(center);
+                if (distance <= maxDistance) {
+                    found.add(new Pair<>(distance, n));
+                }
+            }
+        }
+        return getNearest(found, k);
+    }
+
+    /**
+     * Searches the way segments closest to a point, in the current projection.
+     * @param center the point
+     * @param maxDistance the maximum distance of the segments to the point, in east/north units
+     * @param k the maximum number of segments to return
+     * @param predicate the condition on the ways of the returned segments
+     * @return at most {@code k} segments within {@code maxDistance} of the point, the closest first
+     */
+    public List<WaySegment> searchNearestWaySegments(EastNorth center, double maxDistance, int k, Predicate<? super Way> predicate) {
+        List<Pair<Double, WaySegment>> found = new ArrayList<>();
+        for (WaySegment ws : searchWaySegments(getBBox(center, maxDistance), predicate)) {
+            EastNorth a = ws.getFirstNode().getEastNorth();
+            EastNorth b = ws.getSecondNode().getEastNorth();
+            if (a != null && b != null) {
+                double distance = Geometry.closestPointToSegment(a, b, center).distance(center);
+                if (distance <= maxDistance) {
+                    found.add(new Pair<>(distance, ws));
+                }
+            }
+        }
+        return getNearest(found, k);
+    }
+
+    private static BBox getBBox(EastNorth center, double distance) {
+        Projection projection = ProjectionRegistry.getProjection();
+        BBox bbox = new BBox();
+        for (int dx = -1; dx <= 1; dx += 2) {
+            for (int dy = -1; dy <= 1; dy += 2) {
+                bbox.add(projection.eastNorth2latlon(center.add(dx * distance, dy * distance)));
+            }
+        }
+        return bbox;
+    }
+
+    private static <T> List<T> getNearest(List<Pair<Double, T>> found, int k) {
+        found.sort(Comparator.comparingDouble(p -> p.a));
+        return found.stream().limit(k).map(p -> p.b).collect(Collectors.toList());
+    }
+
+    /**
+     * Builds the spatial indexes of the primitives added since the last search, in one pass.
+     * This is otherwise done by the next search. Readers call it once all primitives are loaded.
+     * @see QuadBucketPrimitiveStore#buildIndexes
+     */
+    public void buildSpatialIndexes() {
+        lock.readLock().lock();
+        try {
+            store.buildIndexes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public Collection<Relation> getRelations() {
         return getPrimitives(Relation.class::isInstance);
@@ -511,6 +638,7 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
         }
         store.removePrimitive(primitive);
         allPrimitives.remove(primitive);
+        slotGeneration++;
         primitive.setDataset(null);
     }
 
@@ -569,7 +697,7 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
     }
 
     @Override
-    public Collection<OsmPrimitive> getAllSelected() {
+    public Set<OsmPrimitive> getAllSelected() {
         return currentSelectedPrimitives;
     }
 
@@ -580,7 +708,8 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
 
     @Override
     public boolean isSelected(OsmPrimitive osm) {
-        return currentSelectedPrimitives.contains(osm);
+        PrimitiveBitSet bits = currentSelectedBits;
+        return bits != null && osm.getDataSet() == this ? bits.contains(osm) : currentSelectedPrimitives.contains(osm);
     }
 
     @Override
@@ -612,7 +741,7 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
     }
 
     private void setSelected(Stream<? extends PrimitiveId> stream) {
-        doSelectionChange(old -> new SelectionReplaceEvent(this, old,
+        doSelectionChange((old, oldBits) -> new SelectionReplaceEvent(this, old, oldBits,
                 stream.map(this::getPrimitiveByIdChecked).filter(Objects::nonNull)));
     }
 
@@ -627,7 +756,7 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
     }
 
     private void addSelected(Stream<? extends PrimitiveId> stream) {
-        doSelectionChange(old -> new SelectionAddEvent(this, old,
+        doSelectionChange((old, oldBits) -> new SelectionAddEvent(this, old, oldBits,
                 stream.map(this::getPrimitiveByIdChecked).filter(Objects::nonNull)));
     }
 
@@ -647,7 +776,7 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
     }
 
     private void clearSelection(Stream<? extends PrimitiveId> stream) {
-        doSelectionChange(old -> new SelectionRemoveEvent(this, old,
+        doSelectionChange((old, oldBits) -> new SelectionRemoveEvent(this, old, oldBits,
                 stream.map(this::getPrimitiveByIdChecked).filter(Objects::nonNull)));
     }
 
@@ -662,7 +791,7 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
     }
 
     private void toggleSelected(Stream<? extends PrimitiveId> stream) {
-        doSelectionChange(old -> new SelectionToggleEvent(this, old,
+        doSelectionChange((old, oldBits) -> new SelectionToggleEvent(this, old, oldBits,
                 stream.map(this::getPrimitiveByIdChecked).filter(Objects::nonNull)));
     }
 
@@ -670,17 +799,19 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
      * Do a selection change.
      * <p>
      * This is the only method that changes the current selection state.
-     * @param command A generator that generates the {@link SelectionChangeEvent} for the given base set of currently selected primitives.
+     * @param command A generator that generates the {@link SelectionChangeEvent} for the given base set of currently selected primitives
+     * and their bits.
      * @return true iff the command did change the selection.
      * @since 12048
      */
-    private boolean doSelectionChange(Function<Set<OsmPrimitive>, SelectionChangeEvent> command) {
+    private boolean doSelectionChange(BiFunction<Set<OsmPrimitive>, PrimitiveBitSet, AbstractSelectionEvent> command) {
         synchronized (selectionLock) {
-            SelectionChangeEvent event = command.apply(currentSelectedPrimitives);
+            AbstractSelectionEvent event = command.apply(currentSelectedPrimitives, currentSelectedBits);
             if (event.isNop()) {
                 return false;
             }
             currentSelectedPrimitives = event.getSelection();
+            currentSelectedBits = event.getSelectionBits();
             selectionListeners.fireEvent(l -> l.selectionChanged(event));
             return true;
         }
@@ -709,7 +840,40 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
 
     @Override
     public OsmPrimitive getPrimitiveById(PrimitiveId primitiveId) {
-        return primitiveId != null ? primitivesMap.get(primitiveId) : null;
+        return primitiveId != null ? allPrimitives.get(primitiveId) : null;
+    }
+
+    @Override
+    public OsmPrimitive getPrimitiveById(long id, OsmPrimitiveType type) {
+        return allPrimitives.get(id, type);
+    }
+
+    /**
+     * Returns the index of the tags of the primitives of this data set. The index is created on the first call,
+     * then kept up to date until the data set is cleared.
+     * @return the tag index, or {@code null} if disabled by the {@link TagIndex#PREFERENCE_ENABLED} preference
+     */
+    public TagIndex getTagIndex() {
+        if (!Boolean.TRUE.equals(TagIndex.PREFERENCE_ENABLED.get())) {
+            return null;
+        }
+        TagIndex index = tagIndex;
+        if (index == null) {
+            // modifications are notified to the index under the write lock, they are blocked while it is built
+            lock.readLock().lock();
+            try {
+                synchronized (tagIndexLock) {
+                    index = tagIndex;
+                    if (index == null) {
+                        index = new TagIndex(this);
+                        tagIndex = index;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return index;
     }
 
     /**
@@ -860,6 +1024,23 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
         listeners.remove(dsl);
     }
 
+    /**
+     * Adds a new data set delta listener, notified once at the end of each update with all its changes.
+     * @param listener The data set delta listener to add
+     * @see #endUpdate()
+     */
+    public void addDatasetDeltaListener(DatasetDeltaListener listener) {
+        deltaListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a data set delta listener.
+     * @param listener The data set delta listener to remove
+     */
+    public void removeDatasetDeltaListener(DatasetDeltaListener listener) {
+        deltaListeners.remove(listener);
+    }
+
     /**
      * Can be called before bigger changes on dataset. Events are disabled until {@link #endUpdate()}.
      * {@link DataSetListener#dataChanged(DataChangedEvent event)} event is triggered after end of changes
@@ -898,9 +1079,12 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
         if (updateCount > 0) {
             updateCount--;
             List<AbstractDatasetChangedEvent> eventsToFire = Collections.emptyList();
+            DatasetDelta deltaToFire = null;
             if (updateCount == 0) {
                 eventsToFire = new ArrayList<>(cachedEvents);
                 cachedEvents.clear();
+                deltaToFire = delta;
+                delta = null;
             }
 
             if (!eventsToFire.isEmpty()) {
@@ -916,6 +1100,11 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
                     } else {
                         fireEventToListeners(new DataChangedEvent(this, eventsToFire));
                     }
+                    if (deltaToFire != null && !deltaToFire.isEmpty()) {
+                        for (DatasetDeltaListener listener : deltaListeners) {
+                            listener.datasetChanged(deltaToFire);
+                        }
+                    }
                 } finally {
                     lock.readLock().unlock();
                 }
@@ -936,6 +1125,16 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
     private void fireEvent(AbstractDatasetChangedEvent event) {
         if (updateCount == 0)
             throw new AssertionError("dataset events can be fired only when dataset is locked");
+        TagIndex index = tagIndex;
+        if (index != null) {
+            index.update(event);
+        }
+        if (!deltaListeners.isEmpty()) {
+            if (delta == null) {
+                delta = new DatasetDelta(this);
+            }
+            delta.addEvent(event);
+        }
         if (cachedEvents.size() < MAX_EVENTS) {
             cachedEvents.add(event);
         }
@@ -999,14 +1198,37 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
             return; // sanity check
         beginUpdate();
         try {
-            for (Node n : getNodes()) {
-                n.invalidateEastNorthCache();
-            }
+            nodeCoordinates.invalidateAll();
         } finally {
             endUpdate();
         }
     }
 
+    /**
+     * Returns the store holding the projected coordinates of the nodes of this dataset.
+     * @return the node coordinate store
+     */
+    public NodeCoordinateStore getNodeCoordinateStore() {
+        return nodeCoordinates;
+    }
+
+    /**
+     * Returns the allocator of the slots of the ways and relations of this dataset.
+     * @return the slots of the ways and relations
+     */
+    PrimitiveSlots getPrimitiveSlots() {
+        return primitiveSlots;
+    }
+
+    /**
+     * Returns the generation of the slots of the primitives. It changes each time primitives are removed from this dataset,
+     * so that their slots may be reused: a {@link PrimitiveBitSet} built in an older generation may no longer match the primitives.
+     * @return the generation of the slots of the primitives
+     */
+    int getSlotGeneration() {
+        return slotGeneration;
+    }
+
     /**
      * Cleanups all deleted primitives (really delete them from the dataset).
      */
@@ -1030,7 +1252,7 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
 
     /**
      * Removes all primitives from the dataset and resets the currently selected primitives
-     * to the empty collection. Also notifies selection change listeners if necessary.
+     * to the empty collection. Also notifies selection change listeners and data set listeners if necessary.
      * @throws IllegalStateException if the dataset is read-only
      */
     @Override
@@ -1039,11 +1261,17 @@ public final class DataSet implements OsmData<OsmPrimitive, Node, Way, Relation>
         beginUpdate();
         try {
             clearSelection();
+            slotGeneration++;
             for (OsmPrimitive primitive : allPrimitives) {
                 primitive.setDataset(null);
             }
+            boolean changed = !allPrimitives.isEmpty();
             store.clear();
             allPrimitives.clear();
+            tagIndex = null;
+            if (changed) {
+                fireEvent(new DataChangedEvent(this));
+            }
         } finally {
             endUpdate();
         }
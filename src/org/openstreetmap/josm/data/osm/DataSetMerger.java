@@ -6,10 +6,11 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.awt.geom.Area;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -47,6 +48,16 @@ public class DataSetMerger {
     private final Set<PrimitiveId> objectsWithChildrenToMerge;
     private final Set<OsmPrimitive> objectsToDelete;
 
+    /**
+     * The conflicts created since the last call to {@link #fixReferences()}, added to {@link #conflicts} at once
+     * because looking up a conflict in a {@link ConflictCollection} is linear in its size
+     */
+    private final List<Conflict<?>> newConflicts = new ArrayList<>();
+    /** the "my" primitives of the conflicts created during merging */
+    private final Set<OsmPrimitive> myConflicts = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** the "their" primitives of the conflicts created during merging */
+    private final Set<OsmPrimitive> theirConflicts = Collections.newSetFromMap(new IdentityHashMap<>());
+
     /**
      * constructor
      *
@@ -135,7 +146,10 @@ public class DataSetMerger {
 
     protected void addConflict(Conflict<?> c) {
         c.setMergedMap(mergedMap);
-        conflicts.add(c);
+        if (!myConflicts.add(c.getMy()))
+            throw new IllegalStateException(tr("Already registered a conflict for primitive ''{0}''.", c.getMy().toString()));
+        theirConflicts.add(c.getTheir());
+        newConflicts.add(c);
     }
 
     protected void addConflict(OsmPrimitive my, OsmPrimitive their) {
@@ -154,18 +168,23 @@ public class DataSetMerger {
      */
     public void fixReferences() {
         for (Way w : sourceDataSet.getWays()) {
-            if (!conflicts.hasConflictForTheir(w) && objectsWithChildrenToMerge.contains(w.getPrimitiveId())) {
+            if (!theirConflicts.contains(w) && objectsWithChildrenToMerge.contains(w.getPrimitiveId())) {
                 mergeNodeList(w);
                 fixIncomplete(w);
             }
         }
         for (Relation r : sourceDataSet.getRelations()) {
-            if (!conflicts.hasConflictForTheir(r) && objectsWithChildrenToMerge.contains(r.getPrimitiveId())) {
+            if (!theirConflicts.contains(r) && objectsWithChildrenToMerge.contains(r.getPrimitiveId())) {
                 mergeRelationMembers(r);
             }
         }
 
         deleteMarkedObjects();
+
+        if (!newConflicts.isEmpty()) {
+            conflicts.add(newConflicts);
+            newConflicts.clear();
+        }
     }
 
     /**
@@ -246,14 +265,17 @@ public class DataSetMerger {
             Node targetNode = (Node) getMergeTarget(sourceNode);
             if (targetNode != null) {
                 newNodes.add(targetNode);
-                if (targetNode.isDeleted() && !conflicts.hasConflictForMy(targetNode)) {
+                if (targetNode.isDeleted() && !myConflicts.contains(targetNode)) {
                     addConflict(new Conflict<OsmPrimitive>(targetNode, sourceNode, true));
                     targetNode.setDeleted(false);
                 }
             } else
                 throw new IllegalStateException(tr("Missing merge target for node with id {0}", sourceNode.getUniqueId()));
         }
-        target.setNodes(newNodes);
+        // do not reindex the ways whose nodes did not change, typically when merging downloaded data
+        if (!newNodes.equals(target.getNodes())) {
+            target.setNodes(newNodes);
+        }
     }
 
     /**
@@ -267,7 +289,7 @@ public class DataSetMerger {
         Relation target = (Relation) getMergeTarget(source);
         if (target == null)
             throw new IllegalStateException(tr("Missing merge target for relation with id {0}", source.getUniqueId()));
-        List<RelationMember> newMembers = new LinkedList<>();
+        List<RelationMember> newMembers = new ArrayList<>(source.getMembersCount());
         for (RelationMember sourceMember : source.getMembers()) {
             OsmPrimitive targetMember = getMergeTarget(sourceMember.getMember());
             if (targetMember == null)
@@ -275,12 +297,14 @@ public class DataSetMerger {
                         sourceMember.getType(), sourceMember.getUniqueId()));
             RelationMember newMember = new RelationMember(sourceMember.getRole(), targetMember);
             newMembers.add(newMember);
-            if (targetMember.isDeleted() && !conflicts.hasConflictForMy(targetMember)) {
+            if (targetMember.isDeleted() && !myConflicts.contains(targetMember)) {
                 addConflict(new Conflict<>(targetMember, sourceMember.getMember(), true));
                 targetMember.setDeleted(false);
             }
         }
-        target.setMembers(newMembers);
+        if (!newMembers.equals(target.getMembers())) {
+            target.setMembers(newMembers);
+        }
     }
 
     /**
@@ -383,6 +407,22 @@ public class DataSetMerger {
         return true;
     }
 
+    /**
+     * Replies the new and not deleted primitives of the target dataset, the only ones a new source primitive can
+     * be merged onto, so that they are not searched among all the primitives of the target dataset.
+     * @param primitives the target primitives of a given type
+     * @return the new and not deleted primitives
+     */
+    private static <T extends OsmPrimitive> List<T> getNewPrimitives(Collection<T> primitives) {
+        List<T> result = new ArrayList<>();
+        for (T p : primitives) {
+            if (p.isNew() && !p.isDeleted()) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
     /**
      * Runs the merge operation. Successfully merged {@link OsmPrimitive}s are in
      * {@link #getTargetDataSet()}.
@@ -408,7 +448,7 @@ public class DataSetMerger {
         }
         targetDataSet.beginUpdate();
         try {
-            List<? extends OsmPrimitive> candidates = new ArrayList<>(targetDataSet.getNodes());
+            List<? extends OsmPrimitive> candidates = getNewPrimitives(targetDataSet.getNodes());
             for (Node node: sourceDataSet.getNodes()) {
                 mergePrimitive(node, candidates);
                 if (progressMonitor != null) {
@@ -416,7 +456,7 @@ public class DataSetMerger {
                 }
             }
             candidates.clear();
-            candidates = new ArrayList<>(targetDataSet.getWays());
+            candidates = getNewPrimitives(targetDataSet.getWays());
             for (Way way: sourceDataSet.getWays()) {
                 mergePrimitive(way, candidates);
                 if (progressMonitor != null) {
@@ -424,7 +464,7 @@ public class DataSetMerger {
                 }
             }
             candidates.clear();
-            candidates = new ArrayList<>(targetDataSet.getRelations());
+            candidates = getNewPrimitives(targetDataSet.getRelations());
             for (Relation relation: sourceDataSet.getRelations()) {
                 mergePrimitive(relation, candidates);
                 if (progressMonitor != null) {
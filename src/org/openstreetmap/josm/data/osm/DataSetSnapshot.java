@@ -0,0 +1,195 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.openstreetmap.josm.data.DataSource;
+
+/**
+ * An immutable point-in-time view of the contents of a {@link DataSet}.
+ * <p>
+ * A snapshot is taken with {@link DataSet#snapshot()} while holding the read lock of the data set for a short time.
+ * It can then be read from any thread, for instance to save the data in the background, without holding the lock
+ * and without being affected by the later changes of the data set.
+ * <p>
+ * The primitives are stored as {@link PrimitiveData}. The tag arrays and the users are immutable, so they are shared
+ * with the primitives of the data set instead of being copied. The flags which are not part of the primitive data
+ * (filter state, highlighted, annotated and preserved) are stored aside, so that a data set loaded from
+ * the snapshot is an exact copy, see {@link DataSet#DataSet(DataSet)}.
+ * @see DataSet#DataSet(DataSetSnapshot)
+ */
+public final class DataSetSnapshot {
+
+    /** The flags of the primitives which are not saved in their {@link PrimitiveData} */
+    private static final short VOLATILE_FLAGS = AbstractPrimitive.FLAG_DISABLED | AbstractPrimitive.FLAG_HIDE_IF_DISABLED
+            | AbstractPrimitive.FLAG_DISABLED_TYPE | AbstractPrimitive.FLAG_HIDDEN_TYPE | AbstractPrimitive.FLAG_HIGHLIGHTED
+            | AbstractPrimitive.FLAG_ANNOTATED | AbstractPrimitive.FLAG_PRESERVED;
+
+    private final List<NodeData> nodes;
+    private final List<WayData> ways;
+    private final List<RelationData> relations;
+    /** The volatile flags of the nodes, then of the ways, then of the relations */
+    private final short[] flags;
+    private final List<DataSource> dataSources;
+    private final String version;
+    private final DownloadPolicy downloadPolicy;
+    private final UploadPolicy uploadPolicy;
+    private final boolean locked;
+
+    /**
+     * Constructs a new {@code DataSetSnapshot}. The caller must hold the read lock of the data set.
+     * @param ds the data set
+     */
+    DataSetSnapshot(DataSet ds) {
+        Collection<Node> dsNodes = ds.getNodes();
+        Collection<Way> dsWays = ds.getWays();
+        Collection<Relation> dsRelations = ds.getRelations();
+        flags = new short[dsNodes.size() + dsWays.size() + dsRelations.size()];
+        nodes = save(dsNodes, flags, 0);
+        ways = save(dsWays, flags, nodes.size());
+        relations = save(dsRelations, flags, nodes.size() + ways.size());
+        List<DataSource> sources = new ArrayList<>();
+        for (DataSource source : ds.getDataSources()) {
+            sources.add(new DataSource(source));
+        }
+        dataSources = Collections.unmodifiableList(sources);
+        version = ds.getVersion();
+        downloadPolicy = ds.getDownloadPolicy();
+        uploadPolicy = ds.getUploadPolicy();
+        locked = ds.isLocked();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends PrimitiveData> List<T> save(Collection<? extends OsmPrimitive> primitives, short[] flags, int offset) {
+        List<T> result = new ArrayList<>(primitives.size());
+        for (OsmPrimitive osm : primitives) {
+            flags[offset + result.size()] = (short) (osm.flags & VOLATILE_FLAGS);
+            result.add((T) osm.save());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private void loadFlags(OsmPrimitive osm, int index) {
+        osm.flags = (short) ((osm.flags & ~VOLATILE_FLAGS) | flags[index]);
+    }
+
+    /**
+     * Returns the nodes of the data set, including the deleted and incomplete ones.
+     * @return the nodes, as an unmodifiable list. The node data must not be modified
+     */
+    public List<NodeData> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the ways of the data set, including the deleted and incomplete ones.
+     * @return the ways, as an unmodifiable list. The way data must not be modified
+     */
+    public List<WayData> getWays() {
+        return ways;
+    }
+
+    /**
+     * Returns the relations of the data set, including the deleted and incomplete ones.
+     * @return the relations, as an unmodifiable list. The relation data must not be modified
+     */
+    public List<RelationData> getRelations() {
+        return relations;
+    }
+
+    /**
+     * Returns the number of primitives of the snapshot.
+     * @return the number of nodes, ways and relations
+     */
+    public int size() {
+        return nodes.size() + ways.size() + relations.size();
+    }
+
+    /**
+     * Returns the data sources of the data set.
+     * @return the data sources, as an unmodifiable list
+     */
+    public List<DataSource> getDataSources() {
+        return dataSources;
+    }
+
+    /**
+     * Returns the API version of the data set.
+     * @return the API version, can be {@code null}
+     * @see DataSet#getVersion()
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the download policy of the data set.
+     * @return the download policy
+     * @see DataSet#getDownloadPolicy()
+     */
+    public DownloadPolicy getDownloadPolicy() {
+        return downloadPolicy;
+    }
+
+    /**
+     * Returns the upload policy of the data set.
+     * @return the upload policy
+     * @see DataSet#getUploadPolicy()
+     */
+    public UploadPolicy getUploadPolicy() {
+        return uploadPolicy;
+    }
+
+    /**
+     * Determines if the data set was locked.
+     * @return {@code true} if the data set was locked
+     * @see DataSet#isLocked()
+     */
+    public boolean isLocked() {
+        return locked;
+    }
+
+    /**
+     * Adds the primitives of this snapshot to the given empty data set.
+     * @param ds the data set to fill
+     */
+    void load(DataSet ds) {
+        List<OsmPrimitive> loaded = new ArrayList<>(ways.size() + relations.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            // nodes are loaded first because they can't be added to a data set without coordinates
+            NodeData data = nodes.get(i);
+            OsmPrimitive node = OsmPrimitiveType.NODE.newInstance(data.getUniqueId(), true);
+            node.load(data);
+            loadFlags(node, i);
+            ds.addPrimitive(node);
+        }
+        for (WayData data : ways) {
+            OsmPrimitive way = OsmPrimitiveType.WAY.newInstance(data.getUniqueId(), true);
+            ds.addPrimitive(way);
+            loaded.add(way);
+        }
+        // relations can have other relations as members, so they are all added before their members are loaded
+        for (RelationData data : relations) {
+            OsmPrimitive relation = OsmPrimitiveType.RELATION.newInstance(data.getUniqueId(), true);
+            ds.addPrimitive(relation);
+            loaded.add(relation);
+        }
+        for (int i = 0; i < ways.size(); i++) {
+            loaded.get(i).load(ways.get(i));
+        }
+        for (int i = 0; i < relations.size(); i++) {
+            loaded.get(ways.size() + i).load(relations.get(i));
+        }
+        for (int i = 0; i < loaded.size(); i++) {
+            loadFlags(loaded.get(i), nodes.size() + i);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DataSetSnapshot [nodes=" + nodes.size() + ", ways=" + ways.size() + ", relations=" + relations.size() + ']';
+    }
+}
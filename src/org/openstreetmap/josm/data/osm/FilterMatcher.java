@@ -3,11 +3,17 @@ package org.openstreetmap.josm.data.osm;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.openstreetmap.josm.data.osm.search.SearchCompiler;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.AbstractBinaryMatch;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Child;
 import org.openstreetmap.josm.data.osm.search.SearchCompiler.Match;
-import org.openstreetmap.josm.data.osm.search.SearchCompiler.Not;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Parent;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.UnaryMatch;
 import org.openstreetmap.josm.data.osm.search.SearchMode;
 import org.openstreetmap.josm.data.osm.search.SearchParseError;
 import org.openstreetmap.josm.tools.SubclassFilteredCollection;
@@ -72,9 +78,13 @@ public class FilterMatcher {
     }
 
     private static class FilterInfo {
-        private final Match match;
+        private final Match compiled;
         private final boolean isDelete;
         private final boolean isInverted;
+        /** The maximum nesting depth of the {@code parent} and {@code child} expressions */
+        private final int relativesDepth;
+        /** The primitives which may match the filter expression, or {@code null} if all primitives may match */
+        private Set<OsmPrimitive> candidates;
 
         FilterInfo(Filter filter) throws SearchParseError {
             if (filter.mode == SearchMode.remove || filter.mode == SearchMode.in_selection) {
@@ -83,9 +93,34 @@ public class FilterMatcher {
                 isDelete = false;
             }
 
-            Match compiled = SearchCompiler.compile(filter);
-            this.match = filter.inverted ? new Not(compiled) : compiled;
+            this.compiled = SearchCompiler.compile(filter);
             this.isInverted = filter.inverted;
+            this.relativesDepth = getRelativesDepth(compiled);
+        }
+
+        private static int getRelativesDepth(Match match) {
+            if (match instanceof UnaryMatch) {
+                int depth = getRelativesDepth(((UnaryMatch) match).getOperand());
+                return match instanceof Parent || match instanceof Child ? depth + 1 : depth;
+            } else if (match instanceof AbstractBinaryMatch) {
+                return Math.max(getRelativesDepth(((AbstractBinaryMatch) match).getLhs()),
+                        getRelativesDepth(((AbstractBinaryMatch) match).getRhs()));
+            }
+            return 0;
+        }
+
+        boolean match(OsmPrimitive primitive) {
+            return isInverted != ((candidates == null || candidates.contains(primitive)) && compiled.match(primitive));
+        }
+
+        void setTagIndex(TagIndex index) {
+            Collection<OsmPrimitive> found = index != null ? compiled.getCandidates(index) : null;
+            if (found != null) {
+                candidates = Collections.newSetFromMap(new IdentityHashMap<>(found.size()));
+                candidates.addAll(found);
+            } else {
+                candidates = null;
+            }
         }
     }
 
@@ -112,6 +147,21 @@ public class FilterMatcher {
         disabledFilters.clear();
     }
 
+    /**
+     * Sets the tag index used to skip the evaluation of the filter expressions on the primitives which cannot match,
+     * see {@link Match#getCandidates}. The index must be the one of the data set of the filtered primitives,
+     * and it must not be modified until the index is reset.
+     * @param index the tag index of the data set of the filtered primitives, or {@code null} to reset it
+     */
+    public void setTagIndex(TagIndex index) {
+        for (FilterInfo fi : hiddenFilters) {
+            fi.setTagIndex(index);
+        }
+        for (FilterInfo fi : disabledFilters) {
+            fi.setTagIndex(index);
+        }
+    }
+
     /**
      * Determines if at least one filter is enabled.
      * @return {@code true} if at least one filter is enabled
@@ -121,6 +171,24 @@ public class FilterMatcher {
         return !hiddenFilters.isEmpty() || !disabledFilters.isEmpty();
     }
 
+    /**
+     * Returns the maximum nesting depth of the {@code parent} and {@code child} expressions of the filters in use,
+     * i.e.&nbsp;how far in the graph of parents and children the primitives whose tags or geometry are tested
+     * by the filter expressions can be. Does not include the dependencies between the filter states of
+     * ways and their nodes, or multipolygons and their ways.
+     * @return the maximum nesting depth of the {@code parent} and {@code child} expressions, 0 if there is none
+     */
+    public int getRelativesDepth() {
+        int depth = 0;
+        for (FilterInfo fi : hiddenFilters) {
+            depth = Math.max(depth, fi.relativesDepth);
+        }
+        for (FilterInfo fi : disabledFilters) {
+            depth = Math.max(depth, fi.relativesDepth);
+        }
+        return depth;
+    }
+
     /**
      * Adds a filter to the currently used filters
      * @param filter the filter to add
@@ -241,11 +309,11 @@ public class FilterMatcher {
 
         for (FilterInfo fi: filters) {
             if (fi.isDelete) {
-                if (filtered && fi.match.match(primitive)) {
+                if (filtered && fi.match(primitive)) {
                     filtered = false;
                 }
             } else {
-                if ((!filtered || (!explicitlyFiltered && !fi.isInverted)) && fi.match.match(primitive)) {
+                if ((!filtered || (!explicitlyFiltered && !fi.isInverted)) && fi.match(primitive)) {
                     filtered = true;
                     if (!fi.isInverted) {
                         explicitlyFiltered = true;
@@ -7,7 +7,9 @@ import static org.openstreetmap.josm.tools.I18n.trn;
 import java.awt.Graphics2D;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -17,6 +19,7 @@ import javax.swing.JOptionPane;
 
 import org.openstreetmap.josm.data.StructUtils;
 import org.openstreetmap.josm.data.osm.Filter.FilterPreferenceEntry;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
 import org.openstreetmap.josm.data.osm.search.SearchParseError;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.widgets.OSDLabel;
@@ -110,7 +113,12 @@ public class FilterModel {
 
                 final Collection<OsmPrimitive> all = ds.allNonDeletedCompletePrimitives();
 
-                changed = FilterWorker.executeFilters(all, filterMatcher);
+                filterMatcher.setTagIndex(ds.getTagIndex());
+                try {
+                    changed = FilterWorker.executeFilters(all, filterMatcher);
+                } finally {
+                    filterMatcher.setTagIndex(null);
+                }
 
                 disabledCount = 0;
                 disabledAndHiddenCount = 0;
@@ -168,25 +176,85 @@ public class FilterModel {
                         continue;
                     }
 
-                    if (primitive.isDisabled()) {
-                        disabledCount--;
-                    }
-                    if (primitive.isDisabledAndHidden()) {
-                        disabledAndHiddenCount--;
-                    }
-                    changed |= FilterWorker.executeFilters(primitive, filterMatcher);
-                    if (primitive.isDisabled()) {
-                        disabledCount++;
-                    }
-                    if (primitive.isDisabledAndHidden()) {
-                        disabledAndHiddenCount++;
-                    }
+                    executeFilters(ds, primitive, deselect);
+                }
+            }
+        } finally {
+            ds.endUpdate();
+        }
 
-                    if (primitive.isSelected() && primitive.isDisabled()) {
-                        deselect.add(primitive);
-                    }
+        if (!deselect.isEmpty()) {
+            ds.clearSelection(deselect);
+        }
+        if (changed) {
+            updateMap();
+        }
+    }
+
+    /**
+     * Runs the filters on the primitives of the edit data set affected by the given changes.
+     * <p>
+     * Only the changed primitives and the primitives whose filter state depends on them are filtered again:
+     * the parents and children tested by the {@code parent} and {@code child} expressions of the filters,
+     * the ways and relations whose geometry depends on the moved nodes, and the nodes and member ways
+     * whose filter state is inherited from the filtered ways and multipolygons.
+     * All primitives are filtered again if the changes are unknown.
+     * @param delta the changes of the edit data set
+     */
+    public void executeFilters(DatasetDelta delta) {
+        DataSet ds = OsmDataManager.getInstance().getEditDataSet();
+        if (ds == null || delta.getDataset() != ds)
+            return;
+        if (delta.isDataSetChanged()) {
+            executeFilters();
+            return;
+        }
+
+        changed = false;
+        List<OsmPrimitive> deselect = new ArrayList<>();
+
+        ds.beginUpdate();
+        try {
+            // the removed primitives were counted by the last run, the added ones might have the state of a copied primitive
+            for (OsmPrimitive primitive : delta.getRemoved()) {
+                uncount(primitive);
+                changed |= primitive.unsetDisabledState();
+            }
+            for (OsmPrimitive primitive : delta.getAdded()) {
+                changed |= primitive.unsetDisabledState();
+            }
+
+            Set<Relation> relations = newIdentitySet();
+            Set<Way> ways = newIdentitySet();
+            Set<Node> nodes = newIdentitySet();
+            for (OsmPrimitive primitive : getAffectedPrimitives(delta, filterMatcher.getRelativesDepth())) {
+                if (primitive instanceof Relation) {
+                    relations.add((Relation) primitive);
+                } else if (primitive instanceof Way) {
+                    ways.add((Way) primitive);
+                } else {
+                    nodes.add((Node) primitive);
+                }
+            }
+            // the multipolygon relations pass their state to their member ways, and the ways to their nodes
+            for (OsmPrimitive primitive : delta.getTagsChanged()) {
+                if (primitive instanceof Relation) {
+                    addMemberWays((Relation) primitive, ways);
+                }
+            }
+            for (Relation relation : relations) {
+                if (executeFilters(ds, relation, deselect) && relation.isMultipolygon()) {
+                    addMemberWays(relation, ways);
+                }
+            }
+            for (Way way : ways) {
+                if (executeFilters(ds, way, deselect)) {
+                    nodes.addAll(way.getNodes());
                 }
             }
+            for (Node node : nodes) {
+                executeFilters(ds, node, deselect);
+            }
         } finally {
             ds.endUpdate();
         }
@@ -199,6 +267,55 @@ public class FilterModel {
         }
     }
 
+    /**
+     * Runs the filters on a primitive, unless it is no longer part of the filtered primitives.
+     * @param ds the data set
+     * @param primitive the primitive
+     * @param deselect the list of primitives to deselect, to which the primitive is added if it becomes disabled
+     * @return {@code true} if the filter state of the primitive, including its type, has changed
+     */
+    private boolean executeFilters(DataSet ds, OsmPrimitive primitive, List<OsmPrimitive> deselect) {
+        if (primitive.getDataSet() != ds || primitive.isDeleted() || primitive.isIncomplete())
+            return false;
+        int state = getFilterState(primitive);
+        uncount(primitive);
+        changed |= FilterWorker.executeFilters(primitive, filterMatcher);
+        if (primitive.isDisabledAndHidden()) {
+            disabledAndHiddenCount++;
+        } else if (primitive.isDisabled()) {
+            disabledCount++;
+        }
+        if (primitive.isSelected() && primitive.isDisabled()) {
+            deselect.add(primitive);
+        }
+        return state != getFilterState(primitive);
+    }
+
+    private void uncount(OsmPrimitive primitive) {
+        if (primitive.isDisabledAndHidden()) {
+            disabledAndHiddenCount--;
+        } else if (primitive.isDisabled()) {
+            disabledCount--;
+        }
+    }
+
+    private static int getFilterState(OsmPrimitive primitive) {
+        return (primitive.isDisabled() ? 1 : 0) | (primitive.isDisabledAndHidden() ? 2 : 0)
+                | (primitive.getDisabledType() ? 4 : 0) | (primitive.getHiddenType() ? 8 : 0);
+    }
+
+    private static void addMemberWays(Relation relation, Set<Way> ways) {
+        for (RelationMember member : relation.getMembers()) {
+            if (member.isWay()) {
+                ways.add(member.getWay());
+            }
+        }
+    }
+
+    private static <T> Set<T> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
     private static void updateMap() {
         MainApplication.getLayerManager().invalidateEditLayer();
     }
@@ -380,6 +497,77 @@ public class FilterModel {
         return filterMatcher.hasFilters();
     }
 
+    /**
+     * Returns the primitives whose filter expressions can match differently after the given changes: the changed
+     * primitives, the ways and relations whose geometry depends on the moved nodes and changed ways and relations,
+     * the children whose parents have changed, and their parents and children up to the given depth.
+     * The filter states inherited from ways and multipolygons are not taken into account.
+     * @param delta the changes of a data set
+     * @param depth the maximum nesting depth of the {@code parent} and {@code child} expressions of the filters
+     * @return the primitives whose filter expressions can match differently, including deleted ones
+     * @see FilterMatcher#getRelativesDepth()
+     */
+    public static Set<OsmPrimitive> getAffectedPrimitives(DatasetDelta delta, int depth) {
+        Set<OsmPrimitive> result = newIdentitySet();
+        result.addAll(delta.getAdded());
+        result.addAll(delta.getTagsChanged());
+        result.addAll(delta.getOtherChanged());
+        // the geometry of the parents is made of the moved nodes, the children have new or former parents
+        addReferrers(delta.getMovedNodes(), result);
+        addReferrers(delta.getWayNodesChanged(), result);
+        addReferrers(delta.getRelationMembersChanged(), result);
+        addChildren(delta.getWayNodesChanged(), result);
+        addChildren(delta.getRelationMembersChanged(), result);
+        addChildren(delta.getRemoved(), result);
+
+        Collection<OsmPrimitive> level = new ArrayList<>(result);
+        for (int i = 0; i < depth && !level.isEmpty(); i++) {
+            Collection<OsmPrimitive> next = new ArrayList<>();
+            for (OsmPrimitive p : level) {
+                for (OsmPrimitive relative : p.getReferrers()) {
+                    if (result.add(relative)) {
+                        next.add(relative);
+                    }
+                }
+                for (OsmPrimitive relative : getChildren(p)) {
+                    if (result.add(relative)) {
+                        next.add(relative);
+                    }
+                }
+            }
+            level = next;
+        }
+        return result;
+    }
+
+    private static void addReferrers(Collection<? extends OsmPrimitive> primitives, Set<OsmPrimitive> result) {
+        Set<OsmPrimitive> visited = newIdentitySet();
+        Stack<OsmPrimitive> stack = new Stack<>();
+        stack.addAll(primitives);
+        while (!stack.isEmpty()) {
+            OsmPrimitive p = stack.pop();
+            if (visited.add(p)) {
+                result.add(p);
+                stack.addAll(p.getReferrers());
+            }
+        }
+    }
+
+    private static void addChildren(Collection<? extends OsmPrimitive> primitives, Set<OsmPrimitive> result) {
+        for (OsmPrimitive p : primitives) {
+            result.addAll(getChildren(p));
+        }
+    }
+
+    private static Collection<? extends OsmPrimitive> getChildren(OsmPrimitive p) {
+        if (p instanceof Way) {
+            return ((Way) p).getNodes();
+        } else if (p instanceof Relation) {
+            return ((Relation) p).getMemberPrimitivesList();
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * Returns the list of primitives whose filtering can be affected by change in primitive
      * @param primitives list of primitives to check
@@ -25,21 +25,28 @@ import org.openstreetmap.josm.tools.Utils;
  */
 public final class Node extends OsmPrimitive implements INode {
 
+    /** The coordinates of the nodes whose coordinates are unknown */
+    private static final LatLon UNKNOWN = new LatLon(Double.NaN, Double.NaN);
+
     /*
-     * We "inline" lat/lon rather than using a LatLon-object => reduces memory footprint
+     * We "inline" lat/lon rather than using a LatLon-object => reduces memory footprint.
+     * They are stored in fixed point, with the precision of the OSM database, which represents exactly the coordinates
+     * read from the OSM data. Other coordinates, for instance after an edit, are kept exactly in exactCoor.
      */
-    private double lat = Double.NaN;
-    private double lon = Double.NaN;
+    private int fixedLat;
+    private int fixedLon;
+    private LatLon exactCoor = UNKNOWN;
 
-    /*
-     * the cached projected coordinates
+    /**
+     * The slot holding the cached projected coordinates of this node in the {@link NodeCoordinateStore}
+     * of its dataset, or -1 if this node does not belong to a dataset.
      */
-    private double east = Double.NaN;
-    private double north = Double.NaN;
+    private int coordinateSlot = -1;
+
     /**
-     * The cache key to use for {@link #east} and {@link #north}.
+     * The cached projected coordinates of this node while it does not belong to a dataset, or {@code null}.
      */
-    private Object eastNorthCacheKey;
+    private ProjectedCoor detachedEastNorth;
 
     @Override
     public void setCoor(LatLon coor) {
@@ -70,36 +77,80 @@ public final class Node extends OsmPrimitive implements INode {
      */
     @Override
     public LatLon getCoor() {
-        if (!isLatLonKnown()) {
+        LatLon exact = exactCoor;
+        if (exact == null) {
+            return new LatLon(fixedLat / LatLon.MAX_SERVER_INV_PRECISION, fixedLon / LatLon.MAX_SERVER_INV_PRECISION);
+        } else if (!exact.isLatLonKnown()) {
             return null;
         } else {
-            return new LatLon(lat, lon);
+            return exact;
         }
     }
 
     @Override
     public double lat() {
-        return lat;
+        LatLon exact = exactCoor;
+        return exact == null ? fixedLat / LatLon.MAX_SERVER_INV_PRECISION : exact.lat();
     }
 
     @Override
     public double lon() {
-        return lon;
+        LatLon exact = exactCoor;
+        return exact == null ? fixedLon / LatLon.MAX_SERVER_INV_PRECISION : exact.lon();
+    }
+
+    @Override
+    public boolean isLatLonKnown() {
+        LatLon exact = exactCoor;
+        return exact == null || exact.isLatLonKnown();
+    }
+
+    private void setLatLon(double lat, double lon) {
+        long latE7 = Math.round(lat * LatLon.MAX_SERVER_INV_PRECISION);
+        long lonE7 = Math.round(lon * LatLon.MAX_SERVER_INV_PRECISION);
+        if (isFixedPoint(lat, latE7) && isFixedPoint(lon, lonE7)) {
+            fixedLat = (int) latE7;
+            fixedLon = (int) lonE7;
+            exactCoor = null;
+        } else {
+            exactCoor = Double.isNaN(lat) && Double.isNaN(lon) ? UNKNOWN : new LatLon(lat, lon);
+        }
+    }
+
+    private static boolean isFixedPoint(double value, long valueE7) {
+        return valueE7 >= Integer.MIN_VALUE && valueE7 <= Integer.MAX_VALUE
+                && Double.compare(valueE7 / LatLon.MAX_SERVER_INV_PRECISION, value) == 0;
     }
 
     @Override
     public EastNorth getEastNorth(Projecting projection) {
         if (!isLatLonKnown()) return null;
 
-        if (Double.isNaN(east) || Double.isNaN(north) || !Objects.equals(projection.getCacheKey(), eastNorthCacheKey)) {
+        Object cacheKey = projection.getCacheKey();
+        DataSet ds = getDataSet();
+        int slot = coordinateSlot;
+        if (ds == null || slot < 0) {
+            ProjectedCoor detached = detachedEastNorth;
+            if (detached != null && Objects.equals(detached.cacheKey, cacheKey)) {
+                return detached.eastNorth;
+            }
+            EastNorth en = projection.latlon2eastNorth(this);
+            detachedEastNorth = new ProjectedCoor(cacheKey, en);
+            return en;
+        }
+        NodeCoordinateStore store = ds.getNodeCoordinateStore();
+        EastNorth en = store.getEastNorth(slot, cacheKey);
+        if (en == null || slot != coordinateSlot) {
             // projected coordinates haven't been calculated yet,
             // so fill the cache of the projected node coordinates
-            EastNorth en = projection.latlon2eastNorth(this);
-            this.east = en.east();
-            this.north = en.north();
-            this.eastNorthCacheKey = projection.getCacheKey();
+            en = projection.latlon2eastNorth(this);
+            store.setEastNorth(slot, cacheKey, en);
+            if (slot != coordinateSlot) {
+                // the slot has been released (and maybe reused) meanwhile
+                store.invalidate(slot);
+            }
         }
-        return new EastNorth(east, north);
+        return en;
     }
 
     /**
@@ -109,19 +160,14 @@ public final class Node extends OsmPrimitive implements INode {
      */
     void setCoorInternal(LatLon coor, EastNorth eastNorth) {
         if (coor != null) {
-            this.lat = coor.lat();
-            this.lon = coor.lon();
+            setLatLon(coor.lat(), coor.lon());
             invalidateEastNorthCache();
         } else if (eastNorth != null) {
             LatLon ll = ProjectionRegistry.getProjection().eastNorth2latlon(eastNorth);
-            this.lat = ll.lat();
-            this.lon = ll.lon();
-            this.east = eastNorth.east();
-            this.north = eastNorth.north();
-            this.eastNorthCacheKey = ProjectionRegistry.getProjection().getCacheKey();
+            setLatLon(ll.lat(), ll.lon());
+            cacheEastNorth(eastNorth, ProjectionRegistry.getProjection().getCacheKey());
         } else {
-            this.lat = Double.NaN;
-            this.lon = Double.NaN;
+            setLatLon(Double.NaN, Double.NaN);
             invalidateEastNorthCache();
             if (isVisible()) {
                 setIncomplete(true);
@@ -199,9 +245,33 @@ public final class Node extends OsmPrimitive implements INode {
         setEastNorth(eastNorth);
     }
 
+    @Override
+    int getSlot() {
+        return coordinateSlot;
+    }
+
     @Override
     void setDataset(DataSet dataSet) {
+        DataSet oldDataSet = getDataSet();
         super.setDataset(dataSet);
+        if (oldDataSet != dataSet) {
+            // hand over the cached projected coordinates, if any
+            Projecting projection = ProjectionRegistry.getProjection();
+            Object cacheKey = projection != null ? projection.getCacheKey() : null;
+            EastNorth en = null;
+            if (oldDataSet != null && coordinateSlot >= 0) {
+                NodeCoordinateStore store = oldDataSet.getNodeCoordinateStore();
+                en = store.getEastNorth(coordinateSlot, cacheKey);
+                store.release(coordinateSlot);
+            } else if (detachedEastNorth != null && Objects.equals(detachedEastNorth.cacheKey, cacheKey)) {
+                en = detachedEastNorth.eastNorth;
+            }
+            detachedEastNorth = null;
+            coordinateSlot = dataSet != null ? dataSet.getNodeCoordinateStore().allocate() : -1;
+            if (en != null) {
+                cacheEastNorth(en, cacheKey);
+            }
+        }
         if (!isIncomplete() && isVisible() && !isLatLonKnown())
             throw new DataIntegrityProblemException("Complete node with null coordinates: " + toString());
     }
@@ -247,8 +317,10 @@ public final class Node extends OsmPrimitive implements INode {
         boolean locked = writeLock();
         try {
             super.mergeFrom(other);
-            if (!other.isIncomplete()) {
-                setCoor(((Node) other).getCoor());
+            Node otherNode = (Node) other;
+            // do not reindex nodes which did not move, typically when merging downloaded data
+            if (!other.isIncomplete() && !(isLatLonKnown() && lat() == otherNode.lat() && lon() == otherNode.lon())) {
+                setCoor(otherNode.getCoor());
             }
         } finally {
             writeUnlock(locked);
@@ -280,7 +352,7 @@ public final class Node extends OsmPrimitive implements INode {
 
     @Override
     public String toString() {
-        String coorDesc = isLatLonKnown() ? "lat="+lat+",lon="+lon : "";
+        String coorDesc = isLatLonKnown() ? "lat="+lat()+",lon="+lon() : "";
         return "{Node id=" + getUniqueId() + " version=" + getVersion() + ' ' + getFlagsAsString() + ' ' + coorDesc+'}';
     }
 
@@ -305,12 +377,12 @@ public final class Node extends OsmPrimitive implements INode {
 
     @Override
     public BBox getBBox() {
-        return new BBox(lon, lat);
+        return new BBox(lon(), lat());
     }
 
     @Override
     protected void addToBBox(BBox box, Set<PrimitiveId> visited) {
-        box.add(lon, lat);
+        box.add(lon(), lat());
     }
 
     @Override
@@ -335,9 +407,35 @@ public final class Node extends OsmPrimitive implements INode {
      * next time.
      */
     public void invalidateEastNorthCache() {
-        this.east = Double.NaN;
-        this.north = Double.NaN;
-        this.eastNorthCacheKey = null;
+        DataSet ds = getDataSet();
+        int slot = coordinateSlot;
+        if (ds != null && slot >= 0) {
+            ds.getNodeCoordinateStore().invalidate(slot);
+        } else {
+            detachedEastNorth = null;
+        }
+    }
+
+    private void cacheEastNorth(EastNorth eastNorth, Object cacheKey) {
+        DataSet ds = getDataSet();
+        if (ds != null && coordinateSlot >= 0) {
+            ds.getNodeCoordinateStore().setEastNorth(coordinateSlot, cacheKey, eastNorth);
+        } else {
+            detachedEastNorth = new ProjectedCoor(cacheKey, eastNorth);
+        }
+    }
+
+    /**
+     * Projected coordinates, with the cache key of the projection used to compute them.
+     */
+    private static final class ProjectedCoor {
+        private final Object cacheKey;
+        private final EastNorth eastNorth;
+
+        ProjectedCoor(Object cacheKey, EastNorth eastNorth) {
+            this.cacheKey = cacheKey;
+            this.eastNorth = eastNorth;
+        }
     }
 
     @Override
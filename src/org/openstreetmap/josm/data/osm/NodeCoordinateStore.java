@@ -0,0 +1,347 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+
+/**
+ * Columnar store for the projected coordinates of the nodes of a {@link DataSet}.
+ * <p>
+ * Instead of every {@link Node} carrying its own east/north cache fields and projection cache key,
+ * each node of a dataset is assigned a dense slot in this store when it is added to the dataset.
+ * The projected coordinates are kept in primitive columns indexed by that slot, either in plain
+ * arrays on the Java heap or in direct {@link ByteBuffer}s outside of it.
+ * <p>
+ * The columns are split in chunks of {@link #CHUNK_SIZE} slots. The store grows by adding chunks,
+ * the existing chunks are never copied, so that a write to a slot cannot be lost while the store grows.
+ * <p>
+ * Projection cache keys are shared: each slot only holds a small integer referring to a table of
+ * the (few) cache keys seen by this store.
+ * <p>
+ * Slot allocation is synchronized. The slots of each chunk are guarded by a {@link StampedLock}: the cache key and
+ * the coordinates of a slot are written together under the write lock, and read optimistically, falling back to
+ * the read lock if a write happened meanwhile. So a reader never sees the cache key of a write with the coordinates
+ * of another one. As the coordinates are only a cache, concurrent writes of the same slot may overwrite each other:
+ * the last one wins.
+ */
+public final class NodeCoordinateStore {
+
+    private static final int CHUNK_BITS = 10;
+    /** Number of slots in each chunk of the columns */
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    /** Maximum number of chunks, so that the number of slots fits in an {@code int} */
+    private static final int MAX_CHUNKS = Integer.MAX_VALUE >> CHUNK_BITS;
+    /** Maximum number of distinct projection cache keys remembered before the whole cache is reset */
+    private static final int MAX_CACHE_KEYS = 16;
+    /** Key index meaning "no cached value" */
+    private static final int NO_KEY = 0;
+
+    private final boolean offHeap;
+    /** The chunks of the columns. Only the first {@link #chunkCount} ones are allocated */
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile CacheKeys cacheKeys = new CacheKeys(0, new Object[0]);
+
+    private int chunkCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+    private int size;
+
+    /**
+     * Constructs a new, empty {@code NodeCoordinateStore}.
+     * @param offHeap if {@code true}, coordinates are stored in direct {@link ByteBuffer}s outside of the Java heap
+     */
+    public NodeCoordinateStore(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Determines if coordinates are stored outside of the Java heap.
+     * @return {@code true} if coordinates are stored in direct {@link ByteBuffer}s
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Returns the number of allocated slots.
+     * @return the number of allocated slots
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots that can be allocated without growing the underlying columns.
+     * @return the current capacity
+     */
+    public synchronized int capacity() {
+        return chunkCount << CHUNK_BITS;
+    }
+
+    /**
+     * Allocates a new slot. Released slots are reused first, so that slots stay dense.
+     * @return the new slot, with no cached coordinates
+     * @throws IllegalStateException if the store is full
+     */
+    synchronized int allocate() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            int chunk = nextSlot >> CHUNK_BITS;
+            if (chunk >= chunkCount) {
+                addChunk();
+            }
+            slot = nextSlot++;
+        }
+        chunk(slot).invalidate(slot & (CHUNK_SIZE - 1));
+        size++;
+        return slot;
+    }
+
+    private void addChunk() {
+        if (chunkCount >= MAX_CHUNKS) {
+            throw new IllegalStateException("Too many nodes: " + ((long) chunkCount << CHUNK_BITS));
+        }
+        Chunk[] c = chunks;
+        if (chunkCount == c.length) {
+            c = Arrays.copyOf(c, (int) Math.min(Math.max(2L * c.length, 16), MAX_CHUNKS));
+        }
+        c[chunkCount++] = offHeap ? new DirectChunk() : new HeapChunk();
+        // publish the new chunk
+        chunks = c;
+    }
+
+    private Chunk chunk(int slot) {
+        return chunks[slot >> CHUNK_BITS];
+    }
+
+    /**
+     * Releases a slot, so that it can be reused by another node.
+     * @param slot the slot to release
+     */
+    synchronized void release(int slot) {
+        chunk(slot).invalidate(slot & (CHUNK_SIZE - 1));
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * Returns the cached projected coordinates of the given slot.
+     * @param slot the slot
+     * @param cacheKey the cache key of the projection, see {@link org.openstreetmap.josm.data.projection.Projecting#getCacheKey}
+     * @return the cached coordinates, or {@code null} if none are cached for this projection
+     */
+    EastNorth getEastNorth(int slot, Object cacheKey) {
+        Chunk c = chunk(slot);
+        int index = slot & (CHUNK_SIZE - 1);
+        long stamp = c.lock.tryOptimisticRead();
+        int key = c.key(index);
+        double east = c.east(index);
+        double north = c.north(index);
+        if (!c.lock.validate(stamp)) {
+            stamp = c.lock.readLock();
+            try {
+                key = c.key(index);
+                east = c.east(index);
+                north = c.north(index);
+            } finally {
+                c.lock.unlockRead(stamp);
+            }
+        }
+        if (key == NO_KEY || !Objects.equals(cacheKeys.get(key), cacheKey)) {
+            return null;
+        }
+        return new EastNorth(east, north);
+    }
+
+    /**
+     * Caches projected coordinates for the given slot.
+     * @param slot the slot
+     * @param cacheKey the cache key of the projection used to compute the coordinates
+     * @param eastNorth the projected coordinates
+     */
+    void setEastNorth(int slot, Object cacheKey, EastNorth eastNorth) {
+        int key = indexOf(cacheKey);
+        Chunk c = chunk(slot);
+        int index = slot & (CHUNK_SIZE - 1);
+        long stamp = c.lock.writeLock();
+        try {
+            c.setEastNorth(index, eastNorth.east(), eastNorth.north());
+            c.setKey(index, key);
+        } finally {
+            c.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the cached projected coordinates of the given slot.
+     * @param slot the slot
+     */
+    void invalidate(int slot) {
+        chunk(slot).invalidate(slot & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Removes all cached projected coordinates. This does not need to touch the slots,
+     * as dropping the cache key table makes all their key indexes stale.
+     */
+    synchronized void invalidateAll() {
+        cacheKeys = new CacheKeys(cacheKeys.base + MAX_CACHE_KEYS, new Object[0]);
+    }
+
+    private int indexOf(Object cacheKey) {
+        int key = cacheKeys.indexOf(cacheKey);
+        return key != NO_KEY ? key : register(cacheKey);
+    }
+
+    private synchronized int register(Object cacheKey) {
+        CacheKeys table = cacheKeys;
+        int key = table.indexOf(cacheKey);
+        if (key == NO_KEY) {
+            if (table.keys.length >= MAX_CACHE_KEYS) {
+                invalidateAll();
+                table = cacheKeys;
+            }
+            Object[] keys = Arrays.copyOf(table.keys, table.keys.length + 1);
+            keys[table.keys.length] = cacheKey;
+            cacheKeys = new CacheKeys(table.base, keys);
+            key = table.base + keys.length;
+        }
+        return key;
+    }
+
+    /**
+     * Immutable table of the projection cache keys seen by the store.
+     * Key indexes start after {@code base}, which is increased on every reset so that stale indexes never match.
+     */
+    private static final class CacheKeys {
+        private final int base;
+        private final Object[] keys;
+
+        CacheKeys(int base, Object[] keys) {
+            this.base = base;
+            this.keys = keys;
+        }
+
+        Object get(int key) {
+            int i = key - base - 1;
+            return i >= 0 && i < keys.length ? keys[i] : null;
+        }
+
+        int indexOf(Object cacheKey) {
+            for (int i = 0; i < keys.length; i++) {
+                if (Objects.equals(keys[i], cacheKey)) {
+                    return base + i + 1;
+                }
+            }
+            return NO_KEY;
+        }
+    }
+
+    /**
+     * A chunk of the primitive columns backing the store, holding {@link #CHUNK_SIZE} slots.
+     * The columns are only written while holding the write lock of the chunk.
+     */
+    private abstract static class Chunk {
+        final StampedLock lock = new StampedLock();
+
+        void invalidate(int index) {
+            long stamp = lock.writeLock();
+            try {
+                setKey(index, NO_KEY);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        abstract double east(int index);
+
+        abstract double north(int index);
+
+        abstract int key(int index);
+
+        abstract void setEastNorth(int index, double east, double north);
+
+        abstract void setKey(int index, int key);
+    }
+
+    /**
+     * Chunk stored in arrays on the Java heap.
+     */
+    private static final class HeapChunk extends Chunk {
+        private final double[] east = new double[CHUNK_SIZE];
+        private final double[] north = new double[CHUNK_SIZE];
+        private final int[] keys = new int[CHUNK_SIZE];
+
+        @Override
+        double east(int index) {
+            return east[index];
+        }
+
+        @Override
+        double north(int index) {
+            return north[index];
+        }
+
+        @Override
+        int key(int index) {
+            return keys[index];
+        }
+
+        @Override
+        void setEastNorth(int index, double e, double n) {
+            east[index] = e;
+            north[index] = n;
+        }
+
+        @Override
+        void setKey(int index, int key) {
+            keys[index] = key;
+        }
+    }
+
+    /**
+     * Chunk stored in a direct byte buffer, outside of the Java heap.
+     * Each slot uses 20 bytes: east and north as doubles, followed by the cache key index.
+     */
+    private static final class DirectChunk extends Chunk {
+        private static final int SLOT_BYTES = 2 * Double.BYTES + Integer.BYTES;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE * SLOT_BYTES).order(ByteOrder.nativeOrder());
+
+        @Override
+        double east(int index) {
+            return buffer.getDouble(index * SLOT_BYTES);
+        }
+
+        @Override
+        double north(int index) {
+            return buffer.getDouble(index * SLOT_BYTES + Double.BYTES);
+        }
+
+        @Override
+        int key(int index) {
+            return buffer.getInt(index * SLOT_BYTES + 2 * Double.BYTES);
+        }
+
+        @Override
+        void setEastNorth(int index, double east, double north) {
+            buffer.putDouble(index * SLOT_BYTES, east);
+            buffer.putDouble(index * SLOT_BYTES + Double.BYTES, north);
+        }
+
+        @Override
+        void setKey(int index, int key) {
+            buffer.putInt(index * SLOT_BYTES + 2 * Double.BYTES, key);
+        }
+    }
+}
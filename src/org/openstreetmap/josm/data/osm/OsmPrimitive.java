@@ -5,6 +5,7 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -234,6 +235,14 @@ public abstract class OsmPrimitive extends AbstractPrimitive implements Template
         this.dataSet = dataSet;
     }
 
+    /**
+     * Returns the dense slot of this primitive in its data set, used to index the primitives in bit sets.
+     * Nodes on one hand, ways and relations on the other hand, have distinct slots while they are in the same data set.
+     * @return the slot of this primitive, or -1 if it is not in a data set
+     * @see PrimitiveBitSet
+     */
+    abstract int getSlot();
+
     @Override
     public DataSet getDataSet() {
         return dataSet;
@@ -782,6 +791,65 @@ public abstract class OsmPrimitive extends AbstractPrimitive implements Template
         }
     }
 
+    /**
+     * Growable array of referrers, used while a {@link ReferrerBuilder} registers many referrers at once
+     */
+    private static final class ReferrerBuffer {
+        private OsmPrimitive[] array;
+        private int size;
+
+        ReferrerBuffer(OsmPrimitive[] referrers, OsmPrimitive referrer) {
+            array = Arrays.copyOf(referrers, referrers.length * 2);
+            array[referrers.length] = referrer;
+            size = referrers.length + 1;
+        }
+
+        void add(OsmPrimitive referrer) {
+            if (array[size - 1] != referrer) {
+                if (size == array.length) {
+                    array = Arrays.copyOf(array, size * 2);
+                }
+                array[size++] = referrer;
+            }
+        }
+    }
+
+    /**
+     * Appends a new referrer, which must not be already registered, unless it is the last appended referrer.
+     * The referrers are kept in a growable buffer until {@link #trimReferrers()} is called.
+     * @param referrer The referrer to add
+     * @see ReferrerBuilder
+     */
+    void appendReferrer(OsmPrimitive referrer) {
+        checkDatasetNotReadOnly();
+        Object refs = referrers;
+        if (refs == null) {
+            referrers = referrer;
+        } else if (refs instanceof OsmPrimitive) {
+            if (refs != referrer) {
+                referrers = new OsmPrimitive[] {(OsmPrimitive) refs, referrer};
+            }
+        } else if (refs instanceof OsmPrimitive[]) {
+            OsmPrimitive[] array = (OsmPrimitive[]) refs;
+            if (array[array.length - 1] != referrer) {
+                referrers = new ReferrerBuffer(array, referrer);
+            }
+        } else {
+            ((ReferrerBuffer) refs).add(referrer);
+        }
+    }
+
+    /**
+     * Replaces the buffer of referrers filled by {@link #appendReferrer} by an array of the exact size.
+     * @see ReferrerBuilder
+     */
+    void trimReferrers() {
+        if (referrers instanceof ReferrerBuffer) {
+            ReferrerBuffer buffer = (ReferrerBuffer) referrers;
+            referrers = Arrays.copyOf(buffer.array, buffer.size);
+        }
+    }
+
     /**
      * Remove referrer. No action is taken if referrer is not registered
      * @param referrer The referrer to remove
@@ -1050,7 +1118,8 @@ public abstract class OsmPrimitive extends AbstractPrimitive implements Template
      */
     protected void saveCommonAttributes(PrimitiveData data) {
         data.setId(id);
-        data.setKeys(hasKeys() ? getKeys() : null);
+        // the tag arrays are copied on write, so they can be shared with the saved data
+        data.keys = keys;
         data.setRawTimestamp(getRawTimestamp());
         data.setUser(user);
         data.setDeleted(isDeleted());
@@ -0,0 +1,287 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable R-tree of primitives, bulk-loaded in one pass.
+ * <p>
+ * Primitives are sorted along a Hilbert curve by the center of their bounding box, then packed bottom-up
+ * into nodes of {@link #NODE_SIZE} entries. All bounding boxes are stored in a single {@code double} array,
+ * so the whole tree consists of three arrays regardless of the number of primitives.
+ * <p>
+ * The bounding boxes of the primitives are copied when the tree is built, so they must not change
+ * while the tree is in use (same contract as {@link QuadBuckets}).
+ * <p>
+ * This class is thread safe, as it is immutable.
+ * @param <T> type of primitives
+ */
+public final class PackedRTree<T extends IPrimitive> {
+
+    /** Maximum number of children of a tree node */
+    static final int NODE_SIZE = 16;
+    private static final int HILBERT_MAX = (1 << 16) - 1;
+
+    private final Object[] items;
+    /** Bounding boxes of items, then of tree nodes, level by level: 4 values (xmin, ymin, xmax, ymax) per entry */
+    private final double[] boxes;
+    /** For items: unused. For tree nodes: position (in {@link #boxes}) of the first child */
+    private final int[] indices;
+    /** End position (in {@link #boxes}) of each level, from the leaves to the root */
+    private final int[] levelBounds;
+
+    /**
+     * Builds a new packed R-tree.
+     * @param primitives the primitives to index. Their bounding boxes must be valid
+     */
+    public PackedRTree(Collection<? extends T> primitives) {
+        int n = primitives.size();
+        List<Integer> levels = new ArrayList<>();
+        int numNodes = n;
+        int count = n;
+        levels.add(n * 4);
+        if (n > 0) {
+            do {
+                count = (count + NODE_SIZE - 1) / NODE_SIZE;
+                numNodes += count;
+                levels.add(numNodes * 4);
+            } while (count != 1);
+        }
+        levelBounds = levels.stream().mapToInt(Integer::intValue).toArray();
+        items = new Object[n];
+        boxes = new double[numNodes * 4];
+        indices = new int[numNodes];
+        if (n > 0) {
+            load(primitives);
+        }
+    }
+
+    private void load(Collection<? extends T> primitives) {
+        int n = primitives.size();
+        Object[] unsorted = new Object[n];
+        double[] unsortedBoxes = new double[n * 4];
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int i = 0;
+        for (T p : primitives) {
+            BBox b = p.getBBox();
+            unsorted[i] = p;
+            unsortedBoxes[4 * i] = b.xmin;
+            unsortedBoxes[4 * i + 1] = b.ymin;
+            unsortedBoxes[4 * i + 2] = b.xmax;
+            unsortedBoxes[4 * i + 3] = b.ymax;
+            minX = Math.min(minX, b.xmin);
+            minY = Math.min(minY, b.ymin);
+            maxX = Math.max(maxX, b.xmax);
+            maxY = Math.max(maxY, b.ymax);
+            i++;
+        }
+
+        // sort items by the Hilbert value of their center
+        double width = maxX - minX;
+        double height = maxY - minY;
+        long[] keys = new long[n];
+        for (i = 0; i < n; i++) {
+            double cx = (unsortedBoxes[4 * i] + unsortedBoxes[4 * i + 2]) / 2;
+            double cy = (unsortedBoxes[4 * i + 1] + unsortedBoxes[4 * i + 3]) / 2;
+            int hx = width > 0 ? (int) (HILBERT_MAX * (cx - minX) / width) : 0;
+            int hy = height > 0 ? (int) (HILBERT_MAX * (cy - minY) / height) : 0;
+            // the (unsigned) Hilbert value uses 32 bits, the item index is kept in the lower 31 bits
+            keys[i] = ((hilbert(hx, hy) & 0xFFFF_FFFFL) << 31) | i;
+        }
+        Arrays.sort(keys);
+        for (i = 0; i < n; i++) {
+            int j = (int) (keys[i] & Integer.MAX_VALUE);
+            items[i] = unsorted[j];
+            System.arraycopy(unsortedBoxes, 4 * j, boxes, 4 * i, 4);
+        }
+
+        // pack tree nodes, level by level
+        int pos = 0;
+        int write = n * 4;
+        for (int level = 0; level < levelBounds.length - 1; level++) {
+            int end = levelBounds[level];
+            while (pos < end) {
+                int first = pos;
+                double nodeMinX = Double.POSITIVE_INFINITY;
+                double nodeMinY = Double.POSITIVE_INFINITY;
+                double nodeMaxX = Double.NEGATIVE_INFINITY;
+                double nodeMaxY = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < NODE_SIZE && pos < end; k++, pos += 4) {
+                    nodeMinX = Math.min(nodeMinX, boxes[pos]);
+                    nodeMinY = Math.min(nodeMinY, boxes[pos + 1]);
+                    nodeMaxX = Math.max(nodeMaxX, boxes[pos + 2]);
+                    nodeMaxY = Math.max(nodeMaxY, boxes[pos + 3]);
+                }
+                indices[write / 4] = first;
+                boxes[write++] = nodeMinX;
+                boxes[write++] = nodeMinY;
+                boxes[write++] = nodeMaxX;
+                boxes[write++] = nodeMaxY;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of primitives in this tree.
+     * @return the number of primitives
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Searches the tree for primitives whose bounding box intersects the given one.
+     * @param searchBbox the bounding box
+     * @return the primitives whose bounding box intersects {@code searchBbox}. Can be empty, but not null
+     */
+    public List<T> search(BBox searchBbox) {
+        List<T> result = new ArrayList<>();
+        search(searchBbox, result);
+        return result;
+    }
+
+    /**
+     * Searches the tree for primitives whose bounding box intersects the given one.
+     * @param searchBbox the bounding box
+     * @param result the list to add the found primitives to
+     */
+    @SuppressWarnings("unchecked")
+    public void search(BBox searchBbox, List<? super T> result) {
+        if (items.length == 0) {
+            return;
+        }
+        double minX = searchBbox.xmin;
+        double minY = searchBbox.ymin;
+        double maxX = searchBbox.xmax;
+        double maxY = searchBbox.ymax;
+        int itemsEnd = items.length * 4;
+        int[] stack = new int[NODE_SIZE * levelBounds.length];
+        int stackSize = 0;
+        int nodePos = boxes.length - 4;
+        while (true) {
+            int first = indices[nodePos / 4];
+            int end = Math.min(first + NODE_SIZE * 4, upperBound(first));
+            for (int pos = first; pos < end; pos += 4) {
+                if (boxes[pos] <= maxX && boxes[pos + 2] >= minX && boxes[pos + 1] <= maxY && boxes[pos + 3] >= minY) {
+                    if (pos < itemsEnd) {
+                        result.add((T) items[pos / 4]);
+                    } else {
+                        stack[stackSize++] = pos;
+                    }
+                }
+            }
+            if (stackSize == 0) {
+                return;
+            }
+            nodePos = stack[--stackSize];
+        }
+    }
+
+    /**
+     * Determines if the given primitive is in this tree, using its current bounding box.
+     * @param primitive the primitive
+     * @return {@code true} if the primitive is in this tree
+     */
+    public boolean contains(T primitive) {
+        BBox bbox = primitive.getBBox();
+        if (!bbox.isValid()) {
+            return false;
+        }
+        List<T> candidates = new ArrayList<>();
+        search(bbox, candidates);
+        for (T candidate : candidates) {
+            if (candidate == primitive) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds all primitives of this tree to the given collection.
+     * @param target the collection
+     */
+    @SuppressWarnings("unchecked")
+    void addAllTo(Collection<? super T> target) {
+        for (Object item : items) {
+            target.add((T) item);
+        }
+    }
+
+    private int upperBound(int pos) {
+        for (int bound : levelBounds) {
+            if (bound > pos) {
+                return bound;
+            }
+        }
+        return levelBounds[levelBounds.length - 1];
+    }
+
+    /**
+     * Computes the position of a point along a Hilbert curve filling a 2^16 x 2^16 grid.
+     * See <a href="https://github.com/rawrunprotected/hilbert_curves">hilbert_curves</a> (public domain).
+     * @param x x coordinate, between 0 and 2^16-1
+     * @param y y coordinate, between 0 and 2^16-1
+     * @return the position along the curve
+     */
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int aa = a | (b >>> 1);
+        int bb = (a >>> 1) ^ a;
+        int cc = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+        int dd = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        aa = (a & (a >>> 2)) ^ (b & (b >>> 2));
+        bb = (a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2));
+        cc ^= (a & (c >>> 2)) ^ (b & (d >>> 2));
+        dd ^= (b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2));
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        aa = (a & (a >>> 4)) ^ (b & (b >>> 4));
+        bb = (a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4));
+        cc ^= (a & (c >>> 4)) ^ (b & (d >>> 4));
+        dd ^= (b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4));
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        cc ^= (a & (c >>> 8)) ^ (b & (d >>> 8));
+        dd ^= (b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8));
+
+        a = cc ^ (cc >>> 1);
+        b = dd ^ (dd >>> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
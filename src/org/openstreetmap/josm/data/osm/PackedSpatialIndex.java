@@ -0,0 +1,202 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Spatial index made of a {@link PackedRTree} holding the bulk of the primitives, and of a small
+ * {@link QuadBuckets} delta index holding the primitives added since the tree was last built.
+ * <p>
+ * Added primitives are only queued. The queue is indexed on the next query: if the number of changes
+ * since the last build is small compared to the size of the tree, the queued primitives go to the delta
+ * index, otherwise the whole tree is rebuilt in one pass. This way a whole file load results in a single
+ * bulk build. Primitives removed from the tree are remembered and filtered out of search results until
+ * the next build.
+ * <p>
+ * The queued and indexed primitives are marked in a bit set indexed by their slots in the data set,
+ * so that duplicates are detected without searching the tree, see {@link OsmPrimitive#getSlot()}.
+ * <p>
+ * Modifications are not synchronized, they must not run concurrently with any other method.
+ * Queries may run concurrently with each other.
+ * @param <T> type of primitives
+ */
+final class PackedSpatialIndex<T extends IPrimitive> {
+
+    /** Minimum number of changes before the tree is rebuilt */
+    private static final int MIN_CHANGES_BEFORE_BUILD = 1024;
+
+    private final ToIntFunction<? super T> slots;
+    private List<T> pending = new ArrayList<>();
+    /** The slots of the queued and indexed primitives */
+    private final BitSet members = new BitSet();
+    private volatile boolean hasPending;
+    private PackedRTree<T> packed = new PackedRTree<>(Collections.<T>emptyList());
+    private final QuadBuckets<T> delta = new QuadBuckets<>();
+    private final Set<T> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<T> invalidBBoxPrimitives = new LinkedHashSet<>();
+
+    /**
+     * Constructs a new {@code PackedSpatialIndex}.
+     * @param slots the function returning the slot of a primitive in its data set, or -1 if it is not in a data set
+     */
+    PackedSpatialIndex(ToIntFunction<? super T> slots) {
+        this.slots = slots;
+    }
+
+    private boolean isMember(T primitive) {
+        int slot = slots.applyAsInt(primitive);
+        return slot >= 0 && members.get(slot);
+    }
+
+    /**
+     * Adds a primitive to the index.
+     * @param primitive the primitive
+     * @return {@code true} if the primitive was not already in the index, {@code false} if it was
+     * or if it is not in a data set
+     */
+    boolean add(T primitive) {
+        // the queue is not indexed here, so that a whole file load results in a single build
+        int slot = slots.applyAsInt(primitive);
+        if (slot < 0 || members.get(slot)) {
+            return false;
+        }
+        members.set(slot);
+        pending.add(primitive);
+        hasPending = true;
+        return true;
+    }
+
+    /**
+     * Removes a primitive from the index, using its current bounding box.
+     * @param primitive the primitive
+     * @return {@code true} if the primitive was in the index
+     */
+    boolean remove(T primitive) {
+        if (!isMember(primitive)) {
+            return false;
+        }
+        flush();
+        boolean result;
+        if (!primitive.getBBox().isValid()) {
+            result = invalidBBoxPrimitives.remove(primitive);
+        } else {
+            result = delta.remove(primitive) || (!removed.contains(primitive) && packed.contains(primitive) && removed.add(primitive));
+        }
+        if (result) {
+            members.clear(slots.applyAsInt(primitive));
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the given primitive can be retrieved in the index through its current bounding box.
+     * @param primitive the primitive
+     * @return {@code true} if the primitive is in the index
+     */
+    boolean contains(T primitive) {
+        if (!isMember(primitive)) {
+            return false;
+        }
+        flush();
+        if (!primitive.getBBox().isValid()) {
+            return invalidBBoxPrimitives.contains(primitive);
+        }
+        return delta.contains(primitive) || (!removed.contains(primitive) && packed.contains(primitive));
+    }
+
+    /**
+     * Returns the number of primitives in the index.
+     * @return the number of primitives
+     */
+    int size() {
+        flush();
+        return packed.size() - removed.size() + delta.size() + invalidBBoxPrimitives.size();
+    }
+
+    /**
+     * Searches for primitives whose bounding box intersects the given one.
+     * @param searchBbox the bounding box
+     * @return the primitives found. Can be empty, but not null
+     */
+    List<T> search(BBox searchBbox) {
+        flush();
+        List<T> result = new ArrayList<>();
+        if (!searchBbox.isValid()) {
+            return result;
+        }
+        packed.search(searchBbox, result);
+        if (!removed.isEmpty()) {
+            result.removeIf(removed::contains);
+        }
+        if (!delta.isEmpty()) {
+            result.addAll(delta.search(searchBbox));
+        }
+        return result;
+    }
+
+    /**
+     * Indexes the queued primitives now, instead of on the next query.
+     */
+    void flush() {
+        if (hasPending) {
+            synchronized (this) {
+                if (hasPending) {
+                    indexPending();
+                    hasPending = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all primitives from the index.
+     */
+    synchronized void clear() {
+        pending = new ArrayList<>();
+        members.clear();
+        hasPending = false;
+        packed = new PackedRTree<>(Collections.<T>emptyList());
+        delta.clear();
+        removed.clear();
+        invalidBBoxPrimitives.clear();
+    }
+
+    private void indexPending() {
+        List<T> queued = pending;
+        pending = new ArrayList<>();
+        int changes = queued.size() + delta.size() + removed.size();
+        if (changes < Math.max(MIN_CHANGES_BEFORE_BUILD, packed.size() / 8)) {
+            for (T primitive : queued) {
+                if (primitive.getBBox().isValid()) {
+                    delta.add(primitive);
+                } else {
+                    invalidBBoxPrimitives.add(primitive);
+                }
+            }
+        } else {
+            List<T> all = new ArrayList<>(packed.size() + delta.size() + queued.size());
+            packed.addAllTo(all);
+            if (!removed.isEmpty()) {
+                all.removeIf(removed::contains);
+            }
+            all.addAll(delta);
+            for (T primitive : queued) {
+                if (primitive.getBBox().isValid()) {
+                    all.add(primitive);
+                } else {
+                    invalidBBoxPrimitives.add(primitive);
+                }
+            }
+            packed = new PackedRTree<>(all);
+            delta.clear();
+            removed.clear();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * A set of primitives of a {@link DataSet}, as bits indexed by the slots of the primitives, see {@link OsmPrimitive#getSlot()}.
+ * <p>
+ * Testing a primitive is a single bit test instead of hashing the primitive, and two sets are compared
+ * with one operation per word of 64 slots. Only primitives of the data set can be contained.
+ * <p>
+ * Slots are only stable while the primitives stay in the data set. A bit set built before a primitive
+ * was removed from the data set may no longer match it, see {@link DataSet#getSlotGeneration()}.
+ * <p>
+ * Bit sets are only modified while they are built and must not be modified once they have been published.
+ */
+final class PrimitiveBitSet {
+
+    private final DataSet dataSet;
+    private final BitSet nodes;
+    private final BitSet others;
+
+    /**
+     * Constructs a new, empty {@code PrimitiveBitSet}.
+     * @param dataSet the data set of the primitives
+     */
+    PrimitiveBitSet(DataSet dataSet) {
+        this(dataSet, new BitSet(), new BitSet());
+    }
+
+    private PrimitiveBitSet(DataSet dataSet, BitSet nodes, BitSet others) {
+        this.dataSet = dataSet;
+        this.nodes = nodes;
+        this.others = others;
+    }
+
+    /**
+     * Builds the bit set of the given primitives.
+     * @param dataSet the data set of the primitives
+     * @param primitives the primitives
+     * @return the bit set, or {@code null} if one of the primitives is not in the data set
+     */
+    static PrimitiveBitSet of(DataSet dataSet, Collection<? extends OsmPrimitive> primitives) {
+        PrimitiveBitSet bits = new PrimitiveBitSet(dataSet);
+        for (OsmPrimitive p : primitives) {
+            if (!bits.add(p)) {
+                return null;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Returns a copy of this bit set, to be modified.
+     * @return a copy of this bit set
+     */
+    PrimitiveBitSet copy() {
+        return new PrimitiveBitSet(dataSet, (BitSet) nodes.clone(), (BitSet) others.clone());
+    }
+
+    private BitSet bits(OsmPrimitive p) {
+        return p instanceof Node ? nodes : others;
+    }
+
+    /**
+     * Determines if this bit set contains the given primitive.
+     * @param p the primitive
+     * @return {@code true} if the primitive is in the data set and its bit is set
+     */
+    boolean contains(OsmPrimitive p) {
+        return p.getDataSet() == dataSet && bits(p).get(p.getSlot());
+    }
+
+    /**
+     * Adds a primitive to this bit set.
+     * @param p the primitive
+     * @return {@code false} if the primitive is not in the data set and cannot be added
+     */
+    boolean add(OsmPrimitive p) {
+        if (p.getDataSet() != dataSet) {
+            return false;
+        }
+        bits(p).set(p.getSlot());
+        return true;
+    }
+
+    /**
+     * Removes a primitive from this bit set.
+     * @param p the primitive
+     * @return {@code false} if the primitive is not in the data set
+     */
+    boolean remove(OsmPrimitive p) {
+        if (p.getDataSet() != dataSet) {
+            return false;
+        }
+        bits(p).clear(p.getSlot());
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        } else {
+            PrimitiveBitSet that = (PrimitiveBitSet) obj;
+            return dataSet == that.dataSet && nodes.equals(that.nodes) && others.equals(that.others);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * nodes.hashCode() + others.hashCode();
+    }
+}
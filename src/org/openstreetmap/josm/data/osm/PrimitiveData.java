@@ -129,7 +129,7 @@ public abstract class PrimitiveData extends AbstractPrimitive implements Seriali
         version = ois.readInt();
         changesetId = ois.readInt();
         timestamp = ois.readInt();
-        keys = (String[]) ois.readObject();
+        keys = internKeys((String[]) ois.readObject());
         flags = ois.readShort();
         ois.defaultReadObject();
     }
@@ -0,0 +1,269 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A set of primitives indexed by type and unique id, used by {@link DataSet} instead of a {@link Storage}
+ * with a {@link Storage.PrimitiveIdHash}.
+ * <p>
+ * The primitives are stored in an open addressing hash table with linear probing. The lookups by {@code long} id
+ * do not allocate any key object and are not synchronized. They are nevertheless safe while the set is modified:
+ * the slots of the table are read and written with volatile semantics, an entry never moves once stored, and
+ * a removed entry is replaced by a tombstone instead of moving the following entries back. A lookup thus always
+ * finds a primitive which is in the set during the whole lookup. The tombstones are dropped when the table is
+ * rebuilt, in a new table which is only published once filled. The modifications are synchronized.
+ * <p>
+ * Like a {@code Storage} created with {@code safeIterator}, the set can be modified while being iterated:
+ * the iterators work on the table as it was when they were created, the table is copied on the next modification.
+ * @param <T> type of primitives
+ */
+public final class PrimitiveIdIndex<T extends PrimitiveId> extends AbstractSet<T> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.6d;
+    /** Marks a slot whose primitive has been removed, the probe sequences continue after it */
+    private static final PrimitiveId TOMBSTONE = new SimplePrimitiveId(0, OsmPrimitiveType.NODE);
+
+    private volatile AtomicReferenceArray<PrimitiveId> table;
+    private volatile int size;
+    /** The number of slots which are not {@code null}: primitives and tombstones */
+    private int used;
+    /** Set when an iterator works on the current table, which must then be copied before being modified */
+    private boolean shared;
+
+    /**
+     * Constructs a new empty {@code PrimitiveIdIndex}.
+     */
+    public PrimitiveIdIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructs a new empty {@code PrimitiveIdIndex} able to store the given number of primitives without resizing.
+     * @param expectedSize the expected number of primitives
+     */
+    public PrimitiveIdIndex(int expectedSize) {
+        table = new AtomicReferenceArray<>(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int slot(long id, OsmPrimitiveType type, int mask) {
+        // the type is mixed in the high bits as ids of different types are usually close.
+        // The slot is taken from the low bits, so that copying a table in iteration order does not create clusters
+        long h = (id ^ ((long) type.ordinal() << 58)) * 0x9E37_79B9_7F4A_7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static boolean matches(PrimitiveId e, long id, OsmPrimitiveType type) {
+        return e != TOMBSTONE && e.getUniqueId() == id && e.getType() == type;
+    }
+
+    /**
+     * Returns the primitive of the given type and unique id.
+     * @param id the unique id
+     * @param type the primitive type
+     * @return the primitive, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long id, OsmPrimitiveType type) {
+        AtomicReferenceArray<PrimitiveId> tab = table;
+        int mask = tab.length() - 1;
+        for (int i = slot(id, type, mask); ; i = (i + 1) & mask) {
+            PrimitiveId e = tab.get(i);
+            if (e == null) {
+                return null;
+            } else if (matches(e, id, type)) {
+                return (T) e;
+            }
+        }
+    }
+
+    /**
+     * Returns the primitive having the same type and unique id as the given primitive id.
+     * @param primitiveId the primitive id
+     * @return the primitive, or {@code null}
+     */
+    public T get(PrimitiveId primitiveId) {
+        return get(primitiveId.getUniqueId(), primitiveId.getType());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof PrimitiveId && get((PrimitiveId) o) != null;
+    }
+
+    /**
+     * Adds a primitive, unless a primitive with the same type and unique id is already in the set.
+     * @param t the primitive
+     * @return {@code true} if the primitive has been added
+     */
+    @Override
+    public synchronized boolean add(T t) {
+        ensureCapacity(size + 1);
+        return insert(t);
+    }
+
+    /**
+     * Adds the given primitives. The table is only resized once.
+     * @param c the primitives
+     * @return {@code true} if at least one primitive has been added
+     */
+    @Override
+    public synchronized boolean addAll(Collection<? extends T> c) {
+        ensureCapacity(size + c.size());
+        boolean changed = false;
+        for (T t : c) {
+            changed |= insert(t);
+        }
+        return changed;
+    }
+
+    private boolean insert(T t) {
+        long id = t.getUniqueId();
+        OsmPrimitiveType type = t.getType();
+        AtomicReferenceArray<PrimitiveId> tab = table;
+        int mask = tab.length() - 1;
+        int free = -1;
+        int i = slot(id, type, mask);
+        for (PrimitiveId e; (e = tab.get(i)) != null; i = (i + 1) & mask) {
+            if (e == TOMBSTONE) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (matches(e, id, type)) {
+                return false;
+            }
+        }
+        if (free >= 0) {
+            // reuse the first tombstone of the probe sequence
+            tab.set(free, t);
+        } else {
+            tab.set(i, t);
+            used++;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the primitive having the same type and unique id as the given object.
+     * @param o the primitive or primitive id to remove
+     * @return {@code true} if a primitive has been removed
+     */
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!(o instanceof PrimitiveId)) {
+            return false;
+        }
+        long id = ((PrimitiveId) o).getUniqueId();
+        OsmPrimitiveType type = ((PrimitiveId) o).getType();
+        unshare();
+        AtomicReferenceArray<PrimitiveId> tab = table;
+        int mask = tab.length() - 1;
+        for (int i = slot(id, type, mask); tab.get(i) != null; i = (i + 1) & mask) {
+            if (matches(tab.get(i), id, type)) {
+                tab.set(i, TOMBSTONE);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void clear() {
+        table = new AtomicReferenceArray<>(MIN_CAPACITY);
+        size = 0;
+        used = 0;
+        shared = false;
+    }
+
+    private void unshare() {
+        if (shared) {
+            table = rebuild(table.length());
+        }
+    }
+
+    /**
+     * Builds a copy of the table without tombstones, and publishes it once filled.
+     * @param capacity the capacity of the new table
+     * @return the new table
+     */
+    private AtomicReferenceArray<PrimitiveId> rebuild(int capacity) {
+        AtomicReferenceArray<PrimitiveId> old = table;
+        AtomicReferenceArray<PrimitiveId> tab = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.length(); j++) {
+            PrimitiveId e = old.get(j);
+            if (e != null && e != TOMBSTONE) {
+                int i = slot(e.getUniqueId(), e.getType(), mask);
+                while (tab.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+                tab.lazySet(i, e);
+            }
+        }
+        used = size;
+        shared = false;
+        return tab;
+    }
+
+    private void ensureCapacity(int expectedSize) {
+        int capacity = table.length();
+        if (expectedSize > capacity * LOAD_FACTOR) {
+            table = rebuild(capacityFor(expectedSize));
+        } else if (used + expectedSize - size > capacity * LOAD_FACTOR) {
+            // too many tombstones
+            table = rebuild(capacity);
+        } else {
+            unshare();
+        }
+    }
+
+    @Override
+    public synchronized Iterator<T> iterator() {
+        shared = true;
+        return new Iter(table);
+    }
+
+    private final class Iter implements Iterator<T> {
+        private final AtomicReferenceArray<PrimitiveId> tab;
+        private int slot;
+
+        Iter(AtomicReferenceArray<PrimitiveId> tab) {
+            this.tab = tab;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (slot < tab.length() && (tab.get(slot) == null || tab.get(slot) == TOMBSTONE)) {
+                slot++;
+            }
+            return slot < tab.length();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return (T) tab.get(slot++);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Arrays;
+
+/**
+ * Allocator of dense slots for the ways and relations of a {@link DataSet}.
+ * <p>
+ * Nodes get their slot from the {@link NodeCoordinateStore}. Ways and relations share the slots of this allocator,
+ * see {@link OsmPrimitive#getSlot()}. Released slots are reused first, so that slots stay dense.
+ */
+final class PrimitiveSlots {
+
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+
+    /**
+     * Allocates a new slot.
+     * @return the new slot
+     */
+    synchronized int allocate() {
+        return freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+    }
+
+    /**
+     * Releases a slot, so that it can be reused by another primitive.
+     * @param slot the slot to release
+     */
+    synchronized void release(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Moves the slot of a way or relation from a data set to another one.
+     * @param slot the current slot of the primitive, or -1
+     * @param oldDataSet the data set the primitive was in, or {@code null}
+     * @param newDataSet the data set the primitive is now in, or {@code null}
+     * @return the new slot of the primitive, or -1 if it is not in a data set
+     */
+    static int move(int slot, DataSet oldDataSet, DataSet newDataSet) {
+        if (oldDataSet == newDataSet) {
+            return slot;
+        }
+        if (oldDataSet != null && slot >= 0) {
+            oldDataSet.getPrimitiveSlots().release(slot);
+        }
+        return newDataSet != null ? newDataSet.getPrimitiveSlots().allocate() : -1;
+    }
+}
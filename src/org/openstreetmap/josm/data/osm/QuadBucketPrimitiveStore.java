@@ -10,9 +10,14 @@ import java.util.stream.Collectors;
 import org.openstreetmap.josm.tools.JosmRuntimeException;
 
 /**
- * Stores primitives in quad buckets. This can be used to hold a collection of primitives, e.g. in a {@link DataSet}
+ * Stores primitives in spatial indexes. This can be used to hold a collection of primitives, e.g. in a {@link DataSet}
  *
- * This class does not do any synchronization.
+ * Nodes and ways are stored in a {@link PackedRTree} bulk-built on the first query after they are added,
+ * with later additions going to a small {@link QuadBuckets} delta index until the next rebuild.
+ *
+ * The nodes and ways must be in a {@link DataSet} while they are stored, so that they have a slot, see {@link OsmPrimitive#getSlot()}.
+ *
+ * This class does not do any synchronization, except that queries may run concurrently with each other.
  * @author Michael Zangl
  * @param <N> type representing OSM nodes
  * @param <W> type representing OSM ways
@@ -24,20 +29,24 @@ public class QuadBucketPrimitiveStore<N extends INode, W extends IWay<N>, R exte
      * All nodes goes here, even when included in other data (ways etc). This enables the instant
      * conversion of the whole DataSet by iterating over this data structure.
      */
-    private final QuadBuckets<N> nodes = new QuadBuckets<>();
+    private final PackedSpatialIndex<N> nodes = new PackedSpatialIndex<>(QuadBucketPrimitiveStore::getSlot);
 
     /**
      * All ways (Streets etc.) in the DataSet.
      *
      * The way nodes are stored only in the way list.
      */
-    private final QuadBuckets<W> ways = new QuadBuckets<>();
+    private final PackedSpatialIndex<W> ways = new PackedSpatialIndex<>(QuadBucketPrimitiveStore::getSlot);
 
     /**
      * All relations/relationships
      */
     private final Collection<R> relations = new ArrayList<>();
 
+    private static int getSlot(IPrimitive primitive) {
+        return primitive instanceof OsmPrimitive ? ((OsmPrimitive) primitive).getSlot() : -1;
+    }
+
     /**
      * Searches for nodes in the given bounding box.
      * @param bbox the bounding box
@@ -115,12 +124,13 @@ public class QuadBucketPrimitiveStore<N extends INode, W extends IWay<N>, R exte
         }
     }
 
+    @SuppressWarnings("unchecked")
     protected void removePrimitive(IPrimitive primitive) {
         boolean success = false;
         if (primitive instanceof INode) {
-            success = nodes.remove(primitive);
+            success = nodes.remove((N) primitive);
         } else if (primitive instanceof IWay) {
-            success = ways.remove(primitive);
+            success = ways.remove((W) primitive);
         } else if (primitive instanceof IRelation) {
             success = relations.remove(primitive);
         }
@@ -141,8 +151,7 @@ public class QuadBucketPrimitiveStore<N extends INode, W extends IWay<N>, R exte
         if (!nodes.remove(node))
             throw new JosmRuntimeException("Reindexing node failed to remove");
         nUpdater.accept(node);
-        if (!nodes.add(node))
-            throw new JosmRuntimeException("Reindexing node failed to add");
+        nodes.add(node);
         for (IPrimitive primitive: node.getReferrers()) {
             if (primitive instanceof IWay) {
                 reindexWay((W) primitive, wUpdater, rUpdater);
@@ -164,8 +173,7 @@ public class QuadBucketPrimitiveStore<N extends INode, W extends IWay<N>, R exte
         if (!ways.remove(way))
             throw new JosmRuntimeException("Reindexing way failed to remove");
         wUpdater.accept(way);
-        if (!ways.add(way))
-            throw new JosmRuntimeException("Reindexing way failed to add");
+        ways.add(way);
         if (!way.getBBox().equals(before)) {
             for (IPrimitive primitive: way.getReferrers()) {
                 reindexRelation((R) primitive, rUpdater);
@@ -189,6 +197,15 @@ public class QuadBucketPrimitiveStore<N extends INode, W extends IWay<N>, R exte
         }
     }
 
+    /**
+     * Builds the spatial indexes of the primitives added since the last query, instead of waiting for the next query.
+     * This is useful after a bulk load, to build the indexes in one pass while the data is not yet in use.
+     */
+    public void buildIndexes() {
+        nodes.flush();
+        ways.flush();
+    }
+
     /**
      * Removes all primitives from the this store.
      */
@@ -0,0 +1,87 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registers the referrers of many primitives at once, typically after parsing.
+ * <p>
+ * The ways and relations are given their nodes and members with {@link #setNodes} and {@link #setMembers},
+ * which do not update the referrers of the referenced primitives. Then {@link #build()} appends the new referrers
+ * of each referenced primitive to a growable buffer in a single sweep, and trims the buffers to arrays of the exact
+ * size in a second sweep, instead of copying the array of referrers once per referrer, which is slow for primitives
+ * referred by many ways or relations.
+ * <p>
+ * The referrers returned by {@link OsmPrimitive#getReferrers()} are only complete after {@link #build()},
+ * and the ways, relations and referenced primitives must not be modified or accessed concurrently in between.
+ */
+public final class ReferrerBuilder {
+
+    private final List<Way> ways = new ArrayList<>();
+    private final List<Relation> relations = new ArrayList<>();
+    private final Set<OsmPrimitive> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Sets the nodes of a way, without registering the way as referrer of its nodes until {@link #build()}.
+     * @param way the way
+     * @param nodes the new way nodes
+     */
+    public void setNodes(Way way, List<Node> nodes) {
+        way.setNodes(nodes, false);
+        if (pending.add(way)) {
+            ways.add(way);
+        }
+    }
+
+    /**
+     * Sets the members of a relation, without registering the relation as referrer of its members until {@link #build()}.
+     * @param relation the relation
+     * @param members the new relation members
+     */
+    public void setMembers(Relation relation, List<RelationMember> members) {
+        relation.setMembers(members, false);
+        if (pending.add(relation)) {
+            relations.add(relation);
+        }
+    }
+
+    /**
+     * Registers the ways and relations given to this builder as referrers of their nodes and members.
+     * The builder is then empty and can be reused.
+     */
+    public void build() {
+        // a way may contain the same node several times, and a relation the same member several times,
+        // but always while the referrers of the node or member end with the way or relation
+        for (Way way : ways) {
+            for (int i = 0; i < way.getNodesCount(); i++) {
+                way.getNode(i).appendReferrer(way);
+            }
+        }
+        for (Relation relation : relations) {
+            for (int i = 0; i < relation.getMembersCount(); i++) {
+                relation.getMember(i).getMember().appendReferrer(relation);
+            }
+        }
+        for (Way way : ways) {
+            for (int i = 0; i < way.getNodesCount(); i++) {
+                Node node = way.getNode(i);
+                node.trimReferrers();
+                node.clearCachedStyle();
+            }
+        }
+        for (Relation relation : relations) {
+            for (int i = 0; i < relation.getMembersCount(); i++) {
+                OsmPrimitive member = relation.getMember(i).getMember();
+                member.trimReferrers();
+                member.clearCachedStyle();
+            }
+        }
+        ways.clear();
+        relations.clear();
+        pending.clear();
+    }
+}
@@ -30,6 +30,8 @@ public final class Relation extends OsmPrimitive implements IRelation<RelationMe
     private RelationMember[] members = new RelationMember[0];
 
     private BBox bbox;
+    /** The slot of this relation in its dataset, see {@link PrimitiveSlots} */
+    private int slot = -1;
 
     @Override
     public List<RelationMember> getMembers() {
@@ -38,6 +40,16 @@ public final class Relation extends OsmPrimitive implements IRelation<RelationMe
 
     @Override
     public void setMembers(List<RelationMember> members) {
+        setMembers(members, true);
+    }
+
+    /**
+     * Sets the members of this relation, optionally without registering this relation as referrer of the new members.
+     * @param members new relation members
+     * @param addReferrers if {@code false}, this relation must be registered later as referrer of its members
+     * by a {@link ReferrerBuilder}
+     */
+    void setMembers(List<RelationMember> members, boolean addReferrers) {
         checkDatasetNotReadOnly();
         boolean locked = writeLock();
         try {
@@ -51,9 +63,11 @@ public final class Relation extends OsmPrimitive implements IRelation<RelationMe
             } else {
                 this.members = new RelationMember[0];
             }
-            for (RelationMember rm : this.members) {
-                rm.getMember().addReferrer(this);
-                rm.getMember().clearCachedStyle();
+            if (addReferrers) {
+                for (RelationMember rm : this.members) {
+                    rm.getMember().addReferrer(this);
+                    rm.getMember().clearCachedStyle();
+                }
             }
 
             fireMembersChanged();
@@ -128,6 +142,8 @@ public final class Relation extends OsmPrimitive implements IRelation<RelationMe
                 member.getMember().clearCachedStyle();
                 originalMember.getMember().removeReferrer(this);
                 originalMember.getMember().clearCachedStyle();
+            }
+            if (!originalMember.equals(member)) {
                 fireMembersChanged();
             }
             return originalMember;
@@ -451,11 +467,18 @@ public final class Relation extends OsmPrimitive implements IRelation<RelationMe
 
     @Override
     void setDataset(DataSet dataSet) {
+        DataSet oldDataSet = getDataSet();
         super.setDataset(dataSet);
+        slot = PrimitiveSlots.move(slot, oldDataSet, dataSet);
         checkMembers();
         setBBox(null); // bbox might have changed if relation was in ds, was removed, modified, added back to dataset
     }
 
+    @Override
+    int getSlot() {
+        return slot;
+    }
+
     /**
      * Checks that members are part of the same dataset, and that they're not deleted.
      * @throws DataIntegrityProblemException if one the above conditions is not met
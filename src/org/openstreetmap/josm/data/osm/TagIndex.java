@@ -0,0 +1,239 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.preferences.AbstractProperty;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+
+/**
+ * An inverted index from the keys and tags of the primitives of a data set to the primitives having them.
+ * <p>
+ * The index is created on demand by {@link DataSet#getTagIndex()}, then updated with the
+ * {@link PrimitivesAddedEvent}, {@link PrimitivesRemovedEvent} and {@link TagsChangedEvent} of the data set as soon as
+ * they are fired, so that it is always up to date, even while the data set is being updated. It contains all primitives
+ * of the data set, including the deleted and incomplete ones. It is used to find the primitives which may match
+ * a search criterion without testing all primitives, see
+ * {@link org.openstreetmap.josm.data.osm.search.SearchCompiler.Match#getCandidates}, and to find the keys and values
+ * used in the data set for the autocompletion.
+ */
+public final class TagIndex {
+
+    /**
+     * Indicates that the data sets can create a tag index to speed up the searches and filters.
+     * Disabled by default, as the index holds a reference to each primitive for each of its tags, and must be updated
+     * at each change of the data set.
+     */
+    public static final AbstractProperty<Boolean> PREFERENCE_ENABLED = new BooleanProperty("osm.tag-index", false).cached();
+
+    private final DataSet dataSet;
+    /**
+     * key &rarr; value &rarr; primitives. To save memory, a single primitive is stored directly,
+     * several primitives are stored in a {@code Set}
+     */
+    private final Map<String, Map<String, Object>> index = new HashMap<>();
+
+    /**
+     * Constructs a new {@code TagIndex} of the primitives of the given data set. The caller must hold the read lock.
+     * @param dataSet the data set
+     */
+    TagIndex(DataSet dataSet) {
+        this.dataSet = dataSet;
+        for (OsmPrimitive p : dataSet.allPrimitives()) {
+            add(p);
+        }
+    }
+
+    /**
+     * Updates the index after a change of the data set.
+     * @param event the change event
+     */
+    synchronized void update(AbstractDatasetChangedEvent event) {
+        if (event instanceof PrimitivesAddedEvent) {
+            for (OsmPrimitive p : event.getPrimitives()) {
+                add(p);
+            }
+        } else if (event instanceof PrimitivesRemovedEvent) {
+            for (OsmPrimitive p : event.getPrimitives()) {
+                // primitives becoming incomplete are notified as removed, but they stay in the data set
+                if (p.getDataSet() != dataSet) {
+                    remove(p, p.getKeys());
+                }
+            }
+        } else if (event instanceof TagsChangedEvent) {
+            OsmPrimitive p = ((TagsChangedEvent) event).getPrimitive();
+            Map<String, String> originalKeys = ((TagsChangedEvent) event).getOriginalKeys();
+            if (originalKeys != null) {
+                remove(p, originalKeys);
+            }
+            add(p);
+        }
+    }
+
+    private void add(OsmPrimitive p) {
+        p.visitKeys((primitive, key, value) -> {
+            Map<String, Object> values = index.computeIfAbsent(key, k -> new HashMap<>());
+            Object primitives = values.get(value);
+            if (primitives == null) {
+                values.put(value, p);
+            } else if (primitives instanceof Set) {
+                @SuppressWarnings("unchecked")
+                Set<OsmPrimitive> set = (Set<OsmPrimitive>) primitives;
+                set.add(p);
+            } else if (primitives != p) {
+                Set<OsmPrimitive> set = Collections.newSetFromMap(new IdentityHashMap<>());
+                set.add((OsmPrimitive) primitives);
+                set.add(p);
+                values.put(value, set);
+            }
+        });
+    }
+
+    private void remove(OsmPrimitive p, Map<String, String> tags) {
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            Map<String, Object> values = index.get(tag.getKey());
+            Object primitives = values != null ? values.get(tag.getValue()) : null;
+            if (primitives == p) {
+                values.remove(tag.getValue());
+            } else if (primitives instanceof Set) {
+                Set<?> set = (Set<?>) primitives;
+                set.remove(p);
+                if (set.size() == 1) {
+                    values.put(tag.getValue(), set.iterator().next());
+                }
+            }
+            if (values != null && values.isEmpty()) {
+                index.remove(tag.getKey());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addTo(Collection<OsmPrimitive> result, Object primitives) {
+        if (primitives instanceof Set) {
+            result.addAll((Set<OsmPrimitive>) primitives);
+        } else if (primitives != null) {
+            result.add((OsmPrimitive) primitives);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean anyMatch(Object primitives, Predicate<? super OsmPrimitive> predicate) {
+        if (primitives instanceof Set) {
+            return ((Set<OsmPrimitive>) primitives).stream().anyMatch(predicate);
+        }
+        return primitives != null && predicate.test((OsmPrimitive) primitives);
+    }
+
+    private static int sizeOf(Object primitives) {
+        return primitives instanceof Set ? ((Set<?>) primitives).size() : primitives != null ? 1 : 0;
+    }
+
+    /**
+     * Returns the primitives having the given key.
+     * @param key the key
+     * @return the primitives having the given key, as a new list
+     */
+    public synchronized List<OsmPrimitive> get(String key) {
+        Map<String, Object> values = index.getOrDefault(key, Collections.emptyMap());
+        List<OsmPrimitive> result = new ArrayList<>(count(key));
+        for (Object primitives : values.values()) {
+            addTo(result, primitives);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the primitives having the given tag.
+     * @param key the key
+     * @param value the value
+     * @return the primitives having the given tag, as a new list
+     */
+    public synchronized List<OsmPrimitive> get(String key, String value) {
+        Map<String, Object> values = index.get(key);
+        Object primitives = values != null ? values.get(value) : null;
+        List<OsmPrimitive> result = new ArrayList<>(sizeOf(primitives));
+        addTo(result, primitives);
+        return result;
+    }
+
+    /**
+     * Returns the number of primitives having the given key.
+     * @param key the key
+     * @return the number of primitives having the given key
+     */
+    public synchronized int count(String key) {
+        int count = 0;
+        for (Object primitives : index.getOrDefault(key, Collections.emptyMap()).values()) {
+            count += sizeOf(primitives);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of primitives having the given tag.
+     * @param key the key
+     * @param value the value
+     * @return the number of primitives having the given tag
+     */
+    public synchronized int count(String key, String value) {
+        Map<String, Object> values = index.get(key);
+        return values != null ? sizeOf(values.get(value)) : 0;
+    }
+
+    /**
+     * Returns the keys used in the data set.
+     * @return the keys used by at least one primitive, as a new list
+     */
+    public synchronized List<String> getKeys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Returns the keys used by the primitives matching a predicate.
+     * @param predicate the condition on the primitives
+     * @return the keys used by at least one primitive matching the predicate, as a new list
+     */
+    public synchronized List<String> getKeys(Predicate<? super OsmPrimitive> predicate) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> e : index.entrySet()) {
+            if (e.getValue().values().stream().anyMatch(primitives -> anyMatch(primitives, predicate))) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of a key used by the primitives matching a predicate.
+     * @param key the key
+     * @param predicate the condition on the primitives
+     * @return the values of {@code key} used by at least one primitive matching the predicate, as a new list
+     */
+    public synchronized List<String> getValues(String key, Predicate<? super OsmPrimitive> predicate) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Object> e : index.getOrDefault(key, Collections.emptyMap()).entrySet()) {
+            if (anyMatch(e.getValue(), predicate)) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TagIndex [" + index.size() + " keys]";
+    }
+}
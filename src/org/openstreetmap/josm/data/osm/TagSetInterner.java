@@ -0,0 +1,161 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * A canonical table of the tag arrays of the primitives, so that primitives with the same tags share the same array.
+ * <p>
+ * Most primitives of a large data set have one of a few tag sets, e.g. {@code building=yes}. The tag arrays are never
+ * modified once assigned to a primitive (they are copied on write), so the primitives can share them.
+ * The keys and values are compared by reference first, as they are usually interned when the data is read.
+ * <p>
+ * The table only keeps weak references to the arrays, so that the tag sets no longer used are removed.
+ * Only the small tag sets are interned: the larger ones, e.g. with a name or an address, are rarely shared,
+ * and their entries in the table would use more memory than they save.
+ * It is split into segments locked independently, so that the threads reading data in parallel rarely wait
+ * for each other.
+ */
+final class TagSetInterner {
+
+    /** The shared instance */
+    static final TagSetInterner INSTANCE = new TagSetInterner();
+
+    /** The maximal number of tags of the interned tag sets */
+    static final int MAX_INTERNED_TAGS = 2;
+
+    /** The number of segments, a power of two. The segment of a tag set is given by the highest bits of its hash */
+    private static final int SEGMENT_COUNT = 1 << 4;
+    private static final int SEGMENT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+    private static final int INITIAL_SEGMENT_CAPACITY = 1 << 6;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    TagSetInterner() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private static final class Entry extends WeakReference<String[]> {
+        final int hash;
+        Entry next;
+
+        Entry(String[] tags, int hash, Entry next, ReferenceQueue<String[]> queue) {
+            super(tags, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A part of the table, with its own lock.
+     */
+    private static final class Segment {
+        private final ReferenceQueue<String[]> queue = new ReferenceQueue<>();
+        private Entry[] table = new Entry[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        synchronized String[] intern(String[] tags, int hash) {
+            expungeStaleEntries();
+            int index = hash & (table.length - 1);
+            for (Entry e = table[index]; e != null; e = e.next) {
+                if (e.hash == hash) {
+                    String[] candidate = e.get();
+                    if (candidate != null && TagSetInterner.equals(candidate, tags)) {
+                        return candidate;
+                    }
+                }
+            }
+            table[index] = new Entry(tags, hash, table[index], queue);
+            if (++size > table.length * 3 / 4) {
+                resize();
+            }
+            return tags;
+        }
+
+        synchronized int size() {
+            expungeStaleEntries();
+            return size;
+        }
+
+        private void resize() {
+            Entry[] newTable = new Entry[table.length * 2];
+            for (Entry head : table) {
+                Entry e = head;
+                while (e != null) {
+                    Entry next = e.next;
+                    int index = e.hash & (newTable.length - 1);
+                    e.next = newTable[index];
+                    newTable[index] = e;
+                    e = next;
+                }
+            }
+            table = newTable;
+        }
+
+        private void expungeStaleEntries() {
+            for (Object stale; (stale = queue.poll()) != null;) {
+                Entry entry = (Entry) stale;
+                int index = entry.hash & (table.length - 1);
+                Entry prev = null;
+                for (Entry e = table[index]; e != null; prev = e, e = e.next) {
+                    if (e == entry) {
+                        if (prev == null) {
+                            table[index] = e.next;
+                        } else {
+                            prev.next = e.next;
+                        }
+                        size--;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical array with the same tags.
+     * @param tags key/value array, must not be modified afterwards. May be {@code null}
+     * @return the canonical array, {@code tags} if this tag set was unknown or has more than
+     * {@link #MAX_INTERNED_TAGS} tags
+     */
+    String[] intern(String[] tags) {
+        if (tags == null || tags.length == 0 || tags.length > 2 * MAX_INTERNED_TAGS) {
+            return tags;
+        }
+        int hash = hash(tags);
+        return segments[hash >>> SEGMENT_SHIFT].intern(tags, hash);
+    }
+
+    /**
+     * Returns the number of tag sets in the table.
+     * @return the number of tag sets in the table, including the ones not collected yet
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private static int hash(String[] tags) {
+        int h = Arrays.hashCode(tags);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(String[] a, String[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i] && !a[i].equals(b[i])) { // NOPMD
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -33,6 +33,9 @@ public final class Way extends OsmPrimitive implements IWay<Node> {
      */
     private Node[] nodes = new Node[0];
     private BBox bbox;
+    private WaySegmentIndex segmentIndex;
+    /** The slot of this way in its dataset, see {@link PrimitiveSlots} */
+    private int slot = -1;
 
     @Override
     public List<Node> getNodes() {
@@ -41,6 +44,16 @@ public final class Way extends OsmPrimitive implements IWay<Node> {
 
     @Override
     public void setNodes(List<Node> nodes) {
+        setNodes(nodes, true);
+    }
+
+    /**
+     * Sets the nodes of this way, optionally without registering this way as referrer of the new nodes.
+     * @param nodes new way nodes
+     * @param addReferrers if {@code false}, this way must be registered later as referrer of its nodes
+     * by a {@link ReferrerBuilder}
+     */
+    void setNodes(List<Node> nodes, boolean addReferrers) {
         checkDatasetNotReadOnly();
         boolean locked = writeLock();
         try {
@@ -54,9 +67,12 @@ public final class Way extends OsmPrimitive implements IWay<Node> {
             } else {
                 this.nodes = nodes.toArray(new Node[0]);
             }
-            for (Node node: this.nodes) {
-                node.addReferrer(this);
-                node.clearCachedStyle();
+            segmentIndex = null;
+            if (addReferrers) {
+                for (Node node: this.nodes) {
+                    node.addReferrer(this);
+                    node.clearCachedStyle();
+                }
             }
 
             clearCachedStyle();
@@ -566,10 +582,17 @@ public final class Way extends OsmPrimitive implements IWay<Node> {
 
     @Override
     void setDataset(DataSet dataSet) {
+        DataSet oldDataSet = getDataSet();
         super.setDataset(dataSet);
+        slot = PrimitiveSlots.move(slot, oldDataSet, dataSet);
         checkNodes();
     }
 
+    @Override
+    int getSlot() {
+        return slot;
+    }
+
     @Override
     public BBox getBBox() {
         if (getDataSet() == null)
@@ -585,9 +608,26 @@ public final class Way extends OsmPrimitive implements IWay<Node> {
         box.add(getBBox());
     }
 
+    /**
+     * Returns an index of the segments of this way, to find the segments close to a point without testing all of them.
+     * Like the bounding box, the index is kept until the nodes of this way change or move.
+     * @return the index of the segments of this way
+     */
+    public WaySegmentIndex getSegmentIndex() {
+        if (getDataSet() == null)
+            return new WaySegmentIndex(nodes);
+        WaySegmentIndex index = segmentIndex;
+        if (index == null) {
+            index = new WaySegmentIndex(nodes);
+            segmentIndex = index;
+        }
+        return index;
+    }
+
     @Override
     public void updatePosition() {
         bbox = new BBox(this);
+        segmentIndex = null;
         clearCachedStyle();
     }
 
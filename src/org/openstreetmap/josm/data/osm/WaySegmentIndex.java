@@ -0,0 +1,135 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable index of the segments of a way, to find the segments close to a point without testing all of them.
+ * <p>
+ * Consecutive segments of a way are close to each other, so they are packed in the order of the way into a tree
+ * of bounding boxes of {@link #NODE_SIZE} children, like a {@link PackedRTree}, without sorting them first.
+ * The index is built in linear time, and a search only visits the parts of the way close to the searched area.
+ * <p>
+ * The coordinates of the nodes are copied when the index is built, see {@link Way#getSegmentIndex()}.
+ * @see DataSet#searchWaySegments
+ */
+public final class WaySegmentIndex {
+
+    /** Maximum number of children of a tree node */
+    static final int NODE_SIZE = 16;
+
+    /** Bounding boxes of the segments, then of the tree nodes, level by level: 4 values (xmin, ymin, xmax, ymax) per entry */
+    private final double[] boxes;
+    /** Start position (in entries) of each level, from the segments to the root, then the total number of entries */
+    private final int[] levelStarts;
+
+    /**
+     * Builds the index of the segments between the given nodes.
+     * @param nodes the nodes of the way. The segments having a node without coordinates are never found
+     */
+    WaySegmentIndex(Node[] nodes) {
+        int n = Math.max(0, nodes.length - 1);
+        List<Integer> starts = new ArrayList<>();
+        int count = n;
+        int total = n;
+        starts.add(0);
+        while (count > 1) {
+            count = (count + NODE_SIZE - 1) / NODE_SIZE;
+            starts.add(total);
+            total += count;
+        }
+        starts.add(total);
+        levelStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        boxes = new double[total * 4];
+
+        for (int i = 0; i < n; i++) {
+            Node a = nodes[i];
+            Node b = nodes[i + 1];
+            if (a.isLatLonKnown() && b.isLatLonKnown()) {
+                setBox(i, Math.min(a.lon(), b.lon()), Math.min(a.lat(), b.lat()), Math.max(a.lon(), b.lon()), Math.max(a.lat(), b.lat()));
+            } else {
+                // an empty box, which does not intersect anything
+                setBox(i, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+            }
+        }
+        for (int level = 1; level < levelStarts.length - 1; level++) {
+            int childStart = levelStarts[level - 1];
+            int childEnd = levelStarts[level];
+            for (int entry = levelStarts[level]; entry < levelStarts[level + 1]; entry++) {
+                int first = childStart + (entry - levelStarts[level]) * NODE_SIZE;
+                int last = Math.min(first + NODE_SIZE, childEnd);
+                double minX = Double.POSITIVE_INFINITY;
+                double minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY;
+                double maxY = Double.NEGATIVE_INFINITY;
+                for (int child = first; child < last; child++) {
+                    minX = Math.min(minX, boxes[4 * child]);
+                    minY = Math.min(minY, boxes[4 * child + 1]);
+                    maxX = Math.max(maxX, boxes[4 * child + 2]);
+                    maxY = Math.max(maxY, boxes[4 * child + 3]);
+                }
+                setBox(entry, minX, minY, maxX, maxY);
+            }
+        }
+    }
+
+    private void setBox(int entry, double minX, double minY, double maxX, double maxY) {
+        boxes[4 * entry] = minX;
+        boxes[4 * entry + 1] = minY;
+        boxes[4 * entry + 2] = maxX;
+        boxes[4 * entry + 3] = maxY;
+    }
+
+    /**
+     * Returns the number of segments in this index.
+     * @return the number of segments
+     */
+    public int size() {
+        return levelStarts.length > 1 ? levelStarts[1] : 0;
+    }
+
+    /**
+     * Searches the segments whose bounding box intersects the given one.
+     * @param bbox the bounding box
+     * @return the indexes of the segments, in the order of the way. The segment {@code i} goes from the node {@code i}
+     * to the node {@code i + 1}, see {@link WaySegment#lowerIndex}
+     */
+    public int[] search(BBox bbox) {
+        int[] result = new int[0];
+        int size = 0;
+        if (size() == 0)
+            return result;
+        double minX = bbox.xmin;
+        double minY = bbox.ymin;
+        double maxX = bbox.xmax;
+        double maxY = bbox.ymax;
+        // stack of (level, entry) of the tree nodes to visit, the children are pushed in reverse order
+        int[] stack = new int[2 * NODE_SIZE * levelStarts.length];
+        int stackSize = 0;
+        stack[stackSize++] = levelStarts.length - 2;
+        stack[stackSize++] = levelStarts[levelStarts.length - 2];
+        while (stackSize > 0) {
+            int entry = stack[--stackSize];
+            int level = stack[--stackSize];
+            if (boxes[4 * entry] > maxX || boxes[4 * entry + 2] < minX || boxes[4 * entry + 1] > maxY || boxes[4 * entry + 3] < minY) {
+                continue;
+            }
+            if (level == 0) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, Math.max(8, 2 * size));
+                }
+                result[size++] = entry;
+            } else {
+                int first = levelStarts[level - 1] + (entry - levelStarts[level]) * NODE_SIZE;
+                int last = Math.min(first + NODE_SIZE, levelStarts[level]);
+                for (int child = last - 1; child >= first; child--) {
+                    stack[stackSize++] = level - 1;
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+}
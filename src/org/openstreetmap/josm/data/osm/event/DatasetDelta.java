@@ -0,0 +1,240 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.event;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * The changes of a data set, coalesced per primitive from a sequence of {@link AbstractDatasetChangedEvent}s,
+ * typically all events fired between {@link DataSet#beginUpdate()} and {@link DataSet#endUpdate()}.
+ * <p>
+ * Each primitive appears at most once in each set, whatever the number of events it was part of:
+ * <ul>
+ * <li>a primitive added then removed does not appear at all,</li>
+ * <li>a primitive removed then added again appears in both {@link #getRemoved()} and {@link #getAdded()},
+ * the removals being meant to be processed first,</li>
+ * <li>the added primitives do not appear in the other sets, as their whole state is new,</li>
+ * <li>the removed primitives do not appear in the sets of modified primitives.</li>
+ * </ul>
+ * If the changes are unknown, e.g. after a {@link DataChangedEvent} without events, {@link #isDataSetChanged()} is set
+ * and all primitives of the data set must be considered as changed.
+ * @see DatasetDeltaListener
+ */
+public final class DatasetDelta {
+
+    private final DataSet dataSet;
+    private final Set<OsmPrimitive> added = newSet();
+    private final Set<OsmPrimitive> removed = newSet();
+    private final Set<OsmPrimitive> tagsChanged = newSet();
+    private final Set<Node> movedNodes = newSet();
+    private final Set<Way> wayNodesChanged = newSet();
+    private final Set<Relation> relationMembersChanged = newSet();
+    private final Set<OsmPrimitive> otherChanged = newSet();
+    private boolean filtersChanged;
+    private boolean dataSetChanged;
+
+    /**
+     * Constructs a new empty {@code DatasetDelta}.
+     * @param dataSet the data set which has changed
+     */
+    public DatasetDelta(DataSet dataSet) {
+        this.dataSet = dataSet;
+    }
+
+    private static <T> Set<T> newSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Adds the changes described by an event.
+     * @param event the event
+     */
+    public void addEvent(AbstractDatasetChangedEvent event) {
+        switch (event.getType()) {
+        case PRIMITIVES_ADDED:
+            event.getPrimitives().forEach(this::addAdded);
+            break;
+        case PRIMITIVES_REMOVED:
+            event.getPrimitives().forEach(this::addRemoved);
+            break;
+        case TAGS_CHANGED:
+            addModified(((TagsChangedEvent) event).getPrimitive(), tagsChanged);
+            break;
+        case NODE_MOVED:
+            addModified(((NodeMovedEvent) event).getNode(), movedNodes);
+            break;
+        case WAY_NODES_CHANGED:
+            addModified(((WayNodesChangedEvent) event).getChangedWay(), wayNodesChanged);
+            break;
+        case RELATION_MEMBERS_CHANGED:
+            addModified(((RelationMembersChangedEvent) event).getRelation(), relationMembersChanged);
+            break;
+        case CHANGESET_ID_CHANGED:
+        case PRIMITIVE_FLAGS_CHANGED:
+            for (OsmPrimitive p : event.getPrimitives()) {
+                addModified(p, otherChanged);
+            }
+            break;
+        case FILTERS_CHANGED:
+            filtersChanged = true;
+            break;
+        case DATA_CHANGED:
+            if (((DataChangedEvent) event).getEvents() != null) {
+                ((DataChangedEvent) event).getEvents().forEach(this::addEvent);
+            } else {
+                dataSetChanged = true;
+            }
+            break;
+        default:
+            throw new AssertionError(event.getType());
+        }
+    }
+
+    /**
+     * Adds the changes of a later delta of the same data set.
+     * @param delta the later delta
+     */
+    public void merge(DatasetDelta delta) {
+        delta.removed.forEach(this::addRemoved);
+        delta.added.forEach(this::addAdded);
+        delta.tagsChanged.forEach(p -> addModified(p, tagsChanged));
+        delta.movedNodes.forEach(n -> addModified(n, movedNodes));
+        delta.wayNodesChanged.forEach(w -> addModified(w, wayNodesChanged));
+        delta.relationMembersChanged.forEach(r -> addModified(r, relationMembersChanged));
+        delta.otherChanged.forEach(p -> addModified(p, otherChanged));
+        filtersChanged |= delta.filtersChanged;
+        dataSetChanged |= delta.dataSetChanged;
+    }
+
+    private void addAdded(OsmPrimitive p) {
+        added.add(p);
+        removeModified(p);
+    }
+
+    private void addRemoved(OsmPrimitive p) {
+        // a primitive added and removed since the beginning of the delta is not a change,
+        // unless it was also removed before being added again
+        if (!added.remove(p) || removed.contains(p)) {
+            removed.add(p);
+        }
+        removeModified(p);
+    }
+
+    private <T extends OsmPrimitive> void addModified(T p, Set<T> modified) {
+        if (!added.contains(p) && !removed.contains(p)) {
+            modified.add(p);
+        }
+    }
+
+    private void removeModified(OsmPrimitive p) {
+        tagsChanged.remove(p);
+        movedNodes.remove(p);
+        wayNodesChanged.remove(p);
+        relationMembersChanged.remove(p);
+        otherChanged.remove(p);
+    }
+
+    /**
+     * Returns the data set which has changed.
+     * @return the data set which has changed
+     */
+    public DataSet getDataset() {
+        return dataSet;
+    }
+
+    /**
+     * Returns the primitives added to the data set, or undeleted.
+     * @return the added primitives
+     */
+    public Set<OsmPrimitive> getAdded() {
+        return Collections.unmodifiableSet(added);
+    }
+
+    /**
+     * Returns the primitives removed from the data set, deleted, or which became incomplete.
+     * @return the removed primitives
+     */
+    public Set<OsmPrimitive> getRemoved() {
+        return Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * Returns the primitives whose tags have changed.
+     * @return the primitives whose tags have changed
+     */
+    public Set<OsmPrimitive> getTagsChanged() {
+        return Collections.unmodifiableSet(tagsChanged);
+    }
+
+    /**
+     * Returns the nodes whose coordinates have changed.
+     * @return the moved nodes
+     */
+    public Set<Node> getMovedNodes() {
+        return Collections.unmodifiableSet(movedNodes);
+    }
+
+    /**
+     * Returns the ways whose nodes or their order have changed.
+     * @return the ways whose nodes have changed
+     */
+    public Set<Way> getWayNodesChanged() {
+        return Collections.unmodifiableSet(wayNodesChanged);
+    }
+
+    /**
+     * Returns the relations whose members have changed.
+     * @return the relations whose members have changed
+     */
+    public Set<Relation> getRelationMembersChanged() {
+        return Collections.unmodifiableSet(relationMembersChanged);
+    }
+
+    /**
+     * Returns the primitives whose changeset id or flags have changed.
+     * @return the primitives whose changeset id or flags have changed
+     */
+    public Set<OsmPrimitive> getOtherChanged() {
+        return Collections.unmodifiableSet(otherChanged);
+    }
+
+    /**
+     * Determines if the filtered state of primitives has changed.
+     * @return {@code true} if the filtered state of primitives has changed
+     */
+    public boolean isFiltersChanged() {
+        return filtersChanged;
+    }
+
+    /**
+     * Determines if the data set may have changed completely, in which case the sets of this delta are incomplete.
+     * @return {@code true} if all primitives of the data set must be considered as changed
+     */
+    public boolean isDataSetChanged() {
+        return dataSetChanged;
+    }
+
+    /**
+     * Determines if this delta contains no change.
+     * @return {@code true} if this delta contains no change
+     */
+    public boolean isEmpty() {
+        return !dataSetChanged && !filtersChanged && added.isEmpty() && removed.isEmpty() && tagsChanged.isEmpty()
+                && movedNodes.isEmpty() && wayNodesChanged.isEmpty() && relationMembersChanged.isEmpty() && otherChanged.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "DatasetDelta [added=" + added.size() + ", removed=" + removed.size() + ", tagsChanged=" + tagsChanged.size()
+                + ", movedNodes=" + movedNodes.size() + ", wayNodesChanged=" + wayNodesChanged.size()
+                + ", relationMembersChanged=" + relationMembersChanged.size() + ", otherChanged=" + otherChanged.size()
+                + ", filtersChanged=" + filtersChanged + ", dataSetChanged=" + dataSetChanged + ']';
+    }
+}
@@ -0,0 +1,22 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.event;
+
+/**
+ * A listener notified once of all the changes of a data set made between {@code beginUpdate()} and
+ * {@code endUpdate()}, coalesced per primitive.
+ * <p>
+ * Unlike a {@link DataSetListener}, it does not lose the details of big changes, which are not limited
+ * to a maximum number of events.
+ * @see DatasetDelta
+ * @see org.openstreetmap.josm.data.osm.DataSet#addDatasetDeltaListener
+ * @see DatasetEventManager#addDatasetDeltaListener
+ */
+@FunctionalInterface
+public interface DatasetDeltaListener {
+
+    /**
+     * Notifies the changes of a data set.
+     * @param delta the changes
+     */
+    void datasetChanged(DatasetDelta delta);
+}
@@ -25,6 +25,8 @@ import org.openstreetmap.josm.gui.layer.MainLayerManager.ActiveLayerChangeListen
  *
  * Events in EDT are supported, see {@link #addDatasetListener(DataSetListener, FireMode)}
  *
+ * The changes can also be received as one {@link DatasetDelta} per update of the dataset,
+ * see {@link #addDatasetDeltaListener(DatasetDeltaListener, FireMode)}
  */
 public class DatasetEventManager implements ActiveLayerChangeListener, Listener {
 
@@ -92,6 +94,31 @@ public class DatasetEventManager implements ActiveLayerChangeListener, Listener
         }
     }
 
+    private final class EdtDeltaRunnable implements Runnable {
+        @Override
+        public void run() {
+            DatasetDelta consolidatedDelta = null;
+            DatasetDelta delta;
+            while ((delta = deltasInEDT.poll()) != null) {
+                fireDelta(inEDTDeltaListeners, delta, false);
+
+                // DataSet changed - fire consolidated delta early
+                if (consolidatedDelta != null && consolidatedDelta.getDataset() != delta.getDataset()) {
+                    fireDelta(inEDTDeltaListeners, consolidatedDelta, true);
+                    consolidatedDelta = null;
+                }
+                if (consolidatedDelta == null) {
+                    consolidatedDelta = new DatasetDelta(delta.getDataset());
+                }
+                consolidatedDelta.merge(delta);
+            }
+
+            if (consolidatedDelta != null) {
+                fireDelta(inEDTDeltaListeners, consolidatedDelta, true);
+            }
+        }
+    }
+
     /**
      * Event firing mode regarding Event Dispatch Thread.
      */
@@ -133,6 +160,29 @@ public class DatasetEventManager implements ActiveLayerChangeListener, Listener
         }
     }
 
+    private static class DeltaListenerInfo {
+        private final DatasetDeltaListener listener;
+        private final boolean consolidate;
+
+        DeltaListenerInfo(DatasetDeltaListener listener, boolean consolidate) {
+            this.listener = listener;
+            this.consolidate = consolidate;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(listener);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DeltaListenerInfo that = (DeltaListenerInfo) o;
+            return Objects.equals(listener, that.listener);
+        }
+    }
+
     /**
      * Replies the unique instance.
      * @return the unique instance
@@ -146,6 +196,11 @@ public class DatasetEventManager implements ActiveLayerChangeListener, Listener
     private final CopyOnWriteArrayList<ListenerInfo> normalListeners = new CopyOnWriteArrayList<>();
     private final DataSetListener myListener = new DataSetListenerAdapter(this);
     private final Runnable edtRunnable = new EdtRunnable();
+    private final Queue<DatasetDelta> deltasInEDT = new LinkedBlockingQueue<>();
+    private final CopyOnWriteArrayList<DeltaListenerInfo> inEDTDeltaListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<DeltaListenerInfo> normalDeltaListeners = new CopyOnWriteArrayList<>();
+    private final DatasetDeltaListener myDeltaListener = this::processDatasetDelta;
+    private final Runnable edtDeltaRunnable = new EdtDeltaRunnable();
 
     /**
      * Constructs a new {@code DatasetEventManager}.
@@ -179,18 +234,52 @@ public class DatasetEventManager implements ActiveLayerChangeListener, Listener
         normalListeners.remove(searchListener);
     }
 
+    /**
+     * Register delta listener, that will receive the changes of currently active dataset, coalesced per update
+     * of the dataset. When the active dataset changes, the listener receives a delta for which
+     * {@link DatasetDelta#isDataSetChanged()} is set.
+     * @param listener the listener to be registered
+     * @param fireMode If {@link FireMode#IN_EDT} or {@link FireMode#IN_EDT_CONSOLIDATED},
+     * listener will be notified in event dispatch thread instead of thread that caused
+     * the dataset change. If {@link FireMode#IN_EDT_CONSOLIDATED}, the deltas queued in the meantime
+     * are merged into one delta
+     */
+    public void addDatasetDeltaListener(DatasetDeltaListener listener, FireMode fireMode) {
+        if (fireMode == FireMode.IN_EDT || fireMode == FireMode.IN_EDT_CONSOLIDATED) {
+            inEDTDeltaListeners.addIfAbsent(new DeltaListenerInfo(listener, fireMode == FireMode.IN_EDT_CONSOLIDATED));
+        } else {
+            normalDeltaListeners.addIfAbsent(new DeltaListenerInfo(listener, false));
+        }
+    }
+
+    /**
+     * Unregister delta listener.
+     * @param listener listener to remove
+     */
+    public void removeDatasetDeltaListener(DatasetDeltaListener listener) {
+        DeltaListenerInfo searchListener = new DeltaListenerInfo(listener, false);
+        inEDTDeltaListeners.remove(searchListener);
+        normalDeltaListeners.remove(searchListener);
+    }
+
     @Override
     public void activeOrEditLayerChanged(ActiveLayerChangeEvent e) {
         DataSet oldData = e.getPreviousDataSet();
         if (oldData != null) {
             oldData.removeDataSetListener(myListener);
+            oldData.removeDatasetDeltaListener(myDeltaListener);
         }
 
         DataSet newData = e.getSource().getActiveDataSet();
         if (newData != null) {
             newData.addDataSetListener(myListener);
+            newData.addDatasetDeltaListener(myDeltaListener);
         }
-        processDatasetEvent(new DataChangedEvent(newData));
+        DataChangedEvent event = new DataChangedEvent(newData);
+        processDatasetEvent(event);
+        DatasetDelta delta = new DatasetDelta(newData);
+        delta.addEvent(event);
+        processDatasetDelta(delta);
     }
 
     private static void fireEvents(List<ListenerInfo> listeners, AbstractDatasetChangedEvent event) {
@@ -209,6 +298,20 @@ public class DatasetEventManager implements ActiveLayerChangeListener, Listener
         }
     }
 
+    private static void fireDelta(List<DeltaListenerInfo> listeners, DatasetDelta delta, boolean consolidated) {
+        for (DeltaListenerInfo listener: listeners) {
+            if (listener.consolidate == consolidated) {
+                listener.listener.datasetChanged(delta);
+            }
+        }
+    }
+
+    private void processDatasetDelta(DatasetDelta delta) {
+        fireDelta(normalDeltaListeners, delta, false);
+        deltasInEDT.add(delta);
+        SwingUtilities.invokeLater(edtDeltaRunnable);
+    }
+
     @Override
     public void processDatasetEvent(AbstractDatasetChangedEvent event) {
         fireEvents(normalListeners, event);
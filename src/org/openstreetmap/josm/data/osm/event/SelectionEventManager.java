@@ -2,7 +2,6 @@
 package org.openstreetmap.josm.data.osm.event;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -130,8 +129,8 @@ public class SelectionEventManager implements DataSelectionListener, ActiveLayer
             // Relying on this allows components to not have to monitor layer changes.
             // If we would not do this, e.g. the move command would have a hard time tracking which layer
             // the last moved selection was in.
-            selectionChanged(new SelectionReplaceEvent(oldDataSet,
-                    new HashSet<>(oldDataSet.getAllSelected()), Stream.empty()));
+            // The selection of a data set is an unmodifiable set which is replaced on each change, no need to copy it
+            selectionChanged(new SelectionReplaceEvent(oldDataSet, oldDataSet.getAllSelected(), Stream.empty()));
             oldDataSet.removeSelectionListener(this);
         }
         DataSet newDataSet = e.getSource().getActiveDataSet();
@@ -11,11 +11,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -24,12 +27,15 @@ import java.util.stream.Collectors;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.OsmUtils;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.TagIndex;
 import org.openstreetmap.josm.data.osm.Tagged;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.osm.search.PushbackTokenizer.Range;
@@ -284,6 +290,87 @@ public class SearchCompiler {
             return tagged instanceof OsmPrimitive && match((OsmPrimitive) tagged);
         }
 
+        /**
+         * Returns the primitives which may match this criterion, found in the tag index of a data set.
+         * The candidates must still be tested with {@link #match(OsmPrimitive)}.
+         * @param index the tag index of the data set
+         * @return a superset of the primitives of the data set matching this criterion,
+         * or {@code null} if the index cannot be used and all primitives must be tested
+         */
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            return null;
+        }
+
+        /**
+         * Returns the primitives of a data set which may match this criterion, found in the indexes of the data set.
+         * By default, they are found in its {@linkplain DataSet#getTagIndex() tag index}.
+         * The candidates must still be tested with {@link #match(OsmPrimitive)}.
+         * @param ds the data set
+         * @param types the types of the primitives searched, at most {@link #getTypes()}
+         * @return a superset of the primitives of the given types matching this criterion,
+         * or {@code null} if the indexes cannot be used and all primitives must be tested
+         * @see SearchPlanner#getCandidates
+         */
+        public Collection<OsmPrimitive> getCandidates(DataSet ds, Set<OsmPrimitiveType> types) {
+            TagIndex index = ds.getTagIndex();
+            return index != null ? getCandidates(index) : null;
+        }
+
+        /**
+         * Returns the types of the primitives which may match this criterion.
+         * @return a new set of the types of the primitives which may match, among nodes, ways and relations
+         */
+        public Set<OsmPrimitiveType> getTypes() {
+            return EnumSet.of(OsmPrimitiveType.NODE, OsmPrimitiveType.WAY, OsmPrimitiveType.RELATION);
+        }
+
+        /**
+         * Returns the estimated cost to test a primitive against this criterion, compared to a tag lookup costing 1.
+         * @return the estimated cost to test a primitive
+         * @see SearchPlanner#optimize
+         */
+        public double getCost() {
+            return 5;
+        }
+
+        /**
+         * Returns the estimated fraction of the primitives of a data set matching this criterion.
+         * @param ds the data set
+         * @return the estimated fraction of the primitives matching this criterion, between 0 and 1
+         * @see SearchPlanner#optimize
+         */
+        public double getSelectivity(DataSet ds) {
+            return 0.5;
+        }
+
+        /**
+         * Returns the fraction of the primitives of a data set having a tag, counted in its tag index.
+         * @param ds the data set
+         * @param key the key
+         * @param value the value, or {@code null} for any value
+         * @param defaultValue the fraction returned if the data set has no tag index
+         * @return the fraction of the primitives having the tag
+         */
+        protected static double getTagSelectivity(DataSet ds, String key, String value, double defaultValue) {
+            TagIndex index = ds.getTagIndex();
+            int size = ds.allPrimitives().size();
+            if (index == null || size == 0) {
+                return defaultValue;
+            }
+            return (double) (value != null ? index.count(key, value) : index.count(key)) / size;
+        }
+
+        /**
+         * Determines if this criterion can test primitives from several threads at the same time.
+         * The criteria are not thread safe by default, in particular the ones added by plugins with
+         * {@link SearchCompiler#addMatchFactory}. The searches only test primitives in parallel if the whole criterion
+         * is thread safe.
+         * @return {@code true} if {@link #match(OsmPrimitive)} can be called from several threads at the same time
+         */
+        public boolean isThreadSafe() {
+            return false;
+        }
+
         @Override
         public final boolean test(OsmPrimitive object) {
             return match(object);
@@ -300,6 +387,17 @@ public class SearchCompiler {
             return match((Tagged) osm);
         }
 
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            // most tags are set on few primitives
+            return 0.1;
+        }
+
         protected static Pattern compilePattern(String regex, int flags) throws SearchParseError {
             try {
                 return Pattern.compile(regex, flags);
@@ -433,6 +531,21 @@ public class SearchCompiler {
         public boolean match(Tagged osm) {
             return true;
         }
+
+        @Override
+        public double getCost() {
+            return 0;
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            return 1;
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -445,6 +558,26 @@ public class SearchCompiler {
         public boolean match(Tagged osm) {
             return false;
         }
+
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public double getCost() {
+            return 0;
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            return 0;
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -465,6 +598,16 @@ public class SearchCompiler {
             return !match.match(osm);
         }
 
+        @Override
+        public double getCost() {
+            return match.getCost();
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            return 1 - match.getSelectivity(ds);
+        }
+
         @Override
         public String toString() {
             return '!' + match.toString();
@@ -473,6 +616,11 @@ public class SearchCompiler {
         public Match getMatch() {
             return match;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return match.isThreadSafe();
+        }
     }
 
     /**
@@ -492,6 +640,16 @@ public class SearchCompiler {
             return Optional.ofNullable(OsmUtils.getOsmBoolean(osm.get(key))).orElse(defaultValue);
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            return defaultValue ? null : index.get(key);
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            return defaultValue ? super.getSelectivity(ds) : getTagSelectivity(ds, key, null, super.getSelectivity(ds));
+        }
+
         @Override
         public String toString() {
             return key + '?';
@@ -522,6 +680,11 @@ public class SearchCompiler {
                 return false;
             return true;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -547,11 +710,65 @@ public class SearchCompiler {
             return lhs.match(osm) && rhs.match(osm);
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            Collection<OsmPrimitive> left = lhs.getCandidates(index);
+            Collection<OsmPrimitive> right = rhs.getCandidates(index);
+            if (left == null || right == null) {
+                return left == null ? right : left;
+            }
+            return left.size() <= right.size() ? left : right;
+        }
+
+        @Override
+        public Collection<OsmPrimitive> getCandidates(DataSet ds, Set<OsmPrimitiveType> types) {
+            Set<OsmPrimitiveType> t = EnumSet.noneOf(OsmPrimitiveType.class);
+            t.addAll(types);
+            t.retainAll(getTypes());
+            if (t.isEmpty()) {
+                return Collections.emptyList();
+            }
+            // the candidates of the other side are only searched if they are expected to be fewer
+            boolean leftFirst = lhs.getSelectivity(ds) <= rhs.getSelectivity(ds);
+            Match second = leftFirst ? rhs : lhs;
+            Collection<OsmPrimitive> first = (leftFirst ? lhs : rhs).getCandidates(ds, t);
+            if (first != null && first.size() <= second.getSelectivity(ds) * ds.allPrimitives().size()) {
+                return first;
+            }
+            Collection<OsmPrimitive> other = second.getCandidates(ds, t);
+            if (first == null || other == null) {
+                return first == null ? other : first;
+            }
+            return first.size() <= other.size() ? first : other;
+        }
+
+        @Override
+        public Set<OsmPrimitiveType> getTypes() {
+            Set<OsmPrimitiveType> types = lhs.getTypes();
+            types.retainAll(rhs.getTypes());
+            return types;
+        }
+
+        @Override
+        public double getCost() {
+            return lhs.getCost() + rhs.getCost();
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            return lhs.getSelectivity(ds) * rhs.getSelectivity(ds);
+        }
+
         @Override
         public String toString() {
             return (lhs instanceof AbstractBinaryMatch && !(lhs instanceof And) ? parenthesis(lhs) : lhs) + " && "
                  + (rhs instanceof AbstractBinaryMatch && !(rhs instanceof And) ? parenthesis(rhs) : rhs);
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return lhs.isThreadSafe() && rhs.isThreadSafe();
+        }
     }
 
     /**
@@ -577,11 +794,67 @@ public class SearchCompiler {
             return lhs.match(osm) || rhs.match(osm);
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            Collection<OsmPrimitive> left = lhs.getCandidates(index);
+            if (left == null) {
+                return null;
+            }
+            Collection<OsmPrimitive> right = rhs.getCandidates(index);
+            if (right == null) {
+                return null;
+            }
+            Set<OsmPrimitive> union = Collections.newSetFromMap(new IdentityHashMap<>(left.size() + right.size()));
+            union.addAll(left);
+            union.addAll(right);
+            return union;
+        }
+
+        @Override
+        public Collection<OsmPrimitive> getCandidates(DataSet ds, Set<OsmPrimitiveType> types) {
+            Collection<OsmPrimitive> left = lhs.getCandidates(ds, types);
+            if (left == null) {
+                return null;
+            }
+            Collection<OsmPrimitive> right = rhs.getCandidates(ds, types);
+            if (right == null) {
+                return null;
+            }
+            Set<OsmPrimitive> union = Collections.newSetFromMap(new IdentityHashMap<>(left.size() + right.size()));
+            union.addAll(left);
+            union.addAll(right);
+            return union;
+        }
+
+        @Override
+        public Set<OsmPrimitiveType> getTypes() {
+            Set<OsmPrimitiveType> types = lhs.getTypes();
+            types.addAll(rhs.getTypes());
+            return types;
+        }
+
+        @Override
+        public double getCost() {
+            return lhs.getCost() + rhs.getCost();
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            double left = lhs.getSelectivity(ds);
+            double right = rhs.getSelectivity(ds);
+            return left + right - left * right;
+        }
+
         @Override
         public String toString() {
             return (lhs instanceof AbstractBinaryMatch && !(lhs instanceof Or) ? parenthesis(lhs) : lhs) + " || "
                  + (rhs instanceof AbstractBinaryMatch && !(rhs instanceof Or) ? parenthesis(rhs) : rhs);
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return lhs.isThreadSafe() && rhs.isThreadSafe();
+        }
     }
 
     /**
@@ -607,11 +880,35 @@ public class SearchCompiler {
             return lhs.match(osm) ^ rhs.match(osm);
         }
 
+        @Override
+        public Set<OsmPrimitiveType> getTypes() {
+            Set<OsmPrimitiveType> types = lhs.getTypes();
+            types.addAll(rhs.getTypes());
+            return types;
+        }
+
+        @Override
+        public double getCost() {
+            return lhs.getCost() + rhs.getCost();
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            double left = lhs.getSelectivity(ds);
+            double right = rhs.getSelectivity(ds);
+            return left + right - 2 * left * right;
+        }
+
         @Override
         public String toString() {
             return (lhs instanceof AbstractBinaryMatch && !(lhs instanceof Xor) ? parenthesis(lhs) : lhs) + " ^ "
                  + (rhs instanceof AbstractBinaryMatch && !(rhs instanceof Xor) ? parenthesis(rhs) : rhs);
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return lhs.isThreadSafe() && rhs.isThreadSafe();
+        }
     }
 
     /**
@@ -768,6 +1065,36 @@ public class SearchCompiler {
             return false;
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            if (keyPattern != null || "timestamp".equals(key)) {
+                return null;
+            } else if (caseSensitive) {
+                return index.get(key);
+            }
+            Set<OsmPrimitive> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (String k : index.getKeys()) {
+                if (key.equalsIgnoreCase(k)) {
+                    candidates.addAll(index.get(k));
+                }
+            }
+            return candidates;
+        }
+
+        @Override
+        public double getCost() {
+            // the values are normalized for each test
+            return keyPattern != null ? 10 : 3;
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            if (keyPattern != null || !caseSensitive || "timestamp".equals(key)) {
+                return super.getSelectivity(ds);
+            }
+            return getTagSelectivity(ds, key, null, super.getSelectivity(ds));
+        }
+
         @Override
         public String toString() {
             return key + '=' + value;
@@ -816,6 +1143,11 @@ public class SearchCompiler {
                 return false;
             return true;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     public static class ValueComparison extends TaggedMatch {
@@ -860,6 +1192,16 @@ public class SearchCompiler {
             return compareMode < 0 ? compareResult < 0 : compareMode > 0 ? compareResult > 0 : compareResult == 0;
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            return index.get(key);
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            return getTagSelectivity(ds, key, null, super.getSelectivity(ds) * 2) / 2;
+        }
+
         @Override
         public String toString() {
             return key + (compareMode == -1 ? "<" : compareMode == +1 ? ">" : "") + referenceValue;
@@ -902,6 +1244,11 @@ public class SearchCompiler {
                 return false;
             return true;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1021,6 +1368,47 @@ public class SearchCompiler {
             throw new AssertionError("Missed state");
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            switch (mode) {
+            case ANY_VALUE:
+                return index.get(key);
+            case EXACT:
+                return index.get(key, value);
+            default:
+                return null;
+            }
+        }
+
+        @Override
+        public double getCost() {
+            switch (mode) {
+            case ANY_KEY:
+                return 3;
+            case ANY_KEY_REGEXP:
+            case ANY_VALUE_REGEXP:
+            case EXACT_REGEXP:
+            case MISSING_KEY_REGEXP:
+                return 10;
+            default:
+                return 1;
+            }
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            switch (mode) {
+            case ANY_VALUE:
+                return getTagSelectivity(ds, key, null, super.getSelectivity(ds));
+            case EXACT:
+                return getTagSelectivity(ds, key, value, super.getSelectivity(ds));
+            case MISSING_KEY:
+                return 1 - getTagSelectivity(ds, key, null, super.getSelectivity(ds));
+            default:
+                return super.getSelectivity(ds);
+            }
+        }
+
         @Override
         public String toString() {
             return key + '=' + value;
@@ -1069,6 +1457,11 @@ public class SearchCompiler {
                 return false;
             return true;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1128,6 +1521,12 @@ public class SearchCompiler {
             return false;
         }
 
+        @Override
+        public double getCost() {
+            // all tags are normalized and searched
+            return 10;
+        }
+
         @Override
         public String toString() {
             return search;
@@ -1164,6 +1563,11 @@ public class SearchCompiler {
                 return false;
             return true;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     private static class ExactType extends Match {
@@ -1180,6 +1584,22 @@ public class SearchCompiler {
             return type == osm.getType();
         }
 
+        @Override
+        public Set<OsmPrimitiveType> getTypes() {
+            return EnumSet.of(type);
+        }
+
+        @Override
+        public double getCost() {
+            return 0.5;
+        }
+
+        @Override
+        public double getSelectivity(DataSet ds) {
+            // in usual data sets, most primitives are nodes
+            return type == OsmPrimitiveType.NODE ? 0.8 : type == OsmPrimitiveType.WAY ? 0.15 : 0.05;
+        }
+
         @Override
         public String toString() {
             return "type=" + type;
@@ -1199,6 +1619,11 @@ public class SearchCompiler {
             ExactType other = (ExactType) obj;
             return type == other.type;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1247,6 +1672,11 @@ public class SearchCompiler {
                 return false;
             return true;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1303,6 +1733,11 @@ public class SearchCompiler {
                 return false;
             return true;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1370,6 +1805,11 @@ public class SearchCompiler {
             return modulo == other.modulo
                    && nth == other.nth;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1402,6 +1842,11 @@ public class SearchCompiler {
                 return (num >= min) && (num <= max);
         }
 
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
         @Override
         public String toString() {
             return getString() + '=' + min + '-' + max;
@@ -1426,6 +1871,11 @@ public class SearchCompiler {
             return max == other.max
                 && min == other.min;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1563,6 +2013,11 @@ public class SearchCompiler {
                 return false;
             return true;
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1574,10 +2029,20 @@ public class SearchCompiler {
             return osm.isNew();
         }
 
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
         @Override
         public String toString() {
             return "new";
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1589,10 +2054,20 @@ public class SearchCompiler {
             return osm.isModified() || osm.isNewOrUndeleted();
         }
 
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
         @Override
         public String toString() {
             return "modified";
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1604,10 +2079,20 @@ public class SearchCompiler {
             return osm.isDeleted();
         }
 
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
         @Override
         public String toString() {
             return "deleted";
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1619,10 +2104,20 @@ public class SearchCompiler {
             return osm.getDataSet().isSelected(osm);
         }
 
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
         @Override
         public String toString() {
             return "selected";
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1636,10 +2131,20 @@ public class SearchCompiler {
             return osm.isIncomplete() || (osm instanceof Relation && ((Relation) osm).hasIncompleteMembers());
         }
 
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
         @Override
         public String toString() {
             return "incomplete";
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1653,10 +2158,20 @@ public class SearchCompiler {
             return !osm.isTagged() && !osm.isIncomplete();
         }
 
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
         @Override
         public String toString() {
             return "untagged";
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1668,10 +2183,25 @@ public class SearchCompiler {
             return osm instanceof Way && ((Way) osm).isClosed();
         }
 
+        @Override
+        public Set<OsmPrimitiveType> getTypes() {
+            return EnumSet.of(OsmPrimitiveType.WAY);
+        }
+
+        @Override
+        public double getCost() {
+            return 1;
+        }
+
         @Override
         public String toString() {
             return "closed";
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1698,10 +2228,26 @@ public class SearchCompiler {
             return isParent;
         }
 
+        @Override
+        public Set<OsmPrimitiveType> getTypes() {
+            return EnumSet.of(OsmPrimitiveType.WAY, OsmPrimitiveType.RELATION);
+        }
+
+        @Override
+        public double getCost() {
+            // the expression is tested for all the nodes or members
+            return 10 * match.getCost();
+        }
+
         @Override
         public String toString() {
             return "parent(" + match + ')';
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return match.isThreadSafe();
+        }
     }
 
     /**
@@ -1722,10 +2268,21 @@ public class SearchCompiler {
             return isChild;
         }
 
+        @Override
+        public double getCost() {
+            // the expression is tested for all the referrers
+            return 2 * match.getCost();
+        }
+
         @Override
         public String toString() {
             return "child(" + match + ')';
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return match.isThreadSafe();
+        }
     }
 
     /**
@@ -1753,6 +2310,11 @@ public class SearchCompiler {
         protected String getString() {
             return "areasize";
         }
+
+        @Override
+        public double getCost() {
+            return 50;
+        }
     }
 
     /**
@@ -1780,6 +2342,16 @@ public class SearchCompiler {
         protected String getString() {
             return "waylength";
         }
+
+        @Override
+        public Set<OsmPrimitiveType> getTypes() {
+            return EnumSet.of(OsmPrimitiveType.WAY);
+        }
+
+        @Override
+        public double getCost() {
+            return 20;
+        }
     }
 
     /**
@@ -1798,6 +2370,16 @@ public class SearchCompiler {
 
         protected abstract Collection<Bounds> getBounds(OsmPrimitive primitive);
 
+        /**
+         * Returns the bounds of the primitives of a data set, if they are the same for all of them.
+         * @param ds the data set
+         * @return the bounds returned by {@link #getBounds(OsmPrimitive)} for all primitives of the data set,
+         * or {@code null} if they are not known in advance
+         */
+        protected Collection<Bounds> getBounds(DataSet ds) {
+            return null;
+        }
+
         @Override
         public boolean match(OsmPrimitive osm) {
             if (!osm.isUsable())
@@ -1816,6 +2398,38 @@ public class SearchCompiler {
                 return false;
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(DataSet ds, Set<OsmPrimitiveType> types) {
+            // empty ways and relations are within all bounds
+            Collection<Bounds> allBounds = all ? null : getBounds(ds);
+            if (allBounds == null) {
+                return super.getCandidates(ds, types);
+            }
+            // the bounding box of a way or relation contains its nodes and members
+            Set<OsmPrimitive> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Bounds bounds : allBounds) {
+                if (bounds.crosses180thMeridian()) {
+                    return super.getCandidates(ds, types);
+                }
+                BBox bbox = bounds.toBBox();
+                if (types.contains(OsmPrimitiveType.NODE)) {
+                    candidates.addAll(ds.searchNodes(bbox));
+                }
+                if (types.contains(OsmPrimitiveType.WAY)) {
+                    candidates.addAll(ds.searchWays(bbox));
+                }
+                if (types.contains(OsmPrimitiveType.RELATION)) {
+                    candidates.addAll(ds.searchRelations(bbox));
+                }
+            }
+            return candidates;
+        }
+
+        @Override
+        public double getCost() {
+            return 20;
+        }
+
         @Override
         public int hashCode() {
             return 31 + (all ? 1231 : 1237);
@@ -1850,10 +2464,20 @@ public class SearchCompiler {
             return primitive.getDataSet() != null ? primitive.getDataSet().getDataSourceBounds() : null;
         }
 
+        @Override
+        protected Collection<Bounds> getBounds(DataSet ds) {
+            return ds.getDataSourceBounds();
+        }
+
         @Override
         public String toString() {
             return all ? "allindownloadedarea" : "indownloadedarea";
         }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
     }
 
     /**
@@ -1876,6 +2500,12 @@ public class SearchCompiler {
                     Collections.singleton(ProjectionRegistry.getProjection().getWorldBoundsLatLon()) : bounds;
         }
 
+        @Override
+        protected Collection<Bounds> getBounds(DataSet ds) {
+            final Collection<Bounds> bounds = super.getBounds(ds);
+            return bounds.isEmpty() ? null : bounds;
+        }
+
         @Override
         public String toString() {
             return "NotOutsideDataSourceArea";
@@ -1926,6 +2556,11 @@ public class SearchCompiler {
             return false;
         }
 
+        @Override
+        public double getCost() {
+            return 50;
+        }
+
         private static boolean presetNameMatch(String name, TaggingPreset preset, boolean matchStrictly) {
             if (matchStrictly) {
                 return name.equalsIgnoreCase(preset.getRawName());
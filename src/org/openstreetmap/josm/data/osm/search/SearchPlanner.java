@@ -0,0 +1,106 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.AbstractBinaryMatch;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.And;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Child;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Match;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Not;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Or;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Parent;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Xor;
+import org.openstreetmap.josm.tools.Pair;
+
+/**
+ * Plans the evaluation of compiled search expressions on a data set.
+ * <p>
+ * The primitives which may match are found in the indexes of the data set, see {@link Match#getCandidates(DataSet, Set)}.
+ * The operands of conjunctions and disjunctions are tested in the order in which they are expected to decide the result
+ * at the lowest cost, according to the {@linkplain Match#getCost() cost} and {@linkplain Match#getSelectivity selectivity}
+ * estimated by each criterion.
+ */
+public final class SearchPlanner {
+
+    private SearchPlanner() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * Returns the primitives of a data set which may match a search expression, found in the indexes of the data set.
+     * @param matcher the search expression
+     * @param ds the data set
+     * @return a superset of the primitives of the data set matching the expression,
+     * or {@code null} if the indexes cannot be used and all primitives must be tested
+     */
+    public static Collection<OsmPrimitive> getCandidates(Match matcher, DataSet ds) {
+        return matcher.getCandidates(ds, matcher.getTypes());
+    }
+
+    /**
+     * Returns a search expression equivalent to the given one, whose operands are tested in the most efficient order
+     * for the given data set. The string representation of the expression returned may differ.
+     * @param matcher the search expression
+     * @param ds the data set
+     * @return an expression matching the same primitives
+     */
+    public static Match optimize(Match matcher, DataSet ds) {
+        // subclasses of the operators might behave differently, they are kept as is
+        Class<?> type = matcher.getClass();
+        if (type == And.class || type == Or.class) {
+            boolean and = type == And.class;
+            List<Match> operands = new ArrayList<>();
+            addOperands(matcher, type, ds, operands);
+            List<Pair<Double, Match>> ranked = new ArrayList<>(operands.size());
+            for (Match operand : operands) {
+                ranked.add(new Pair<>(getRank(operand, ds, and), operand));
+            }
+            // stable sort, the operands of the same rank are tested in the order of the expression
+            ranked.sort(Comparator.comparingDouble(p -> p.a));
+            Match result = null;
+            for (Pair<Double, Match> p : ranked) {
+                result = result == null ? p.b : and ? new And(result, p.b) : new Or(result, p.b);
+            }
+            return result;
+        } else if (type == Xor.class) {
+            return new Xor(optimize(((Xor) matcher).getLhs(), ds), optimize(((Xor) matcher).getRhs(), ds));
+        } else if (type == Not.class) {
+            return new Not(optimize(((Not) matcher).getOperand(), ds));
+        } else if (type == Parent.class) {
+            return new Parent(optimize(((Parent) matcher).getOperand(), ds));
+        } else if (type == Child.class) {
+            return new Child(optimize(((Child) matcher).getOperand(), ds));
+        }
+        return matcher;
+    }
+
+    private static void addOperands(Match matcher, Class<?> type, DataSet ds, List<Match> operands) {
+        if (matcher.getClass() == type) {
+            addOperands(((AbstractBinaryMatch) matcher).getLhs(), type, ds, operands);
+            addOperands(((AbstractBinaryMatch) matcher).getRhs(), type, ds, operands);
+        } else {
+            operands.add(optimize(matcher, ds));
+        }
+    }
+
+    /**
+     * Returns the rank of an operand, the expected cost to decide the result of a conjunction or disjunction with it.
+     * The operands of a conjunction which rarely match, and of a disjunction which often match, decide the result.
+     * @param operand the operand
+     * @param ds the data set
+     * @param and {@code true} for a conjunction, {@code false} for a disjunction
+     * @return the rank of the operand, the operands of lowest rank are tested first
+     */
+    private static double getRank(Match operand, DataSet ds, boolean and) {
+        double selectivity = Math.max(0, Math.min(1, operand.getSelectivity(ds)));
+        double decisive = and ? 1 - selectivity : selectivity;
+        return decisive > 0 ? operand.getCost() / decisive : Double.POSITIVE_INFINITY;
+    }
+}
@@ -75,11 +75,26 @@ public abstract class AbstractMapRenderer implements Rendering {
      * @throws IllegalArgumentException if {@code nc} is null
      */
     public AbstractMapRenderer(Graphics2D g, NavigatableComponent nc, boolean isInactiveMode) {
+        this(g, nc, nc != null ? nc.getState() : null, isInactiveMode);
+    }
+
+    /**
+     * <p>Creates an abstract paint visitor painting a given state of the map viewport</p>
+     *
+     * @param g the graphics context. Must not be null.
+     * @param nc the map viewport. Must not be null.
+     * @param mapState the state to use to convert between coordinates, instead of the current state of {@code nc}
+     * @param isInactiveMode if true, the paint visitor shall render OSM objects such that they
+     * look inactive. Example: rendering of data in an inactive layer using light gray as color only.
+     * @throws IllegalArgumentException if {@code g}, {@code nc} or {@code mapState} is null
+     */
+    protected AbstractMapRenderer(Graphics2D g, NavigatableComponent nc, MapViewState mapState, boolean isInactiveMode) {
         CheckParameterUtil.ensureParameterNotNull(g);
         CheckParameterUtil.ensureParameterNotNull(nc);
+        CheckParameterUtil.ensureParameterNotNull(mapState);
         this.g = g;
         this.nc = nc;
-        this.mapState = nc.getState();
+        this.mapState = mapState;
         this.isInactiveMode = isInactiveMode;
     }
 
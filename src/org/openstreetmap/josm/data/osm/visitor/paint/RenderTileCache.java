@@ -0,0 +1,302 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.IPrimitive;
+import org.openstreetmap.josm.data.osm.IRelation;
+import org.openstreetmap.josm.data.osm.IWay;
+import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer.StyleRecord;
+import org.openstreetmap.josm.data.preferences.AbstractProperty;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.spi.preferences.PreferenceChangeEvent;
+import org.openstreetmap.josm.spi.preferences.PreferenceChangedListener;
+
+/**
+ * Keeps the rasterized tiles of a data layer, so that they are not painted again on each repaint.
+ * <p>
+ * The tiles are aligned on a grid of {@link #TILE_SIZE} pixels anchored at the east/north origin, so that they can be
+ * reused when the map is panned. They contain the styles painted below the first label, see
+ * {@link StyledMapRenderer#setRenderTileCache}. A tile is painted again when the style records intersecting it change,
+ * for instance on selection changes, or when a primitive it shows is moved or modified, as notified by the data set.
+ * <p>
+ * The least recently used tiles are evicted when the cache is full. The cache must be registered as listener
+ * of the data set and of the preferences, it is cleared when a preference changes.
+ */
+public final class RenderTileCache implements DataSetListener, PreferenceChangedListener {
+
+    /**
+     * Indicates that the data layers should keep the rasterized tiles of the map between repaints
+     */
+    public static final AbstractProperty<Boolean> PREFERENCE_ENABLED = new BooleanProperty("mappaint.render-cache", false).cached();
+    /**
+     * Maximal number of tiles kept by each data layer
+     */
+    public static final IntegerProperty PREFERENCE_SIZE = new IntegerProperty("mappaint.render-cache.size", 128);
+    /**
+     * The size of the tiles, in pixels
+     */
+    public static final int TILE_SIZE = 256;
+
+    private final Map<TileKey, Tile> tiles = new LruCache();
+    /** Primitives changed since the last repaint */
+    private final Set<IPrimitive> changed = new HashSet<>();
+    private Set<WaySegment> highlightedWaySegments = new HashSet<>();
+    private long paintedTiles;
+    private long reusedTiles;
+
+    static final class LruCache extends LinkedHashMap<TileKey, Tile> {
+        private static final long serialVersionUID = 1L;
+
+        LruCache() {
+            super(64, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileKey, Tile> eldest) {
+            return size() > PREFERENCE_SIZE.get();
+        }
+    }
+
+    /**
+     * The position of a tile on the grid of a given zoom level, with the settings it has been painted with.
+     */
+    static final class TileKey {
+        private final double scale;
+        private final int flags;
+        private final int x;
+        private final int y;
+
+        TileKey(double scale, int flags, int x, int y) {
+            this.scale = scale;
+            this.flags = flags;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scale, flags, x, y);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            TileKey other = (TileKey) obj;
+            return Double.compare(scale, other.scale) == 0 && flags == other.flags && x == other.x && y == other.y;
+        }
+    }
+
+    /**
+     * A painted tile, with the style records painted in it.
+     */
+    static final class Tile {
+        final BufferedImage image;
+        final List<StyleRecord> records;
+        final BitSet highlighted;
+        boolean dirty;
+
+        Tile(BufferedImage image, List<StyleRecord> records, BitSet highlighted) {
+            this.image = image;
+            this.records = records;
+            this.highlighted = highlighted;
+        }
+    }
+
+    /**
+     * Returns the tile at the given position, if it is still valid for the given records.
+     * @param key the tile position
+     * @param records the style records intersecting the tile, in painting order
+     * @param highlighted the records whose primitive is highlighted
+     * @return the cached tile image, or {@code null}
+     */
+    synchronized BufferedImage get(TileKey key, List<StyleRecord> records, BitSet highlighted) {
+        Tile tile = tiles.get(key);
+        if (tile != null && !tile.dirty && tile.records.equals(records) && tile.highlighted.equals(highlighted)) {
+            reusedTiles++;
+            return tile.image;
+        }
+        return null;
+    }
+
+    /**
+     * Stores a painted tile.
+     * @param key the tile position
+     * @param image the painted image
+     * @param records the style records painted in the tile
+     * @param highlighted the records whose primitive is highlighted
+     */
+    synchronized void put(TileKey key, BufferedImage image, List<StyleRecord> records, BitSet highlighted) {
+        paintedTiles++;
+        tiles.put(key, new Tile(image, records, highlighted));
+    }
+
+    /**
+     * Counts a tile painted without being stored, for instance because an icon is still loading.
+     */
+    synchronized void skip() {
+        paintedTiles++;
+    }
+
+    /**
+     * Marks the tiles showing the primitives changed since the last call, or the highlighted way segments, as dirty.
+     * @param currentHighlightedWaySegments the way segments currently highlighted
+     */
+    synchronized void invalidateChanged(Collection<WaySegment> currentHighlightedWaySegments) {
+        Set<WaySegment> segments = currentHighlightedWaySegments != null
+                ? new HashSet<>(currentHighlightedWaySegments) : new HashSet<>();
+        if (!segments.equals(highlightedWaySegments)) {
+            for (WaySegment ws : segments) {
+                if (!highlightedWaySegments.contains(ws)) {
+                    changed.add(ws.way);
+                }
+            }
+            for (WaySegment ws : highlightedWaySegments) {
+                if (!segments.contains(ws)) {
+                    changed.add(ws.way);
+                }
+            }
+            highlightedWaySegments = segments;
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        for (Tile tile : tiles.values()) {
+            if (!tile.dirty) {
+                for (StyleRecord record : tile.records) {
+                    if (changed.contains(record.osm)) {
+                        tile.dirty = true;
+                        break;
+                    }
+                }
+            }
+        }
+        changed.clear();
+    }
+
+    /**
+     * Removes all tiles from the cache.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        changed.clear();
+    }
+
+    /**
+     * Returns the number of tiles painted since the creation of the cache.
+     * @return the number of painted tiles
+     */
+    public synchronized long getPaintedTiles() {
+        return paintedTiles;
+    }
+
+    /**
+     * Returns the number of tiles taken from the cache instead of being painted.
+     * @return the number of reused tiles
+     */
+    public synchronized long getReusedTiles() {
+        return reusedTiles;
+    }
+
+    /**
+     * Returns the number of tiles in the cache.
+     * @return the number of tiles in the cache
+     */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    private synchronized void addChanged(AbstractDatasetChangedEvent event) {
+        // the geometry and the styles of the parents may depend on their children
+        Set<IPrimitive> visited = new HashSet<>();
+        Deque<IPrimitive> queue = new ArrayDeque<>(event.getPrimitives());
+        while (!queue.isEmpty()) {
+            IPrimitive p = queue.poll();
+            if (visited.add(p)) {
+                changed.add(p);
+                queue.addAll(p.getReferrers(true));
+            }
+        }
+        // the styles of the nodes and members may depend on their parents
+        for (IPrimitive p : event.getPrimitives()) {
+            if (p instanceof IWay) {
+                changed.addAll(((IWay<?>) p).getNodes());
+            } else if (p instanceof IRelation) {
+                changed.addAll(((IRelation<?>) p).getMemberPrimitivesList());
+            }
+        }
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        addChanged(event);
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        addChanged(event);
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        addChanged(event);
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        addChanged(event);
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        addChanged(event);
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        addChanged(event);
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        addChanged(event);
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        clear();
+    }
+
+    @Override
+    public void preferenceChanged(PreferenceChangeEvent e) {
+        clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return paintedTiles + " painted, " + reusedTiles + " reused, " + tiles.size() + " tiles";
+    }
+
+}
@@ -27,6 +27,7 @@ import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -35,6 +36,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -45,6 +47,7 @@ import javax.swing.FocusManager;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.BBox;
 import org.openstreetmap.josm.data.osm.INode;
 import org.openstreetmap.josm.data.osm.IPrimitive;
@@ -63,6 +66,7 @@ import org.openstreetmap.josm.data.preferences.AbstractProperty;
 import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
 import org.openstreetmap.josm.data.preferences.StringProperty;
+import org.openstreetmap.josm.gui.MapViewState;
 import org.openstreetmap.josm.gui.MapViewState.MapViewPoint;
 import org.openstreetmap.josm.gui.NavigatableComponent;
 import org.openstreetmap.josm.gui.draw.MapViewPath;
@@ -73,10 +77,14 @@ import org.openstreetmap.josm.gui.mappaint.styleelement.BoxTextElement;
 import org.openstreetmap.josm.gui.mappaint.styleelement.BoxTextElement.HorizontalTextAlignment;
 import org.openstreetmap.josm.gui.mappaint.styleelement.BoxTextElement.VerticalTextAlignment;
 import org.openstreetmap.josm.gui.mappaint.styleelement.DefaultStyles;
+import org.openstreetmap.josm.gui.mappaint.styleelement.LineElement;
 import org.openstreetmap.josm.gui.mappaint.styleelement.MapImage;
+import org.openstreetmap.josm.gui.mappaint.styleelement.NodeElement;
+import org.openstreetmap.josm.gui.mappaint.styleelement.RepeatImageElement;
 import org.openstreetmap.josm.gui.mappaint.styleelement.RepeatImageElement.LineImageAlignment;
 import org.openstreetmap.josm.gui.mappaint.styleelement.StyleElement;
 import org.openstreetmap.josm.gui.mappaint.styleelement.Symbol;
+import org.openstreetmap.josm.gui.mappaint.styleelement.TextElement;
 import org.openstreetmap.josm.gui.mappaint.styleelement.TextLabel;
 import org.openstreetmap.josm.gui.mappaint.styleelement.placement.PositionForAreaStrategy;
 import org.openstreetmap.josm.spi.preferences.Config;
@@ -113,7 +121,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
      */
     public static class StyleRecord implements Comparable<StyleRecord> {
         private final StyleElement style;
-        private final IPrimitive osm;
+        final IPrimitive osm;
         private final int flags;
         private final long order;
 
@@ -348,6 +356,25 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     private static final AbstractProperty<Integer> WIDER_HIGHLIGHT = new IntegerProperty("mappaint.highlight.bigger-increment", 5).cached();
     private static final AbstractProperty<Integer> HIGHLIGHT_STEP = new IntegerProperty("mappaint.highlight.step", 4).cached();
 
+    /**
+     * Indicates that the renderer should split the view into tiles painted in parallel, and paint the labels on the whole view
+     */
+    public static final AbstractProperty<Boolean> PREFERENCE_TILED_RENDERING
+            = new BooleanProperty("mappaint.renderer.tiled", false).cached();
+    /**
+     * The size of the tiles, in pixels
+     */
+    public static final AbstractProperty<Integer> PREFERENCE_TILE_SIZE
+            = new IntegerProperty("mappaint.renderer.tile-size", 512).cached();
+    /**
+     * How far from the bounding box of a primitive, in pixels, its styles may paint
+     */
+    private static final AbstractProperty<Integer> TILE_MARGIN = new IntegerProperty("mappaint.renderer.tile-margin", 64).cached();
+    /**
+     * Minimal number of consecutive records to paint in tiles
+     */
+    private static final int MIN_TILED_RECORDS = 100;
+
     private Collection<WaySegment> highlightWaySegments;
 
     //flag that activate wider highlight mode
@@ -363,6 +390,10 @@ public class StyledMapRenderer extends AbstractMapRenderer {
 
     private Supplier<RenderBenchmarkCollector> benchmarkFactory = RenderBenchmarkCollector.defaultBenchmarkSupplier();
 
+    private RenderTileCache renderTileCache;
+    /** Set when an image still loading has been painted */
+    private boolean temporaryImagePainted;
+
     /**
      * Constructs a new {@code StyledMapRenderer}.
      *
@@ -380,6 +411,18 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         this.styles = MapPaintStyles.getStyles();
     }
 
+    /**
+     * Constructs a new {@code StyledMapRenderer} painting a tile of the render cache.
+     *
+     * @param g the graphics context of the tile
+     * @param nc the map viewport
+     * @param mapState the part of the map viewport covered by the tile
+     * @param isInactiveMode if true, the paint visitor shall render OSM objects such that they look inactive
+     */
+    private StyledMapRenderer(Graphics2D g, NavigatableComponent nc, MapViewState mapState, boolean isInactiveMode) {
+        super(g, nc, mapState, isInactiveMode);
+    }
+
     /**
      * Set the {@link ElemStyles} instance to use for this renderer.
      * @param styles the {@code ElemStyles} instance to use
@@ -462,6 +505,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             } else {
                 // TexturePaint requires BufferedImage -> get base image from possible multi-resolution image
                 Image img = HiDPISupport.getBaseImage(fillImage.getImage(disabled));
+                temporaryImagePainted |= fillImage.isTemporary();
                 if (img != null) {
                     g.setPaint(new TexturePaint((BufferedImage) img,
                             new Rectangle(0, 0, fillImage.getWidth(), fillImage.getHeight())));
@@ -668,6 +712,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         double startOffset = computeStartOffset(phase, repeat);
 
         Image image = pattern.getImage(disabled);
+        temporaryImagePainted |= pattern.isTemporary();
 
         path.visitClippedLine(repeat, (inLineOffset, start, end, startIsOldEnd) -> {
             final double segmentLength = start.distanceToInView(end);
@@ -813,6 +858,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         int drawX = -img.getWidth() / 2 + img.offsetX;
         int drawY = -img.getHeight() / 2 + img.offsetY;
         temporaryGraphics.drawImage(img.getImage(disabled), drawX, drawY, nc);
+        temporaryImagePainted |= img.isTemporary();
         if (selected || member) {
             selectionDrawer.accept(temporaryGraphics, new Rectangle2D.Double(drawX - 2, drawY - 2, img.getWidth() + 4, img.getHeight() + 4));
         }
@@ -1030,8 +1076,10 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             fromNode = fromWay.getNode(fromWay.getNodesCount()-2);
         }
 
-        Point pFrom = nc.getPoint(fromNode);
-        Point pVia = nc.getPoint(viaNode);
+        MapViewPoint fromPoint = mapState.getPointFor(fromNode);
+        MapViewPoint viaPoint = mapState.getPointFor(viaNode);
+        Point pFrom = new Point((int) fromPoint.getInViewX(), (int) fromPoint.getInViewY());
+        Point pVia = new Point((int) viaPoint.getInViewX(), (int) viaPoint.getInViewY());
 
         /* starting from via, go back the "from" way a few pixels
            (calculate the vector vx/vy with the specified length and the direction
@@ -1109,6 +1157,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             iconAngle = 270-fromAngleDeg;
         }
 
+        temporaryImagePainted |= icon.isTemporary();
         drawRestriction(icon.getImage(disabled),
                 pVia, vx+vx2, vy+vy2, iconAngle, r.isSelected());
     }
@@ -1604,6 +1653,19 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         this.benchmarkFactory = benchmarkFactory;
     }
 
+    /**
+     * Sets the cache of rasterized tiles to use for this renderer.
+     * <p>
+     * The styles painted below the first label are taken from the cache when they have not changed,
+     * the labels and the styles above them are painted on each call to {@link #render}. The style records are still
+     * computed and sorted on each call, they are compared with the records of the cached tiles to find the tiles
+     * to paint again.
+     * @param renderTileCache the cache of the rendered data, or {@code null} to paint everything
+     */
+    public void setRenderTileCache(RenderTileCache renderTileCache) {
+        this.renderTileCache = renderTileCache;
+    }
+
     @Override
     public void render(final OsmData<?, ?, ?, ?> data, boolean renderVirtualNodes, Bounds bounds) {
         RenderBenchmarkCollector benchmark = benchmarkFactory.get();
@@ -1632,9 +1694,12 @@ public class StyledMapRenderer extends AbstractMapRenderer {
 
             benchmark.renderStart(circum);
 
-            List<? extends INode> nodes = data.searchNodes(bbox);
-            List<? extends IWay<?>> ways = data.searchWays(bbox);
-            List<? extends IRelation<?>> relations = data.searchRelations(bbox);
+            boolean useCache = renderTileCache != null && isTilingSupported();
+            // cached tiles also contain the primitives outside of the view
+            BBox searchBox = useCache ? mapState.getViewArea(getCachedTileArea()).getLatLonBoundsBox().toBBox() : bbox;
+            List<? extends INode> nodes = data.searchNodes(searchBox);
+            List<? extends IWay<?>> ways = data.searchWays(searchBox);
+            List<? extends IRelation<?>> relations = data.searchRelations(searchBox);
 
             final List<StyleRecord> allStyleElems = new ArrayList<>(nodes.size()+ways.size()+relations.size());
 
@@ -1663,8 +1728,14 @@ public class StyledMapRenderer extends AbstractMapRenderer {
                 return;
             }
 
-            for (StyleRecord record : sorted) {
-                paintRecord(record);
+            if (useCache) {
+                paintCached(sorted, bbox);
+            } else if (PREFERENCE_TILED_RENDERING.get() && isTilingSupported()) {
+                paintTiled(sorted, renderVirtualNodes);
+            } else {
+                for (StyleRecord record : sorted) {
+                    paintRecord(record);
+                }
             }
 
             drawVirtualNodes(data, bbox);
@@ -1680,6 +1751,347 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         }
     }
 
+    /**
+     * Paints the records in tiles of the view, each one on its own thread, and the labels on the whole view.
+     * <p>
+     * The records are painted in the same order as {@link #paintRecord}, so the labels and the records painted above them
+     * are painted in a final pass on the whole view, after the tiles have been composited. They are neither cut at the
+     * tile borders nor painted twice. Short runs of records between labels are not worth to be tiled.
+     * @param sorted the sorted records
+     * @param renderVirtualNodes whether virtual nodes are rendered, to compute the settings of the tile renderers
+     */
+    private void paintTiled(StyleRecord[] sorted, boolean renderVirtualNodes) {
+        int start = 0;
+        while (start < sorted.length) {
+            int end = start;
+            while (end < sorted.length && !isLabel(sorted[end])) {
+                end++;
+            }
+            if (end - start >= MIN_TILED_RECORDS) {
+                paintTiles(Arrays.asList(sorted).subList(start, end), renderVirtualNodes);
+            } else {
+                for (int i = start; i < end; i++) {
+                    paintRecord(sorted[i]);
+                }
+            }
+            while (end < sorted.length && isLabel(sorted[end])) {
+                paintRecord(sorted[end++]);
+            }
+            start = end;
+        }
+    }
+
+    private static boolean isLabel(StyleRecord record) {
+        return record.style instanceof TextElement || record.style instanceof BoxTextElement;
+    }
+
+    /**
+     * Paints the records in tiles of the view, each one on its own thread, then composites the tiles.
+     * <p>
+     * Each tile gets the records whose primitive, enlarged by the extent of the style, intersects it,
+     * in the same order as the whole view.
+     * @param records the sorted records, without labels
+     * @param renderVirtualNodes whether virtual nodes are rendered, to compute the settings of the tile renderers
+     */
+    private void paintTiles(List<StyleRecord> records, boolean renderVirtualNodes) {
+        Rectangle area = getPaintedArea();
+        int tileSize = Math.max(16, PREFERENCE_TILE_SIZE.get());
+        int columns = Math.max(0, (area.width + tileSize - 1) / tileSize);
+        int rows = Math.max(0, (area.height + tileSize - 1) / tileSize);
+        List<List<StyleRecord>> tileRecords = splitInTiles(records, area.x, area.y, tileSize, columns, rows);
+
+        List<TilePainter> tiles = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                List<StyleRecord> inTile = tileRecords.get(row * columns + column);
+                if (!inTile.isEmpty()) {
+                    int x = area.x + column * tileSize;
+                    int y = area.y + row * tileSize;
+                    tiles.add(new TilePainter(new Rectangle(x, y, Math.min(tileSize, area.x + area.width - x),
+                            Math.min(tileSize, area.y + area.height - y)), inTile, null, renderVirtualNodes));
+                }
+            }
+        }
+        paintInParallel(tiles);
+        for (TilePainter tile : tiles) {
+            g.drawImage(tile.image, tile.bounds.x, tile.bounds.y, null);
+        }
+    }
+
+    /**
+     * Paints the records below the first label with the tiles of the render cache, then paints the other records.
+     * @param sorted the sorted records
+     * @param bbox the area to paint. The records outside of it are only painted in the tiles
+     */
+    private void paintCached(StyleRecord[] sorted, BBox bbox) {
+        int firstLabel = 0;
+        while (firstLabel < sorted.length && !isLabel(sorted[firstLabel])) {
+            firstLabel++;
+        }
+        renderTileCache.invalidateChanged(highlightWaySegments);
+
+        Rectangle area = getCachedTileArea();
+        int tileSize = RenderTileCache.TILE_SIZE;
+        int columns = area.width / tileSize;
+        int rows = area.height / tileSize;
+        Point2D origin = getCacheOrigin();
+        int minX = (int) Math.floorDiv(area.x - (long) origin.getX(), tileSize);
+        int minY = (int) Math.floorDiv(area.y - (long) origin.getY(), tileSize);
+        int flags = (isInactiveMode ? 1 : 0) | (useWiderHighlight ? 2 : 0);
+        List<List<StyleRecord>> tileRecords = splitInTiles(Arrays.asList(sorted).subList(0, firstLabel),
+                area.x, area.y, tileSize, columns, rows);
+
+        List<TilePainter> painters = new ArrayList<>();
+        List<RenderTileCache.TileKey> keys = new ArrayList<>();
+        List<BitSet> highlights = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                List<StyleRecord> records = tileRecords.get(row * columns + column);
+                if (records.isEmpty()) {
+                    continue;
+                }
+                BitSet highlighted = new BitSet();
+                for (int i = 0; i < records.size(); i++) {
+                    if (records.get(i).osm.isHighlighted()) {
+                        highlighted.set(i);
+                    }
+                }
+                RenderTileCache.TileKey key = new RenderTileCache.TileKey(scale, flags, minX + column, minY + row);
+                Rectangle bounds = new Rectangle(area.x + column * tileSize, area.y + row * tileSize, tileSize, tileSize);
+                BufferedImage image = renderTileCache.get(key, records, highlighted);
+                if (image != null) {
+                    g.drawImage(image, bounds.x, bounds.y, null);
+                } else {
+                    // the tile does not depend on the current size and position of the map view
+                    painters.add(new TilePainter(bounds, records, mapState.usingViewArea(bounds), false));
+                    keys.add(key);
+                    highlights.add(highlighted);
+                }
+            }
+        }
+        paintInParallel(painters);
+        for (int i = 0; i < painters.size(); i++) {
+            TilePainter tile = painters.get(i);
+            g.drawImage(tile.image, tile.bounds.x, tile.bounds.y, null);
+            if (tile.renderer.temporaryImagePainted) {
+                renderTileCache.skip();
+            } else {
+                renderTileCache.put(keys.get(i), tile.image, tile.records, highlights.get(i));
+            }
+        }
+
+        for (int i = firstLabel; i < sorted.length; i++) {
+            // the labels of the primitives outside of the view would not be painted without the cache
+            if (sorted[i].osm.getBBox().intersects(bbox)) {
+                paintRecord(sorted[i]);
+            }
+        }
+    }
+
+    /**
+     * Determines if the records can be painted in tiles on the graphics context.
+     * @return {@code true} if painting in tiles gives the same result as painting the whole view
+     */
+    private boolean isTilingSupported() {
+        AffineTransform transform = g.getTransform();
+        return transform != null && transform.isIdentity() && AlphaComposite.SrcOver.equals(g.getComposite());
+    }
+
+    /**
+     * Returns the part of the view to paint.
+     * @return the part of the view to paint, in view coordinates
+     */
+    private Rectangle getPaintedArea() {
+        Rectangle area = new Rectangle(0, 0, (int) Math.ceil(mapState.getViewWidth()), (int) Math.ceil(mapState.getViewHeight()));
+        Rectangle clip = g.getClipBounds();
+        return clip != null ? area.intersection(clip) : area;
+    }
+
+    /**
+     * Returns the position of the east/north origin in the view. The view is aligned so that it is (almost) an integer.
+     * @return the origin of the grid of the render cache, in view coordinates
+     */
+    private Point2D getCacheOrigin() {
+        Point2D origin = mapState.getPointFor(new EastNorth(0, 0)).getInView();
+        return new Point2D.Double(Math.round(origin.getX()), Math.round(origin.getY()));
+    }
+
+    /**
+     * Returns the smallest area made of tiles of the render cache covering the painted area.
+     * @return the area covered by the tiles, in view coordinates
+     */
+    private Rectangle getCachedTileArea() {
+        Rectangle area = getPaintedArea();
+        Point2D origin = getCacheOrigin();
+        long ox = (long) origin.getX();
+        long oy = (long) origin.getY();
+        int tileSize = RenderTileCache.TILE_SIZE;
+        if (area.isEmpty()) {
+            return new Rectangle();
+        }
+        long minX = Math.floorDiv(area.x - ox, tileSize);
+        long minY = Math.floorDiv(area.y - oy, tileSize);
+        long maxX = Math.floorDiv(area.x + area.width - 1 - ox, tileSize);
+        long maxY = Math.floorDiv(area.y + area.height - 1 - oy, tileSize);
+        return new Rectangle((int) (ox + minX * tileSize), (int) (oy + minY * tileSize),
+                (int) (maxX - minX + 1) * tileSize, (int) (maxY - minY + 1) * tileSize);
+    }
+
+    /**
+     * Splits the records among the tiles they intersect, in the same order.
+     * @param records the records
+     * @param x the x coordinate of the first tile in the view
+     * @param y the y coordinate of the first tile in the view
+     * @param tileSize the size of the tiles
+     * @param columns the number of columns of tiles
+     * @param rows the number of rows of tiles
+     * @return the records of each tile, row by row
+     */
+    private List<List<StyleRecord>> splitInTiles(List<StyleRecord> records, int x, int y, int tileSize, int columns, int rows) {
+        List<List<StyleRecord>> tileRecords = new ArrayList<>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            tileRecords.add(new ArrayList<>());
+        }
+        for (StyleRecord record : records) {
+            Rectangle2D bounds = getBoundsInView(record);
+            int minColumn = 0;
+            int maxColumn = columns - 1;
+            int minRow = 0;
+            int maxRow = rows - 1;
+            if (bounds != null) {
+                minColumn = Math.max(minColumn, (int) Math.floor((bounds.getMinX() - x) / tileSize));
+                maxColumn = Math.min(maxColumn, (int) Math.floor((bounds.getMaxX() - x) / tileSize));
+                minRow = Math.max(minRow, (int) Math.floor((bounds.getMinY() - y) / tileSize));
+                maxRow = Math.min(maxRow, (int) Math.floor((bounds.getMaxY() - y) / tileSize));
+            }
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int column = minColumn; column <= maxColumn; column++) {
+                    tileRecords.get(row * columns + column).add(record);
+                }
+            }
+        }
+        return tileRecords;
+    }
+
+    private static void paintInParallel(List<TilePainter> tiles) {
+        if (THREAD_POOL != null) {
+            THREAD_POOL.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tiles);
+                }
+            });
+        } else {
+            tiles.forEach(TilePainter::compute);
+        }
+    }
+
+    /**
+     * Returns the area of the view in which the given record may paint.
+     * @param record the style record
+     * @return the area of the view, or {@code null} if unknown
+     */
+    private Rectangle2D getBoundsInView(StyleRecord record) {
+        BBox box = record.osm.getBBox();
+        if (box == null || !box.isValid()) {
+            return null;
+        }
+        Rectangle2D bounds = null;
+        for (LatLon ll : new LatLon[] {box.getTopLeft(), box.getBottomRight(),
+                new LatLon(box.getTopLeftLat(), box.getBottomRightLon()), new LatLon(box.getBottomRightLat(), box.getTopLeftLon())}) {
+            MapViewPoint p = mapState.getPointFor(ll);
+            if (bounds == null) {
+                bounds = new Rectangle2D.Double(p.getInViewX(), p.getInViewY(), 0, 0);
+            } else {
+                bounds.add(p.getInViewX(), p.getInViewY());
+            }
+        }
+        double margin = getMarginInView(record.style);
+        bounds.setRect(bounds.getX() - margin, bounds.getY() - margin, bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin);
+        return bounds;
+    }
+
+    /**
+     * Returns how far from its primitive, in pixels, the given style may paint.
+     * @param style the style
+     * @return the margin around the primitive, in pixels
+     */
+    private double getMarginInView(StyleElement style) {
+        double margin = TILE_MARGIN.get();
+        if (style instanceof LineElement) {
+            LineElement line = (LineElement) style;
+            margin += Math.abs(line.offset);
+            if (line.realWidth > 0) {
+                margin += 100 * line.realWidth / circum;
+            }
+        } else if (style instanceof NodeElement) {
+            NodeElement node = (NodeElement) style;
+            if (node.mapImage != null) {
+                margin += Math.max(node.mapImage.getWidth(), node.mapImage.getHeight());
+            } else if (node.symbol != null) {
+                margin += node.symbol.size;
+            }
+        } else if (style instanceof RepeatImageElement) {
+            RepeatImageElement repeat = (RepeatImageElement) style;
+            margin += Math.abs(repeat.offset) + repeat.pattern.getHeight();
+        }
+        return margin;
+    }
+
+    /**
+     * Paints the records of one tile into its own image, with its own renderer.
+     */
+    private final class TilePainter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Rectangle bounds;
+        private final transient List<StyleRecord> records;
+        private final transient BufferedImage image;
+        private final transient Graphics2D graphics;
+        private final transient StyledMapRenderer renderer;
+
+        /**
+         * Constructs a new {@code TilePainter}.
+         * @param bounds the bounds of the tile, in view coordinates
+         * @param records the records to paint
+         * @param tileState the state of the map view showing exactly the tile, or {@code null} to paint the tile
+         * with the state of the map view
+         * @param renderVirtualNodes whether virtual nodes are rendered, to compute the settings of the renderer
+         */
+        TilePainter(Rectangle bounds, List<StyleRecord> records, MapViewState tileState, boolean renderVirtualNodes) {
+            this.bounds = bounds;
+            this.records = records;
+            image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB_PRE);
+            graphics = image.createGraphics();
+            graphics.setRenderingHints(g.getRenderingHints());
+            if (tileState == null) {
+                graphics.translate(-bounds.x, -bounds.y);
+                graphics.clip(bounds);
+                renderer = new StyledMapRenderer(graphics, nc, isInactiveMode);
+            } else {
+                renderer = new StyledMapRenderer(graphics, nc, tileState, isInactiveMode);
+            }
+            renderer.styles = styles;
+            renderer.useWiderHighlight = useWiderHighlight;
+            renderer.doSlowOperations = doSlowOperations;
+            renderer.getSettings(renderVirtualNodes);
+            renderer.highlightWaySegments = highlightWaySegments;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                for (StyleRecord record : records) {
+                    renderer.paintRecord(record);
+                }
+            } finally {
+                graphics.dispose();
+            }
+        }
+    }
+
     private void paintRecord(StyleRecord record) {
         try {
             record.paintPrimitive(paintSettings, this);
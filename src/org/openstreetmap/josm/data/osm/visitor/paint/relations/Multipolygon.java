@@ -272,7 +272,7 @@ public class Multipolygon {
         }
 
         private final Path2D.Double poly;
-        private Rectangle2D bounds;
+        private volatile Rectangle2D bounds;
         private final List<PolyData> inners;
 
         /**
@@ -382,10 +382,13 @@ public class Multipolygon {
          * @return The bounds
          */
         public Rectangle2D getBounds() {
-            if (bounds == null) {
-                bounds = poly.getBounds2D();
+            // may be called concurrently by the painting threads of the tiles
+            Rectangle2D b = bounds;
+            if (b == null) {
+                b = poly.getBounds2D();
+                bounds = b;
             }
-            return bounds;
+            return b;
         }
 
         /**
@@ -506,6 +509,11 @@ public class Multipolygon {
 
     private boolean incomplete;
 
+    /** The estimated memory used by this multipolygon in bytes, set by {@link MultipolygonCache} */
+    long estimatedSize;
+    /** The sequence number of the last access to this multipolygon through {@link MultipolygonCache} */
+    volatile long lastAccess;
+
     /**
      * Constructs a new {@code Multipolygon} from a relation.
      * @param r relation
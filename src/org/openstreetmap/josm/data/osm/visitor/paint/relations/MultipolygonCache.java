@@ -3,10 +3,16 @@ package org.openstreetmap.josm.data.osm.visitor.paint.relations;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 import org.openstreetmap.josm.data.osm.DataSelectionListener;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -25,6 +31,8 @@ import org.openstreetmap.josm.data.osm.event.SelectionEventManager;
 import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
 import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 import org.openstreetmap.josm.data.osm.visitor.paint.relations.Multipolygon.PolyData;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
 import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.data.projection.ProjectionChangeListener;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
@@ -34,19 +42,46 @@ import org.openstreetmap.josm.gui.layer.LayerManager.LayerChangeListener;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
 import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Pair;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * A memory cache for {@link Multipolygon} objects.
+ * <p>
+ * The multipolygons of the data sets are assembled in background when data layers are added and when their data
+ * changes a lot, so that they are usually cached before being painted. The estimated memory used by the cache is
+ * limited by {@link #MAX_SIZE}, the least recently used multipolygons being evicted first.
  * @since 4623
  */
 public final class MultipolygonCache implements DataSetListener, LayerChangeListener, ProjectionChangeListener, DataSelectionListener {
 
+    /**
+     * The maximum estimated memory used by the cached multipolygons, in megabytes.
+     */
+    public static final IntegerProperty MAX_SIZE = new IntegerProperty("mappaint.multipolygon.cache.max-size", 128);
+
+    /**
+     * Determines if the multipolygons of the data sets are assembled in background.
+     */
+    public static final BooleanProperty PREFETCH = new BooleanProperty("mappaint.multipolygon.cache.prefetch", true);
+
     private static final MultipolygonCache INSTANCE = new MultipolygonCache();
 
+    private static final ForkJoinPool THREAD_POOL = newForkJoinPool();
+
     private final Map<DataSet, Map<Relation, Multipolygon>> cache = new ConcurrentHashMap<>(); // see ticket 11833
 
     private final Collection<PolyData> selectedPolyData = new ArrayList<>();
 
+    private final Object evictionLock = new Object();
+    private final AtomicLong accessCounter = new AtomicLong();
+    private final AtomicLong estimatedSize = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong buildTime = new AtomicLong();
+
     private MultipolygonCache() {
         ProjectionRegistry.addProjectionChangeListener(this);
         SelectionEventManager.getInstance().addSelectionListener(this);
@@ -61,6 +96,16 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
         return INSTANCE;
     }
 
+    private static ForkJoinPool newForkJoinPool() {
+        try {
+            return Utils.newForkJoinPool(
+                    "mappaint.multipolygon.cache.numberOfThreads", "multipolygon-cache-%d", Thread.MIN_PRIORITY);
+        } catch (SecurityException e) {
+            Logging.log(Logging.LEVEL_ERROR, "Unable to create new ForkJoinPool", e);
+            return null;
+        }
+    }
+
     /**
      * Gets a multipolygon from cache.
      * @param r The multipolygon relation
@@ -81,27 +126,222 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
     public Multipolygon get(Relation r, boolean forceRefresh) {
         Multipolygon multipolygon = null;
         if (r != null && r.getDataSet() != null) {
-            Map<Relation, Multipolygon> map2 = cache.get(r.getDataSet());
-            if (map2 == null) {
-                map2 = new ConcurrentHashMap<>();
-                cache.put(r.getDataSet(), map2);
-            }
-            multipolygon = map2.get(r);
-            if (multipolygon == null || forceRefresh) {
-                multipolygon = new Multipolygon(r);
-                map2.put(r, multipolygon);
-                synchronized (this) {
-                    for (PolyData pd : multipolygon.getCombinedPolygons()) {
-                        if (pd.isSelected()) {
-                            selectedPolyData.add(pd);
-                        }
+            DataSet ds = r.getDataSet();
+            // the map may be requested concurrently by the painting threads and the background tasks
+            Map<Relation, Multipolygon> map2 = cache.computeIfAbsent(ds, k -> new ConcurrentHashMap<>());
+            Multipolygon built = null;
+            if (forceRefresh) {
+                built = build(r);
+                multipolygon = built;
+                put(map2, r, multipolygon);
+            } else {
+                multipolygon = map2.get(r);
+                if (multipolygon == null) {
+                    // the painting threads of adjacent tiles may request the same multipolygon at once, build it only once
+                    Multipolygon[] result = new Multipolygon[1];
+                    multipolygon = map2.computeIfAbsent(r, k -> result[0] = build(k));
+                    built = result[0];
+                    if (built != null) {
+                        added(null, built);
                     }
                 }
             }
+            if (built != null) {
+                misses.incrementAndGet();
+                // do not keep counting a multipolygon put into the map of a data set cleared in the meantime
+                if (cache.get(ds) != map2) {
+                    remove(map2, r);
+                }
+            } else {
+                hits.incrementAndGet();
+                multipolygon.lastAccess = accessCounter.incrementAndGet();
+            }
         }
         return multipolygon;
     }
 
+    private Multipolygon build(Relation r) {
+        long start = System.nanoTime();
+        Multipolygon multipolygon = new Multipolygon(r);
+        buildTime.addAndGet(System.nanoTime() - start);
+        multipolygon.estimatedSize = estimateSize(multipolygon);
+        multipolygon.lastAccess = accessCounter.incrementAndGet();
+        return multipolygon;
+    }
+
+    private void put(Map<Relation, Multipolygon> map, Relation r, Multipolygon multipolygon) {
+        added(map.put(r, multipolygon), multipolygon);
+    }
+
+    /**
+     * Accounts for a multipolygon put into the cache. Must not be called while computing an entry of the maps,
+     * as it may evict other entries.
+     * @param old the multipolygon replaced by the new one, or {@code null}
+     * @param multipolygon the new multipolygon
+     */
+    private void added(Multipolygon old, Multipolygon multipolygon) {
+        if (old != null) {
+            estimatedSize.addAndGet(-old.estimatedSize);
+        }
+        synchronized (this) {
+            for (PolyData pd : multipolygon.getCombinedPolygons()) {
+                if (pd.isSelected()) {
+                    selectedPolyData.add(pd);
+                }
+            }
+        }
+        if (estimatedSize.addAndGet(multipolygon.estimatedSize) > getMaxSize()) {
+            evict();
+        }
+    }
+
+    private void remove(Map<Relation, Multipolygon> map, Relation r) {
+        Multipolygon old = map.remove(r);
+        if (old != null) {
+            estimatedSize.addAndGet(-old.estimatedSize);
+        }
+    }
+
+    private static long getMaxSize() {
+        return MAX_SIZE.get() * 1024L * 1024L;
+    }
+
+    /**
+     * Estimates the memory used by a multipolygon, mainly by the nodes and the paths of its polygons.
+     * @param multipolygon the multipolygon
+     * @return the estimated size in bytes
+     */
+    private static long estimateSize(Multipolygon multipolygon) {
+        long size = 128 + 8L * (multipolygon.getOuterWays().size() + multipolygon.getInnerWays().size());
+        for (PolyData pd : multipolygon.getCombinedPolygons()) {
+            size += estimateSize(pd);
+        }
+        return size;
+    }
+
+    private static long estimateSize(PolyData pd) {
+        // a reference to the node, and the coordinates and type of a segment of the path
+        long size = 128 + 32L * pd.getNodes().size();
+        for (PolyData inner : pd.getInners()) {
+            size += estimateSize(inner);
+        }
+        return size;
+    }
+
+    /**
+     * Evicts the least recently used multipolygons, until the cache uses three quarters of its maximum size.
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            long maxSize = getMaxSize();
+            if (estimatedSize.get() <= maxSize) {
+                return;
+            }
+            List<Pair<Map<Relation, Multipolygon>, Map.Entry<Relation, Multipolygon>>> entries = new ArrayList<>();
+            for (Map<Relation, Multipolygon> map : cache.values()) {
+                for (Map.Entry<Relation, Multipolygon> e : map.entrySet()) {
+                    entries.add(new Pair<>(map, e));
+                }
+            }
+            entries.sort(Comparator.comparingLong(p -> p.b.getValue().lastAccess));
+            for (Pair<Map<Relation, Multipolygon>, Map.Entry<Relation, Multipolygon>> p : entries) {
+                if (estimatedSize.get() <= maxSize / 4 * 3) {
+                    break;
+                }
+                if (p.a.remove(p.b.getKey(), p.b.getValue())) {
+                    estimatedSize.addAndGet(-p.b.getValue().estimatedSize);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Assembles in background the multipolygons of a data set which are not cached yet.
+     * @param ds the data set
+     * @return the background task, or {@code null} if the multipolygons are not assembled in background
+     */
+    public ForkJoinTask<?> prefetch(DataSet ds) {
+        if (THREAD_POOL == null || !PREFETCH.get()) {
+            return null;
+        }
+        // the map is created by the caller, the task only fills it while the data set is not cleared
+        Map<Relation, Multipolygon> map2 = cache.computeIfAbsent(ds, k -> new ConcurrentHashMap<>());
+        return THREAD_POOL.submit(() -> {
+            List<Relation> relations;
+            Lock lock = ds.getReadLock();
+            lock.lock();
+            try {
+                relations = new ArrayList<>(ds.getRelations());
+            } finally {
+                lock.unlock();
+            }
+            // a parallel stream started from a pool runs in this pool
+            relations.parallelStream().forEach(r -> prefetch(ds, map2, r));
+        });
+    }
+
+    private void prefetch(DataSet ds, Map<Relation, Multipolygon> map2, Relation r) {
+        // build under the read lock, so that the multipolygon is cached before any change which would invalidate it
+        Lock lock = ds.getReadLock();
+        lock.lock();
+        try {
+            // do not put back a data set cleared in the meantime, for instance when its layer has been removed
+            if (cache.get(ds) == map2 && r.getDataSet() == ds && !r.isDeleted() && !r.isIncomplete() && r.isMultipolygon()
+                    && !map2.containsKey(r)) {
+                put(map2, r, build(r));
+                if (cache.get(ds) != map2) {
+                    remove(map2, r);
+                }
+            }
+        } catch (RuntimeException e) {
+            // the multipolygon will be built again when needed
+            Logging.debug(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of multipolygons got from the cache.
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of multipolygons which had to be built when requested, as they were not in the cache.
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of multipolygons evicted from the cache to limit its size.
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the total time spent to build multipolygons, in the foreground and in background.
+     * @return the build time in milliseconds
+     */
+    public long getBuildTime() {
+        return TimeUnit.NANOSECONDS.toMillis(buildTime.get());
+    }
+
+    /**
+     * Returns the estimated memory used by the cached multipolygons.
+     * @return the estimated size in bytes
+     */
+    public long getEstimatedSize() {
+        return estimatedSize.get();
+    }
+
     /**
      * Clears the cache for the given dataset.
      * @param ds the data set
@@ -109,7 +349,9 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
     public void clear(DataSet ds) {
         Map<Relation, Multipolygon> map2 = cache.remove(ds);
         if (map2 != null) {
-            map2.clear();
+            for (Relation r : map2.keySet()) {
+                remove(map2, r);
+            }
         }
     }
 
@@ -117,7 +359,9 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
      * Clears the whole cache.
      */
     public void clear() {
-        cache.clear();
+        for (DataSet ds : cache.keySet()) {
+            clear(ds);
+        }
     }
 
     private Collection<Map<Relation, Multipolygon>> getMapsFor(DataSet ds) {
@@ -171,7 +415,7 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
         return maps;
     }
 
-    private static void processEvent(AbstractDatasetChangedEvent event, Relation r, Collection<Map<Relation, Multipolygon>> maps) {
+    private void processEvent(AbstractDatasetChangedEvent event, Relation r, Collection<Map<Relation, Multipolygon>> maps) {
         if (event instanceof NodeMovedEvent || event instanceof WayNodesChangedEvent) {
             dispatchEvent(event, r, maps);
         } else if (event instanceof PrimitivesRemovedEvent) {
@@ -184,7 +428,7 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
         }
     }
 
-    private static void dispatchEvent(AbstractDatasetChangedEvent event, Relation r, Collection<Map<Relation, Multipolygon>> maps) {
+    private void dispatchEvent(AbstractDatasetChangedEvent event, Relation r, Collection<Map<Relation, Multipolygon>> maps) {
         for (Map<Relation, Multipolygon> map : maps) {
             Multipolygon m = map.get(r);
             if (m != null) {
@@ -204,9 +448,9 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
         }
     }
 
-    private static void removeMultipolygonFrom(Relation r, Collection<Map<Relation, Multipolygon>> maps) {
+    private void removeMultipolygonFrom(Relation r, Collection<Map<Relation, Multipolygon>> maps) {
         for (Map<Relation, Multipolygon> map : maps) {
-            map.remove(r);
+            remove(map, r);
         }
         // Erase style cache for polygon members
         for (OsmPrimitive member : r.getMemberPrimitivesList()) {
@@ -265,15 +509,20 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
                     // OR when undoing a move of a large number of nodes (see #7195),
                     // without having received NodeMovedEvent
                     // This ensures concerned multipolygons will be correctly redrawn
-                    map.remove(p);
+                    remove(map, (Relation) p);
                 }
             }
         }
+        if (maps != null) {
+            prefetch(event.getDataset());
+        }
     }
 
     @Override
     public void layerAdded(LayerAddEvent e) {
-        // Do nothing
+        if (e.getAddedLayer() instanceof OsmDataLayer) {
+            prefetch(((OsmDataLayer) e.getAddedLayer()).getDataSet());
+        }
     }
 
     @Override
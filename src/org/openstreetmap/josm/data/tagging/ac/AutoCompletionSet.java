@@ -1,10 +1,14 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.data.tagging.ac;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
 
@@ -20,43 +24,47 @@ public class AutoCompletionSet extends TreeSet<AutoCompletionItem> {
 
     private static final long serialVersionUID = 1L;
 
-    // Keep a separate tree set of values for determining fast if a value is present
-    private final Set<String> values = new TreeSet<>();
+    // Keep a separate sorted map of the items by value, for determining fast if a value is present and for prefix lookups
+    private final NavigableMap<String, AutoCompletionItem> values = new TreeMap<>();
 
     @Override
     public boolean add(AutoCompletionItem e) {
         // Is there already an item for the value?
-        String value = e.getValue();
-        if (contains(value)) { // Fast
-            Optional<AutoCompletionItem> result = stream().filter(i -> i.getValue().equals(e.getValue())).findFirst(); // Slow
-            if (result.isPresent()) {
-                AutoCompletionItem item = result.get();
-                // yes: merge priorities
-                AutoCompletionPriority newPriority = item.getPriority().mergeWith(e.getPriority());
-                // if needed, remove/re-add the updated item to maintain set ordering
-                if (!item.getPriority().equals(newPriority)) {
-                    super.remove(item);
-                    item.setPriority(newPriority);
-                    return super.add(item);
-                } else {
-                    return false;
-                }
+        AutoCompletionItem item = values.get(e.getValue());
+        if (item != null) {
+            // yes: merge priorities
+            AutoCompletionPriority newPriority = item.getPriority().mergeWith(e.getPriority());
+            // if needed, remove/re-add the updated item to maintain set ordering
+            if (!item.getPriority().equals(newPriority)) {
+                super.remove(item);
+                item.setPriority(newPriority);
+                return super.add(item);
             } else {
-                // Should never happen if values is correctly synchronized with this set
-                throw new IllegalStateException(value);
+                return false;
             }
         } else {
-            values.add(value);
+            values.put(e.getValue(), e);
             return super.add(e);
         }
     }
 
+    @Override
+    public boolean addAll(Collection<? extends AutoCompletionItem> c) {
+        // do not let TreeSet bypass add() when this set is empty
+        boolean modified = false;
+        for (AutoCompletionItem e : c) {
+            modified |= add(e);
+        }
+        return modified;
+    }
+
     @Override
     public boolean remove(Object o) {
-        if (o instanceof AutoCompletionItem) {
+        if (o instanceof AutoCompletionItem && super.remove(o)) {
             values.remove(((AutoCompletionItem) o).getValue());
+            return true;
         }
-        return super.remove(o);
+        return false;
     }
 
     @Override
@@ -100,7 +108,25 @@ public class AutoCompletionSet extends TreeSet<AutoCompletionItem> {
      * @return true, if value is in the list; false, otherwise
      */
     public boolean contains(String value) {
-        return values.contains(value);
+        return values.containsKey(value);
+    }
+
+    /**
+     * Returns the items whose value starts with the given prefix, without testing all the items.
+     *
+     * @param prefix the prefix of the values
+     * @return the items whose value starts with {@code prefix}, in the order of this set
+     */
+    public List<AutoCompletionItem> getItemsStartingWith(String prefix) {
+        List<AutoCompletionItem> result = new ArrayList<>();
+        for (Map.Entry<String, AutoCompletionItem> e : values.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix)) {
+                break;
+            }
+            result.add(e.getValue());
+        }
+        Collections.sort(result);
+        return result;
     }
 
     /**
@@ -109,6 +135,7 @@ public class AutoCompletionSet extends TreeSet<AutoCompletionItem> {
      * @return {@code true} if an element was removed
      */
     public boolean remove(String key) {
-        return values.remove(key) && removeIf(i -> i.getValue().equals(key));
+        AutoCompletionItem item = values.remove(key);
+        return item != null && super.remove(item);
     }
 }
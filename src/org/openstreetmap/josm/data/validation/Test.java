@@ -224,6 +224,20 @@ public class Test implements OsmPrimitiveVisitor, Comparable<Test> {
         return p.isUsable() && (!(p instanceof Way) || (((Way) p).getNodesCount() > 1)); // test only Ways with at least 2 nodes
     }
 
+    /**
+     * Determines if the primitives can be visited by several threads at the same time.
+     * <p>
+     * This is the case if the visit methods only read the visited primitives and the configuration of the test,
+     * if their only side effect is to add errors to {@link #errors}, and if the errors found for a primitive
+     * do not depend on the other visited primitives. {@link #visit(Collection)} is not called when visiting in parallel.
+     * Thread-safe tests may also run at the same time as other tests, the other tests being run one after another.
+     * @return {@code true} if the primitives can be visited concurrently. {@code false} by default
+     * @see ValidationRunner
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     @Override
     public void visit(Node n) {
         // To be overridden in subclasses
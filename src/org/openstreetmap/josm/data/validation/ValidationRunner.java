@@ -0,0 +1,275 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Runs a collection of validation tests against a collection of primitives.
+ * <p>
+ * The tests declaring themselves {@linkplain Test#isThreadSafe() thread-safe} are run concurrently on a fork-join pool,
+ * their primitives being also split between several threads. The other tests are run one after another in the calling
+ * thread, meanwhile, as they may share state with each other.
+ * The errors are returned in the same order as if the tests had been run one after another: test by test,
+ * in the order of the given collection, and primitive by primitive for each test.
+ * The tests which are not started yet when the progress monitor is canceled are skipped.
+ * @see Test#isThreadSafe()
+ */
+public class ValidationRunner {
+
+    private static final ForkJoinPool THREAD_POOL = newForkJoinPool();
+
+    /** Minimal number of primitives visited by a single task of a thread-safe test */
+    private static final int MIN_CHUNK_SIZE = 256;
+
+    private final List<Test> tests;
+    private final ForkJoinPool pool;
+
+    private static ForkJoinPool newForkJoinPool() {
+        try {
+            return Utils.newForkJoinPool("validator.numberOfThreads", "validator-%d", Thread.NORM_PRIORITY);
+        } catch (SecurityException e) {
+            Logging.log(Logging.LEVEL_ERROR, "Unable to create new ForkJoinPool", e);
+            return null;
+        }
+    }
+
+    /**
+     * Constructs a new {@code ValidationRunner}.
+     * @param tests the tests to run. They must be initialized, and configured with {@link Test#setPartialSelection}
+     * and {@link Test#setBeforeUpload} as needed
+     */
+    public ValidationRunner(Collection<Test> tests) {
+        this(tests, THREAD_POOL);
+    }
+
+    /**
+     * Constructs a new {@code ValidationRunner} using the given pool.
+     * @param tests the tests to run
+     * @param pool the fork-join pool used to run the tests, or {@code null} to run them sequentially
+     */
+    ValidationRunner(Collection<Test> tests, ForkJoinPool pool) {
+        this.tests = new ArrayList<>(tests);
+        this.pool = pool;
+    }
+
+    /**
+     * Runs the tests against the given primitives.
+     * @param primitives the primitives to validate
+     * @param progressMonitor the progress monitor, which must be in a task. Can be {@code null}
+     * @return the errors found by all tests, in a deterministic order. If the progress monitor is canceled,
+     * only the errors of the tests started before are returned
+     */
+    public List<TestError> run(Collection<OsmPrimitive> primitives, ProgressMonitor progressMonitor) {
+        List<OsmPrimitive> selection = new ArrayList<>(primitives);
+        List<TestTask> tasks = new ArrayList<>(tests.size());
+        List<TestTask> threadSafeTasks = new ArrayList<>();
+        List<TestTask> otherTasks = new ArrayList<>();
+        if (progressMonitor != null) {
+            progressMonitor.setTicksCount(tests.size() * selection.size());
+        }
+        for (Test test : tests) {
+            // sub task monitors must be created in order, before the tests are started
+            TestTask task = new TestTask(test, selection, pool, progressMonitor, tasks.size() + 1, tests.size());
+            tasks.add(task);
+            (pool != null && test.isThreadSafe() ? threadSafeTasks : otherTasks).add(task);
+        }
+        ForkJoinTask<?> threadSafeRun = null;
+        if (!threadSafeTasks.isEmpty()) {
+            threadSafeRun = pool.submit(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(threadSafeTasks);
+                }
+            });
+        }
+        try {
+            otherTasks.forEach(TestTask::compute);
+        } finally {
+            if (threadSafeRun != null) {
+                threadSafeRun.quietlyJoin();
+            }
+        }
+        if (threadSafeRun != null) {
+            // rethrows the exception of a thread-safe test, if any
+            threadSafeRun.join();
+        }
+        List<TestError> errors = new ArrayList<>(200);
+        for (TestTask task : tasks) {
+            errors.addAll(task.errors);
+        }
+        return errors;
+    }
+
+    /**
+     * Runs a single test.
+     */
+    private static final class TestTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Test test;
+        private final transient List<OsmPrimitive> selection;
+        private final transient ForkJoinPool pool;
+        private final transient ProgressMonitor progressMonitor;
+        private final int testNumber;
+        private final int testCount;
+        private transient List<TestError> errors;
+
+        TestTask(Test test, List<OsmPrimitive> selection, ForkJoinPool pool, ProgressMonitor parentMonitor,
+                int testNumber, int testCount) {
+            this.test = test;
+            this.selection = selection;
+            this.pool = pool;
+            this.progressMonitor = parentMonitor != null ? parentMonitor.createSubTaskMonitor(selection.size(), false) : null;
+            this.testNumber = testNumber;
+            this.testCount = testCount;
+        }
+
+        @Override
+        protected void compute() {
+            if (progressMonitor != null) {
+                if (progressMonitor.isCanceled()) {
+                    progressMonitor.invalidate();
+                    errors = Collections.emptyList();
+                    return;
+                }
+                // shown when the previous tests are finished, as the sub task monitors report in order
+                progressMonitor.setCustomText(tr("Test {0}/{1}: Starting {2}", testNumber, testCount, test.getName()));
+            }
+            test.startTest(progressMonitor);
+            if (test.isThreadSafe() && pool != null && pool.getParallelism() > 1 && selection.size() > MIN_CHUNK_SIZE) {
+                visitInParallel(Math.max(MIN_CHUNK_SIZE, selection.size() / (4 * pool.getParallelism())));
+            } else {
+                test.visit(selection);
+            }
+            test.endTest();
+            errors = test.getErrors();
+        }
+
+        private void visitInParallel(int chunkSize) {
+            test.progressMonitor.setTicksCount(selection.size());
+            List<ChunkTask> chunks = new ArrayList<>();
+            for (int fromIndex = 0; fromIndex < selection.size(); fromIndex += chunkSize) {
+                chunks.add(new ChunkTask(test, selection.subList(fromIndex, Math.min(fromIndex + chunkSize, selection.size()))));
+            }
+            List<TestError> previousErrors = test.errors;
+            ChunkErrors chunkErrors = new ChunkErrors();
+            test.errors = chunkErrors;
+            try {
+                for (ForkJoinTask<?> chunk : chunks) {
+                    chunk.fork();
+                }
+                for (ChunkTask chunk : chunks) {
+                    chunk.join();
+                }
+            } finally {
+                test.errors = previousErrors;
+            }
+            for (ChunkTask chunk : chunks) {
+                test.errors.addAll(chunk.errors);
+            }
+        }
+    }
+
+    /**
+     * Visits a part of the primitives with a thread-safe test.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Test test;
+        private final transient List<OsmPrimitive> chunk;
+        private final transient List<TestError> errors = new ArrayList<>();
+
+        ChunkTask(Test test, List<OsmPrimitive> chunk) {
+            this.test = test;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            ChunkErrors chunkErrors = (ChunkErrors) test.errors;
+            // the thread may be visiting another chunk if it executes this task while waiting for it
+            List<TestError> previous = chunkErrors.current.get();
+            chunkErrors.current.set(errors);
+            try {
+                int visited = 0;
+                for (OsmPrimitive p : chunk) {
+                    if (test.isCanceled()) {
+                        break;
+                    }
+                    if (test.isPrimitiveUsable(p)) {
+                        p.accept(test);
+                    }
+                    visited++;
+                }
+                synchronized (test.progressMonitor) {
+                    test.progressMonitor.worked(visited);
+                }
+            } finally {
+                chunkErrors.current.set(previous);
+            }
+        }
+    }
+
+    /**
+     * The error list of a thread-safe test while its primitives are visited in parallel.
+     * Errors are added to the list of the chunk being visited by the current thread, so that they can be merged in order.
+     */
+    private static final class ChunkErrors extends AbstractList<TestError> {
+        private final ThreadLocal<List<TestError>> current = new ThreadLocal<>();
+
+        private List<TestError> current() {
+            List<TestError> list = current.get();
+            if (list == null) {
+                throw new IllegalStateException("Errors of a test can only be accessed while visiting primitives");
+            }
+            return list;
+        }
+
+        @Override
+        public boolean add(TestError e) {
+            return current().add(e);
+        }
+
+        @Override
+        public void add(int index, TestError element) {
+            current().add(index, element);
+        }
+
+        @Override
+        public TestError get(int index) {
+            return current().get(index);
+        }
+
+        @Override
+        public TestError set(int index, TestError element) {
+            return current().set(index, element);
+        }
+
+        @Override
+        public TestError remove(int index) {
+            return current().remove(index);
+        }
+
+        @Override
+        public int size() {
+            return current().size();
+        }
+    }
+}
@@ -24,6 +24,11 @@ public class BarriersEntrances extends Test {
         super(tr("Barriers and entrances"), tr("Checks for errors in barriers and entrances."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void visit(Node n) {
         if (n.hasTag("barrier", "entrance") && !n.isOutsideDownloadArea()) {
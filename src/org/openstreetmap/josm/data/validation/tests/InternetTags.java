@@ -52,6 +52,11 @@ public class InternetTags extends Test {
         super(tr("Internet tags"), tr("Checks for errors in internet-related tags."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /**
      * Potentially validates a given primitive key against a given validator.
      * @param p The OSM primitive to test
@@ -35,6 +35,11 @@ public class Lanes extends Test.TagTest {
         super(tr("Lane tags"), tr("Test that validates ''lane:'' tags."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     static int getLanesCount(String value) {
         return value.isEmpty() ? 0 : value.replaceAll("[^|]", "").length() + 1;
     }
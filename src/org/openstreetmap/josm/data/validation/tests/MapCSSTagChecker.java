@@ -60,6 +60,7 @@ import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.GeneralSelector;
 import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.MapCSSParser;
 import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.ParseException;
 import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.TokenMgrError;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.CachedFile;
 import org.openstreetmap.josm.io.FileWatcher;
 import org.openstreetmap.josm.io.IllegalDataException;
@@ -130,6 +131,13 @@ public class MapCSSTagChecker extends Test.TagTest {
         super(tr("Tag checker (MapCSS based)"), tr("This test checks for errors in tag keys and values."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        // the checks are only read while visiting, each primitive is matched in its own environment,
+        // and the geometry caches of the selectors can be queried concurrently
+        return true;
+    }
+
     /**
      * Represents a fix to a validation test. The fixing {@link Command} can be obtained by {@link #createCommand(OsmPrimitive, Selector)}.
      */
@@ -240,6 +248,9 @@ public class MapCSSTagChecker extends Test.TagTest {
 
     final MultiMap<String, TagCheck> checks = new MultiMap<>();
 
+    /** The checks run by the current test, read by all the threads visiting the primitives without locking */
+    private volatile List<Set<TagCheck>> checksToRun;
+
     /**
      * Result of {@link TagCheck#readMapCSS}
      * @since 8936
@@ -713,7 +724,24 @@ public class MapCSSTagChecker extends Test.TagTest {
      */
     @Override
     public void check(OsmPrimitive p) {
-        errors.addAll(getErrorsForPrimitive(p, ValidatorPrefHelper.PREF_OTHER.get()));
+        List<Set<TagCheck>> currentChecks = checksToRun;
+        if (currentChecks != null) {
+            errors.addAll(getErrorsForPrimitive(p, ValidatorPrefHelper.PREF_OTHER.get(), currentChecks));
+        } else {
+            errors.addAll(getErrorsForPrimitive(p, ValidatorPrefHelper.PREF_OTHER.get()));
+        }
+    }
+
+    @Override
+    public synchronized void startTest(ProgressMonitor progressMonitor) {
+        super.startTest(progressMonitor);
+        checksToRun = new ArrayList<>(checks.values());
+    }
+
+    @Override
+    public void endTest() {
+        checksToRun = null;
+        super.endTest();
     }
 
     /**
@@ -43,6 +43,11 @@ public class NameMismatch extends Test.TagTest {
                     "and not a composition of ''name:*'' attributes, e.g., Italia - Italien - Italy."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /**
      * Report a missing translation.
      *
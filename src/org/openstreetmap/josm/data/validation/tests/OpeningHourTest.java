@@ -227,25 +227,28 @@ public class OpeningHourTest extends Test.TagTest {
             return Collections.emptyList();
         }
         final List<OpeningHoursTestError> errors = new ArrayList<>();
-        try {
-            final Object r = parse(value, key, mode, locale);
-            String prettifiedValue = null;
+        // the script engine is shared by all instances, which may be run concurrently by the validator
+        synchronized (ENGINE) {
             try {
-                prettifiedValue = getOpeningHoursPrettifiedValues(r);
-            } catch (ScriptException | NoSuchMethodException e) {
-                Logging.warn(e);
+                final Object r = parse(value, key, mode, locale);
+                String prettifiedValue = null;
+                try {
+                    prettifiedValue = getOpeningHoursPrettifiedValues(r);
+                } catch (ScriptException | NoSuchMethodException e) {
+                    Logging.warn(e);
+                }
+                for (final Object i : getOpeningHoursErrors(r)) {
+                    errors.add(new OpeningHoursTestError(getErrorMessage(key, i), Severity.ERROR, prettifiedValue));
+                }
+                for (final Object i : getOpeningHoursWarnings(r)) {
+                    errors.add(new OpeningHoursTestError(getErrorMessage(key, i), Severity.WARNING, prettifiedValue));
+                }
+                if (!ignoreOtherSeverity && errors.isEmpty() && prettifiedValue != null && !value.equals(prettifiedValue)) {
+                    errors.add(new OpeningHoursTestError(tr("opening_hours value can be prettified"), Severity.OTHER, prettifiedValue));
+                }
+            } catch (ScriptException | NoSuchMethodException ex) {
+                Logging.error(ex);
             }
-            for (final Object i : getOpeningHoursErrors(r)) {
-                errors.add(new OpeningHoursTestError(getErrorMessage(key, i), Severity.ERROR, prettifiedValue));
-            }
-            for (final Object i : getOpeningHoursWarnings(r)) {
-                errors.add(new OpeningHoursTestError(getErrorMessage(key, i), Severity.WARNING, prettifiedValue));
-            }
-            if (!ignoreOtherSeverity && errors.isEmpty() && prettifiedValue != null && !value.equals(prettifiedValue)) {
-                errors.add(new OpeningHoursTestError(tr("opening_hours value can be prettified"), Severity.OTHER, prettifiedValue));
-            }
-        } catch (ScriptException | NoSuchMethodException ex) {
-            Logging.error(ex);
         }
         return errors;
     }
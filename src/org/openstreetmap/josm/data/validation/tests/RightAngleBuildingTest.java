@@ -40,6 +40,11 @@ public class RightAngleBuildingTest extends Test {
                 tr("Checks for buildings that have angles close to right angle and are not orthogonalized."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void visit(Way w) {
         if (!w.isUsable() || !w.isClosed() || !isBuilding(w)) return;
@@ -168,6 +168,11 @@ public class TagChecker extends TagTest {
         super(tr("Tag checker"), tr("This test checks for errors in tag keys and values."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void initialize() throws IOException {
         initializeData();
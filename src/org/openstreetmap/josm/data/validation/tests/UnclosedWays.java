@@ -32,6 +32,11 @@ public class UnclosedWays extends Test {
         super(tr("Unclosed Ways"), tr("This tests if ways which should be circular are closed."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /**
      * A check performed by UnclosedWays test.
      * @since 6390
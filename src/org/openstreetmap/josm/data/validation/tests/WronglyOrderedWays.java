@@ -29,6 +29,11 @@ public class WronglyOrderedWays extends Test {
                 tr("This test checks the direction of water, land and coastline ways."));
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void visit(Way w) {
 
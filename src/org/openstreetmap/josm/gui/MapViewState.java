@@ -3,6 +3,7 @@ package org.openstreetmap.josm.gui;
 
 import java.awt.Container;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.Path2D;
@@ -357,6 +358,18 @@ public final class MapViewState implements Serializable {
         return new MapViewState(newScale, this);
     }
 
+    /**
+     * Creates a new state showing only the given part of the current view, at the same scale.
+     * @param rectangle The part of the view to show, in view coordinates.
+     * @return The new state. Its top left corner is the top left corner of the rectangle.
+     */
+    public MapViewState usingViewArea(Rectangle rectangle) {
+        Point inWindow = new Point(topLeftInWindow.x + rectangle.x, topLeftInWindow.y + rectangle.y);
+        Point onScreen = new Point(topLeftOnScreen.x + rectangle.x, topLeftOnScreen.y + rectangle.y);
+        return new MapViewState(projecting, rectangle.width, rectangle.height, scale,
+                getForView(rectangle.x, rectangle.y).getEastNorth(), inWindow, onScreen);
+    }
+
     /**
      * Creates a new state that is the same as the current state except for that it is using the location of the given component.
      * <p>
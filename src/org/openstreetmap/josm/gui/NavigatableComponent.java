@@ -1148,52 +1148,42 @@ public class NavigatableComponent extends JComponent implements Helpful {
         DataSet ds = MainApplication.getLayerManager().getActiveDataSet();
 
         if (ds != null) {
-            double snapDistanceSq = Config.getPref().getInt("mappaint.segment.snap-distance", 10);
+            int snapDistance = Config.getPref().getInt("mappaint.segment.snap-distance", 10);
+            double snapDistanceSq = snapDistance;
             snapDistanceSq *= snapDistanceSq;
 
-            for (Way w : ds.searchWays(getBBox(p, Config.getPref().getInt("mappaint.segment.snap-distance", 10)))) {
-                if (!predicate.test(w)) {
+            // the segments accepted below are closer to p than the snap distance, so only those of the bbox are tested
+            for (WaySegment ws : ds.searchWaySegments(getBBox(p, snapDistance), predicate)) {
+                Node lastN = ws.getFirstNode();
+                Node n = ws.getSecondNode();
+                if (lastN.isDeleted() || n.isDeleted()) { //FIXME: This shouldn't happen, raise exception?
                     continue;
                 }
-                Node lastN = null;
-                int i = -2;
-                for (Node n : w.getNodes()) {
-                    i++;
-                    if (n.isDeleted() || n.isIncomplete()) { //FIXME: This shouldn't happen, raise exception?
-                        continue;
-                    }
-                    if (lastN == null) {
-                        lastN = n;
-                        continue;
-                    }
 
-                    Point2D pA = getPoint2D(lastN);
-                    Point2D pB = getPoint2D(n);
-                    double c = pA.distanceSq(pB);
-                    double a = p.distanceSq(pB);
-                    double b = p.distanceSq(pA);
-
-                    /* perpendicular distance squared
-                     * loose some precision to account for possible deviations in the calculation above
-                     * e.g. if identical (A and B) come about reversed in another way, values may differ
-                     * -- zero out least significant 32 dual digits of mantissa..
-                     */
-                    double perDistSq = Double.longBitsToDouble(
-                            Double.doubleToLongBits(a - (a - b + c) * (a - b + c) / 4 / c)
-                            >> 32 << 32); // resolution in numbers with large exponent not needed here..
-
-                    if (perDistSq < snapDistanceSq && a < c + snapDistanceSq && b < c + snapDistanceSq) {
-                        List<WaySegment> wslist;
-                        if (nearestMap.containsKey(perDistSq)) {
-                            wslist = nearestMap.get(perDistSq);
-                        } else {
-                            wslist = new LinkedList<>();
-                            nearestMap.put(perDistSq, wslist);
-                        }
-                        wslist.add(new WaySegment(w, i));
+                Point2D pA = getPoint2D(lastN);
+                Point2D pB = getPoint2D(n);
+                double c = pA.distanceSq(pB);
+                double a = p.distanceSq(pB);
+                double b = p.distanceSq(pA);
+
+                /* perpendicular distance squared
+                 * loose some precision to account for possible deviations in the calculation above
+                 * e.g. if identical (A and B) come about reversed in another way, values may differ
+                 * -- zero out least significant 32 dual digits of mantissa..
+                 */
+                double perDistSq = Double.longBitsToDouble(
+                        Double.doubleToLongBits(a - (a - b + c) * (a - b + c) / 4 / c)
+                        >> 32 << 32); // resolution in numbers with large exponent not needed here..
+
+                if (perDistSq < snapDistanceSq && a < c + snapDistanceSq && b < c + snapDistanceSq) {
+                    List<WaySegment> wslist;
+                    if (nearestMap.containsKey(perDistSq)) {
+                        wslist = nearestMap.get(perDistSq);
+                    } else {
+                        wslist = new LinkedList<>();
+                        nearestMap.put(perDistSq, wslist);
                     }
-
-                    lastN = n;
+                    wslist.add(ws);
                 }
             }
         }
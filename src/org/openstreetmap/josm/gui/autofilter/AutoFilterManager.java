@@ -26,17 +26,10 @@ import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Filter;
 import org.openstreetmap.josm.data.osm.FilterModel;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
-import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
-import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
-import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
+import org.openstreetmap.josm.data.osm.event.DatasetDeltaListener;
 import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
 import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
-import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
-import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
-import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
-import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
-import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
-import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.StringProperty;
 import org.openstreetmap.josm.gui.MainApplication;
@@ -63,7 +56,7 @@ import org.openstreetmap.josm.tools.Logging;
  * @since 12400
  */
 public final class AutoFilterManager
-implements ZoomChangeListener, MapModeChangeListener, DataSetListener, PreferenceChangedListener, LayerChangeListener {
+implements ZoomChangeListener, MapModeChangeListener, DatasetDeltaListener, PreferenceChangedListener, LayerChangeListener {
 
     /**
      * Property to determines if the auto filter feature is enabled.
@@ -126,7 +119,7 @@ implements ZoomChangeListener, MapModeChangeListener, DataSetListener, Preferenc
         Config.getPref().addPreferenceChangeListener(this);
         NavigatableComponent.addZoomChangeListener(this);
         MainApplication.getLayerManager().addLayerChangeListener(this);
-        DatasetEventManager.getInstance().addDatasetListener(this, FireMode.IN_EDT_CONSOLIDATED);
+        DatasetEventManager.getInstance().addDatasetDeltaListener(this, FireMode.IN_EDT_CONSOLIDATED);
         registerAutoFilterRules(AutoFilterRule.defaultRules());
     }
 
@@ -232,46 +225,12 @@ implements ZoomChangeListener, MapModeChangeListener, DataSetListener, Preferenc
     }
 
     @Override
-    public void dataChanged(DataChangedEvent event) {
-        updateFiltersFull();
-    }
-
-    @Override
-    public void nodeMoved(NodeMovedEvent event) {
-        updateFiltersFull();
-    }
-
-    @Override
-    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
-        updateFiltersFull();
-    }
-
-    @Override
-    public void primitivesAdded(PrimitivesAddedEvent event) {
-        updateFiltersEvent(event, false);
-        updateButtons();
-    }
-
-    @Override
-    public void primitivesRemoved(PrimitivesRemovedEvent event) {
-        updateFiltersFull();
-        updateButtons();
-    }
-
-    @Override
-    public void relationMembersChanged(RelationMembersChangedEvent event) {
-        updateFiltersEvent(event, true);
-    }
-
-    @Override
-    public void tagsChanged(TagsChangedEvent event) {
-        updateFiltersEvent(event, true);
-        updateButtons();
-    }
-
-    @Override
-    public void wayNodesChanged(WayNodesChangedEvent event) {
-        updateFiltersEvent(event, true);
+    public void datasetChanged(DatasetDelta delta) {
+        updateFilters(delta);
+        if (delta.isDataSetChanged() || !delta.getAdded().isEmpty() || !delta.getRemoved().isEmpty()
+                || !delta.getTagsChanged().isEmpty()) {
+            updateButtons();
+        }
     }
 
     @Override
@@ -285,13 +244,13 @@ implements ZoomChangeListener, MapModeChangeListener, DataSetListener, Preferenc
         }
     }
 
-    private synchronized void updateFiltersEvent(AbstractDatasetChangedEvent event, boolean affectedOnly) {
+    private synchronized void updateFilters(DatasetDelta delta) {
         if (currentAutoFilter != null) {
-            Collection<? extends OsmPrimitive> prims = event.getPrimitives();
-            model.executeFilters(affectedOnly ? FilterModel.getAffectedPrimitives(prims) : prims);
+            model.executeFilters(delta);
         }
     }
 
+
     /**
      * Registers new auto filter rule(s).
      * @param filterRules new auto filter rules. Must not be null
@@ -27,19 +27,10 @@ import javax.swing.table.TableModel;
 import org.openstreetmap.josm.actions.mapmode.MapMode;
 import org.openstreetmap.josm.actions.search.SearchAction;
 import org.openstreetmap.josm.data.osm.Filter;
-import org.openstreetmap.josm.data.osm.FilterModel;
-import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
-import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent.DatasetEventType;
-import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
-import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
+import org.openstreetmap.josm.data.osm.event.DatasetDeltaListener;
 import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
 import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
-import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
-import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
-import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
-import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
-import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
-import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapFrame;
 import org.openstreetmap.josm.gui.MapFrame.MapModeChangeListener;
@@ -57,7 +48,7 @@ import org.openstreetmap.josm.tools.Shortcut;
  *
  * @author Petr_Dlouhý
  */
-public class FilterDialog extends ToggleDialog implements DataSetListener, MapModeChangeListener {
+public class FilterDialog extends ToggleDialog implements DatasetDeltaListener, MapModeChangeListener {
 
     private JTable userTable;
     private final FilterTableModel filterModel = new FilterTableModel();
@@ -81,14 +72,14 @@ public class FilterDialog extends ToggleDialog implements DataSetListener, MapMo
 
     @Override
     public void showNotify() {
-        DatasetEventManager.getInstance().addDatasetListener(this, FireMode.IN_EDT_CONSOLIDATED);
+        DatasetEventManager.getInstance().addDatasetDeltaListener(this, FireMode.IN_EDT_CONSOLIDATED);
         MapFrame.addMapModeChangeListener(this);
         filterModel.executeFilters(true);
     }
 
     @Override
     public void hideNotify() {
-        DatasetEventManager.getInstance().removeDatasetListener(this);
+        DatasetEventManager.getInstance().removeDatasetDeltaListener(this);
         MapFrame.removeMapModeChangeListener(this);
         filterModel.model.clearFilterFlags();
         MainApplication.getLayerManager().invalidateEditLayer();
@@ -315,45 +306,8 @@ public class FilterDialog extends ToggleDialog implements DataSetListener, MapMo
     }
 
     @Override
-    public void dataChanged(DataChangedEvent event) {
-        filterModel.executeFilters();
-    }
-
-    @Override
-    public void nodeMoved(NodeMovedEvent event) {
-        filterModel.executeFilters();
-    }
-
-    @Override
-    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
-        if (DatasetEventType.FILTERS_CHANGED != event.getType()) {
-            filterModel.executeFilters();
-        }
-    }
-
-    @Override
-    public void primitivesAdded(PrimitivesAddedEvent event) {
-        filterModel.executeFilters(event.getPrimitives());
-    }
-
-    @Override
-    public void primitivesRemoved(PrimitivesRemovedEvent event) {
-        filterModel.executeFilters();
-    }
-
-    @Override
-    public void relationMembersChanged(RelationMembersChangedEvent event) {
-        filterModel.executeFilters(FilterModel.getAffectedPrimitives(event.getPrimitives()));
-    }
-
-    @Override
-    public void tagsChanged(TagsChangedEvent event) {
-        filterModel.executeFilters(FilterModel.getAffectedPrimitives(event.getPrimitives()));
-    }
-
-    @Override
-    public void wayNodesChanged(WayNodesChangedEvent event) {
-        filterModel.executeFilters(FilterModel.getAffectedPrimitives(event.getPrimitives()));
+    public void datasetChanged(DatasetDelta delta) {
+        filterModel.executeFilters(delta);
     }
 
     @Override
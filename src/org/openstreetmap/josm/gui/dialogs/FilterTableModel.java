@@ -13,6 +13,7 @@ import javax.swing.table.AbstractTableModel;
 import org.openstreetmap.josm.data.osm.Filter;
 import org.openstreetmap.josm.data.osm.FilterModel;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapFrame;
 import org.openstreetmap.josm.gui.autofilter.AutoFilterManager;
@@ -80,6 +81,19 @@ public class FilterTableModel extends AbstractTableModel {
         executeFilters(primitives, false);
     }
 
+    /**
+     * Runs the filters on the primitives of the edit data set affected by the given changes, if any.
+     * Does nothing if no filter is enabled.
+     * @param delta the changes of the edit data set
+     * @see FilterModel#executeFilters(DatasetDelta)
+     */
+    public void executeFilters(DatasetDelta delta) {
+        if (AutoFilterManager.getInstance().getCurrentAutoFilter() == null && model.hasFilters()) {
+            model.executeFilters(delta);
+            updateMap();
+        }
+    }
+
     /**
      * Runs the filters on the current edit data set, if any.
      * @param force force execution of filters even if no filter is enabled. Useful to reset state after change of filters
@@ -629,9 +629,11 @@ public class SelectionListDialog extends ToggleDialog {
             if (toUpdate == null) return;
             if (toUpdate.isEmpty()) return;
             Collection<OsmPrimitive> sel = getSelected();
-            for (OsmPrimitive p: toUpdate) {
-                int i = selection.indexOf(p);
-                if (i >= 0) {
+            // a single pass over the selection, instead of one lookup in the list for each updated primitive
+            Set<? extends OsmPrimitive> updated = toUpdate instanceof Set
+                    ? (Set<? extends OsmPrimitive>) toUpdate : new HashSet<>(toUpdate);
+            for (int i = 0; i < selection.size(); i++) {
+                if (updated.contains(selection.get(i))) {
                     super.fireContentsChanged(this, i, i);
                 }
             }
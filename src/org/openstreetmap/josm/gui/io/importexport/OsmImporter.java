@@ -20,6 +20,7 @@ import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.io.Compression;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 
 /**
@@ -127,7 +128,7 @@ public class OsmImporter extends FileImporter {
     }
 
     protected DataSet parseDataSet(InputStream in, ProgressMonitor progressMonitor) throws IllegalDataException {
-        return OsmReader.parseDataSet(in, progressMonitor);
+        return OsmReader.parseDataSet(in, progressMonitor, Config.getPref().getInt("osm.reader.threads", 1));
     }
 
     protected OsmDataLayer createLayer(final DataSet dataSet, final File associatedFile, final String layerName) {
@@ -0,0 +1,78 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.io.importexport;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.swing.JOptionPane;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.Layer;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.io.PbfWriter;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Exports data to an .osm.pbf file.
+ * <p>
+ * The format cannot store the changes of a layer: a layer with new, modified or deleted primitives is not exported,
+ * so that it is never marked as saved while its changes are lost.
+ * @see PbfWriter
+ */
+public class PbfExporter extends OsmExporter {
+
+    /**
+     * Constructs a new {@code PbfExporter}.
+     */
+    public PbfExporter() {
+        super(PbfImporter.FILE_FILTER);
+    }
+
+    /**
+     * Determines if the given data can be written to a .osm.pbf file without losing any change.
+     * @param data the data set
+     * @return {@code true} if the data set has no new, modified or deleted primitive
+     */
+    public static boolean isExportable(DataSet data) {
+        data.getReadLock().lock();
+        try {
+            for (OsmPrimitive p : data.allPrimitives()) {
+                if (p.isNew() || p.isModified() || p.isDeleted()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            data.getReadLock().unlock();
+        }
+    }
+
+    @Override
+    public void exportData(File file, Layer layer, boolean noBackup) {
+        if (layer instanceof OsmDataLayer && !isExportable(((OsmDataLayer) layer).data)) {
+            setCanceled(true);
+            GuiHelper.runInEDTAndWait(() ->
+                JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
+                    tr("<html>The layer {0} contains new, modified or deleted objects.<br>"
+                     + "The .osm.pbf format cannot store these changes, the layer has not been saved.<br>"
+                     + "Please save it as an .osm file.</html>", Utils.escapeReservedCharactersHTML(layer.getName())),
+                    tr("Warning"), JOptionPane.WARNING_MESSAGE));
+            return;
+        }
+        setCanceled(false);
+        super.exportData(file, layer, noBackup);
+    }
+
+    @Override
+    protected void doSave(File file, OsmDataLayer layer) throws IOException {
+        try (OutputStream out = getOutputStream(file); PbfWriter w = new PbfWriter(out)) {
+            w.write(layer.data.snapshot());
+        }
+    }
+}
@@ -82,6 +82,8 @@ import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.osm.visitor.OsmPrimitiveVisitor;
 import org.openstreetmap.josm.data.osm.visitor.paint.AbstractMapRenderer;
 import org.openstreetmap.josm.data.osm.visitor.paint.MapRendererFactory;
+import org.openstreetmap.josm.data.osm.visitor.paint.RenderTileCache;
+import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer;
 import org.openstreetmap.josm.data.osm.visitor.paint.relations.MultipolygonCache;
 import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
@@ -135,6 +137,8 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
     private boolean requiresUploadToServer;
     /** Flag used to know if the layer is being uploaded */
     private final AtomicBoolean isUploadInProgress = new AtomicBoolean(false);
+    /** Rasterized tiles of this layer, used if {@link RenderTileCache#PREFERENCE_ENABLED} is set */
+    private final RenderTileCache renderTileCache = new RenderTileCache();
 
     /**
      * List of validation errors in this layer.
@@ -408,6 +412,8 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
         this.setAssociatedFile(associatedFile);
         data.addDataSetListener(new DataSetListenerAdapter(this));
         data.addDataSetListener(MultipolygonCache.getInstance());
+        data.addDataSetListener(renderTileCache);
+        Config.getPref().addPreferenceChangeListener(renderTileCache);
         data.addHighlightUpdateListener(this);
         data.addSelectionListener(this);
         if (name != null && name.startsWith(createLayerName("")) && Character.isDigit(
@@ -509,6 +515,9 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
         AbstractMapRenderer painter = MapRendererFactory.getInstance().createActiveRenderer(g, mv, inactive);
         painter.enableSlowOperations(mv.getMapMover() == null || !mv.getMapMover().movementInProgress()
                 || !PROPERTY_HIDE_LABELS_WHILE_DRAGGING.get());
+        if (painter instanceof StyledMapRenderer && RenderTileCache.PREFERENCE_ENABLED.get()) {
+            ((StyledMapRenderer) painter).setRenderTileCache(renderTileCache);
+        }
         painter.render(data, virtual, box);
         MainApplication.getMap().conflictDialog.paintConflicts(g, mv);
     }
@@ -1049,6 +1058,9 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
         super.destroy();
         data.removeSelectionListener(this);
         data.removeHighlightUpdateListener(this);
+        data.removeDataSetListener(renderTileCache);
+        Config.getPref().removePreferenceChangeListener(renderTileCache);
+        renderTileCache.clear();
     }
 
     @Override
@@ -1067,6 +1079,7 @@ public class OsmDataLayer extends AbstractOsmDataLayer implements Listener, Data
     public void projectionChanged(Projection oldValue, Projection newValue) {
          // No reprojection required. The dataset itself is registered as projection
          // change listener and already got notified.
+        renderTileCache.clear();
     }
 
     @Override
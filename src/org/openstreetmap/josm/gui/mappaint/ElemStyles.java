@@ -76,11 +76,14 @@ public class ElemStyles implements PreferenceChangedListener {
 
     private volatile Color backgroundColorCache;
 
+    private final StyleSignatureCache signatureCache;
+
     /**
      * Constructs a new {@code ElemStyles}.
      */
     public ElemStyles() {
         styleSources = new ArrayList<>();
+        signatureCache = new StyleSignatureCache(styleSources);
         Config.getPref().addPreferenceChangeListener(this);
     }
 
@@ -93,6 +96,7 @@ public class ElemStyles implements PreferenceChangedListener {
             cacheIdx++;
             preferenceCache.clear();
             backgroundColorCache = null;
+            signatureCache.clear();
             MainApplication.getLayerManager().getLayersOfType(OsmDataLayer.class).forEach(
                     dl -> dl.data.clearMappaintCache());
         });
@@ -106,6 +110,14 @@ public class ElemStyles implements PreferenceChangedListener {
         return Collections.<StyleSource>unmodifiableList(styleSources);
     }
 
+    /**
+     * Returns the cache of the styles shared by primitives with the same type, tags and state.
+     * @return the style signature cache
+     */
+    public StyleSignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
     /**
      * Returns the background color.
      * @return the background color
@@ -358,6 +370,7 @@ public class ElemStyles implements PreferenceChangedListener {
      *
      * Loops over the list of style sources, to generate the map of properties.
      * From these properties, it generates the different types of styles.
+     * The styles are shared by primitives with the same type, tags, state and context signature, see {@link StyleSignatureCache}.
      *
      * @param osm the primitive to create styles for
      * @param scale the scale (in meters per 100 px), must be &gt; 0
@@ -368,7 +381,10 @@ public class ElemStyles implements PreferenceChangedListener {
      * @since 13810 (signature)
      */
     public Pair<StyleElementList, Range> generateStyles(IPrimitive osm, double scale, boolean pretendWayIsClosed) {
+        return signatureCache.get(osm, scale, pretendWayIsClosed, cacheIdx, this::generateStylesUncached);
+    }
 
+    private Pair<StyleElementList, Range> generateStylesUncached(IPrimitive osm, double scale, boolean pretendWayIsClosed) {
         List<StyleElement> sl = new ArrayList<>();
         MultiCascade mc = new MultiCascade();
         Environment env = new Environment(osm, mc, null, null);
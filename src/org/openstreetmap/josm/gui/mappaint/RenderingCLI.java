@@ -5,17 +5,29 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.DoubleSupplier;
 import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.imageio.ImageIO;
 
@@ -41,6 +53,7 @@ import org.openstreetmap.josm.tools.I18n;
 import org.openstreetmap.josm.tools.JosmDecimalFormatSymbolsProvider;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.RightAndLefthandTraffic;
+import org.openstreetmap.josm.tools.Utils;
 
 import gnu.getopt.Getopt;
 import gnu.getopt.LongOpt;
@@ -59,6 +72,9 @@ public class RenderingCLI implements CLIModule {
 
     private static final double PIXEL_PER_METER = 96 / 2.54 * 100; // standard value of 96 dpi display resolution
     private static final int DEFAULT_MAX_IMAGE_SIZE = 20000;
+    private static final int MAX_TILE_ZOOM = 22;
+    private static final String DEFAULT_TILE_OUTPUT = "{z}/{x}/{y}.png";
+    private static final Pattern TILE_PATTERN = Pattern.compile("(\\d+)/(\\d+)/(\\d+)(?:\\s+(.+))?");
 
     private boolean argDebug;
     private boolean argTrace;
@@ -75,6 +91,9 @@ public class RenderingCLI implements CLIModule {
     private Integer argHeightPx;
     private String argProjection;
     private Integer argMaxImageSize;
+    private String argBatch;
+    private int[] argPyramid;
+    private Integer argThreads;
 
     private enum Option {
         HELP(false, 'h'),
@@ -93,7 +112,10 @@ public class RenderingCLI implements CLIModule {
         WIDTH_PX(true, '*'),
         HEIGHT_PX(true, '*'),
         PROJECTION(true, '*'),
-        MAX_IMAGE_SIZE(true, '*');
+        MAX_IMAGE_SIZE(true, '*'),
+        BATCH(true, '*'),
+        PYRAMID(true, '*'),
+        THREADS(true, '*');
 
         private final String name;
         private final boolean requiresArg;
@@ -144,6 +166,37 @@ public class RenderingCLI implements CLIModule {
         public double scale; // in east-north units per pixel (unlike the --scale option, which is in meter per meter)
     }
 
+    /**
+     * A web-Mercator tile to render in batch mode.
+     *
+     * Package private access for unit tests.
+     */
+    static class TileJob {
+        final int zoom;
+        final int x;
+        final int y;
+        final String output;
+
+        TileJob(int zoom, int x, int y, String output) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+            this.output = output;
+        }
+
+        Bounds getBounds() {
+            int size = OsmMercator.DEFAUL_TILE_SIZE;
+            OsmMercator mercator = OsmMercator.MERCATOR_256;
+            return new Bounds(mercator.yToLat((y + 1) * size, zoom), mercator.xToLon(x * size, zoom),
+                    mercator.yToLat(y * size, zoom), mercator.xToLon((x + 1) * size, zoom), false);
+        }
+
+        @Override
+        public String toString() {
+            return zoom + "/" + x + '/' + y;
+        }
+    }
+
     RenderingCLI() {
         // hide constructor (package private access for unit tests)
     }
@@ -159,11 +212,15 @@ public class RenderingCLI implements CLIModule {
             parseArguments(argArray);
             initialize();
             DataSet ds = loadDataset();
-            RenderingArea area = determineRenderingArea(ds);
-            RenderingHelper rh = new RenderingHelper(ds, area.bounds, area.scale, argStyles);
-            checkPreconditions(rh);
-            BufferedImage image = rh.render();
-            writeImageToFile(image);
+            if (argBatch != null || argPyramid != null) {
+                renderBatch(ds);
+            } else {
+                RenderingArea area = determineRenderingArea(ds);
+                RenderingHelper rh = new RenderingHelper(ds, area.bounds, area.scale, argStyles);
+                checkPreconditions(rh);
+                BufferedImage image = rh.render();
+                writeImageToFile(image);
+            }
         } catch (FileNotFoundException e) {
             if (Logging.isDebugEnabled()) {
                 e.printStackTrace();
@@ -338,6 +395,33 @@ public class RenderingCLI implements CLIModule {
                     if (argMaxImageSize < 0) throw new IllegalArgumentException(
                             tr("Expected integer number >= 0 for option {0}, but got ''{1}''", "--max-image-size", getopt.getOptarg()));
                     break;
+                case BATCH:
+                    argBatch = getopt.getOptarg();
+                    break;
+                case PYRAMID:
+                    String[] zooms = getopt.getOptarg().split("-", -1);
+                    try {
+                        argPyramid = new int[] {Integer.parseInt(zooms[0]), Integer.parseInt(zooms[zooms.length - 1])};
+                    } catch (NumberFormatException nfe) {
+                        throw new IllegalArgumentException(
+                                tr("Expected zoom level or zoom level range for option {0}, but got ''{1}''", "--pyramid", getopt.getOptarg()),
+                                nfe);
+                    }
+                    if (zooms.length > 2 || argPyramid[0] < 0 || argPyramid[0] > argPyramid[1] || argPyramid[1] > MAX_TILE_ZOOM)
+                        throw new IllegalArgumentException(
+                                tr("Expected zoom level or zoom level range between 0 and {0} for option {1}, but got ''{2}''",
+                                        MAX_TILE_ZOOM, "--pyramid", getopt.getOptarg()));
+                    break;
+                case THREADS:
+                    try {
+                        argThreads = Integer.valueOf(getopt.getOptarg());
+                    } catch (NumberFormatException nfe) {
+                        throw new IllegalArgumentException(
+                                tr("Expected integer number for option {0}, but got ''{1}''", "--threads", getopt.getOptarg()), nfe);
+                    }
+                    if (argThreads <= 0) throw new IllegalArgumentException(
+                            tr("Expected integer number > 0 for option {0}, but got ''{1}''", "--threads", getopt.getOptarg()));
+                    break;
                 default:
                     throw new AssertionError("Unexpected option index: " + getopt.getLongind());
                 }
@@ -393,6 +477,16 @@ public class RenderingCLI implements CLIModule {
                 "\t--max-image-size <number> "+tr("Maximum image width/height in pixel (''{0}'' means no limit), default value: {1}",
                                                     0, Integer.toString(DEFAULT_MAX_IMAGE_SIZE))+"\n"+
                 "\n"+
+                tr("Batch mode")+":\n"+
+                "\t--batch <file>            "+tr("Render the web-Mercator tiles listed in the file (''{0}'' for standard input)", "-")+"\n"+
+                "\t                          "+tr("One tile per line: <zoom>/<x>/<y>, optionally followed by the output file name")+"\n"+
+                "\t--pyramid <min>[-<max>]   "+tr("Render all web-Mercator tiles of the zoom levels covering the area given by {0}",
+                                                    "--bounds")+"\n"+
+                "\t--threads <number>        "+tr("Number of tiles rendered in parallel, defaults to the number of processors")+"\n"+
+                "\t                          "+tr("In batch mode, {0} is a pattern with the placeholders {1}, {2} and {3}; defaults to ''{4}''",
+                                                    "--output", "{z}", "{x}", "{y}", DEFAULT_TILE_OUTPUT)+"\n"+
+                "\t                          "+tr("The data and the styles are loaded once, and the rendering time of each tile is reported.")+"\n"+
+                "\n"+
                 tr("To specify the rendered area and scale, the options can be combined in various ways")+":\n"+
                 "  * --bounds (--zoom|--scale|--width-px|--height-px)\n"+
                 "  * --anchor (--width-m|--width-px) (--height-m|--height-px) (--zoom|--scale)\n"+
@@ -410,7 +504,9 @@ public class RenderingCLI implements CLIModule {
                 "  josm render -i data.osm -s style.mapcss --bounds 21.151,51.401,21.152,51.402 -z 16\n"+
                 "  josm render -i data.osm -s style.mapcss --anchor 21.151,51.401 --width-m 500 --height-m 300 -z 16\n"+
                 "  josm render -i data.osm -s style.mapcss --anchor 21.151,51.401 --width-m 500 --height-m 300 --width-px 1800\n"+
-                "  josm render -i data.osm -s style.mapcss --scale 5000 --projection epsg:4326\n";
+                "  josm render -i data.osm -s style.mapcss --scale 5000 --projection epsg:4326\n"+
+                "  josm render -i data.osm -s style.mapcss --pyramid 14-18 -o tiles/{z}/{x}/{y}.png\n"+
+                "  josm render -i data.osm -s style.mapcss --batch tiles.txt --threads 4\n";
     }
 
     /**
@@ -451,7 +547,7 @@ public class RenderingCLI implements CLIModule {
         Projection proj = ProjectionRegistry.getProjection();
         Double scale = null; // scale in east-north units per pixel
         if (argZoom != null) {
-            scale = OsmMercator.EARTH_RADIUS * Math.PI * 2 / Math.pow(2, argZoom) / OsmMercator.DEFAUL_TILE_SIZE / proj.getMetersPerUnit();
+            scale = getScale(argZoom);
         }
         Bounds bounds = argBounds;
         ProjectionBounds pb = null;
@@ -549,6 +645,174 @@ public class RenderingCLI implements CLIModule {
         return ra;
     }
 
+    private static double getScale(int zoom) {
+        Projection proj = ProjectionRegistry.getProjection();
+        return OsmMercator.EARTH_RADIUS * Math.PI * 2 / Math.pow(2, zoom) / OsmMercator.DEFAUL_TILE_SIZE / proj.getMetersPerUnit();
+    }
+
+    /**
+     * Renders the tiles given by the {@code --batch} and {@code --pyramid} options, with a pool of workers sharing
+     * the styles. The styles are cached in the primitives, which must not be styled by several threads at once,
+     * so each worker renders its own copy of the data set.
+     * @param ds the dataset. It is locked, like its copies, as the workers only read them
+     * @return the number of rendered tiles
+     * @throws IOException in case of an IOException
+     * @throws IllegalDataException when illegal data is encountered (style has errors, etc.)
+     */
+    int renderBatch(DataSet ds) throws IOException, IllegalDataException {
+        if (argStyles.isEmpty())
+            throw new IllegalArgumentException(tr("Missing argument - at least one style expected ({0})", "--style"));
+        String output = Optional.ofNullable(argOutput).orElse(DEFAULT_TILE_OUTPUT);
+        List<TileJob> jobs = new ArrayList<>();
+        if (argPyramid != null) {
+            Bounds bounds = argBounds;
+            if (bounds == null) {
+                if (ds.getDataSourceBounds().isEmpty()) {
+                    throw new IllegalArgumentException(tr("{0} mode, but no bounds found in osm data input file", "--bounds=auto"));
+                }
+                bounds = ds.getDataSourceBounds().get(0);
+            }
+            jobs.addAll(getPyramid(bounds, argPyramid[0], argPyramid[1], output));
+        }
+        if (argBatch != null) {
+            if ("-".equals(argBatch)) {
+                jobs.addAll(readTileJobs(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), output));
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(Paths.get(argBatch), StandardCharsets.UTF_8)) {
+                    jobs.addAll(readTileJobs(reader, output));
+                }
+            }
+        }
+
+        ElemStyles elemStyles = RenderingHelper.loadStyles(argStyles);
+        int threads = Optional.ofNullable(argThreads).orElse(Runtime.getRuntime().availableProcessors());
+        if (!ds.isLocked()) {
+            ds.lock();
+        }
+        // the copies of a locked data set are locked as well
+        Queue<DataSet> dataSets = new ConcurrentLinkedQueue<>();
+        dataSets.add(ds);
+        for (int i = 1; i < threads; i++) {
+            dataSets.add(new DataSet(ds));
+        }
+        ThreadLocal<DataSet> workerDataSet = ThreadLocal.withInitial(dataSets::remove);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, Utils.newThreadFactory("rendering-cli-%d", Thread.NORM_PRIORITY));
+        long start = System.nanoTime();
+        long totalTime = 0;
+        int failed = 0;
+        try {
+            List<Future<Long>> results = new ArrayList<>(jobs.size());
+            for (TileJob job : jobs) {
+                results.add(pool.submit(() -> renderTile(workerDataSet.get(), elemStyles, job)));
+            }
+            for (int i = 0; i < jobs.size(); i++) {
+                try {
+                    totalTime += results.get(i).get();
+                } catch (ExecutionException e) {
+                    Logging.debug(e);
+                    System.err.println(tr("Error - tile {0}: {1}", jobs.get(i), e.getCause().getMessage()));
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        int rendered = jobs.size() - failed;
+        System.out.println(tr("Rendered {0} tiles in {1} ms ({2} ms per tile, {3} threads)",
+                rendered, elapsed, rendered > 0 ? totalTime / rendered : 0, threads));
+        if (failed > 0) {
+            throw new IOException(tr("Failed to render {0} of {1} tiles", failed, jobs.size()));
+        }
+        return rendered;
+    }
+
+    private long renderTile(DataSet ds, ElemStyles elemStyles, TileJob job) throws IOException, IllegalDataException {
+        long start = System.nanoTime();
+        RenderingHelper rh = new RenderingHelper(ds, job.getBounds(), getScale(job.zoom), argStyles);
+        rh.setElemStyles(elemStyles);
+        BufferedImage image = rh.render();
+        File file = new File(job.output);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException(tr("Failed to create directory ''{0}''", parent));
+        }
+        ImageIO.write(image, "png", file);
+        long time = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(job + "\t" + time + " ms\t" + job.output);
+        return time;
+    }
+
+    /**
+     * Reads the tiles to render, one per line as {@code <zoom>/<x>/<y>}, optionally followed by the output file name.
+     * Empty lines and lines starting with {@code #} are ignored.
+     * @param reader the reader
+     * @param output the pattern of the output file names, used when the line does not give one
+     * @return the tiles to render
+     * @throws IOException in case of an IOException
+     */
+    static List<TileJob> readTileJobs(BufferedReader reader, String output) throws IOException {
+        List<TileJob> jobs = new ArrayList<>();
+        try {
+            reader.lines().map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#")).forEach(line -> {
+                Matcher m = TILE_PATTERN.matcher(line);
+                if (!m.matches()) {
+                    throw new IllegalArgumentException(tr("Expected tile as <zoom>/<x>/<y>, but got ''{0}''", line));
+                }
+                try {
+                    int zoom = Integer.parseInt(m.group(1));
+                    int x = Integer.parseInt(m.group(2));
+                    int y = Integer.parseInt(m.group(3));
+                    if (zoom > MAX_TILE_ZOOM || x >= 1 << zoom || y >= 1 << zoom) {
+                        throw new IllegalArgumentException(tr("Invalid tile ''{0}''", line));
+                    }
+                    jobs.add(new TileJob(zoom, x, y, m.group(4) != null ? m.group(4) : getTileOutput(output, zoom, x, y)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(tr("Invalid tile ''{0}''", line), e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return jobs;
+    }
+
+    /**
+     * Returns the tiles covering the given area at the given zoom levels.
+     * @param bounds the area
+     * @param minZoom the minimal zoom level
+     * @param maxZoom the maximal zoom level
+     * @param output the pattern of the output file names
+     * @return the tiles to render
+     */
+    static List<TileJob> getPyramid(Bounds bounds, int minZoom, int maxZoom, String output) {
+        List<TileJob> jobs = new ArrayList<>();
+        OsmMercator mercator = OsmMercator.MERCATOR_256;
+        int size = OsmMercator.DEFAUL_TILE_SIZE;
+        // tolerance for the bounds lying on the border of the tiles
+        double epsilon = 1e-6;
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            int max = (1 << zoom) - 1;
+            int minX = Utils.clamp((int) Math.floor(mercator.lonToX(bounds.getMinLon(), zoom) / size + epsilon), 0, max);
+            int maxX = Utils.clamp((int) Math.ceil(mercator.lonToX(bounds.getMaxLon(), zoom) / size - epsilon) - 1, minX, max);
+            int minY = Utils.clamp((int) Math.floor(mercator.latToY(bounds.getMaxLat(), zoom) / size + epsilon), 0, max);
+            int maxY = Utils.clamp((int) Math.ceil(mercator.latToY(bounds.getMinLat(), zoom) / size - epsilon) - 1, minY, max);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    jobs.add(new TileJob(zoom, x, y, getTileOutput(output, zoom, x, y)));
+                }
+            }
+        }
+        return jobs;
+    }
+
+    private static String getTileOutput(String output, int zoom, int x, int y) {
+        return output.replace("{z}", Integer.toString(zoom)).replace("{x}", Integer.toString(x)).replace("{y}", Integer.toString(y));
+    }
+
     private DataSet loadDataset() throws IOException, IllegalDataException {
         if (argInput == null) {
             throw new IllegalArgumentException(tr("Missing argument - input data file ({0})", "--input|-i"));
@@ -40,6 +40,7 @@ public class RenderingHelper {
     private final Collection<StyleData> styles;
     private Color backgroundColor;
     private boolean fillBackground = true;
+    private ElemStyles elemStyles;
 
     /**
      * Data class to save style settings along with the corresponding style URL.
@@ -92,6 +93,17 @@ public class RenderingHelper {
         this.fillBackground = fillBackground;
     }
 
+    /**
+     * Sets the styles to use for rendering, loaded beforehand with {@link #loadStyles(Collection)}.
+     * <p>
+     * This allows to render several areas without parsing the styles again. The styles can be shared by several
+     * instances rendering in parallel.
+     * @param elemStyles the loaded styles, or {@code null} to load the styles given in the constructor on each rendering
+     */
+    public void setElemStyles(ElemStyles elemStyles) {
+        this.elemStyles = elemStyles;
+    }
+
     Dimension getImageSize() {
         double widthEn = projBounds.maxEast - projBounds.minEast;
         double heightEn = projBounds.maxNorth - projBounds.minNorth;
@@ -108,38 +120,7 @@ public class RenderingHelper {
      * @throws IllegalDataException when illegal data is encountered (style has errors, etc.)
      */
     public BufferedImage render() throws IOException, IllegalDataException {
-        // load the styles
-        ElemStyles elemStyles = new ElemStyles();
-        MapCSSStyleSource.STYLE_SOURCE_LOCK.writeLock().lock();
-        try {
-            for (StyleData sd : styles) {
-                MapCSSStyleSource source = new MapCSSStyleSource(sd.styleUrl, "cliRenderingStyle", "cli rendering style '" + sd.styleUrl + "'");
-                source.loadStyleSource();
-                elemStyles.add(source);
-                if (!source.getErrors().isEmpty()) {
-                    throw new IllegalDataException("Failed to load style file. Errors: " + source.getErrors());
-                }
-                for (String key : sd.settings.keySet()) {
-                    StyleSetting.BooleanStyleSetting match = source.settings.stream()
-                            .filter(s -> s instanceof StyleSetting.BooleanStyleSetting)
-                            .map(s -> (StyleSetting.BooleanStyleSetting) s)
-                            .filter(bs -> bs.prefKey.endsWith(":" + key))
-                            .findFirst().orElse(null);
-                    if (match == null) {
-                        Logging.warn(tr("Style setting not found: ''{0}''", key));
-                    } else {
-                        boolean value = Boolean.parseBoolean(sd.settings.get(key));
-                        Logging.trace("setting applied: ''{0}:{1}''", key, value);
-                        match.setValue(value);
-                    }
-                }
-                if (!sd.settings.isEmpty()) {
-                    source.loadStyleSource(); // reload to apply settings
-                }
-            }
-        } finally {
-            MapCSSStyleSource.STYLE_SOURCE_LOCK.writeLock().unlock();
-        }
+        ElemStyles elemStyles = this.elemStyles != null ? this.elemStyles : loadStyles(styles);
 
         Dimension imgDimPx = getImageSize();
         NavigatableComponent nc = new NavigatableComponent() {
@@ -185,4 +166,45 @@ public class RenderingHelper {
         return image;
     }
 
+    /**
+     * Loads the styles to use for rendering, and applies their settings.
+     * @param styles the styles to load
+     * @return the loaded styles
+     * @throws IllegalDataException when a style has errors
+     */
+    public static ElemStyles loadStyles(Collection<StyleData> styles) throws IllegalDataException {
+        ElemStyles elemStyles = new ElemStyles();
+        MapCSSStyleSource.STYLE_SOURCE_LOCK.writeLock().lock();
+        try {
+            for (StyleData sd : styles) {
+                MapCSSStyleSource source = new MapCSSStyleSource(sd.styleUrl, "cliRenderingStyle", "cli rendering style '" + sd.styleUrl + "'");
+                source.loadStyleSource();
+                elemStyles.add(source);
+                if (!source.getErrors().isEmpty()) {
+                    throw new IllegalDataException("Failed to load style file. Errors: " + source.getErrors());
+                }
+                for (String key : sd.settings.keySet()) {
+                    StyleSetting.BooleanStyleSetting match = source.settings.stream()
+                            .filter(s -> s instanceof StyleSetting.BooleanStyleSetting)
+                            .map(s -> (StyleSetting.BooleanStyleSetting) s)
+                            .filter(bs -> bs.prefKey.endsWith(":" + key))
+                            .findFirst().orElse(null);
+                    if (match == null) {
+                        Logging.warn(tr("Style setting not found: ''{0}''", key));
+                    } else {
+                        boolean value = Boolean.parseBoolean(sd.settings.get(key));
+                        Logging.trace("setting applied: ''{0}:{1}''", key, value);
+                        match.setValue(value);
+                    }
+                }
+                if (!sd.settings.isEmpty()) {
+                    source.loadStyleSource(); // reload to apply settings
+                }
+            }
+        } finally {
+            MapCSSStyleSource.STYLE_SOURCE_LOCK.writeLock().unlock();
+        }
+        return elemStyles;
+    }
+
 }
@@ -0,0 +1,337 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openstreetmap.josm.data.osm.INode;
+import org.openstreetmap.josm.data.osm.IPrimitive;
+import org.openstreetmap.josm.data.osm.IWay;
+import org.openstreetmap.josm.data.osm.KeyValueVisitor;
+import org.openstreetmap.josm.data.osm.Tagged;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.gui.mappaint.DividedScale.RangeViolatedError;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Pair;
+
+/**
+ * Caches the styles generated for primitives sharing the same signature.
+ * <p>
+ * The signature of a primitive is made of its type, its tags, its state (closed, modified, new) and the results
+ * of the context dependent selectors matching it, like parent or child selectors.
+ * Most primitives of a large data set share their signature with many others, so their styles
+ * can be reused without evaluating the style sources again. The cache is invalidated as soon as a style source
+ * is reloaded, enabled or disabled, and the least recently used entries are evicted when it is full.
+ * The entries are only accessed while holding the lock of the cache, the styles are generated without it,
+ * so that they can be generated by several threads.
+ * <p>
+ * Primitives whose styles depend on their context in another way, for instance with a {@code parent_tag} function,
+ * are not cached, see {@link StyleSource#getContextSignature(IPrimitive)}.
+ */
+public final class StyleSignatureCache {
+
+    /** Maximal number of signatures in the cache. {@code 0} disables the cache */
+    public static final IntegerProperty CACHE_SIZE = new IntegerProperty("mappaint.style.signature-cache.size", 10_000);
+
+    private final List<StyleSource> styleSources;
+    private volatile Entries entries = new Entries(new int[0]);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+
+    /**
+     * Functional interface used to generate the styles on cache misses.
+     */
+    @FunctionalInterface
+    interface StyleGenerator {
+        /**
+         * Create the list of styles and its valid scale range for one primitive.
+         * @param osm the primitive to create styles for
+         * @param scale the scale (in meters per 100 px), must be &gt; 0
+         * @param pretendWayIsClosed For styles that require the way to be closed, we pretend it is
+         * @return the generated styles and the valid range as a pair
+         */
+        Pair<StyleElementList, Range> generate(IPrimitive osm, double scale, boolean pretendWayIsClosed);
+    }
+
+    /**
+     * The entries of the cache, with the state of the style sources they have been computed with.
+     * The entries are replaced as a whole when the style sources change, so that the threads looking up the cache
+     * only have to compare the stamp, without lock.
+     */
+    private static final class Entries {
+        /** Style cache index and generations of the style sources (negated if inactive) the entries are computed with */
+        final int[] stamp;
+        /** The entries in access order, only accessed while holding the lock of the cache */
+        final Map<Signature, StyleCache> map = new LinkedHashMap<>(1024, 0.75f, true);
+
+        Entries(int[] stamp) {
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * The type, tags, state and context signatures of a primitive. The tags are sorted by key.
+     */
+    static final class Signature implements KeyValueVisitor {
+        private static final int NODE = 0;
+        private static final int WAY = 1;
+        private static final int RELATION = 2;
+        private static final int CLOSED = 4;
+        private static final int MODIFIED = 8;
+        private static final int NEW_OR_UNDELETED = 16;
+        private static final int NEW = 32;
+        private static final int PRETEND_CLOSED = 64;
+
+        private final int flags;
+        private final String[] tags;
+        private final BitSet[] contexts;
+        private int size;
+        private int visited;
+        private final int hash;
+
+        Signature(IPrimitive osm, boolean pretendWayIsClosed, BitSet[] contexts) {
+            int f;
+            if (osm instanceof INode) {
+                f = NODE;
+            } else if (osm instanceof IWay) {
+                f = WAY | (((IWay<?>) osm).isClosed() ? CLOSED : 0);
+            } else {
+                f = RELATION;
+            }
+            if (osm.isModified()) {
+                f |= MODIFIED;
+            }
+            if (osm.isNewOrUndeleted()) {
+                f |= NEW_OR_UNDELETED;
+            }
+            if (osm.isNew()) {
+                f |= NEW;
+            }
+            if (pretendWayIsClosed) {
+                f |= PRETEND_CLOSED;
+            }
+            flags = f;
+            tags = new String[2 * osm.getNumKeys()];
+            osm.visitKeys(this);
+            this.contexts = contexts;
+            hash = 31 * (31 * flags + Arrays.hashCode(tags)) + Arrays.hashCode(contexts);
+        }
+
+        @Override
+        public void visitKeyValue(Tagged p, String key, String value) {
+            visited++;
+            if (size == tags.length) {
+                return; // tags changed concurrently, see isComplete
+            }
+            // insertion sort, primitives have few tags
+            int i = size;
+            while (i > 0 && tags[i - 2].compareTo(key) > 0) {
+                tags[i] = tags[i - 2];
+                tags[i + 1] = tags[i - 1];
+                i -= 2;
+            }
+            tags[i] = key;
+            tags[i + 1] = value;
+            size += 2;
+        }
+
+        boolean isComplete() {
+            return 2 * visited == tags.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            Signature other = (Signature) obj;
+            return flags == other.flags && hash == other.hash && Arrays.equals(tags, other.tags)
+                    && Arrays.equals(contexts, other.contexts);
+        }
+    }
+
+    /**
+     * Constructs a new {@code StyleSignatureCache}.
+     * @param styleSources the style sources applied to the primitives. Changes to this list are detected
+     */
+    StyleSignatureCache(List<StyleSource> styleSources) {
+        this.styleSources = styleSources;
+    }
+
+    /**
+     * Returns the styles of a primitive from the cache, or generates them if needed.
+     * <p>
+     * You must have a read lock of {@code MapCSSStyleSource.STYLE_SOURCE_LOCK} when calling this method.
+     * @param osm the primitive to create styles for
+     * @param scale the scale (in meters per 100 px), must be &gt; 0
+     * @param pretendWayIsClosed For styles that require the way to be closed, we pretend it is
+     * @param cacheIdx the style cache index of {@link ElemStyles}, changed when the cached styles must be discarded
+     * @param generator generates the styles on cache misses
+     * @return the styles and the valid range as a pair
+     */
+    Pair<StyleElementList, Range> get(IPrimitive osm, double scale, boolean pretendWayIsClosed, int cacheIdx,
+            StyleGenerator generator) {
+        int maxSize = CACHE_SIZE.get();
+        if (scale <= 0 || maxSize <= 0) {
+            return generator.generate(osm, scale, pretendWayIsClosed);
+        }
+        BitSet[] contexts = getContextSignatures(osm);
+        Signature signature = contexts != null ? new Signature(osm, pretendWayIsClosed, contexts) : null;
+        if (signature == null || !signature.isComplete()) {
+            bypasses.increment();
+            return generator.generate(osm, scale, pretendWayIsClosed);
+        }
+        boolean selected = osm.isSelected();
+        Entries current = getEntries(cacheIdx);
+        StyleCache entry;
+        synchronized (this) {
+            entry = current.map.get(signature);
+        }
+        if (entry != null) {
+            Pair<StyleElementList, Range> cached = entry.getWithRange(scale, selected);
+            if (cached.a != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        Pair<StyleElementList, Range> p = generator.generate(osm, scale, pretendWayIsClosed);
+        misses.increment();
+        // the entry may have been updated by another thread in the meantime. If the style sources changed,
+        // the result is added to the outdated entries, which are no longer used
+        synchronized (this) {
+            StyleCache e = current.map.get(signature);
+            try {
+                current.map.put(signature, (e != null ? e : StyleCache.EMPTY_STYLECACHE).put(p.a, p.b, selected));
+            } catch (RangeViolatedError ex) {
+                Logging.trace(ex);
+            }
+            evict(current.map, maxSize);
+        }
+        return new Pair<>(p.a, p.b);
+    }
+
+    /**
+     * Returns the entries computed with the current style sources, after discarding the outdated ones if needed.
+     * @param cacheIdx the style cache index of {@link ElemStyles}
+     * @return the up to date entries
+     */
+    private Entries getEntries(int cacheIdx) {
+        Entries current = entries;
+        if (!isUpToDate(current.stamp, cacheIdx)) {
+            synchronized (this) {
+                current = entries;
+                if (!isUpToDate(current.stamp, cacheIdx)) {
+                    current = new Entries(computeStamp(cacheIdx));
+                    entries = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Removes the least recently used entries exceeding the maximal size.
+     * @param map the entries, in access order
+     * @param maxSize the maximal number of entries
+     */
+    private static void evict(Map<Signature, StyleCache> map, int maxSize) {
+        Iterator<Signature> it = map.keySet().iterator();
+        for (int toRemove = map.size() - maxSize; toRemove > 0 && it.hasNext(); toRemove--) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private BitSet[] getContextSignatures(IPrimitive osm) {
+        BitSet[] result = new BitSet[styleSources.size()];
+        for (int i = 0; i < result.length; i++) {
+            StyleSource s = styleSources.get(i);
+            if (s.active) {
+                result[i] = s.getContextSignature(osm);
+                if (result[i] == null) {
+                    return null;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isUpToDate(int[] stamp, int cacheIdx) {
+        if (stamp.length != styleSources.size() + 1 || stamp[0] != cacheIdx) {
+            return false;
+        }
+        for (int i = 0; i < styleSources.size(); i++) {
+            StyleSource s = styleSources.get(i);
+            if (stamp[i + 1] != (s.active ? s.getGeneration() : -s.getGeneration())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] computeStamp(int cacheIdx) {
+        int[] result = new int[styleSources.size() + 1];
+        result[0] = cacheIdx;
+        for (int i = 0; i < styleSources.size(); i++) {
+            StyleSource s = styleSources.get(i);
+            result[i + 1] = s.active ? s.getGeneration() : -s.getGeneration();
+        }
+        return result;
+    }
+
+    /**
+     * Removes all entries from the cache. The hit and miss counters are kept.
+     */
+    public synchronized void clear() {
+        entries = new Entries(new int[0]);
+    }
+
+    /**
+     * Returns the number of primitives whose styles were found in the cache.
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of primitives whose styles were generated, then added to the cache.
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of primitives whose styles were generated without using the cache,
+     * because they depend on the context of the primitive.
+     * @return the number of primitives not eligible to the cache
+     */
+    public long getBypasses() {
+        return bypasses.sum();
+    }
+
+    /**
+     * Returns the number of signatures in the cache.
+     * @return the number of signatures in the cache
+     */
+    public synchronized int size() {
+        return entries.map.size();
+    }
+
+    @Override
+    public String toString() {
+        return hits + " hits, " + misses + " misses, " + bypasses + " bypassed, " + size() + " entries";
+    }
+}
@@ -8,6 +8,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -16,6 +17,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.ImageIcon;
 
@@ -36,9 +38,12 @@ import org.openstreetmap.josm.tools.Utils;
  */
 public abstract class StyleSource extends SourceEntry {
 
+    private static final AtomicInteger GENERATIONS = new AtomicInteger();
+
     private final List<Throwable> errors = new CopyOnWriteArrayList<>();
     private final Set<String> warnings = new CopyOnWriteArraySet<>();
     protected boolean loaded;
+    private volatile int generation;
 
     /**
      * The zip file containing the icons for this style
@@ -99,6 +104,20 @@ public abstract class StyleSource extends SourceEntry {
      */
     public abstract void apply(MultiCascade mc, IPrimitive osm, double scale, boolean pretendWayIsClosed);
 
+    /**
+     * Computes the part of the context of the given primitive the styles of this source depend on.
+     * <p>
+     * Two primitives with the same type, tags, state (closed, modified, new, selected) and context signature
+     * get the same styles from this source. The context includes the parents, the children and the geometry of the
+     * primitive, and its signature is usually the set of context dependent rules matching the primitive.
+     * @param osm the primitive
+     * @return the context signature of the primitive, or {@code null} if the styles of the primitive
+     * cannot be shared with other primitives. {@code null} by default
+     */
+    public BitSet getContextSignature(IPrimitive osm) {
+        return null;
+    }
+
     /**
      * Loads the complete style source.
      */
@@ -183,6 +202,7 @@ public abstract class StyleSource extends SourceEntry {
      * Initialize the class.
      */
     protected void init() {
+        generation = GENERATIONS.incrementAndGet();
         errors.clear();
         imageIconProvider = null;
         icon = null;
@@ -276,4 +296,13 @@ public abstract class StyleSource extends SourceEntry {
     public final boolean isLoaded() {
         return loaded;
     }
+
+    /**
+     * Returns the generation of this style, which changes each time the style is (re)loaded.
+     * The generations of all styles are distinct, so that they can be used to detect any change of the loaded styles.
+     * @return the generation of this style, or {@code 0} if it has never been loaded
+     */
+    public final int getGeneration() {
+        return generation;
+    }
 }
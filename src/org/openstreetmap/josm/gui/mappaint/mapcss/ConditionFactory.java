@@ -182,6 +182,8 @@ public final class ConditionFactory {
 
         private final BiFunction<String, String, Boolean> function;
 
+        private final IntFunction<Boolean> comparatorResult;
+
         private final boolean negated;
 
         /**
@@ -190,6 +192,7 @@ public final class ConditionFactory {
          */
         Op(BiFunction<String, String, Boolean> func) {
             this.function = func;
+            this.comparatorResult = null;
             negated = false;
         }
 
@@ -198,6 +201,7 @@ public final class ConditionFactory {
          * @param comparatorResult A function to mapt the result of the comparison
          */
         Op(IntFunction<Boolean> comparatorResult) {
+            this.comparatorResult = comparatorResult;
             this.function = (test, prototype) -> {
                 float testFloat;
                 try {
@@ -219,6 +223,7 @@ public final class ConditionFactory {
          */
         Op(Op negate) {
             this.function = (a, b) -> !negate.function.apply(a, b);
+            this.comparatorResult = null;
             negated = true;
         }
 
@@ -234,6 +239,113 @@ public final class ConditionFactory {
             else
                 return function.apply(testString, prototypeString);
         }
+
+        /**
+         * Returns a predicate that evaluates values against a fixed reference string, like {@link #eval(String, String)}.
+         * <p>
+         * The reference is parsed once (as number, regular expression or list), so that testing a value does not allocate
+         * objects for most operations.
+         * @param prototypeString The reference string
+         * @return a predicate giving the same results as {@code eval(testString, prototypeString)}
+         * @see MapCSSCompiler
+         */
+        public Predicate<String> compile(String prototypeString) {
+            switch (this) {
+            case EQ:
+                return prototypeString::equals;
+            case NEQ:
+                return test -> !prototypeString.equals(test);
+            case GREATER_OR_EQUAL:
+            case GREATER:
+            case LESS_OR_EQUAL:
+            case LESS:
+                try {
+                    float prototypeFloat = Float.parseFloat(prototypeString);
+                    return test -> {
+                        if (test == null)
+                            return false;
+                        float testFloat;
+                        try {
+                            testFloat = Float.parseFloat(test);
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                        return comparatorResult.apply(Float.compare(testFloat, prototypeFloat));
+                    };
+                } catch (NumberFormatException e) {
+                    // fail when evaluating, as if not compiled
+                    return test -> eval(test, prototypeString);
+                }
+            case REGEX:
+            case NREGEX:
+                try {
+                    Pattern pattern = Pattern.compile(prototypeString);
+                    return this == REGEX
+                            ? test -> test != null && pattern.matcher(test).find()
+                            : test -> test == null || !pattern.matcher(test).find();
+                } catch (PatternSyntaxException e) {
+                    return test -> eval(test, prototypeString);
+                }
+            case ONE_OF:
+                if (prototypeString.isEmpty() || prototypeString.indexOf(';') >= 0
+                        || isSpace(prototypeString.charAt(0)) || isSpace(prototypeString.charAt(prototypeString.length() - 1))) {
+                    // corner cases of String.split
+                    return test -> eval(test, prototypeString);
+                }
+                return test -> test != null && isOneOf(test, prototypeString);
+            case BEGINS_WITH:
+                return test -> test != null && test.startsWith(prototypeString);
+            case ENDS_WITH:
+                return test -> test != null && test.endsWith(prototypeString);
+            case CONTAINS:
+                return test -> test != null && test.contains(prototypeString);
+            default:
+                return test -> eval(test, prototypeString);
+            }
+        }
+
+        /**
+         * Determines if a character is matched by {@code \s} in regular expressions.
+         * @param c character
+         * @return {@code true} for space, tab, line feed, vertical tab, form feed and carriage return
+         */
+        private static boolean isSpace(char c) {
+            return c == ' ' || (c >= '\t' && c <= '\r');
+        }
+
+        /**
+         * Same as {@link #ONE_OF} without splitting {@code test} with a regular expression.
+         * @param test the list of values separated by ';'
+         * @param prototype the value to find. Not empty, without ';' and not starting or ending with a space
+         * @return {@code true} if {@code prototype} is one of the values
+         */
+        private static boolean isOneOf(String test, String prototype) {
+            int length = test.length();
+            int start = 0;
+            while (start <= length) {
+                int end = test.indexOf(';', start);
+                if (end < 0) {
+                    end = length;
+                }
+                int from = start;
+                int to = end;
+                if (start > 0) {
+                    while (from < to && isSpace(test.charAt(from))) {
+                        from++;
+                    }
+                }
+                if (end < length) {
+                    while (to > from && isSpace(test.charAt(to - 1))) {
+                        to--;
+                    }
+                }
+                if (to - from == prototype.length() && test.regionMatches(from, prototype, 0, to - from)) {
+                    return true;
+                }
+                start = end + 1;
+            }
+            return false;
+        }
     }
 
     /**
@@ -0,0 +1,208 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.ClassCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.ExpressionCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.IndexCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.KeyCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.KeyValueCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.PseudoClassCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.RoleCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.SimpleKeyValueCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.AndOperator;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.ArrayFunction;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.CondOperator;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.LengthFunction;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.MinMaxFunction;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.NullExpression;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.OrOperator;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.ParameterFunction;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Instruction.AssignmentInstruction;
+import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSRule.Declaration;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.AbstractSelector;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.ChildOrParentSelector;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.OptimizedGeneralSelector;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Subpart.ExpressionSubpart;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Subpart.StringSubpart;
+
+/**
+ * Determines whether a MapCSS rule may give different results for two primitives of the same type,
+ * with the same tags and in the same state (closed, modified, new, selected).
+ * <p>
+ * This is the case for rules with parent or child selectors, with pseudo classes depending on the geometry
+ * or the surroundings of the primitive, and with functions accessing more than the tags and the cascade.
+ * Unknown conditions, expressions and instructions are considered to depend on the context.
+ */
+final class ContextDependencyDetector {
+
+    /**
+     * How a rule depends on the context of the primitive.
+     */
+    enum Dependency {
+        /** The rule only depends on the tags and the state of the primitive */
+        NONE,
+        /** Only the selector depends on the context, and it can be matched on its own as it does not read the cascade */
+        SELECTOR,
+        /** The declaration depends on the context, or the selector cannot be matched on its own */
+        FULL
+    }
+
+    /** Pseudo classes that only depend on the tags and the state of the primitive */
+    private static final Set<String> STATE_PSEUDO_CLASSES = new HashSet<>(Arrays.asList(
+            "closed", "modified", "_new", "tagged", "selected"));
+
+    /** Functions with an environment parameter that only read the tags of the primitive, the cascade or the style settings */
+    private static final Set<String> STATE_FUNCTIONS = new HashSet<>(Arrays.asList(
+            "prop", "is_prop_set", "tag", "has_tag_key", "number_of_tags", "setting", "JOSM_pref"));
+
+    /** Functions reading the cascade */
+    private static final Set<String> CASCADE_FUNCTIONS = new HashSet<>(Arrays.asList("prop", "is_prop_set"));
+
+    /** Functions without environment parameter that do not return the same result for the same arguments */
+    private static final Set<String> VOLATILE_FUNCTIONS = new HashSet<>(Arrays.asList("random"));
+
+    private ContextDependencyDetector() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * Determines how the given rule depends on the context of the primitive.
+     * @param rule MapCSS rule
+     * @return how the rule depends on the context of the primitive
+     */
+    static Dependency getDependency(MapCSSRule rule) {
+        if (dependsOnContext(rule.declaration)) {
+            return Dependency.FULL;
+        } else if (!dependsOnContext(rule.selector)) {
+            return Dependency.NONE;
+        } else if (rule.selector.getSubpart() instanceof StringSubpart && !readsCascade(rule.selector)) {
+            return Dependency.SELECTOR;
+        }
+        return Dependency.FULL;
+    }
+
+    private static boolean dependsOnContext(Selector selector) {
+        // parent and child selectors depend on the referrers or the members of the primitive
+        if (!(selector instanceof OptimizedGeneralSelector)) {
+            return true;
+        }
+        Subpart subpart = selector.getSubpart();
+        if (subpart instanceof ExpressionSubpart) {
+            if (dependsOnContext(((ExpressionSubpart) subpart).id)) {
+                return true;
+            }
+        } else if (!(subpart instanceof StringSubpart)) {
+            return true;
+        }
+        for (Condition c : ((OptimizedGeneralSelector) selector).getConditions()) {
+            if (dependsOnContext(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean dependsOnContext(Condition c) {
+        if (c instanceof SimpleKeyValueCondition || c instanceof KeyValueCondition || c instanceof KeyCondition
+                || c instanceof ClassCondition) {
+            return false;
+        } else if (c instanceof PseudoClassCondition) {
+            PseudoClassCondition pc = (PseudoClassCondition) c;
+            return pc.method == null || !STATE_PSEUDO_CLASSES.contains(pc.method.getName());
+        } else if (c instanceof ExpressionCondition) {
+            return dependsOnContext(((ExpressionCondition) c).e);
+        }
+        return true;
+    }
+
+    private static boolean dependsOnContext(Declaration declaration) {
+        for (Instruction i : declaration.instructions) {
+            if (!(i instanceof AssignmentInstruction)) {
+                return true;
+            }
+            Object val = ((AssignmentInstruction) i).val;
+            if (val instanceof Expression && dependsOnContext((Expression) val)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean dependsOnContext(Expression e) {
+        if (e instanceof ParameterFunction) {
+            ParameterFunction f = (ParameterFunction) e;
+            String name = f.m.getName();
+            if (f.needsEnvironment ? !STATE_FUNCTIONS.contains(name) : VOLATILE_FUNCTIONS.contains(name)) {
+                return true;
+            }
+        }
+        List<Expression> args = getArguments(e);
+        return args == null || args.stream().anyMatch(ContextDependencyDetector::dependsOnContext);
+    }
+
+    private static boolean readsCascade(Selector selector) {
+        if (selector instanceof ChildOrParentSelector) {
+            ChildOrParentSelector s = (ChildOrParentSelector) selector;
+            return readsCascade(s.left) || readsCascade(s.link) || readsCascade(s.right);
+        } else if (selector instanceof AbstractSelector) {
+            for (Condition c : ((AbstractSelector) selector).getConditions()) {
+                if (readsCascade(c)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean readsCascade(Condition c) {
+        if (c instanceof ClassCondition) {
+            return true;
+        } else if (c instanceof ExpressionCondition) {
+            return readsCascade(((ExpressionCondition) c).e);
+        }
+        return !(c instanceof SimpleKeyValueCondition || c instanceof KeyValueCondition || c instanceof KeyCondition
+                || c instanceof PseudoClassCondition || c instanceof RoleCondition || c instanceof IndexCondition);
+    }
+
+    private static boolean readsCascade(Expression e) {
+        if (e instanceof ParameterFunction && CASCADE_FUNCTIONS.contains(((ParameterFunction) e).m.getName())) {
+            return true;
+        }
+        List<Expression> args = getArguments(e);
+        return args == null || args.stream().anyMatch(ContextDependencyDetector::readsCascade);
+    }
+
+    /**
+     * Returns the arguments of an expression.
+     * @param e expression
+     * @return the arguments of the expression, or {@code null} for an unknown kind of expression
+     */
+    private static List<Expression> getArguments(Expression e) {
+        if (e instanceof LiteralExpression || e instanceof NullExpression) {
+            return Collections.emptyList();
+        } else if (e instanceof ParameterFunction) {
+            return ((ParameterFunction) e).args;
+        } else if (e instanceof ArrayFunction) {
+            return ((ArrayFunction) e).args;
+        } else if (e instanceof CondOperator) {
+            CondOperator op = (CondOperator) e;
+            return Arrays.asList(op.condition, op.firstOption, op.secondOption);
+        } else if (e instanceof AndOperator) {
+            return ((AndOperator) e).args;
+        } else if (e instanceof OrOperator) {
+            return ((OrOperator) e).args;
+        } else if (e instanceof LengthFunction) {
+            return Collections.singletonList(((LengthFunction) e).arg);
+        } else if (e instanceof MinMaxFunction) {
+            return ((MinMaxFunction) e).args;
+        }
+        return null;
+    }
+}
@@ -1117,7 +1117,7 @@ public final class ExpressionFactory {
      */
     public static class CondOperator implements Expression {
 
-        private final Expression condition, firstOption, secondOption;
+        final Expression condition, firstOption, secondOption;
 
         /**
          * Constructs a new {@code CondOperator}.
@@ -1146,7 +1146,7 @@ public final class ExpressionFactory {
      */
     public static class AndOperator implements Expression {
 
-        private final List<Expression> args;
+        final List<Expression> args;
 
         /**
          * Constructs a new {@code AndOperator}.
@@ -1173,7 +1173,7 @@ public final class ExpressionFactory {
      */
     public static class OrOperator implements Expression {
 
-        private final List<Expression> args;
+        final List<Expression> args;
 
         /**
          * Constructs a new {@code OrOperator}.
@@ -1205,7 +1205,7 @@ public final class ExpressionFactory {
      */
     public static class LengthFunction implements Expression {
 
-        private final Expression arg;
+        final Expression arg;
 
         /**
          * Constructs a new {@code LengthFunction}.
@@ -1232,7 +1232,7 @@ public final class ExpressionFactory {
      */
     public static class MinMaxFunction implements Expression {
 
-        private final List<Expression> args;
+        final List<Expression> args;
         private final boolean computeMax;
 
         /**
@@ -1273,11 +1273,11 @@ public final class ExpressionFactory {
      */
     public static class ParameterFunction implements Expression {
 
-        private final Method m;
-        private final boolean nullable;
-        private final List<Expression> args;
-        private final Class<?>[] expectedParameterTypes;
-        private final boolean needsEnvironment;
+        final Method m;
+        final boolean nullable;
+        final List<Expression> args;
+        final Class<?>[] expectedParameterTypes;
+        final boolean needsEnvironment;
 
         /**
          * Constructs a new {@code ParameterFunction}.
@@ -1356,7 +1356,7 @@ public final class ExpressionFactory {
 
         private final Method m;
         private final boolean nullable;
-        private final List<Expression> args;
+        final List<Expression> args;
         private final Class<?>[] expectedParameterTypes;
         private final Class<?> arrayComponentType;
 
@@ -0,0 +1,362 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.PatternSyntaxException;
+
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.gui.mappaint.Cascade;
+import org.openstreetmap.josm.gui.mappaint.Environment;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles.IconReference;
+import org.openstreetmap.josm.gui.mappaint.StyleKeys;
+import org.openstreetmap.josm.gui.mappaint.StyleSource;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.ExpressionCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.KeyCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.KeyMatchType;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.KeyValueCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ConditionFactory.SimpleKeyValueCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.ExpressionFactory.ParameterFunction;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Instruction.AssignmentInstruction;
+import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSRule.Declaration;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.GeneralSelector;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.OptimizedGeneralSelector;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Compiles the rules of a MapCSS style into lambdas specialized for their selectors and instructions.
+ * <p>
+ * The interpreted rules evaluate each {@link Condition} through its generic implementation, e.g. by parsing the reference
+ * value of a numeric comparison or by splitting a list with a regular expression each time a primitive is tested.
+ * Compiled rules do this work once, when the style is loaded, and chain the conditions and instructions of a rule
+ * without going through the selector and declaration classes.
+ * <p>
+ * Conditions and expressions without a specialized form are still evaluated by their own implementation,
+ * so that compiled rules always give the same result as interpreted ones.
+ * @see MapCSSStyleSource#loadStyleSource(boolean)
+ */
+public final class MapCSSCompiler {
+
+    /**
+     * Whether map paint styles are compiled when loaded.
+     */
+    public static final BooleanProperty COMPILE_STYLES = new BooleanProperty("mappaint.mapcss.compile", true);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * The interfaces implemented by the generated lambdas calling functions, by number of parameters.
+     */
+    private static final Class<?>[] INVOKERS = {Invoker0.class, Invoker1.class, Invoker2.class, Invoker3.class, Invoker4.class};
+
+    @FunctionalInterface
+    interface Invoker0 {
+        Object invoke();
+    }
+
+    @FunctionalInterface
+    interface Invoker1 {
+        Object invoke(Object a0);
+    }
+
+    @FunctionalInterface
+    interface Invoker2 {
+        Object invoke(Object a0, Object a1);
+    }
+
+    @FunctionalInterface
+    interface Invoker3 {
+        Object invoke(Object a0, Object a1, Object a2);
+    }
+
+    @FunctionalInterface
+    interface Invoker4 {
+        Object invoke(Object a0, Object a1, Object a2, Object a3);
+    }
+
+    private MapCSSCompiler() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * A rule whose selector and declaration have been compiled.
+     */
+    static final class CompiledRule extends MapCSSRule {
+        private final Predicate<Environment> matcher;
+        private final Consumer<Environment> executor;
+
+        CompiledRule(MapCSSRule rule, Predicate<Environment> matcher, Consumer<Environment> executor) {
+            super(rule.selector, rule.declaration);
+            this.matcher = matcher;
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean matches(Environment env) {
+            return matcher.test(env);
+        }
+
+        @Override
+        public void execute(Environment env) {
+            executor.accept(env);
+        }
+    }
+
+    /**
+     * Compiles a rule.
+     * @param rule the rule to compile
+     * @param source the style source the rule belongs to, which will be given as {@link Environment#source} when applying it
+     * @return a rule with the same selector and declaration, whose {@link MapCSSRule#matches} and
+     * {@link MapCSSRule#execute} methods run the compiled form
+     */
+    public static MapCSSRule compile(MapCSSRule rule, StyleSource source) {
+        return new CompiledRule(rule, compile(rule.selector), compile(rule.declaration, source));
+    }
+
+    /**
+     * Compiles a selector.
+     * @param selector the selector
+     * @return a predicate equivalent to {@link Selector#matches}
+     */
+    public static Predicate<Environment> compile(Selector selector) {
+        // only the conditions of the primitive itself are compiled, other selectors need to set up the environment
+        if (selector.getClass() == OptimizedGeneralSelector.class) {
+            return compileConditions(((OptimizedGeneralSelector) selector).conds);
+        } else if (selector.getClass() == GeneralSelector.class) {
+            GeneralSelector s = (GeneralSelector) selector;
+            Predicate<Environment> conditions = compileConditions(s.conds);
+            return env -> s.matchesBase(env) && conditions.test(env);
+        }
+        return selector::matches;
+    }
+
+    private static Predicate<Environment> compileConditions(List<Condition> conds) {
+        if (conds == null || conds.isEmpty()) {
+            return env -> true;
+        }
+        @SuppressWarnings("unchecked")
+        Predicate<Environment>[] predicates = conds.stream().map(MapCSSCompiler::compile).toArray(Predicate[]::new);
+        if (predicates.length == 1) {
+            return withPatternCheck(predicates[0], conds);
+        }
+        return withPatternCheck(env -> {
+            for (Predicate<Environment> p : predicates) {
+                if (!p.test(env)) {
+                    return false;
+                }
+            }
+            return true;
+        }, conds);
+    }
+
+    private static Predicate<Environment> withPatternCheck(Predicate<Environment> predicate, List<Condition> conds) {
+        return env -> {
+            try {
+                return predicate.test(env);
+            } catch (PatternSyntaxException e) {
+                Logging.log(Logging.LEVEL_ERROR, "PatternSyntaxException while applying condition" + conds + ':', e);
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Compiles a condition in the primitive context.
+     * @param condition the condition
+     * @return a predicate equivalent to {@link Condition#applies}
+     */
+    public static Predicate<Environment> compile(Condition condition) {
+        if (condition.getClass() == SimpleKeyValueCondition.class) {
+            String k = ((SimpleKeyValueCondition) condition).k;
+            String v = ((SimpleKeyValueCondition) condition).v;
+            return env -> v.equals(env.osm.get(k));
+        } else if (condition.getClass() == KeyValueCondition.class && !((KeyValueCondition) condition).considerValAsKey) {
+            String k = ((KeyValueCondition) condition).k;
+            Predicate<String> value = ((KeyValueCondition) condition).op.compile(((KeyValueCondition) condition).v);
+            return env -> value.test(env.osm.get(k));
+        } else if (condition.getClass() == KeyCondition.class) {
+            KeyCondition c = (KeyCondition) condition;
+            String label = c.label;
+            boolean negate = c.negateResult;
+            if (c.matchType == KeyMatchType.EQ) {
+                return env -> env.osm.hasKey(label) ^ negate;
+            } else if (c.matchType == KeyMatchType.TRUE) {
+                return env -> env.osm.isKeyTrue(label) ^ negate;
+            } else if (c.matchType == KeyMatchType.FALSE) {
+                return env -> env.osm.isKeyFalse(label) ^ negate;
+            }
+        } else if (condition.getClass() == ExpressionCondition.class) {
+            Expression e = compile(((ExpressionCondition) condition).e);
+            return env -> {
+                Boolean b = Cascade.convertTo(e.evaluate(env), Boolean.class);
+                return b != null && b;
+            };
+        }
+        return condition::applies;
+    }
+
+    /**
+     * Compiles an expression.
+     * <p>
+     * Functions with fixed parameters are called through a generated lambda instead of reflection.
+     * @param expression the expression
+     * @return an expression giving the same result as {@code expression}
+     */
+    public static Expression compile(Expression expression) {
+        if (expression instanceof ParameterFunction) {
+            return compile((ParameterFunction) expression);
+        }
+        return expression;
+    }
+
+    private static Expression compile(ParameterFunction f) {
+        MethodHandle target;
+        try {
+            target = LOOKUP.unreflect(f.m);
+        } catch (IllegalAccessException e) {
+            Logging.log(Logging.LEVEL_WARN, "Unable to compile " + f, e);
+            return f;
+        }
+        int n = f.expectedParameterTypes.length;
+        if (n >= INVOKERS.length || target.type().returnType() == void.class) {
+            return f;
+        }
+        Object invoker;
+        try {
+            invoker = LambdaMetafactory.metafactory(LOOKUP, "invoke", MethodType.methodType(INVOKERS[n]),
+                    MethodType.genericMethodType(n), target, target.type().wrap()).getTarget().invoke();
+        } catch (Throwable e) { // NOPMD
+            Logging.log(Logging.LEVEL_WARN, "Unable to compile " + f, e);
+            return f;
+        }
+        // the arguments of the function, the environment being the first one if needed
+        @SuppressWarnings("unchecked")
+        Function<Environment, Object>[] a = new Function[n];
+        int first = 0;
+        if (f.needsEnvironment) {
+            a[0] = env -> env;
+            first = 1;
+        }
+        for (int i = first; i < n; i++) {
+            Expression arg = compile(f.args.get(i - first));
+            Class<?> type = f.expectedParameterTypes[i];
+            a[i] = env -> Cascade.convertTo(arg.evaluate(env), type);
+        }
+        return compile(f, n, invoker, a);
+    }
+
+    // the arguments are evaluated one after another, the function is not called as soon as one of them is null
+    private static Expression compile(ParameterFunction f, int n, Object invoker, Function<Environment, Object>[] a) {
+        boolean nullable = f.nullable;
+        switch (n) {
+        case 0:
+            return env -> ((Invoker0) invoker).invoke();
+        case 1:
+            return env -> {
+                Object a0 = a[0].apply(env);
+                if (a0 == null && !nullable) return null;
+                try {
+                    return ((Invoker1) invoker).invoke(a0);
+                } catch (RuntimeException e) {
+                    Logging.error(e);
+                    return null;
+                }
+            };
+        case 2:
+            return env -> {
+                Object a0 = a[0].apply(env);
+                if (a0 == null && !nullable) return null;
+                Object a1 = a[1].apply(env);
+                if (a1 == null && !nullable) return null;
+                try {
+                    return ((Invoker2) invoker).invoke(a0, a1);
+                } catch (RuntimeException e) {
+                    Logging.error(e);
+                    return null;
+                }
+            };
+        case 3:
+            return env -> {
+                Object a0 = a[0].apply(env);
+                if (a0 == null && !nullable) return null;
+                Object a1 = a[1].apply(env);
+                if (a1 == null && !nullable) return null;
+                Object a2 = a[2].apply(env);
+                if (a2 == null && !nullable) return null;
+                try {
+                    return ((Invoker3) invoker).invoke(a0, a1, a2);
+                } catch (RuntimeException e) {
+                    Logging.error(e);
+                    return null;
+                }
+            };
+        default:
+            return env -> {
+                Object a0 = a[0].apply(env);
+                if (a0 == null && !nullable) return null;
+                Object a1 = a[1].apply(env);
+                if (a1 == null && !nullable) return null;
+                Object a2 = a[2].apply(env);
+                if (a2 == null && !nullable) return null;
+                Object a3 = a[3].apply(env);
+                if (a3 == null && !nullable) return null;
+                try {
+                    return ((Invoker4) invoker).invoke(a0, a1, a2, a3);
+                } catch (RuntimeException e) {
+                    Logging.error(e);
+                    return null;
+                }
+            };
+        }
+    }
+
+    /**
+     * Compiles a declaration.
+     * @param declaration the declaration
+     * @param source the style source the declaration belongs to
+     * @return a consumer equivalent to {@link Declaration#execute}
+     */
+    public static Consumer<Environment> compile(Declaration declaration, StyleSource source) {
+        @SuppressWarnings("unchecked")
+        Consumer<Environment>[] instructions = declaration.instructions.stream()
+                .map(i -> compile(i, source)).toArray(Consumer[]::new);
+        if (instructions.length == 1) {
+            return instructions[0];
+        }
+        return env -> {
+            for (Consumer<Environment> i : instructions) {
+                i.accept(env);
+            }
+        };
+    }
+
+    /**
+     * Compiles an instruction.
+     * @param instruction the instruction
+     * @param source the style source the instruction belongs to
+     * @return a consumer equivalent to {@link Instruction#execute}
+     */
+    public static Consumer<Environment> compile(Instruction instruction, StyleSource source) {
+        if (!(instruction instanceof AssignmentInstruction)) {
+            return instruction::execute;
+        }
+        AssignmentInstruction a = (AssignmentInstruction) instruction;
+        String key = a.key;
+        boolean image = StyleKeys.ICON_IMAGE.equals(key) || StyleKeys.FILL_IMAGE.equals(key) || StyleKeys.REPEAT_IMAGE.equals(key);
+        if (a.val instanceof Expression) {
+            if (image) {
+                return instruction::execute;
+            }
+            Expression expression = compile((Expression) a.val);
+            return env -> env.mc.getOrCreateCascade(env.layer).putOrClear(key, expression.evaluate(env));
+        }
+        Object value = image && a.val instanceof String ? new IconReference((String) a.val, source) : a.val;
+        return env -> env.mc.getOrCreateCascade(env.layer).putOrClear(key, value);
+    }
+}
@@ -92,6 +92,16 @@ public class MapCSSRule implements Comparable<MapCSSRule> {
         this.declaration = declaration;
     }
 
+    /**
+     * Determines if the selector of this rule matches the environment {@code env}.
+     * @param env the environment
+     * @return true, if the selector applies
+     * @see Selector#matches(Environment)
+     */
+    public boolean matches(Environment env) {
+        return selector.matches(env);
+    }
+
     /**
      * <p>Executes the instructions against the environment {@code env}</p>
      *
@@ -268,6 +268,16 @@ public class MapCSSStyleSource extends StyleSource {
          * Rules that do not require any key to be present. Only the index in the {@link #rules} array is stored.
          */
         private final BitSet remaining = new BitSet();
+        /**
+         * Rules whose selector depends on more than the tags and the state of the primitive, e.g. on its parents,
+         * but whose declaration does not. Only the index in the {@link #rules} array is stored.
+         */
+        private final BitSet contextSelectors = new BitSet();
+        /**
+         * Other rules that depend on more than the tags and the state of the primitive.
+         * Only the index in the {@link #rules} array is stored.
+         */
+        private final BitSet contextDependent = new BitSet();
 
         /**
          * Add a rule to this index. This needs to be called before {@link #initIndex()} is called.
@@ -286,6 +296,16 @@ public class MapCSSStyleSource extends StyleSource {
             Collections.sort(rules);
             for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
                 MapCSSRule r = rules.get(ruleIndex);
+                switch (ContextDependencyDetector.getDependency(r)) {
+                    case SELECTOR:
+                        contextSelectors.set(ruleIndex);
+                        break;
+                    case FULL:
+                        contextDependent.set(ruleIndex);
+                        break;
+                    default:
+                        break;
+                }
                 // find the rightmost selector, this must be a GeneralSelector
                 Selector selRightmost = r.selector;
                 while (selRightmost instanceof ChildOrParentSelector) {
@@ -369,6 +389,45 @@ public class MapCSSStyleSource extends StyleSource {
             return candidatesIterator;
         }
 
+        /**
+         * Computes the part of the context of the primitive the rules that might match it depend on.
+         * Two primitives with the same type, tags, state and context signature get the same styles from this index.
+         * <p>
+         * The signature is the set of rules matching the primitive among the rule candidates whose selector depends
+         * on the context, for instance on the parents, the children or the geometry of the primitive.
+         * <p>
+         * You must have a read lock of STYLE_SOURCE_LOCK when calling this method.
+         *
+         * @param osm the primitive to match
+         * @param source the style source of this index
+         * @return the indices of the matching context dependent rules, or {@code null} if a rule candidate
+         * depends on the context in another way
+         * @see #getRuleCandidates(IPrimitive)
+         */
+        public BitSet getContextSignature(IPrimitive osm, MapCSSStyleSource source) {
+            final BitSet signature = new BitSet();
+            if (contextSelectors.isEmpty() && contextDependent.isEmpty()) {
+                return signature;
+            }
+            final BitSet ruleCandidates = new BitSet(rules.size());
+            ruleCandidates.or(remaining);
+            osm.visitKeys(new RuleCandidatesIterator(ruleCandidates));
+            if (ruleCandidates.intersects(contextDependent)) {
+                return null;
+            }
+            ruleCandidates.and(contextSelectors);
+            Environment env = new Environment(osm, new MultiCascade(), null, source);
+            for (int i = ruleCandidates.nextSetBit(0); i >= 0; i = ruleCandidates.nextSetBit(i + 1)) {
+                MapCSSRule r = rules.get(i);
+                env.clearSelectorMatchingInformation();
+                env.layer = r.selector.getSubpart().getId(env);
+                if (r.matches(env)) {
+                    signature.set(i);
+                }
+            }
+            return signature;
+        }
+
         /**
          * Clear the index.
          * <p>
@@ -378,6 +437,8 @@ public class MapCSSStyleSource extends StyleSource {
             rules.clear();
             index.clear();
             remaining.clear();
+            contextSelectors.clear();
+            contextDependent.clear();
         }
     }
 
@@ -461,6 +522,7 @@ public class MapCSSStyleSource extends StyleSource {
             if (metadataOnly) {
                 return;
             }
+            boolean compile = MapCSSCompiler.COMPILE_STYLES.get();
             // optimization: filter rules for different primitive types
             for (MapCSSRule r: rules) {
                 // find the rightmost selector, this must be a GeneralSelector
@@ -469,6 +531,9 @@ public class MapCSSStyleSource extends StyleSource {
                     selRightmost = ((ChildOrParentSelector) selRightmost).right;
                 }
                 MapCSSRule optRule = new MapCSSRule(r.selector.optimizedBaseCheck(), r.declaration);
+                if (compile) {
+                    optRule = MapCSSCompiler.compile(optRule, this);
+                }
                 final String base = ((GeneralSelector) selRightmost).getBase();
                 switch (base) {
                     case "node":
@@ -645,27 +710,35 @@ public class MapCSSStyleSource extends StyleSource {
     }
 
     @Override
-    public void apply(MultiCascade mc, IPrimitive osm, double scale, boolean pretendWayIsClosed) {
-        MapCSSRuleIndex matchingRuleIndex;
+    public BitSet getContextSignature(IPrimitive osm) {
+        return getRuleIndex(osm).getContextSignature(osm, this);
+    }
+
+    private MapCSSRuleIndex getRuleIndex(IPrimitive osm) {
         if (osm instanceof INode) {
-            matchingRuleIndex = nodeRules;
+            return nodeRules;
         } else if (osm instanceof IWay) {
             if (OsmUtils.isFalse(osm.get("area"))) {
-                matchingRuleIndex = wayNoAreaRules;
+                return wayNoAreaRules;
             } else {
-                matchingRuleIndex = wayRules;
+                return wayRules;
             }
         } else if (osm instanceof IRelation) {
             if (((IRelation<?>) osm).isMultipolygon()) {
-                matchingRuleIndex = multipolygonRules;
+                return multipolygonRules;
             } else if (osm.hasKey("#canvas")) {
-                matchingRuleIndex = canvasRules;
+                return canvasRules;
             } else {
-                matchingRuleIndex = relationRules;
+                return relationRules;
             }
         } else {
             throw new IllegalArgumentException("Unsupported type: " + osm);
         }
+    }
+
+    @Override
+    public void apply(MultiCascade mc, IPrimitive osm, double scale, boolean pretendWayIsClosed) {
+        MapCSSRuleIndex matchingRuleIndex = getRuleIndex(osm);
 
         Environment env = new Environment(osm, mc, null, this);
         // the declaration indices are sorted, so it suffices to save the last used index
@@ -677,7 +750,7 @@ public class MapCSSStyleSource extends StyleSource {
             env.clearSelectorMatchingInformation();
             env.layer = r.selector.getSubpart().getId(env);
             String sub = env.layer;
-            if (r.selector.matches(env)) { // as side effect env.parent will be set (if s is a child selector)
+            if (r.matches(env)) { // as side effect env.parent will be set (if s is a child selector)
                 Selector s = r.selector;
                 if (s.getRange().contains(scale)) {
                     mc.range = Range.cut(mc.range, s.getRange());
@@ -0,0 +1,192 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.IWay;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
+import org.openstreetmap.josm.data.osm.event.DatasetDeltaListener;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.projection.ProjectionChangeListener;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerAddEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerChangeListener;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.tools.PreparedMultipolygon;
+import org.openstreetmap.josm.tools.PreparedPolygon;
+
+/**
+ * A cache of the ways and multipolygons prepared for the containment and crossing queries of the
+ * {@code ∈} and {@code ⧉} selectors.
+ * <p>
+ * The prepared geometries are invalidated when their nodes or members change, through the {@link DatasetDelta}s
+ * of their data sets. The cache of a data set is limited to the {@link #MAX_ENTRIES} most recently used geometries.
+ */
+public final class PreparedGeometryCache implements DatasetDeltaListener, LayerChangeListener, ProjectionChangeListener {
+
+    /**
+     * The maximum number of prepared geometries cached for each data set.
+     */
+    public static final IntegerProperty MAX_ENTRIES = new IntegerProperty("mappaint.mapcss.prepared-geometry.cache.size", 1000);
+
+    private static final PreparedGeometryCache INSTANCE = new PreparedGeometryCache();
+
+    private final Map<DataSet, Map<OsmPrimitive, Object>> cache = new ConcurrentHashMap<>();
+    /** Incremented by each invalidation, so that geometries prepared meanwhile are not cached */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private PreparedGeometryCache() {
+        ProjectionRegistry.addProjectionChangeListener(this);
+        MainApplication.getLayerManager().addLayerChangeListener(this);
+    }
+
+    /**
+     * Replies the unique instance.
+     * @return the unique instance
+     */
+    public static PreparedGeometryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the prepared polygon of a way.
+     * @param w the way
+     * @return the prepared polygon of the way
+     */
+    public PreparedPolygon getPolygon(IWay<?> w) {
+        if (w instanceof Way && w.getDataSet() != null) {
+            return get((Way) w, PreparedPolygon.class, way -> new PreparedPolygon(way.getNodes()));
+        }
+        return new PreparedPolygon(w.getNodes());
+    }
+
+    /**
+     * Returns the prepared multipolygon of a multipolygon relation.
+     * @param r the multipolygon relation
+     * @return the prepared multipolygon of the relation
+     */
+    public PreparedMultipolygon getMultipolygon(Relation r) {
+        if (r.getDataSet() != null) {
+            return get(r, PreparedMultipolygon.class, PreparedMultipolygon::new);
+        }
+        return new PreparedMultipolygon(r);
+    }
+
+    private <P extends OsmPrimitive, T> T get(P p, Class<T> type, Function<P, T> preparer) {
+        Map<OsmPrimitive, Object> map = cache.computeIfAbsent(p.getDataSet(), ds -> {
+            ds.addDatasetDeltaListener(this);
+            return Collections.synchronizedMap(new LinkedHashMap<OsmPrimitive, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<OsmPrimitive, Object> eldest) {
+                    return size() > MAX_ENTRIES.get();
+                }
+            });
+        });
+        Object prepared = map.get(p);
+        if (!type.isInstance(prepared)) {
+            // prepared outside of the lock, several threads may prepare the same geometry
+            long count = invalidations.get();
+            prepared = preparer.apply(p);
+            synchronized (map) {
+                if (count == invalidations.get()) {
+                    map.put(p, prepared);
+                }
+            }
+        }
+        return type.cast(prepared);
+    }
+
+    /**
+     * Returns the number of prepared geometries cached for a data set.
+     * @param ds the data set
+     * @return the number of prepared geometries cached for the data set
+     */
+    int size(DataSet ds) {
+        Map<OsmPrimitive, Object> map = cache.get(ds);
+        return map != null ? map.size() : 0;
+    }
+
+    /**
+     * Clears the cache for the given dataset.
+     * @param ds the data set
+     */
+    public void clear(DataSet ds) {
+        invalidations.incrementAndGet();
+        if (cache.remove(ds) != null) {
+            ds.removeDatasetDeltaListener(this);
+        }
+    }
+
+    /**
+     * Clears the whole cache.
+     */
+    public void clear() {
+        for (DataSet ds : cache.keySet()) {
+            clear(ds);
+        }
+    }
+
+    private static void invalidate(Map<OsmPrimitive, Object> map, OsmPrimitive p) {
+        map.remove(p);
+        if (!(p instanceof Relation)) {
+            // the geometry of the ways referring to a node and of the multipolygons referring to a way depends on it
+            for (OsmPrimitive ref : p.getReferrers()) {
+                invalidate(map, ref);
+            }
+        }
+    }
+
+    @Override
+    public void datasetChanged(DatasetDelta delta) {
+        Map<OsmPrimitive, Object> map = cache.get(delta.getDataset());
+        if (map == null) {
+            return;
+        }
+        synchronized (map) {
+            invalidations.incrementAndGet();
+            if (delta.isDataSetChanged()) {
+                map.clear();
+            } else {
+                delta.getRemoved().forEach(p -> invalidate(map, p));
+                delta.getMovedNodes().forEach(n -> invalidate(map, n));
+                delta.getWayNodesChanged().forEach(w -> invalidate(map, w));
+                delta.getRelationMembersChanged().forEach(r -> invalidate(map, r));
+            }
+        }
+    }
+
+    @Override
+    public void layerAdded(LayerAddEvent e) {
+        // Do nothing
+    }
+
+    @Override
+    public void layerOrderChanged(LayerOrderChangeEvent e) {
+        // Do nothing
+    }
+
+    @Override
+    public void layerRemoving(LayerRemoveEvent e) {
+        if (e.getRemovedLayer() instanceof OsmDataLayer) {
+            clear(((OsmDataLayer) e.getRemovedLayer()).getDataSet());
+        }
+    }
+
+    @Override
+    public void projectionChanged(Projection oldValue, Projection newValue) {
+        clear();
+    }
+}
@@ -31,6 +31,8 @@ import org.openstreetmap.josm.tools.CheckParameterUtil;
 import org.openstreetmap.josm.tools.Geometry;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Pair;
+import org.openstreetmap.josm.tools.PreparedMultipolygon;
+import org.openstreetmap.josm.tools.PreparedPolygon;
 import org.openstreetmap.josm.tools.SubclassFilteredCollection;
 import org.openstreetmap.josm.tools.Utils;
 
@@ -263,6 +265,7 @@ public interface Selector {
         private final class CrossingFinder extends AbstractFinder {
 
             private final String layer;
+            private PreparedPolygon polygon;
 
             private CrossingFinder(Environment e) {
                 super(e);
@@ -275,13 +278,23 @@ public interface Selector {
                 if (e.child == null && Objects.equals(layer, OsmUtils.getLayer(w))
                     && left.matches(new Environment(w).withParent(e.osm))
                     && e.osm instanceof IWay && Geometry.PolygonIntersection.CROSSING.equals(
-                            Geometry.polygonIntersection(w.getNodes(), ((IWay<?>) e.osm).getNodes()))) {
+                            PreparedPolygon.polygonIntersection(new PreparedPolygon(w.getNodes()), getPolygon()))) {
                     e.child = w;
                 }
             }
+
+            private PreparedPolygon getPolygon() {
+                if (polygon == null) {
+                    polygon = PreparedGeometryCache.getInstance().getPolygon((IWay<?>) e.osm);
+                }
+                return polygon;
+            }
         }
 
         private class ContainsFinder extends AbstractFinder {
+            private PreparedPolygon polygon;
+            private PreparedMultipolygon multipolygon;
+
             protected ContainsFinder(Environment e) {
                 super(e);
                 CheckParameterUtil.ensureThat(!(e.osm instanceof INode), "Nodes not supported");
@@ -290,9 +303,9 @@ public interface Selector {
             @Override
             public void visit(INode n) {
                 if (e.child == null && left.matches(new Environment(n).withParent(e.osm))
-                    && ((e.osm instanceof IWay && Geometry.nodeInsidePolygon(n, ((IWay<?>) e.osm).getNodes()))
+                    && ((e.osm instanceof IWay && getPolygon().contains(n))
                             || (e.osm instanceof Relation && (
-                                    (Relation) e.osm).isMultipolygon() && Geometry.isNodeInsideMultiPolygon(n, (Relation) e.osm, null)))) {
+                                    (Relation) e.osm).isMultipolygon() && getMultipolygon().contains(n)))) {
                     e.child = n;
                 }
             }
@@ -301,13 +314,27 @@ public interface Selector {
             public void visit(IWay<?> w) {
                 if (e.child == null && left.matches(new Environment(w).withParent(e.osm))
                     && ((e.osm instanceof IWay && Geometry.PolygonIntersection.FIRST_INSIDE_SECOND.equals(
-                            Geometry.polygonIntersection(w.getNodes(), ((IWay<?>) e.osm).getNodes())))
+                            PreparedPolygon.polygonIntersection(new PreparedPolygon(w.getNodes()), getPolygon())))
                             || (e.osm instanceof Relation && (
                                     (Relation) e.osm).isMultipolygon()
-                                    && Geometry.isPolygonInsideMultiPolygon(w.getNodes(), (Relation) e.osm, null)))) {
+                                    && getMultipolygon().contains(w.getNodes())))) {
                     e.child = w;
                 }
             }
+
+            private PreparedPolygon getPolygon() {
+                if (polygon == null) {
+                    polygon = PreparedGeometryCache.getInstance().getPolygon((IWay<?>) e.osm);
+                }
+                return polygon;
+            }
+
+            private PreparedMultipolygon getMultipolygon() {
+                if (multipolygon == null) {
+                    multipolygon = PreparedGeometryCache.getInstance().getMultipolygon((Relation) e.osm);
+                }
+                return multipolygon;
+            }
         }
 
         @Override
@@ -52,7 +52,7 @@ public interface Subpart {
      * E.g. ::(concat("layer_", prop("i", "default")))
      */
     class ExpressionSubpart implements Subpart {
-        private final Expression id;
+        final Expression id;
 
         public ExpressionSubpart(Expression id) {
             this.id = id;
@@ -30,8 +30,10 @@ public class MapImage {
 
     /**
      * ImageIcon can change while the image is loading.
+     * The image and its disabled version may be requested concurrently by the painting threads of the map tiles,
+     * they are only set while holding the lock of this object.
      */
-    private Image img;
+    private volatile Image img;
 
     /**
      * The alpha (opacity) value of the image. It is multiplied to the image alpha channel.
@@ -67,12 +69,12 @@ public class MapImage {
      */
     public int offsetY;
 
-    private boolean temporary;
+    private volatile boolean temporary;
 
     /**
      * A cache that holds a disabled (gray) version of this image
      */
-    private BufferedImage disabledImgCache;
+    private volatile BufferedImage disabledImgCache;
 
     /**
      * Creates a new {@link MapImage}
@@ -110,23 +112,36 @@ public class MapImage {
     }
 
     private Image getDisabled() {
-        if (disabledImgCache != null)
+        BufferedImage disabled = disabledImgCache;
+        if (disabled != null)
+            return disabled;
+        synchronized (this) {
+            if (disabledImgCache == null) {
+                Image disImg = GuiHelper.getDisabledImage(getImage()); // fix #7498 ?
+                if (disImg instanceof BufferedImage) {
+                    disabled = (BufferedImage) disImg;
+                } else {
+                    disabled = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+                    Graphics g = disabled.getGraphics();
+                    g.drawImage(disImg, 0, 0, null);
+                    g.dispose();
+                }
+                disabledImgCache = disabled;
+            }
             return disabledImgCache;
-        if (img == null)
-            getImage(); // fix #7498 ?
-        Image disImg = GuiHelper.getDisabledImage(img);
-        if (disImg instanceof BufferedImage) {
-            disabledImgCache = (BufferedImage) disImg;
-        } else {
-            disabledImgCache = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
-            Graphics g = disabledImgCache.getGraphics();
-            g.drawImage(disImg, 0, 0, null);
-            g.dispose();
         }
-        return disabledImgCache;
     }
 
     private Image getImage() {
+        Image image = img;
+        if (image != null)
+            return image;
+        synchronized (this) {
+            return loadImage();
+        }
+    }
+
+    private Image loadImage() {
         if (img != null)
             return img;
         temporary = false;
@@ -157,11 +172,9 @@ public class MapImage {
                     }
                 }
         );
-        synchronized (this) {
-            if (img == null) {
-                img = ImageProvider.get("clock").getImage();
-                temporary = true;
-            }
+        if (img == null) {
+            img = ImageProvider.get("clock").getImage();
+            temporary = true;
         }
         return img;
     }
@@ -183,10 +183,8 @@ public class AutoCompletionList extends AbstractTableModel {
             return;
         }
 
-        // apply the pattern to list of possible values. If it matches, add the
-        // value to the list of filtered values
-        //
-        list.stream().filter(e -> e.getValue().startsWith(filter)).forEach(filtered::add);
+        // look up the values starting with the filter in the sorted values of the set
+        filtered.addAll(list.getItemsStartingWith(filter));
         fireTableDataChanged();
     }
 
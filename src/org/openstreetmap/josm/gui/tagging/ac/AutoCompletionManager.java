@@ -8,28 +8,23 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
-import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
-import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
-import org.openstreetmap.josm.data.osm.event.DataSetListener;
-import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
-import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
-import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
-import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
-import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
-import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.osm.TagMap;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
+import org.openstreetmap.josm.data.osm.event.DatasetDeltaListener;
 import org.openstreetmap.josm.data.tagging.ac.AutoCompletionItem;
 import org.openstreetmap.josm.data.tagging.ac.AutoCompletionPriority;
 import org.openstreetmap.josm.data.tagging.ac.AutoCompletionSet;
@@ -61,9 +56,13 @@ import org.openstreetmap.josm.tools.Utils;
  * data set in order to build up the auto completion list for a specific input
  * field is not efficient enough, hence this cache.
  *
+ * The uses of the tags are counted per primitive, and the member roles per relation. The counts are
+ * updated with the changes of the data set, so that a key, value or role disappears along with its last use,
+ * without looping through the data set again.
+ *
  * TODO: respect the relation type for member role autocompletion
  */
-public class AutoCompletionManager implements DataSetListener {
+public class AutoCompletionManager implements DatasetDeltaListener {
 
     /**
      * Data class to remember tags that the user has entered.
@@ -105,20 +104,23 @@ public class AutoCompletionManager implements DataSetListener {
         }
     }
 
-    /** If the dirty flag is set true, a rebuild is necessary. */
-    protected boolean dirty;
     /** The data set that is managed */
     protected DataSet ds;
 
     /**
-     * the cached tags given by a tag key and a list of values for this tag
-     * only accessed by getTagCache(), rebuild() and cachePrimitiveTags()
-     * use getTagCache() accessor
+     * the number of uses of each tag value, by tag key, {@code null} until needed
+     * only accessed by getTagCounts(), rebuild() and cachePrimitiveTags()
+     * use getTagCounts() accessor
+     */
+    private Map<String, Map<String, Integer>> tagCounts;
+
+    /**
+     * the tags counted for each tagged primitive. The tags of a primitive are shared with it, not copied
      */
-    protected MultiMap<String, String> tagCache;
+    private final Map<OsmPrimitive, TagMap> primitiveTags = new IdentityHashMap<>();
 
     /**
-     * the same as tagCache but for the preset keys and values can be accessed directly
+     * the same as tagCounts but for the preset keys and values can be accessed directly
      */
     static final MultiMap<String, String> PRESET_TAG_CACHE = new MultiMap<>();
 
@@ -128,11 +130,16 @@ public class AutoCompletionManager implements DataSetListener {
     static final Set<UserInputTag> USER_INPUT_TAG_CACHE = new LinkedHashSet<>();
 
     /**
-     * the cached list of member roles
-     * only accessed by getRoleCache(), rebuild() and cacheRelationMemberRoles()
+     * the number of uses of each member role, {@code null} until needed
+     * only accessed by getRoleCache(), rebuildRoles() and cacheRelationMemberRoles()
      * use getRoleCache() accessor
      */
-    protected Set<String> roleCache;
+    private Map<String, Integer> roleCounts;
+
+    /**
+     * the member roles counted for each relation having roles
+     */
+    private final Map<Relation, List<String>> relationRoles = new IdentityHashMap<>();
 
     /**
      * the same as roleCache but for the preset roles can be accessed directly
@@ -148,65 +155,94 @@ public class AutoCompletionManager implements DataSetListener {
      */
     public AutoCompletionManager(DataSet ds) {
         this.ds = Objects.requireNonNull(ds);
-        this.dirty = true;
     }
 
-    protected MultiMap<String, String> getTagCache() {
-        if (dirty) {
+    private Map<String, Map<String, Integer>> getTagCounts() {
+        if (tagCounts == null) {
             rebuild();
-            dirty = false;
         }
-        return tagCache;
+        return tagCounts;
     }
 
-    protected Set<String> getRoleCache() {
-        if (dirty) {
-            rebuild();
-            dirty = false;
+    protected synchronized Set<String> getRoleCache() {
+        if (roleCounts == null) {
+            rebuildRoles();
         }
-        return roleCache;
+        return new HashSet<>(roleCounts.keySet());
     }
 
     /**
-     * initializes the cache from the primitives in the dataset
+     * initializes the tag cache from the primitives in the dataset
      */
     protected void rebuild() {
-        tagCache = new MultiMap<>();
-        roleCache = new HashSet<>();
+        tagCounts = new HashMap<>();
+        primitiveTags.clear();
         cachePrimitives(ds.allNonDeletedCompletePrimitives());
     }
 
+    private void rebuildRoles() {
+        roleCounts = new HashMap<>();
+        relationRoles.clear();
+        for (Relation relation : ds.getRelations()) {
+            cacheRelationMemberRoles(relation);
+        }
+    }
+
     protected void cachePrimitives(Collection<? extends OsmPrimitive> primitives) {
         for (OsmPrimitive primitive : primitives) {
             cachePrimitiveTags(primitive);
-            if (primitive instanceof Relation) {
-                cacheRelationMemberRoles((Relation) primitive);
-            }
         }
     }
 
+    private static boolean isCached(OsmPrimitive primitive) {
+        return !primitive.isDeleted() && !primitive.isIncomplete();
+    }
+
     /**
-     * make sure, the keys and values of all tags held by primitive are
-     * in the auto completion cache
+     * Caches the keys and values of all tags held by primitive, in place of the ones previously
+     * cached for it. The tags are no longer cached if the primitive is deleted or not in the data set.
      *
      * @param primitive an OSM primitive
      */
     protected void cachePrimitiveTags(OsmPrimitive primitive) {
-        for (String key: primitive.keySet()) {
-            String value = primitive.get(key);
-            tagCache.put(key, value);
+        TagMap oldTags = primitiveTags.remove(primitive);
+        if (oldTags != null) {
+            oldTags.forEach((key, value) -> {
+                Map<String, Integer> values = tagCounts.get(key);
+                values.computeIfPresent(value, (v, count) -> count > 1 ? count - 1 : null);
+                if (values.isEmpty()) {
+                    tagCounts.remove(key);
+                }
+            });
+        }
+        if (primitive.getDataSet() == ds && isCached(primitive) && primitive.hasKeys()) {
+            TagMap tags = primitive.getKeys();
+            primitiveTags.put(primitive, tags);
+            tags.forEach((key, value) -> tagCounts.computeIfAbsent(key, k -> new HashMap<>()).merge(value, 1, Integer::sum));
         }
     }
 
     /**
-     * Caches all member roles of the relation <code>relation</code>
+     * Caches all member roles of the relation <code>relation</code>, in place of the ones previously
+     * cached for it. The roles are no longer cached if the relation is deleted or not in the data set.
      *
      * @param relation the relation
      */
     protected void cacheRelationMemberRoles(Relation relation) {
-        for (RelationMember m: relation.getMembers()) {
-            if (m.hasRole()) {
-                roleCache.add(m.getRole());
+        List<String> oldRoles = relationRoles.remove(relation);
+        if (oldRoles != null) {
+            for (String role : oldRoles) {
+                roleCounts.computeIfPresent(role, (r, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+        if (relation.getDataSet() == ds && isCached(relation)) {
+            List<String> roles = relation.getMembers().stream()
+                    .filter(RelationMember::hasRole).map(RelationMember::getRole).collect(Collectors.toList());
+            if (!roles.isEmpty()) {
+                relationRoles.put(relation, roles);
+                for (String role : roles) {
+                    roleCounts.merge(role, 1, Integer::sum);
+                }
             }
         }
     }
@@ -228,8 +264,8 @@ public class AutoCompletionManager implements DataSetListener {
      *
      * @return the list of keys held by the cache
      */
-    protected List<String> getDataKeys() {
-        return new ArrayList<>(getTagCache().keySet());
+    protected synchronized List<String> getDataKeys() {
+        return new ArrayList<>(getTagCounts().keySet());
     }
 
     protected Collection<String> getUserInputKeys() {
@@ -250,8 +286,8 @@ public class AutoCompletionManager implements DataSetListener {
      * @param key OSM key
      * @return the list of auto completion values
      */
-    protected List<String> getDataValues(String key) {
-        return new ArrayList<>(getTagCache().getValues(key));
+    protected synchronized List<String> getDataValues(String key) {
+        return new ArrayList<>(getTagCounts().getOrDefault(key, Collections.emptyMap()).keySet());
     }
 
     protected static Collection<String> getUserInputValues(String key) {
@@ -416,73 +452,37 @@ public class AutoCompletionManager implements DataSetListener {
         return setToList(getTagValues(keys), comparator);
     }
 
-    /*
-     * Implementation of the DataSetListener interface
-     *
-     */
-
     @Override
-    public void primitivesAdded(PrimitivesAddedEvent event) {
-        if (dirty)
+    public synchronized void datasetChanged(DatasetDelta delta) {
+        if (delta.isDataSetChanged()) {
+            tagCounts = null;
+            primitiveTags.clear();
+            roleCounts = null;
+            relationRoles.clear();
             return;
-        cachePrimitives(event.getPrimitives());
-    }
-
-    @Override
-    public void primitivesRemoved(PrimitivesRemovedEvent event) {
-        dirty = true;
-    }
-
-    @Override
-    public void tagsChanged(TagsChangedEvent event) {
-        if (dirty)
-            return;
-        Map<String, String> newKeys = event.getPrimitive().getKeys();
-        Map<String, String> oldKeys = event.getOriginalKeys();
-
-        if (!newKeys.keySet().containsAll(oldKeys.keySet())) {
-            // Some keys removed, might be the last instance of key, rebuild necessary
-            dirty = true;
-        } else {
-            for (Entry<String, String> oldEntry: oldKeys.entrySet()) {
-                if (!oldEntry.getValue().equals(newKeys.get(oldEntry.getKey()))) {
-                    // Value changed, might be last instance of value, rebuild necessary
-                    dirty = true;
-                    return;
-                }
-            }
-            cachePrimitives(Collections.singleton(event.getPrimitive()));
         }
-    }
-
-    @Override
-    public void nodeMoved(NodeMovedEvent event) {/* ignored */}
-
-    @Override
-    public void wayNodesChanged(WayNodesChangedEvent event) {/* ignored */}
-
-    @Override
-    public void relationMembersChanged(RelationMembersChangedEvent event) {
-        dirty = true; // TODO: not necessary to rebuid if a member is added
-    }
-
-    @Override
-    public void otherDatasetChange(AbstractDatasetChangedEvent event) {/* ignored */}
-
-    @Override
-    public void dataChanged(DataChangedEvent event) {
-        dirty = true;
+        if (tagCounts != null) {
+            Stream.of(delta.getRemoved(), delta.getAdded(), delta.getTagsChanged())
+                .flatMap(Collection::stream)
+                .forEach(this::cachePrimitiveTags);
+        }
+        if (roleCounts != null) {
+            Stream.of(delta.getRemoved(), delta.getAdded(), delta.getRelationMembersChanged())
+                .flatMap(Collection::stream)
+                .filter(Relation.class::isInstance)
+                .forEach(r -> cacheRelationMemberRoles((Relation) r));
+        }
     }
 
     private AutoCompletionManager registerListeners() {
-        ds.addDataSetListener(this);
+        ds.addDatasetDeltaListener(this);
         MainApplication.getLayerManager().addLayerChangeListener(new LayerChangeListener() {
             @Override
             public void layerRemoving(LayerRemoveEvent e) {
                 if (e.getRemovedLayer() instanceof OsmDataLayer
                         && ((OsmDataLayer) e.getRemovedLayer()).data == ds) {
                     INSTANCES.remove(ds);
-                    ds.removeDataSetListener(AutoCompletionManager.this);
+                    ds.removeDatasetDeltaListener(AutoCompletionManager.this);
                     MainApplication.getLayerManager().removeLayerChangeListener(this);
                 }
             }
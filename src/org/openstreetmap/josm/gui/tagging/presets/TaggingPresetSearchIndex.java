@@ -0,0 +1,213 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.tagging.presets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.openstreetmap.josm.gui.tagging.presets.TaggingPresetSelector.PresetClassification;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * An immutable index of the words of the names, groups and tags of tagging presets, to find the presets matching
+ * a search without testing all of them.
+ * <p>
+ * The words are stored without accents and in lower case, in a sorted dictionary for the prefix matches, with an index
+ * of their trigrams for the other substring matches. The scores are the ones of
+ * {@link PresetClassification#isMatchingName}, {@link PresetClassification#isMatchingGroup} and
+ * {@link PresetClassification#isMatchingTags}.
+ * @see TaggingPresets#getSearchIndex
+ */
+final class TaggingPresetSearchIndex {
+
+    private final List<TaggingPreset> presets;
+    private final Dictionary names;
+    private final Dictionary groups;
+    private final Dictionary tags;
+
+    /**
+     * The words of one kind of all presets.
+     */
+    private static final class Dictionary {
+        private static final int GRAM = 3;
+
+        private final int presetCount;
+        /** The distinct words, sorted */
+        private final String[] words;
+        /** The indexes of the presets having each word, ascending */
+        private final int[][] wordPresets;
+        /** The indexes of the words containing each trigram, ascending */
+        private final Map<String, int[]> trigrams = new HashMap<>();
+
+        Dictionary(List<PresetClassification> classifications, Function<PresetClassification, Collection<String>> getter) {
+            presetCount = classifications.size();
+            TreeMap<String, List<Integer>> map = new TreeMap<>();
+            for (int i = 0; i < presetCount; i++) {
+                for (String word : getter.apply(classifications.get(i))) {
+                    List<Integer> list = map.computeIfAbsent(normalize(word), w -> new ArrayList<>());
+                    if (list.isEmpty() || list.get(list.size() - 1) != i) {
+                        list.add(i);
+                    }
+                }
+            }
+            words = map.keySet().toArray(new String[0]);
+            wordPresets = map.values().stream().map(list -> list.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+
+            Map<String, List<Integer>> grams = new HashMap<>();
+            for (int w = 0; w < words.length; w++) {
+                for (int i = 0; i + GRAM <= words[w].length(); i++) {
+                    List<Integer> list = grams.computeIfAbsent(words[w].substring(i, i + GRAM), g -> new ArrayList<>());
+                    if (list.isEmpty() || list.get(list.size() - 1) != w) {
+                        list.add(w);
+                    }
+                }
+            }
+            grams.forEach((gram, list) -> trigrams.put(gram, list.stream().mapToInt(Integer::intValue).toArray()));
+        }
+
+        /**
+         * Returns the indexes of the words which may contain the given string.
+         * @param string the string, at least {@link #GRAM} characters long
+         * @return the indexes of the words containing all trigrams of {@code string}
+         */
+        private int[] getCandidates(String string) {
+            int[] smallest = null;
+            for (int i = 0; i + GRAM <= string.length(); i++) {
+                int[] candidates = trigrams.get(string.substring(i, i + GRAM));
+                if (candidates == null) {
+                    return new int[0];
+                } else if (smallest == null || candidates.length < smallest.length) {
+                    smallest = candidates;
+                }
+            }
+            return smallest;
+        }
+
+        /**
+         * Returns the score of each preset for one searched word: 2 if one of its words starts with the searched word,
+         * 1 if one of its words contains it, 0 otherwise.
+         * @param searched the searched word, without accents
+         * @return the scores, by preset index
+         */
+        private int[] getScores(String searched) {
+            int[] scores = new int[presetCount];
+            int start = Arrays.binarySearch(words, searched);
+            if (start < 0) {
+                start = -start - 1;
+            }
+            for (int w = start; w < words.length && words[w].startsWith(searched); w++) {
+                for (int p : wordPresets[w]) {
+                    scores[p] = 2;
+                }
+            }
+            if (searched.length() >= GRAM) {
+                for (int w : getCandidates(searched)) {
+                    if (words[w].indexOf(searched) > 0) {
+                        setFound(scores, w);
+                    }
+                }
+            } else {
+                for (int w = 0; w < words.length; w++) {
+                    if (words[w].indexOf(searched) > 0) {
+                        setFound(scores, w);
+                    }
+                }
+            }
+            return scores;
+        }
+
+        private void setFound(int[] scores, int word) {
+            for (int p : wordPresets[word]) {
+                scores[p] = Math.max(scores[p], 1);
+            }
+        }
+
+        /**
+         * Returns the sum of the scores of the searched words for each preset, or 0 if a word is not found.
+         * @param searched the searched words
+         * @return the scores, by preset index
+         */
+        int[] getScores(String... searched) {
+            int[] sum = new int[presetCount];
+            for (int i = 0; i < searched.length; i++) {
+                int[] scores = getScores(Utils.deAccent(searched[i]));
+                for (int p = 0; p < presetCount; p++) {
+                    if (i == 0 || sum[p] > 0) {
+                        sum[p] = scores[p] > 0 ? sum[p] + scores[p] : 0;
+                    }
+                }
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Builds the index of the given presets.
+     * @param presets the presets, see {@link #isSearchable}
+     */
+    TaggingPresetSearchIndex(List<TaggingPreset> presets) {
+        this.presets = Collections.unmodifiableList(new ArrayList<>(presets));
+        List<PresetClassification> classifications = new ArrayList<>(presets.size());
+        for (TaggingPreset preset : presets) {
+            classifications.add(new PresetClassification(preset));
+        }
+        names = new Dictionary(classifications, c -> c.names);
+        groups = new Dictionary(classifications, c -> c.groups);
+        tags = new Dictionary(classifications, c -> c.tags);
+    }
+
+    /**
+     * Determines if a preset can be found by the preset search.
+     * @param preset the preset
+     * @return {@code true} if the preset is neither a separator nor a menu
+     */
+    static boolean isSearchable(TaggingPreset preset) {
+        return !(preset instanceof TaggingPresetSeparator || preset instanceof TaggingPresetMenu);
+    }
+
+    static String normalize(String word) {
+        return Utils.deAccent(word).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Returns the indexed presets.
+     * @return the indexed presets, in the order of the scores
+     */
+    List<TaggingPreset> getPresets() {
+        return presets;
+    }
+
+    /**
+     * Returns the scores of the presets for words of their names, see {@link PresetClassification#isMatchingName}.
+     * @param words the searched words
+     * @return the scores, in the order of {@link #getPresets()}
+     */
+    int[] getNameScores(String... words) {
+        return names.getScores(words);
+    }
+
+    /**
+     * Returns the scores of the presets for words of their groups, see {@link PresetClassification#isMatchingGroup}.
+     * @param words the searched words
+     * @return the scores, in the order of {@link #getPresets()}
+     */
+    int[] getGroupScores(String... words) {
+        return groups.getScores(words);
+    }
+
+    /**
+     * Returns the scores of the presets for words of their tags, see {@link PresetClassification#isMatchingTags}.
+     * @param words the searched words
+     * @return the scores, in the order of {@link #getPresets()}
+     */
+    int[] getTagScores(String... words) {
+        return tags.getScores(words);
+    }
+}
@@ -87,9 +87,9 @@ public class TaggingPresetSelector extends SearchTextResultListPanel<TaggingPres
         public final TaggingPreset preset;
         public int classification;
         public int favoriteIndex;
-        private final Collection<String> groups = new HashSet<>();
-        private final Collection<String> names = new HashSet<>();
-        private final Collection<String> tags = new HashSet<>();
+        final Collection<String> groups = new HashSet<>();
+        final Collection<String> names = new HashSet<>();
+        final Collection<String> tags = new HashSet<>();
 
         PresetClassification(TaggingPreset preset) {
             this.preset = preset;
@@ -128,8 +128,7 @@ public class TaggingPresetSelector extends SearchTextResultListPanel<TaggingPres
 
         private static int isMatching(Collection<String> values, String... searchString) {
             int sum = 0;
-            List<String> deaccentedValues = values.stream().map(
-                    s -> Utils.deAccent(s).toLowerCase(Locale.ENGLISH)).collect(Collectors.toList());
+            List<String> deaccentedValues = values.stream().map(TaggingPresetSearchIndex::normalize).collect(Collectors.toList());
             for (String word: searchString) {
                 boolean found = false;
                 boolean foundFirst = false;
@@ -262,6 +261,8 @@ public class TaggingPresetSelector extends SearchTextResultListPanel<TaggingPres
     public static class PresetClassifications implements Iterable<PresetClassification> {
 
         private final List<PresetClassification> classifications = new ArrayList<>();
+        /** The search index of the presets, {@code null} until needed */
+        private TaggingPresetSearchIndex index;
 
         public List<PresetClassification> getMatchingPresets(String searchText, boolean onlyApplicable, boolean inTags,
                 Set<TaggingPresetType> presetTypes, final Collection<? extends OsmPrimitive> selectedPrimitives) {
@@ -282,8 +283,18 @@ public class TaggingPresetSelector extends SearchTextResultListPanel<TaggingPres
         public List<PresetClassification> getMatchingPresets(String[] groupWords, String[] nameWords, boolean onlyApplicable,
                 boolean inTags, Set<TaggingPresetType> presetTypes, final Collection<? extends OsmPrimitive> selectedPrimitives) {
 
+            if (index == null) {
+                index = TaggingPresets.getSearchIndex(classifications.stream().map(c -> c.preset).collect(Collectors.toList()));
+            }
+            // the scores of all presets are looked up in the index, then combined as in PresetClassification
+            final int[] groupScores = groupWords != null ? index.getGroupScores(groupWords) : null;
+            final int[] nameScores = index.getNameScores(nameWords);
+            final int[] nameGroupScores = groupWords == null ? index.getGroupScores(nameWords) : null;
+            final int[] tagScores = inTags ? index.getTagScores(nameWords) : null;
+
             final List<PresetClassification> result = new ArrayList<>();
-            for (PresetClassification presetClassification : classifications) {
+            for (int i = 0; i < classifications.size(); i++) {
+                PresetClassification presetClassification = classifications.get(i);
                 TaggingPreset preset = presetClassification.preset;
                 presetClassification.classification = 0;
 
@@ -301,21 +312,21 @@ public class TaggingPresetSelector extends SearchTextResultListPanel<TaggingPres
                     }
                 }
 
-                if (groupWords != null && presetClassification.isMatchingGroup(groupWords) == 0) {
+                if (groupScores != null && groupScores[i] == 0) {
                     continue;
                 }
 
-                int matchName = presetClassification.isMatchingName(nameWords);
+                int matchName = nameScores[i];
 
                 if (matchName == 0) {
-                    if (groupWords == null) {
-                        int groupMatch = presetClassification.isMatchingGroup(nameWords);
+                    if (nameGroupScores != null) {
+                        int groupMatch = nameGroupScores[i];
                         if (groupMatch > 0) {
                             presetClassification.classification = CLASSIFICATION_GROUP_MATCH + groupMatch;
                         }
                     }
-                    if (presetClassification.classification == 0 && inTags) {
-                        int tagsMatch = presetClassification.isMatchingTags(nameWords);
+                    if (presetClassification.classification == 0 && tagScores != null) {
+                        int tagsMatch = tagScores[i];
                         if (tagsMatch > 0) {
                             presetClassification.classification = CLASSIFICATION_TAGS_MATCH + tagsMatch;
                         }
@@ -337,15 +348,16 @@ public class TaggingPresetSelector extends SearchTextResultListPanel<TaggingPres
 
         public void clear() {
             classifications.clear();
+            index = null;
         }
 
         public void loadPresets(Collection<TaggingPreset> presets) {
             for (TaggingPreset preset : presets) {
-                if (preset instanceof TaggingPresetSeparator || preset instanceof TaggingPresetMenu) {
-                    continue;
+                if (TaggingPresetSearchIndex.isSearchable(preset)) {
+                    classifications.add(new PresetClassification(preset));
                 }
-                classifications.add(new PresetClassification(preset));
             }
+            index = null;
         }
 
         @Override
@@ -6,8 +6,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
@@ -39,6 +42,9 @@ public final class TaggingPresets {
     /** cache for roles found in the preset */
     private static final Set<String> PRESET_ROLE_CACHE = new HashSet<>();
 
+    /** The search index of the presets, built in the background when they are loaded */
+    private static volatile CompletableFuture<TaggingPresetSearchIndex> searchIndex;
+
     /** The collection of listeners */
     private static final Collection<TaggingPresetListener> listeners = new ArrayList<>();
 
@@ -53,6 +59,7 @@ public final class TaggingPresets {
         taggingPresets.clear();
         taggingPresets.addAll(TaggingPresetReader.readFromPreferences(false, false));
         cachePresets(taggingPresets);
+        updateSearchIndex();
     }
 
     /**
@@ -132,6 +139,28 @@ public final class TaggingPresets {
         }
     }
 
+    private static void updateSearchIndex() {
+        List<TaggingPreset> presets = taggingPresets.stream().filter(TaggingPresetSearchIndex::isSearchable).collect(Collectors.toList());
+        searchIndex = CompletableFuture.supplyAsync(() -> new TaggingPresetSearchIndex(presets));
+    }
+
+    /**
+     * Returns the search index of the given presets. The index built in the background for the loaded presets is used
+     * if it covers the same presets, otherwise a new index is built.
+     * @param presets the searchable presets, see {@link TaggingPresetSearchIndex#isSearchable}
+     * @return the search index of the presets
+     */
+    static TaggingPresetSearchIndex getSearchIndex(List<TaggingPreset> presets) {
+        CompletableFuture<TaggingPresetSearchIndex> future = searchIndex;
+        if (future != null) {
+            TaggingPresetSearchIndex index = future.join();
+            if (index.getPresets().equals(presets)) {
+                return index;
+            }
+        }
+        return new TaggingPresetSearchIndex(presets);
+    }
+
     /**
      * Replies a new collection containing all tagging presets.
      * @return a new collection containing all tagging presets. Empty if presets are not initialized (never null)
@@ -201,6 +230,7 @@ public final class TaggingPresets {
      */
     public static void addTaggingPresets(Collection<TaggingPreset> presets) {
         if (presets != null && taggingPresets.addAll(presets)) {
+            updateSearchIndex();
             for (TaggingPresetListener listener : listeners) {
                 listener.taggingPresetsModified();
             }
@@ -22,12 +22,14 @@ import org.openstreetmap.josm.data.osm.AbstractPrimitive;
 import org.openstreetmap.josm.data.osm.Changeset;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.DownloadPolicy;
+import org.openstreetmap.josm.data.osm.IPrimitive;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.NodeData;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveData;
 import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.ReferrerBuilder;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationData;
 import org.openstreetmap.josm.data.osm.RelationMember;
@@ -105,6 +107,11 @@ public abstract class AbstractReader {
      */
     protected final Map<Long, Collection<RelationMemberData>> relations = new HashMap<>();
 
+    /**
+     * Registers the parsed ways and relations as referrers of their nodes and members at once
+     */
+    private final ReferrerBuilder referrerBuilder = new ReferrerBuilder();
+
     /**
      * Replies the parsed data set
      *
@@ -171,7 +178,7 @@ public abstract class AbstractReader {
                     wayNodes.add(n);
                 }
             }
-            w.setNodes(wayNodes);
+            referrerBuilder.setNodes(w, wayNodes);
             if (w.hasIncompleteNodes()) {
                 Logging.info(tr("Way {0} with {1} nodes is incomplete because at least one node was missing in the loaded data.",
                         Long.toString(externalWayId), w.getNodesCount()));
@@ -243,7 +250,7 @@ public abstract class AbstractReader {
                     relationMembers.add(new RelationMember(rm.getRole(), primitive));
                 }
             }
-            relation.setMembers(relationMembers);
+            referrerBuilder.setMembers(relation, relationMembers);
         }
     }
 
@@ -261,7 +268,9 @@ public abstract class AbstractReader {
             processNodesAfterParsing();
             processWaysAfterParsing();
             processRelationsAfterParsing();
+            referrerBuilder.build();
             processChangesetAfterParsing();
+            ds.buildSpatialIndexes();
         } finally {
             ds.endUpdate();
         }
@@ -280,8 +289,28 @@ public abstract class AbstractReader {
         void accept(InputStreamReader ir) throws IllegalDataException, IOException;
     }
 
+    @FunctionalInterface
+    protected interface BinaryParserWorker {
+        /**
+         * Effectively parses the file, for binary formats (PBF, etc.)
+         * @param in input stream
+         * @throws IllegalDataException in case of invalid data
+         * @throws IOException in case of I/O error
+         */
+        void accept(InputStream in) throws IllegalDataException, IOException;
+    }
+
     protected final DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor, ParserWorker parserWorker)
             throws IllegalDataException {
+        return doParseBinaryDataSet(source, progressMonitor, in -> {
+            try (InputStreamReader ir = UTFInputStreamReader.create(in)) {
+                parserWorker.accept(ir);
+            }
+        });
+    }
+
+    protected final DataSet doParseBinaryDataSet(InputStream source, ProgressMonitor progressMonitor, BinaryParserWorker parserWorker)
+            throws IllegalDataException {
         if (progressMonitor == null) {
             progressMonitor = NullProgressMonitor.INSTANCE;
         }
@@ -292,9 +321,7 @@ public abstract class AbstractReader {
             progressMonitor.beginTask(tr("Prepare OSM data...", 2));
             progressMonitor.indeterminateSubTask(tr("Parsing OSM data..."));
 
-            try (InputStreamReader ir = UTFInputStreamReader.create(source)) {
-                parserWorker.accept(ir);
-            }
+            parserWorker.accept(source);
             progressMonitor.worked(1);
 
             boolean readOnly = getDataSet().isLocked();
@@ -603,15 +630,28 @@ public abstract class AbstractReader {
         return !Double.isNaN(lat) && !Double.isNaN(lon);
     }
 
+    private <T extends OsmPrimitive> T load(T p, PrimitiveData data) {
+        p.setVisible(data.isVisible());
+        p.load(data);
+        externalIdMap.put(data.getPrimitiveId(), p);
+        return p;
+    }
+
     private Node addNode(NodeData nd, NodeReader nodeReader) throws IllegalDataException {
-        Node n = new Node(nd.getId(), nd.getVersion());
-        n.setVisible(nd.isVisible());
-        n.load(nd);
+        Node n = addNode(nd);
         nodeReader.accept(n);
-        externalIdMap.put(nd.getPrimitiveId(), n);
         return n;
     }
 
+    /**
+     * Creates the node of a node data parsed beforehand, see {@link #parseNodeData}.
+     * @param nd node data, including tags
+     * @return the node
+     */
+    protected final Node addNode(NodeData nd) {
+        return load(new Node(nd.getId(), nd.getVersion()), nd);
+    }
+
     protected final Node parseNode(double lat, double lon, CommonReader commonReader, NodeReader nodeReader)
             throws IllegalDataException {
         NodeData nd = new NodeData();
@@ -634,7 +674,24 @@ public abstract class AbstractReader {
 
     protected final Node parseNode(String lat, String lon, CommonReader commonReader, NodeReader nodeReader)
             throws IllegalDataException {
-        NodeData nd = new NodeData();
+        return addNode(readNode(new NodeData(), lat, lon, commonReader), nodeReader);
+    }
+
+    /**
+     * Parses a node data, without creating the node. Unlike {@link #parseNode(String, String, CommonReader, NodeReader)},
+     * this does not modify the state of the reader, nor does it consume a unique id, so it can be run on any thread.
+     * @param lat latitude
+     * @param lon longitude
+     * @param commonReader reader of the common primitive attributes
+     * @return the node data
+     * @throws IllegalDataException in case of invalid data
+     * @see #addNode(NodeData)
+     */
+    protected final NodeData parseNodeData(String lat, String lon, CommonReader commonReader) throws IllegalDataException {
+        return readNode(new NodeData(0), lat, lon, commonReader);
+    }
+
+    private static NodeData readNode(NodeData nd, String lat, String lon, CommonReader commonReader) throws IllegalDataException {
         LatLon ll = null;
         if (areLatLonDefined(lat, lon)) {
             try {
@@ -649,46 +706,72 @@ public abstract class AbstractReader {
             throw new IllegalDataException(tr("Illegal value for attributes ''lat'', ''lon'' on node with ID {0}. Got ''{1}'', ''{2}''.",
                     Long.toString(nd.getId()), lat, lon));
         }
-        return addNode(nd, nodeReader);
+        return nd;
     }
 
     protected final Way parseWay(CommonReader commonReader, WayReader wayReader) throws IllegalDataException {
         WayData wd = new WayData();
         commonReader.accept(wd);
-        Way w = new Way(wd.getId(), wd.getVersion());
-        w.setVisible(wd.isVisible());
-        w.load(wd);
-        externalIdMap.put(wd.getPrimitiveId(), w);
+        Way w = load(new Way(wd.getId(), wd.getVersion()), wd);
 
         Collection<Long> nodeIds = new ArrayList<>();
         wayReader.accept(w, nodeIds);
+        putWayNodes(w, wd, nodeIds);
+        return w;
+    }
+
+    /**
+     * Creates the way of a way data parsed beforehand, with {@code new WayData(0)} so that no unique id is consumed.
+     * @param wd way data, including tags
+     * @param nodeIds the ids of the way nodes
+     * @return the way
+     */
+    protected final Way addWay(WayData wd, Collection<Long> nodeIds) {
+        Way w = load(new Way(wd.getId(), wd.getVersion()), wd);
+        putWayNodes(w, wd, nodeIds);
+        return w;
+    }
+
+    private void putWayNodes(Way w, WayData wd, Collection<Long> nodeIds) {
         if (w.isDeleted() && !nodeIds.isEmpty()) {
             Logging.info(tr("Deleted way {0} contains nodes", Long.toString(w.getUniqueId())));
             nodeIds = new ArrayList<>();
         }
         ways.put(wd.getUniqueId(), nodeIds);
-        return w;
     }
 
     protected final Relation parseRelation(CommonReader commonReader, RelationReader relationReader) throws IllegalDataException {
         RelationData rd = new RelationData();
         commonReader.accept(rd);
-        Relation r = new Relation(rd.getId(), rd.getVersion());
-        r.setVisible(rd.isVisible());
-        r.load(rd);
-        externalIdMap.put(rd.getPrimitiveId(), r);
+        Relation r = load(new Relation(rd.getId(), rd.getVersion()), rd);
 
         Collection<RelationMemberData> members = new ArrayList<>();
         relationReader.accept(r, members);
+        putRelationMembers(r, rd, members);
+        return r;
+    }
+
+    /**
+     * Creates the relation of a relation data parsed beforehand, with {@code new RelationData(0)} so that no unique id is consumed.
+     * @param rd relation data, including tags
+     * @param members the relation members
+     * @return the relation
+     */
+    protected final Relation addRelation(RelationData rd, Collection<RelationMemberData> members) {
+        Relation r = load(new Relation(rd.getId(), rd.getVersion()), rd);
+        putRelationMembers(r, rd, members);
+        return r;
+    }
+
+    private void putRelationMembers(Relation r, RelationData rd, Collection<RelationMemberData> members) {
         if (r.isDeleted() && !members.isEmpty()) {
             Logging.info(tr("Deleted relation {0} contains members", Long.toString(r.getUniqueId())));
             members = new ArrayList<>();
         }
         relations.put(rd.getUniqueId(), members);
-        return r;
     }
 
-    protected final RelationMemberData parseRelationMember(Relation r, String ref, String type, String role) throws IllegalDataException {
+    protected final RelationMemberData parseRelationMember(IPrimitive r, String ref, String type, String role) throws IllegalDataException {
         if (ref == null) {
             throw new IllegalDataException(tr("Missing attribute ''ref'' on member in relation {0}.",
                     Long.toString(r.getUniqueId())));
@@ -701,7 +784,7 @@ public abstract class AbstractReader {
         }
     }
 
-    protected final RelationMemberData parseRelationMember(Relation r, long id, String type, String role) throws IllegalDataException {
+    protected final RelationMemberData parseRelationMember(IPrimitive r, long id, String type, String role) throws IllegalDataException {
         if (id == 0) {
             throw new IllegalDataException(tr("Incomplete <member> specification with ref=0"));
         }
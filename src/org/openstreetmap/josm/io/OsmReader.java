@@ -3,9 +3,22 @@ package org.openstreetmap.josm.io;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,18 +27,28 @@ import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import org.openstreetmap.josm.data.DataSource;
 import org.openstreetmap.josm.data.osm.Changeset;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.IPrimitive;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.NodeData;
 import org.openstreetmap.josm.data.osm.PrimitiveData;
 import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationData;
 import org.openstreetmap.josm.data.osm.RelationMemberData;
 import org.openstreetmap.josm.data.osm.Tagged;
+import org.openstreetmap.josm.data.osm.User;
 import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WayData;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.io.OsmXmlBlockSplitter.Block;
+import org.openstreetmap.josm.tools.JosmRuntimeException;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Pair;
 import org.openstreetmap.josm.tools.UncheckedParseException;
+import org.openstreetmap.josm.tools.Utils;
 import org.openstreetmap.josm.tools.XmlUtils;
 
 /**
@@ -34,18 +57,47 @@ import org.openstreetmap.josm.tools.XmlUtils;
  * For each xml element, there is a dedicated method.
  * The XMLStreamReader cursor points to the start of the element, when the method is
  * entered, and it must point to the end of the same element, when it is exited.
+ *
+ * The input can also be parsed in parallel, see {@link #parseDataSet(InputStream, ProgressMonitor, int)}:
+ * it is then split into blocks of elements, each block being parsed on a worker thread by its own
+ * {@code OsmReader}. The parsed blocks are merged in document order before references are resolved,
+ * so that the resulting dataset is the same. Documents having a document type declaration are not split,
+ * as the blocks would not know the entities it declares.
  */
 public class OsmReader extends AbstractReader {
 
+    /** Number of characters of the blocks parsed in parallel */
+    private static final int BLOCK_SIZE = 1 << 20;
+
     protected XMLStreamReader parser;
 
+    /** Number of threads used to parse the input */
+    private final int threads;
+    /** Minimal number of characters of the blocks parsed in parallel */
+    private final int blockSize;
+
     /**
      * constructor (for private and subclasses use only)
      *
      * @see #parseDataSet(InputStream, ProgressMonitor)
      */
     protected OsmReader() {
-        // Restricts visibility
+        this(1);
+    }
+
+    /**
+     * constructor (for private and subclasses use only)
+     * @param threads number of threads used to parse the input. If greater than 1, the input is parsed in parallel
+     *
+     * @see #parseDataSet(InputStream, ProgressMonitor, int)
+     */
+    protected OsmReader(int threads) {
+        this(threads, BLOCK_SIZE);
+    }
+
+    OsmReader(int threads, int blockSize) {
+        this.threads = threads;
+        this.blockSize = blockSize;
     }
 
     protected void setParser(XMLStreamReader parser) {
@@ -184,7 +236,7 @@ public class OsmReader extends AbstractReader {
         return null;
     }
 
-    private void parseNodeTags(Node n) throws IllegalDataException {
+    private void parseNodeTags(Tagged n) throws IllegalDataException {
         try {
             while (parser.hasNext()) {
                 int event = parser.next();
@@ -212,7 +264,7 @@ public class OsmReader extends AbstractReader {
         return null;
     }
 
-    private void parseWayNodesAndTags(Way w, Collection<Long> nodeIds) throws IllegalDataException {
+    private void parseWayNodesAndTags(IPrimitive w, Collection<Long> nodeIds) throws IllegalDataException {
         try {
             while (parser.hasNext()) {
                 int event = parser.next();
@@ -236,7 +288,7 @@ public class OsmReader extends AbstractReader {
         }
     }
 
-    private long parseWayNode(Way w) throws XMLStreamException {
+    private long parseWayNode(IPrimitive w) throws XMLStreamException {
         if (parser.getAttributeValue(null, "ref") == null) {
             throwException(
                     tr("Missing mandatory attribute ''{0}'' on <nd> of way {1}.", "ref", Long.toString(w.getUniqueId()))
@@ -261,7 +313,7 @@ public class OsmReader extends AbstractReader {
         return null;
     }
 
-    private void parseRelationMembersAndTags(Relation r, Collection<RelationMemberData> members) throws IllegalDataException {
+    private void parseRelationMembersAndTags(IPrimitive r, Collection<RelationMemberData> members) throws IllegalDataException {
         try {
             while (parser.hasNext()) {
                 int event = parser.next();
@@ -285,7 +337,7 @@ public class OsmReader extends AbstractReader {
         }
     }
 
-    private RelationMemberData parseRelationMember(Relation r) throws XMLStreamException {
+    private RelationMemberData parseRelationMember(IPrimitive r) throws XMLStreamException {
         RelationMemberData result = null;
         try {
             String ref = parser.getAttributeValue(null, "ref");
@@ -388,7 +440,7 @@ public class OsmReader extends AbstractReader {
         try {
             parseId(current, getLong("id"));
             parseTimestamp(current, parser.getAttributeValue(null, "timestamp"));
-            parseUser(current, parser.getAttributeValue(null, "user"), parser.getAttributeValue(null, "uid"));
+            readUser(current, parser.getAttributeValue(null, "user"), parser.getAttributeValue(null, "uid"));
             parseVisible(current, parser.getAttributeValue(null, "visible"));
             parseVersion(current, parser.getAttributeValue(null, "version"));
             parseAction(current, parser.getAttributeValue(null, "action"));
@@ -398,6 +450,17 @@ public class OsmReader extends AbstractReader {
         }
     }
 
+    /**
+     * Sets the user of a primitive from its attributes.
+     * @param current primitive to update
+     * @param user the user name, can be null
+     * @param uid the user id, can be null
+     * @throws IllegalDataException if the user id is not a number
+     */
+    void readUser(PrimitiveData current, String user, String uid) throws IllegalDataException {
+        parseUser(current, user, uid);
+    }
+
     private long getLong(String name) throws XMLStreamException {
         String value = parser.getAttributeValue(null, name);
         try {
@@ -422,21 +485,295 @@ public class OsmReader extends AbstractReader {
         }
     }
 
+    /**
+     * Parses the input in parallel: the main thread splits it into blocks of elements, which are parsed
+     * by worker threads, then merged in document order.
+     * @param ir the input
+     * @throws XMLStreamException if the input cannot be parsed
+     * @throws IOException in case of I/O error
+     */
+    private void parseInParallel(Reader ir) throws XMLStreamException, IOException {
+        OsmXmlBlockSplitter splitter = new OsmXmlBlockSplitter(ir, blockSize);
+        String header = splitter.readHeader();
+        if (splitter.hasDocumentTypeDeclaration()) {
+            // the blocks would not know the entities declared by the DTD
+            setParser(XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(splitter.getDocument(header)));
+            parse();
+            return;
+        }
+        // parse the root element attributes, or the whole document if it has no content
+        setParser(XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(new StringReader(
+                splitter.isHeaderWholeDocument() ? header : header + splitter.getRootEndTag())));
+        parse();
+        if (splitter.isHeaderWholeDocument()) {
+            return;
+        }
+        String rootStartTag = splitter.getRootStartTag();
+        String rootEndTag = splitter.getRootEndTag();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, Utils.newThreadFactory("osm-reader-%d", Thread.NORM_PRIORITY));
+        try {
+            Deque<Future<BlockReader>> pending = new ArrayDeque<>();
+            Block block;
+            while ((block = splitter.nextBlock()) != null) {
+                if (cancel) {
+                    cancel = false;
+                    throw new OsmParsingCanceledException(tr("Reading was canceled"), null);
+                }
+                BlockReader reader = new BlockReader(block, rootStartTag, rootEndTag);
+                pending.add(executor.submit(reader::parseBlock));
+                // limit the number of blocks in memory
+                if (pending.size() > 2 * threads) {
+                    merge(pending.remove());
+                }
+            }
+            while (!pending.isEmpty()) {
+                merge(pending.remove());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void merge(Future<BlockReader> future) throws XMLStreamException {
+        BlockReader reader;
+        try {
+            reader = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLStreamException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof XMLStreamException) {
+                throw (XMLStreamException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new JosmRuntimeException(cause);
+        }
+        // users are looked up once per distinct user of the block, in the order they appear
+        for (Map.Entry<Pair<String, String>, List<PrimitiveData>> e : reader.users.entrySet()) {
+            List<PrimitiveData> primitives = e.getValue();
+            try {
+                parseUser(primitives.get(0), e.getKey().b, e.getKey().a);
+            } catch (IllegalDataException ex) {
+                // should not happen, the user id has been checked by the block reader
+                throw new XMLStreamException(ex);
+            }
+            User user = primitives.get(0).getUser();
+            for (int i = 1; i < primitives.size(); i++) {
+                primitives.get(i).setUser(user);
+            }
+        }
+        for (PrimitiveData data : reader.parsed) {
+            if (data instanceof NodeData) {
+                addNode((NodeData) data);
+            } else if (data instanceof WayData) {
+                addWay((WayData) data, reader.ways.get(data.getUniqueId()));
+            } else {
+                addRelation((RelationData) data, reader.relations.get(data.getUniqueId()));
+            }
+        }
+        for (DataSource source : reader.getDataSet().getDataSources()) {
+            ds.addDataSource(source);
+        }
+        if (reader.getDataSet().getRemark() != null) {
+            ds.setRemark(reader.getDataSet().getRemark());
+        }
+        if (reader.uploadChangeset != null) {
+            uploadChangeset = reader.uploadChangeset;
+        }
+    }
+
+    /**
+     * Parses a block of elements, as if it was the content of the root element of the document.
+     * Nodes, ways and relations are only parsed into primitive data, remembered in document order, and their references
+     * are kept in the {@link #ways} and {@link #relations} maps. The reported locations are relative to the whole document.
+     */
+    private static final class BlockReader extends OsmReader {
+        private final Block block;
+        private final String prefix;
+        private final String suffix;
+        private final List<PrimitiveData> parsed = new ArrayList<>();
+        /** The primitives of each user, which are looked up when merging, to avoid contention on the global user map */
+        private final Map<Pair<String, String>, List<PrimitiveData>> users = new LinkedHashMap<>();
+
+        BlockReader(Block block, String rootStartTag, String rootEndTag) {
+            this.block = block;
+            this.prefix = rootStartTag;
+            this.suffix = block.last ? "" : rootEndTag;
+        }
+
+        BlockReader parseBlock() throws XMLStreamException {
+            setParser(XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(new StringReader(prefix + block.text + suffix)));
+            try {
+                parse();
+            } catch (XmlStreamParsingException e) {
+                throw e;
+            } catch (XMLStreamException e) {
+                throw new XMLStreamException(getMessage(e), toDocumentLocation(e.getLocation()), e);
+            }
+            return this;
+        }
+
+        private Location toDocumentLocation(Location location) {
+            if (location == null) {
+                return null;
+            }
+            int line = location.getLineNumber();
+            int column = location.getColumnNumber();
+            int offset = location.getCharacterOffset();
+            return new DocumentLocation(
+                    line == 1 ? block.line : block.line + line - 1,
+                    line == 1 ? block.column + column - prefix.length() - 1 : column,
+                    offset > -1 ? toIntOffset(block.offset + offset - prefix.length()) : -1);
+        }
+
+        private static int toIntOffset(long offset) {
+            // the offset of a Location is an int, it is unknown beyond
+            return offset <= Integer.MAX_VALUE ? (int) offset : -1;
+        }
+
+        @Override
+        void readUser(PrimitiveData current, String user, String uid) throws IllegalDataException {
+            if (uid != null) {
+                try {
+                    Long.parseLong(uid);
+                } catch (NumberFormatException e) {
+                    // report the same error as the serial reader
+                    super.readUser(current, user, uid);
+                }
+            } else if (user == null) {
+                return;
+            }
+            users.computeIfAbsent(new Pair<>(uid, user), k -> new ArrayList<>()).add(current);
+        }
+
+        @Override
+        protected void throwException(Throwable th) throws XMLStreamException {
+            throw new XmlStreamParsingException(th.getMessage(), toDocumentLocation(parser.getLocation()), th);
+        }
+
+        @Override
+        protected void throwException(String msg, Throwable th) throws XMLStreamException {
+            throw new XmlStreamParsingException(msg, toDocumentLocation(parser.getLocation()), th);
+        }
+
+        @Override
+        protected void throwException(String msg) throws XMLStreamException {
+            throw new XmlStreamParsingException(msg, toDocumentLocation(parser.getLocation()));
+        }
+
+        @Override
+        protected Node parseNode() throws XMLStreamException {
+            String lat = parser.getAttributeValue(null, "lat");
+            String lon = parser.getAttributeValue(null, "lon");
+            try {
+                NodeData nd = parseNodeData(lat, lon, super::readCommon);
+                super.parseNodeTags(nd);
+                parsed.add(nd);
+            } catch (IllegalDataException e) {
+                super.handleIllegalDataException(e);
+            }
+            return null;
+        }
+
+        @Override
+        protected Way parseWay() throws XMLStreamException {
+            try {
+                WayData wd = new WayData(0);
+                super.readCommon(wd);
+                Collection<Long> nodeIds = new ArrayList<>();
+                super.parseWayNodesAndTags(wd, nodeIds);
+                ways.put(wd.getUniqueId(), nodeIds);
+                parsed.add(wd);
+            } catch (IllegalDataException e) {
+                super.handleIllegalDataException(e);
+            }
+            return null;
+        }
+
+        @Override
+        protected Relation parseRelation() throws XMLStreamException {
+            try {
+                RelationData rd = new RelationData(0);
+                super.readCommon(rd);
+                Collection<RelationMemberData> members = new ArrayList<>();
+                super.parseRelationMembersAndTags(rd, members);
+                relations.put(rd.getUniqueId(), members);
+                parsed.add(rd);
+            } catch (IllegalDataException e) {
+                super.handleIllegalDataException(e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A location in the whole document.
+     */
+    private static final class DocumentLocation implements Location {
+        private final int line;
+        private final int column;
+        private final int offset;
+
+        DocumentLocation(int line, int column, int offset) {
+            this.line = line;
+            this.column = column;
+            this.offset = offset;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return line;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return column;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return offset;
+        }
+
+        @Override
+        public String getPublicId() {
+            return null;
+        }
+
+        @Override
+        public String getSystemId() {
+            return null;
+        }
+    }
+
+    private static String getMessage(XMLStreamException e) {
+        String msg = e.getMessage();
+        Pattern p = Pattern.compile("Message: (.+)");
+        Matcher m = p.matcher(msg);
+        if (m.find()) {
+            msg = m.group(1);
+        }
+        return msg;
+    }
+
     @Override
     protected DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
         return doParseDataSet(source, progressMonitor, ir -> {
             try {
-                setParser(XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(ir));
-                parse();
+                if (threads > 1) {
+                    parseInParallel(ir);
+                } else {
+                    setParser(XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(ir));
+                    parse();
+                }
             } catch (XmlStreamParsingException | UncheckedParseException e) {
                 throw new IllegalDataException(e.getMessage(), e);
             } catch (XMLStreamException e) {
-                String msg = e.getMessage();
-                Pattern p = Pattern.compile("Message: (.+)");
-                Matcher m = p.matcher(msg);
-                if (m.find()) {
-                    msg = m.group(1);
-                }
+                String msg = getMessage(e);
                 if (e.getLocation() != null)
                     throw new IllegalDataException(tr("Line {0} column {1}: ",
                             e.getLocation().getLineNumber(), e.getLocation().getColumnNumber()) + msg, e);
@@ -459,4 +796,21 @@ public class OsmReader extends AbstractReader {
     public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
         return new OsmReader().doParseDataSet(source, progressMonitor);
     }
+
+    /**
+     * Parse the given input source and return the dataset, using several threads.
+     *
+     * The result is the same as with {@link #parseDataSet(InputStream, ProgressMonitor)}.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     * @param threads the number of threads used to parse the input. If 1 or less, the input is parsed on the calling thread
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException if an error was found while parsing the data from the source
+     * @throws IllegalArgumentException if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor, int threads) throws IllegalDataException {
+        return new OsmReader(threads).doParseDataSet(source, progressMonitor);
+    }
 }
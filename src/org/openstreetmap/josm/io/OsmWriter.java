@@ -17,13 +17,14 @@ import org.openstreetmap.josm.data.coor.conversion.DecimalDegreesCoordinateForma
 import org.openstreetmap.josm.data.osm.AbstractPrimitive;
 import org.openstreetmap.josm.data.osm.Changeset;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSetSnapshot;
 import org.openstreetmap.josm.data.osm.DownloadPolicy;
 import org.openstreetmap.josm.data.osm.INode;
 import org.openstreetmap.josm.data.osm.IPrimitive;
 import org.openstreetmap.josm.data.osm.IRelation;
 import org.openstreetmap.josm.data.osm.IWay;
 import org.openstreetmap.josm.data.osm.Node;
-import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.Tagged;
 import org.openstreetmap.josm.data.osm.UploadPolicy;
@@ -145,7 +146,7 @@ public class OsmWriter extends XmlWriter implements PrimitiveVisitor {
         }
     };
 
-    protected <T extends OsmPrimitive> Collection<T> sortById(Collection<T> primitives) {
+    protected <T extends AbstractPrimitive> Collection<T> sortById(Collection<T> primitives) {
         List<T> result = new ArrayList<>(primitives.size());
         result.addAll(primitives);
         result.sort(byIdComparator);
@@ -164,6 +165,38 @@ public class OsmWriter extends XmlWriter implements PrimitiveVisitor {
         footer();
     }
 
+    /**
+     * Writes the full OSM file for the given data set snapshot (header, data sources, osm data, footer).
+     * Unlike {@link #write(DataSet)}, the read lock of the data set does not have to be held while writing.
+     * @param snapshot snapshot of an OSM data set
+     * @see DataSet#snapshot()
+     */
+    public void write(DataSetSnapshot snapshot) {
+        header(snapshot.getDownloadPolicy(), snapshot.getUploadPolicy(), snapshot.isLocked());
+        writeDataSources(snapshot.getDataSources());
+        writeContent(snapshot);
+        footer();
+    }
+
+    /**
+     * Writes the contents of the given data set snapshot (nodes, then ways, then relations)
+     * @param snapshot snapshot of an OSM data set
+     */
+    public void writeContent(DataSetSnapshot snapshot) {
+        setWithVisible(UploadPolicy.NORMAL == snapshot.getUploadPolicy());
+        writeData(snapshot.getNodes());
+        writeData(snapshot.getWays());
+        writeData(snapshot.getRelations());
+    }
+
+    private void writeData(Collection<? extends PrimitiveData> data) {
+        for (PrimitiveData d : sortById(data)) {
+            if (shouldWrite(d)) {
+                d.accept(this);
+            }
+        }
+    }
+
     /**
      * Writes the contents of the given dataset (nodes, then ways, then relations)
      * @param ds The dataset to write
@@ -214,7 +247,7 @@ public class OsmWriter extends XmlWriter implements PrimitiveVisitor {
         }
     }
 
-    protected boolean shouldWrite(OsmPrimitive osm) {
+    protected boolean shouldWrite(IPrimitive osm) {
         return !osm.isNewOrUndeleted() || !osm.isDeleted();
     }
 
@@ -223,7 +256,11 @@ public class OsmWriter extends XmlWriter implements PrimitiveVisitor {
      * @param ds data set
      */
     public void writeDataSources(DataSet ds) {
-        for (DataSource s : ds.getDataSources()) {
+        writeDataSources(ds.getDataSources());
+    }
+
+    private void writeDataSources(Collection<DataSource> dataSources) {
+        for (DataSource s : dataSources) {
             out.println("  <bounds minlat='"
                     + DecimalDegreesCoordinateFormat.INSTANCE.latToString(s.bounds.getMin())
                     +"' minlon='"
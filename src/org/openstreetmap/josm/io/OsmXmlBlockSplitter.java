@@ -0,0 +1,379 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Splits an XML document into blocks of complete child elements of the root element, so that they can be parsed independently.
+ * <p>
+ * This is not a validating parser: it only recognizes the markup needed to find element boundaries
+ * (tags, quoted attribute values, comments, CDATA sections, processing instructions and declarations).
+ * Malformed documents are split anyway, and their errors are reported by the XML parser of each block.
+ * <p>
+ * The document type declaration is not copied into the blocks, so documents having one must not be split,
+ * see {@link #hasDocumentTypeDeclaration()}.
+ */
+class OsmXmlBlockSplitter {
+
+    /**
+     * A block of complete child elements of the root element.
+     */
+    static final class Block {
+        /** The text of the block */
+        final String text;
+        /** The line of the first character of the block in the document, starting at 1 */
+        final int line;
+        /** The column of the first character of the block in the document, starting at 1 */
+        final int column;
+        /** The offset of the first character of the block in the document, which may exceed the range of an int */
+        final long offset;
+        /** {@code true} for the last block, which also contains the rest of the document after the root element, if any */
+        final boolean last;
+
+        Block(String text, int line, int column, long offset, boolean last) {
+            this.text = text;
+            this.line = line;
+            this.column = column;
+            this.offset = offset;
+            this.last = last;
+        }
+    }
+
+    private enum State {
+        TEXT, MARKUP_START, START_TAG, ATTRIBUTE_VALUE, END_TAG, PROCESSING_INSTRUCTION, BANG, COMMENT, CDATA, DECLARATION
+    }
+
+    private final Reader reader;
+    private final int blockSize;
+    private final char[] buffer = new char[65536];
+    private int bufferPos;
+    private int bufferLimit;
+
+    private State state = State.TEXT;
+    private char quote;
+    private char prev1;
+    private char prev2;
+    private int bangLength;
+    private int declarationDepth;
+    private int depth;
+    private boolean rootEnded;
+    private boolean done;
+    private int markupStart;
+
+    private long offset;
+    private int line = 1;
+    private long lineStart;
+
+    private StringBuilder current = new StringBuilder();
+    private int currentLine = 1;
+    private int currentColumn = 1;
+    private long currentOffset;
+
+    private String rootStartTag;
+    private String rootName;
+    private boolean rootSelfClosing;
+    private boolean documentTypeDeclaration;
+
+    /**
+     * Constructs a new {@code OsmXmlBlockSplitter}.
+     * @param reader the document
+     * @param blockSize the minimal number of characters of a block, except for the last one
+     */
+    OsmXmlBlockSplitter(Reader reader, int blockSize) {
+        this.reader = reader;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Reads the beginning of the document, up to the end of the start tag of the root element.
+     * @return the beginning of the document, including the start tag of the root element
+     * @throws IOException in case of I/O error
+     */
+    String readHeader() throws IOException {
+        while (rootStartTag == null && read()) {
+            scan(false);
+        }
+        if (rootStartTag == null || rootSelfClosing) {
+            readToEnd();
+        }
+        String header = current.toString();
+        startBlock();
+        return header;
+    }
+
+    /**
+     * Determines if the beginning of the document read by {@link #readHeader} has a document type declaration.
+     * The entities it declares would not be known when parsing the blocks.
+     * @return {@code true} if the document has a document type declaration
+     */
+    boolean hasDocumentTypeDeclaration() {
+        return documentTypeDeclaration;
+    }
+
+    /**
+     * Returns the whole document, to parse it without splitting it. Must be called right after {@link #readHeader}.
+     * @param header the header returned by {@link #readHeader}
+     * @return the whole document
+     */
+    Reader getDocument(String header) {
+        Reader[] readers = {new StringReader(header), new CharArrayReader(buffer, bufferPos, bufferLimit - bufferPos), reader};
+        return new Reader() {
+            private int index;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                while (index < readers.length) {
+                    int n = readers[index].read(cbuf, off, len);
+                    if (n > 0) {
+                        return n;
+                    }
+                    index++;
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    /**
+     * Returns the start tag of the root element, on a single line.
+     * @return the start tag of the root element, or {@code null} if the document has none
+     */
+    String getRootStartTag() {
+        return rootStartTag;
+    }
+
+    /**
+     * Returns the end tag matching the start tag of the root element.
+     * @return the end tag of the root element, or {@code null} if the document has no root element
+     */
+    String getRootEndTag() {
+        return rootName != null ? "</" + rootName + '>' : null;
+    }
+
+    /**
+     * Determines if the header returned by {@link #readHeader} is the whole document,
+     * i.e. if the document has no root element or if the root element has no content.
+     * @return {@code true} if the header is the whole document
+     */
+    boolean isHeaderWholeDocument() {
+        return rootStartTag == null || rootSelfClosing;
+    }
+
+    /**
+     * Reads the next block of child elements of the root element. {@link #readHeader} must have been called before.
+     * <p>
+     * The last block also contains the end tag of the root element and the rest of the document,
+     * or the remaining text if the document is truncated.
+     * @return the next block, or {@code null} if there is none
+     * @throws IOException in case of I/O error
+     */
+    Block nextBlock() throws IOException {
+        if (rootStartTag == null || rootSelfClosing || done) {
+            return null;
+        }
+        while (!rootEnded && read()) {
+            if (scan(true)) {
+                return takeBlock(false);
+            }
+        }
+        readToEnd();
+        done = true;
+        return takeBlock(true);
+    }
+
+    private void readToEnd() throws IOException {
+        while (read()) {
+            current.append(buffer, bufferPos, bufferLimit - bufferPos);
+            bufferPos = bufferLimit;
+        }
+    }
+
+    private boolean read() throws IOException {
+        if (bufferPos < bufferLimit) {
+            return true;
+        }
+        int n = reader.read(buffer);
+        if (n <= 0) {
+            return false;
+        }
+        bufferPos = 0;
+        bufferLimit = n;
+        return true;
+    }
+
+    private void startBlock() {
+        current = new StringBuilder(blockSize + blockSize / 4);
+        currentLine = line;
+        currentColumn = (int) Math.min(offset - lineStart + 1, Integer.MAX_VALUE);
+        currentOffset = offset;
+    }
+
+    private Block takeBlock(boolean last) {
+        Block block = new Block(current.toString(), currentLine, currentColumn, currentOffset, last);
+        startBlock();
+        return block;
+    }
+
+    /**
+     * Scans the buffered characters.
+     * @param stopAtBlock if {@code true}, stops after the end of a child element once the current block is large enough
+     * @return {@code true} if the current block is complete
+     */
+    private boolean scan(boolean stopAtBlock) {
+        while (bufferPos < bufferLimit && !rootEnded && (stopAtBlock || rootStartTag == null)) {
+            char c = buffer[bufferPos++];
+            current.append(c);
+            offset++;
+            if (c == '\n') {
+                line++;
+                lineStart = offset;
+            }
+            if (process(c) && stopAtBlock && current.length() >= blockSize) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Processes a character.
+     * @param c the character
+     * @return {@code true} if the character ends a child element of the root element
+     */
+    private boolean process(char c) {
+        boolean endOfChild = false;
+        switch (state) {
+        case TEXT:
+            if (c == '<') {
+                state = State.MARKUP_START;
+                markupStart = current.length() - 1;
+            }
+            break;
+        case MARKUP_START:
+            if (c == '/') {
+                state = State.END_TAG;
+            } else if (c == '?') {
+                state = State.PROCESSING_INSTRUCTION;
+            } else if (c == '!') {
+                state = State.BANG;
+                bangLength = 0;
+            } else {
+                state = State.START_TAG;
+            }
+            break;
+        case START_TAG:
+            if (c == '"' || c == '\'') {
+                quote = c;
+                state = State.ATTRIBUTE_VALUE;
+            } else if (c == '>') {
+                endOfChild = endOfStartTag(prev1 == '/');
+                state = State.TEXT;
+            }
+            break;
+        case ATTRIBUTE_VALUE:
+            if (c == quote) {
+                state = State.START_TAG;
+            }
+            break;
+        case END_TAG:
+            if (c == '>') {
+                endOfChild = endOfEndTag();
+                state = State.TEXT;
+            }
+            break;
+        case PROCESSING_INSTRUCTION:
+            if (c == '>' && prev1 == '?') {
+                state = State.TEXT;
+            }
+            break;
+        case BANG:
+            bangLength++;
+            if (bangLength == 2 && c == '-' && prev1 == '-') {
+                state = State.COMMENT;
+                c = 0; // so that "<!-->" is not seen as the end of the comment
+            } else if (bangLength == 7 && c == '[' && current.lastIndexOf("<![CDATA[") == markupStart) {
+                state = State.CDATA;
+                c = 0;
+            } else if (bangLength >= 7 || (bangLength == 2 && prev1 != '[')) {
+                // the only declaration allowed before the root element is the document type declaration
+                documentTypeDeclaration |= rootStartTag == null;
+                state = State.DECLARATION;
+                declarationDepth = 0;
+                declaration(c);
+            }
+            break;
+        case COMMENT:
+            if (c == '>' && prev1 == '-' && prev2 == '-') {
+                state = State.TEXT;
+            }
+            break;
+        case CDATA:
+            if (c == '>' && prev1 == ']' && prev2 == ']') {
+                state = State.TEXT;
+            }
+            break;
+        case DECLARATION:
+            declaration(c);
+            break;
+        default:
+            throw new AssertionError(state);
+        }
+        prev2 = prev1;
+        prev1 = c;
+        return endOfChild;
+    }
+
+    private void declaration(char c) {
+        if (c == '[') {
+            declarationDepth++;
+        } else if (c == ']') {
+            declarationDepth--;
+        } else if (c == '>' && declarationDepth <= 0) {
+            state = State.TEXT;
+        }
+    }
+
+    private boolean endOfStartTag(boolean selfClosing) {
+        if (depth == 0) {
+            String tag = current.substring(markupStart);
+            rootStartTag = tag.replace('\r', ' ').replace('\n', ' ');
+            int end = 1;
+            while (end < tag.length() && !Character.isWhitespace(tag.charAt(end)) && tag.charAt(end) != '/' && tag.charAt(end) != '>') {
+                end++;
+            }
+            rootName = tag.substring(1, end);
+            rootSelfClosing = selfClosing;
+            if (selfClosing) {
+                rootEnded = true;
+            } else {
+                depth = 1;
+            }
+            return false;
+        } else if (selfClosing) {
+            return depth == 1;
+        } else {
+            depth++;
+            return false;
+        }
+    }
+
+    private boolean endOfEndTag() {
+        depth--;
+        if (depth <= 0) {
+            rootEnded = true;
+            return false;
+        }
+        return depth == 1;
+    }
+}
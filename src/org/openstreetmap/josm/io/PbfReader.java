@@ -0,0 +1,769 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Parser for the <a href="https://wiki.openstreetmap.org/wiki/PBF_Format">OSM PBF format</a>.
+ * <p>
+ * The file blocks are read on the calling thread. Data blocks are then decompressed and decoded into primitive data
+ * by a pool of worker threads, and the primitives are created on the calling thread, in file order.
+ * @see PbfWriter
+ */
+public class PbfReader extends AbstractReader {
+
+    /** The required features of the format supported by this reader */
+    static final Collection<String> SUPPORTED_FEATURES = Arrays.asList("OsmSchema-V0.6", "DenseNodes");
+
+    private static final int MAX_BLOB_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+    private static final String[] MEMBER_TYPES = {"node", "way", "relation"};
+
+    /** Number of threads used to decode the data blocks */
+    private final int threads;
+
+    /**
+     * constructor (for private and subclasses use only)
+     *
+     * @see #parseDataSet(InputStream, ProgressMonitor)
+     */
+    protected PbfReader() {
+        this(Config.getPref().getInt("pbf.reader.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * constructor (for private and subclasses use only)
+     * @param threads number of threads used to decode the data blocks
+     *
+     * @see #parseDataSet(InputStream, ProgressMonitor)
+     */
+    protected PbfReader(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    protected DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return doParseBinaryDataSet(source, progressMonitor, this::parse);
+    }
+
+    private void parse(InputStream source) throws IllegalDataException, IOException {
+        ds.setVersion("0.6");
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, Utils.newThreadFactory("pbf-reader-%d", Thread.NORM_PRIORITY));
+        try {
+            Deque<Future<PrimitiveBlock>> pending = new ArrayDeque<>();
+            boolean headerRead = false;
+            FileBlock block;
+            while ((block = readFileBlock(in)) != null) {
+                if (cancel) {
+                    cancel = false;
+                    throw new IllegalDataException(tr("Reading was canceled"), new PbfParsingCanceledException());
+                }
+                switch (block.type) {
+                case "OSMHeader":
+                    parseHeader(new ProtobufDecoder(block.uncompress()));
+                    headerRead = true;
+                    break;
+                case "OSMData":
+                    if (!headerRead) {
+                        throw new IllegalDataException(tr("Missing OSMHeader block before OSMData block"));
+                    }
+                    FileBlock dataBlock = block;
+                    pending.add(executor.submit(() -> new PrimitiveBlock().parse(dataBlock.uncompress())));
+                    // limit the number of blocks in memory
+                    if (pending.size() > 2 * threads) {
+                        merge(pending.remove());
+                    }
+                    break;
+                default:
+                    Logging.debug("Skipping unknown PBF block type {0}", block.type);
+                }
+            }
+            while (!pending.isEmpty()) {
+                merge(pending.remove());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static FileBlock readFileBlock(DataInputStream in) throws IOException, IllegalDataException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        int headerSize = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+        if (headerSize < 0 || headerSize > MAX_BLOB_HEADER_SIZE) {
+            throw new IllegalDataException(tr("Invalid PBF blob header size: {0}", Integer.toString(headerSize)));
+        }
+        byte[] header = new byte[headerSize];
+        in.readFully(header);
+        String type = null;
+        long dataSize = -1;
+        ProtobufDecoder decoder = new ProtobufDecoder(header);
+        while (decoder.next()) {
+            switch (decoder.field()) {
+            case 1:
+                type = decoder.string();
+                break;
+            case 3:
+                dataSize = decoder.varint();
+                break;
+            default:
+                decoder.skip();
+            }
+        }
+        if (type == null || dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+            throw new IllegalDataException(tr("Invalid PBF blob header"));
+        }
+        byte[] blob = new byte[(int) dataSize];
+        in.readFully(blob);
+        return new FileBlock(type, blob);
+    }
+
+    private void parseHeader(ProtobufDecoder header) throws IllegalDataException {
+        ProtobufDecoder bbox = null;
+        String program = null;
+        String source = null;
+        while (header.next()) {
+            switch (header.field()) {
+            case 1:
+                bbox = header.message();
+                break;
+            case 4:
+                String feature = header.string();
+                if (!SUPPORTED_FEATURES.contains(feature)) {
+                    throw new IllegalDataException(tr("Unsupported PBF required feature: {0}", feature));
+                }
+                break;
+            case 16:
+                program = header.string();
+                break;
+            case 17:
+                source = header.string();
+                break;
+            default:
+                header.skip();
+            }
+        }
+        if (bbox != null) {
+            double[] coordinates = new double[4];
+            while (bbox.next()) {
+                if (bbox.field() >= 1 && bbox.field() <= 4) {
+                    coordinates[bbox.field() - 1] = bbox.sint64() / 1e9;
+                } else {
+                    bbox.skip();
+                }
+            }
+            // left, right, top, bottom
+            parseBounds(program, Double.toString(coordinates[0]), Double.toString(coordinates[3]),
+                    Double.toString(coordinates[1]), Double.toString(coordinates[2]), source);
+        }
+    }
+
+    private void merge(Future<PrimitiveBlock> future) throws IllegalDataException {
+        PrimitiveBlock block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalDataException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalDataException) {
+                throw (IllegalDataException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalDataException(cause);
+        }
+        for (NodeData nd : block.nodes) {
+            addNode(nd);
+        }
+        for (int i = 0; i < block.ways.size(); i++) {
+            addWay(block.ways.get(i), block.wayNodes.get(i));
+        }
+        for (int i = 0; i < block.relations.size(); i++) {
+            addRelation(block.relations.get(i), block.relationMembers.get(i));
+        }
+    }
+
+    /**
+     * A block of the file, as read from the input.
+     */
+    private static final class FileBlock {
+        final String type;
+        final byte[] blob;
+
+        FileBlock(String type, byte[] blob) {
+            this.type = type;
+            this.blob = blob;
+        }
+
+        byte[] uncompress() throws IllegalDataException {
+            ProtobufDecoder decoder = new ProtobufDecoder(blob);
+            byte[] raw = null;
+            byte[] zlib = null;
+            long rawSize = -1;
+            while (decoder.next()) {
+                switch (decoder.field()) {
+                case 1:
+                    raw = decoder.bytes();
+                    break;
+                case 2:
+                    rawSize = decoder.varint();
+                    break;
+                case 3:
+                    zlib = decoder.bytes();
+                    break;
+                case 4: // lzma
+                case 5: // bzip2 (obsolete)
+                case 6: // lz4
+                case 7: // zstd
+                    throw new IllegalDataException(tr("Unsupported PBF blob compression"));
+                default:
+                    decoder.skip();
+                }
+            }
+            if (raw != null) {
+                return raw;
+            } else if (zlib == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE) {
+                throw new IllegalDataException(tr("Invalid PBF blob"));
+            }
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(zlib);
+                byte[] result = new byte[(int) rawSize];
+                int length = 0;
+                while (length < result.length && !inflater.finished()) {
+                    int n = inflater.inflate(result, length, result.length - length);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += n;
+                }
+                if (length != result.length) {
+                    throw new IllegalDataException(tr("Invalid PBF blob"));
+                }
+                return result;
+            } catch (DataFormatException e) {
+                throw new IllegalDataException(e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * The primitive data decoded from a data block, to be added to the data set in order.
+     * Decoding does not modify the state of the reader, so that blocks can be decoded concurrently.
+     */
+    private final class PrimitiveBlock {
+        final List<NodeData> nodes = new ArrayList<>();
+        final List<WayData> ways = new ArrayList<>();
+        final List<Collection<Long>> wayNodes = new ArrayList<>();
+        final List<RelationData> relations = new ArrayList<>();
+        final List<Collection<RelationMemberData>> relationMembers = new ArrayList<>();
+
+        private String[] strings = new String[0];
+        private long granularity = 100;
+        private long dateGranularity = 1000;
+        private long latOffset;
+        private long lonOffset;
+
+        PrimitiveBlock parse(byte[] data) throws IllegalDataException {
+            // the string table and the granularities are needed to decode the groups, which may come first
+            List<ProtobufDecoder> groups = new ArrayList<>();
+            ProtobufDecoder block = new ProtobufDecoder(data);
+            while (block.next()) {
+                switch (block.field()) {
+                case 1:
+                    parseStringTable(block.message());
+                    break;
+                case 2:
+                    groups.add(block.message());
+                    break;
+                case 17:
+                    granularity = block.varint();
+                    break;
+                case 18:
+                    dateGranularity = block.varint();
+                    break;
+                case 19:
+                    latOffset = block.varint();
+                    break;
+                case 20:
+                    lonOffset = block.varint();
+                    break;
+                default:
+                    block.skip();
+                }
+            }
+            for (ProtobufDecoder group : groups) {
+                parseGroup(group);
+            }
+            return this;
+        }
+
+        private void parseStringTable(ProtobufDecoder table) throws IllegalDataException {
+            List<String> list = new ArrayList<>();
+            while (table.next()) {
+                if (table.field() == 1) {
+                    list.add(table.string().intern());
+                } else {
+                    table.skip();
+                }
+            }
+            strings = list.toArray(new String[0]);
+        }
+
+        private String string(long index) throws IllegalDataException {
+            if (index < 0 || index >= strings.length) {
+                throw new IllegalDataException(tr("Invalid PBF string table index: {0}", Long.toString(index)));
+            }
+            return strings[(int) index];
+        }
+
+        private void parseGroup(ProtobufDecoder group) throws IllegalDataException {
+            while (group.next()) {
+                switch (group.field()) {
+                case 1:
+                    parseNode(group.message());
+                    break;
+                case 2:
+                    parseDenseNodes(group.message());
+                    break;
+                case 3:
+                    parseWay(group.message());
+                    break;
+                case 4:
+                    parseRelation(group.message());
+                    break;
+                default:
+                    group.skip();
+                }
+            }
+        }
+
+        private void parseNode(ProtobufDecoder node) throws IllegalDataException {
+            long id = 0;
+            long[] keys = null;
+            long[] vals = null;
+            ProtobufDecoder info = null;
+            long lat = 0;
+            long lon = 0;
+            while (node.next()) {
+                switch (node.field()) {
+                case 1:
+                    id = node.sint64();
+                    break;
+                case 2:
+                    keys = node.varints(keys, false);
+                    break;
+                case 3:
+                    vals = node.varints(vals, false);
+                    break;
+                case 4:
+                    info = node.message();
+                    break;
+                case 8:
+                    lat = node.sint64();
+                    break;
+                case 9:
+                    lon = node.sint64();
+                    break;
+                default:
+                    node.skip();
+                }
+            }
+            NodeData nd = new NodeData(0);
+            parseId(nd, id);
+            parseInfo(nd, info);
+            setCoor(nd, lat, lon);
+            parseTags(nd, keys, vals);
+            nodes.add(nd);
+        }
+
+        private void parseDenseNodes(ProtobufDecoder dense) throws IllegalDataException {
+            long[] ids = null;
+            long[] lats = null;
+            long[] lons = null;
+            long[] keysVals = null;
+            DenseInfo info = null;
+            while (dense.next()) {
+                switch (dense.field()) {
+                case 1:
+                    ids = dense.varints(ids, true);
+                    break;
+                case 5:
+                    info = new DenseInfo(dense.message());
+                    break;
+                case 8:
+                    lats = dense.varints(lats, true);
+                    break;
+                case 9:
+                    lons = dense.varints(lons, true);
+                    break;
+                case 10:
+                    keysVals = dense.varints(keysVals, false);
+                    break;
+                default:
+                    dense.skip();
+                }
+            }
+            ids = ProtobufDecoder.orEmpty(ids);
+            lats = ProtobufDecoder.orEmpty(lats);
+            lons = ProtobufDecoder.orEmpty(lons);
+            keysVals = ProtobufDecoder.orEmpty(keysVals);
+            if (lats.length != ids.length || lons.length != ids.length || (info != null && !info.hasLength(ids.length))) {
+                throw new IllegalDataException(tr("Invalid PBF dense nodes"));
+            }
+            long id = 0;
+            long lat = 0;
+            long lon = 0;
+            int kv = 0;
+            for (int i = 0; i < ids.length; i++) {
+                id += ids[i];
+                lat += lats[i];
+                lon += lons[i];
+                NodeData nd = new NodeData(0);
+                parseId(nd, id);
+                if (info != null) {
+                    info.next(i);
+                    setInfo(nd, info.version, info.timestamp, info.changeset, info.uid, info.userSid, info.visible);
+                } else {
+                    parseInfo(nd, null);
+                }
+                setCoor(nd, lat, lon);
+                if (keysVals.length > 0) {
+                    while (kv < keysVals.length && keysVals[kv] != 0) {
+                        if (kv + 1 >= keysVals.length) {
+                            throw new IllegalDataException(tr("Invalid PBF dense nodes"));
+                        }
+                        parseTag(nd, string(keysVals[kv]), string(keysVals[kv + 1]));
+                        kv += 2;
+                    }
+                    kv++;
+                }
+                nodes.add(nd);
+            }
+        }
+
+        private void parseWay(ProtobufDecoder way) throws IllegalDataException {
+            long id = 0;
+            long[] keys = null;
+            long[] vals = null;
+            long[] refs = null;
+            ProtobufDecoder info = null;
+            while (way.next()) {
+                switch (way.field()) {
+                case 1:
+                    id = way.varint();
+                    break;
+                case 2:
+                    keys = way.varints(keys, false);
+                    break;
+                case 3:
+                    vals = way.varints(vals, false);
+                    break;
+                case 4:
+                    info = way.message();
+                    break;
+                case 8:
+                    refs = way.varints(refs, true);
+                    break;
+                default:
+                    way.skip();
+                }
+            }
+            WayData wd = new WayData(0);
+            parseId(wd, id);
+            parseInfo(wd, info);
+            parseTags(wd, keys, vals);
+            refs = ProtobufDecoder.orEmpty(refs);
+            Collection<Long> nodeIds = new ArrayList<>(refs.length);
+            long ref = 0;
+            for (long delta : refs) {
+                ref += delta;
+                if (ref == 0) {
+                    throw new IllegalDataException(tr("Illegal object with ID=0."));
+                }
+                nodeIds.add(ref);
+            }
+            ways.add(wd);
+            wayNodes.add(nodeIds);
+        }
+
+        private void parseRelation(ProtobufDecoder relation) throws IllegalDataException {
+            long id = 0;
+            long[] keys = null;
+            long[] vals = null;
+            long[] roles = null;
+            long[] memberIds = null;
+            long[] types = null;
+            ProtobufDecoder info = null;
+            while (relation.next()) {
+                switch (relation.field()) {
+                case 1:
+                    id = relation.varint();
+                    break;
+                case 2:
+                    keys = relation.varints(keys, false);
+                    break;
+                case 3:
+                    vals = relation.varints(vals, false);
+                    break;
+                case 4:
+                    info = relation.message();
+                    break;
+                case 8:
+                    roles = relation.varints(roles, false);
+                    break;
+                case 9:
+                    memberIds = relation.varints(memberIds, true);
+                    break;
+                case 10:
+                    types = relation.varints(types, false);
+                    break;
+                default:
+                    relation.skip();
+                }
+            }
+            RelationData rd = new RelationData(0);
+            parseId(rd, id);
+            parseInfo(rd, info);
+            parseTags(rd, keys, vals);
+            roles = ProtobufDecoder.orEmpty(roles);
+            memberIds = ProtobufDecoder.orEmpty(memberIds);
+            types = ProtobufDecoder.orEmpty(types);
+            if (roles.length != memberIds.length || types.length != memberIds.length) {
+                throw new IllegalDataException(tr("Invalid PBF relation members of relation {0}", Long.toString(rd.getId())));
+            }
+            Collection<RelationMemberData> members = new ArrayList<>(memberIds.length);
+            long memberId = 0;
+            for (int i = 0; i < memberIds.length; i++) {
+                memberId += memberIds[i];
+                String type = types[i] >= 0 && types[i] < MEMBER_TYPES.length ? MEMBER_TYPES[(int) types[i]] : Long.toString(types[i]);
+                members.add(parseRelationMember(rd, memberId, type, string(roles[i])));
+            }
+            relations.add(rd);
+            relationMembers.add(members);
+        }
+
+        private void parseInfo(PrimitiveData pd, ProtobufDecoder info) throws IllegalDataException {
+            if (info == null) {
+                // same behaviour as a missing version attribute in XML
+                parseVersion(pd, (String) null);
+                return;
+            }
+            int version = -1;
+            long timestamp = 0;
+            long changeset = 0;
+            int uid = 0;
+            int userSid = 0;
+            boolean visible = true;
+            while (info.next()) {
+                switch (info.field()) {
+                case 1:
+                    version = (int) info.varint();
+                    break;
+                case 2:
+                    timestamp = info.varint();
+                    break;
+                case 3:
+                    changeset = info.varint();
+                    break;
+                case 4:
+                    uid = (int) info.varint();
+                    break;
+                case 5:
+                    userSid = (int) info.varint();
+                    break;
+                case 6:
+                    visible = info.bool();
+                    break;
+                default:
+                    info.skip();
+                }
+            }
+            setInfo(pd, version, timestamp, changeset, uid, userSid, visible);
+        }
+
+        private void setInfo(PrimitiveData pd, int version, long timestamp, long changeset, int uid, int userSid, boolean visible)
+                throws IllegalDataException {
+            if (timestamp != 0) {
+                pd.setRawTimestamp((int) (timestamp * dateGranularity / 1000));
+            }
+            String user = userSid != 0 ? string(userSid) : "";
+            if (uid > 0) {
+                parseUser(pd, user, uid);
+            } else if (!user.isEmpty()) {
+                parseUser(pd, user, (String) null);
+            }
+            pd.setVisible(visible);
+            parseVersion(pd, version);
+            if (changeset < Integer.MIN_VALUE || changeset > Integer.MAX_VALUE) {
+                throw new IllegalDataException(tr("Illegal value for attribute ''changeset''. Got {0}.", Long.toString(changeset)));
+            } else if (changeset != 0) {
+                parseChangeset(pd, (int) changeset);
+            }
+        }
+
+        private void setCoor(NodeData nd, long lat, long lon) throws IllegalDataException {
+            // exact division, so that coordinates are the same as when parsed from their decimal representation
+            double latitude = (latOffset + granularity * lat) / 1e9;
+            double longitude = (lonOffset + granularity * lon) / 1e9;
+            LatLon ll = new LatLon(latitude, longitude);
+            if (!ll.isValid()) {
+                throw new IllegalDataException(tr("Illegal value for attributes ''lat'', ''lon'' on node with ID {0}. Got ''{1}'', ''{2}''.",
+                        Long.toString(nd.getId()), Double.toString(latitude), Double.toString(longitude)));
+            }
+            nd.setCoor(ll);
+        }
+
+        private void parseTags(PrimitiveData pd, long[] keys, long[] vals) throws IllegalDataException {
+            keys = ProtobufDecoder.orEmpty(keys);
+            vals = ProtobufDecoder.orEmpty(vals);
+            if (keys.length != vals.length) {
+                throw new IllegalDataException(tr("Invalid PBF tags of object {0}", Long.toString(pd.getId())));
+            }
+            for (int i = 0; i < keys.length; i++) {
+                parseTag(pd, string(keys[i]), string(vals[i]));
+            }
+        }
+    }
+
+    /**
+     * The metadata of dense nodes, delta coded.
+     */
+    private static final class DenseInfo {
+        private long[] versions;
+        private long[] timestamps;
+        private long[] changesets;
+        private long[] uids;
+        private long[] userSids;
+        private long[] visibles;
+
+        int version;
+        long timestamp;
+        long changeset;
+        int uid;
+        int userSid;
+        boolean visible;
+
+        DenseInfo(ProtobufDecoder info) throws IllegalDataException {
+            while (info.next()) {
+                switch (info.field()) {
+                case 1:
+                    versions = info.varints(versions, false);
+                    break;
+                case 2:
+                    timestamps = info.varints(timestamps, true);
+                    break;
+                case 3:
+                    changesets = info.varints(changesets, true);
+                    break;
+                case 4:
+                    uids = info.varints(uids, true);
+                    break;
+                case 5:
+                    userSids = info.varints(userSids, true);
+                    break;
+                case 6:
+                    visibles = info.varints(visibles, false);
+                    break;
+                default:
+                    info.skip();
+                }
+            }
+            versions = ProtobufDecoder.orEmpty(versions);
+            timestamps = ProtobufDecoder.orEmpty(timestamps);
+            changesets = ProtobufDecoder.orEmpty(changesets);
+            uids = ProtobufDecoder.orEmpty(uids);
+            userSids = ProtobufDecoder.orEmpty(userSids);
+            visibles = ProtobufDecoder.orEmpty(visibles);
+        }
+
+        /**
+         * Determines if all metadata arrays are either missing or of the given length.
+         * @param length the number of nodes
+         * @return {@code true} if the metadata is consistent with the number of nodes
+         */
+        boolean hasLength(int length) {
+            for (long[] array : Arrays.asList(versions, timestamps, changesets, uids, userSids, visibles)) {
+                if (array.length != 0 && array.length != length) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Decodes the metadata of the given node. Must be called for each node, in order.
+         * @param i the index of the node
+         */
+        void next(int i) {
+            version = versions.length > 0 ? (int) versions[i] : -1;
+            timestamp += timestamps.length > 0 ? timestamps[i] : 0;
+            changeset += changesets.length > 0 ? changesets[i] : 0;
+            uid += uids.length > 0 ? (int) uids[i] : 0;
+            userSid += userSids.length > 0 ? (int) userSids[i] : 0;
+            visible = visibles.length == 0 || visibles[i] != 0;
+        }
+    }
+
+    /**
+     * Exception thrown after user cancelation.
+     */
+    private static final class PbfParsingCanceledException extends Exception implements ImportCancelException {
+        PbfParsingCanceledException() {
+            super(tr("Reading was canceled"));
+        }
+    }
+
+    /**
+     * Parse the given input source and return the dataset.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException if an error was found while parsing the data from the source
+     * @throws IllegalArgumentException if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return new PbfReader().doParseDataSet(source, progressMonitor);
+    }
+}
@@ -0,0 +1,318 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSetSnapshot;
+import org.openstreetmap.josm.data.osm.IPrimitive;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.WayData;
+
+/**
+ * Writes OSM data in the <a href="https://wiki.openstreetmap.org/wiki/PBF_Format">OSM PBF format</a>.
+ * <p>
+ * The format has no equivalent of the {@code action} attribute of .osm files: deleted and incomplete primitives
+ * are not written, and the modified state of primitives is lost. This is why {@link
+ * org.openstreetmap.josm.gui.io.importexport.PbfExporter PbfExporter} refuses to save layers with changes.
+ * The data source bounds are merged into a single bounding box. The ids of users which are not OSM users
+ * (zero or negative) are not written, only their names.
+ * @see PbfReader
+ */
+public class PbfWriter implements Closeable {
+
+    /** Maximum number of primitives written in a data block */
+    private static final int BLOCK_SIZE = 8000;
+    /** Granularity of coordinates, in nanodegrees */
+    private static final long GRANULARITY = 100;
+
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater();
+    private final ProtobufEncoder blob = new ProtobufEncoder();
+    private final ProtobufEncoder blobHeader = new ProtobufEncoder();
+
+    /**
+     * Constructs a new {@code PbfWriter}.
+     * @param out the output stream
+     */
+    public PbfWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * Writes the given data set.
+     * @param ds the data set
+     * @throws IOException in case of I/O error
+     */
+    public void write(DataSet ds) throws IOException {
+        write(ds.snapshot());
+    }
+
+    /**
+     * Writes the given data set snapshot. The read lock of the data set does not have to be held while writing.
+     * @param snapshot snapshot of the data set
+     * @throws IOException in case of I/O error
+     * @see DataSet#snapshot()
+     */
+    public void write(DataSetSnapshot snapshot) throws IOException {
+        writeHeader(snapshot.getDataSources());
+        writeBlocks(primitives(snapshot.getNodes()), this::writeDenseNodes);
+        writeBlocks(primitives(snapshot.getWays()), this::writeWays);
+        writeBlocks(primitives(snapshot.getRelations()), this::writeRelations);
+        out.flush();
+    }
+
+    private static <T extends IPrimitive> List<T> primitives(Iterable<T> primitives) {
+        List<T> result = new ArrayList<>();
+        for (T p : primitives) {
+            if (!p.isDeleted() && !p.isIncomplete()) {
+                result.add(p);
+            }
+        }
+        // primitives known to the server in ascending id order, then new primitives in creation order
+        result.sort(Comparator.comparing(IPrimitive::isNew).thenComparingLong(p -> Math.abs(p.getUniqueId())));
+        return result;
+    }
+
+    private void writeHeader(Collection<DataSource> dataSources) throws IOException {
+        ProtobufEncoder header = new ProtobufEncoder();
+        Bounds bounds = null;
+        for (DataSource source : dataSources) {
+            if (bounds == null) {
+                bounds = new Bounds(source.bounds);
+            } else {
+                bounds.extend(source.bounds);
+            }
+        }
+        if (bounds != null) {
+            header.message(1, new ProtobufEncoder()
+                    .sint64(1, Math.round(bounds.getMinLon() * 1e9))
+                    .sint64(2, Math.round(bounds.getMaxLon() * 1e9))
+                    .sint64(3, Math.round(bounds.getMaxLat() * 1e9))
+                    .sint64(4, Math.round(bounds.getMinLat() * 1e9)));
+        }
+        for (String feature : PbfReader.SUPPORTED_FEATURES) {
+            header.string(4, feature);
+        }
+        header.string(16, "JOSM");
+        writeBlob("OSMHeader", header);
+    }
+
+    @FunctionalInterface
+    private interface GroupWriter<T> {
+        void write(List<T> primitives, StringTable strings, ProtobufEncoder group);
+    }
+
+    private <T extends IPrimitive> void writeBlocks(List<T> primitives, GroupWriter<T> groupWriter) throws IOException {
+        for (int start = 0; start < primitives.size(); start += BLOCK_SIZE) {
+            List<T> chunk = primitives.subList(start, Math.min(start + BLOCK_SIZE, primitives.size()));
+            StringTable strings = new StringTable();
+            ProtobufEncoder group = new ProtobufEncoder();
+            groupWriter.write(chunk, strings, group);
+            ProtobufEncoder block = new ProtobufEncoder();
+            block.message(1, strings.encode());
+            block.message(2, group);
+            block.varint(17, GRANULARITY);
+            writeBlob("OSMData", block);
+        }
+    }
+
+    private void writeDenseNodes(List<NodeData> nodes, StringTable strings, ProtobufEncoder group) {
+        int n = nodes.size();
+        long[] ids = new long[n];
+        long[] lats = new long[n];
+        long[] lons = new long[n];
+        long[] versions = new long[n];
+        long[] timestamps = new long[n];
+        long[] changesets = new long[n];
+        long[] uids = new long[n];
+        long[] userSids = new long[n];
+        int keysValsCount = 0;
+        for (NodeData node : nodes) {
+            keysValsCount += 2 * node.getNumKeys() + 1;
+        }
+        long[] keysVals = new long[keysValsCount];
+        int kv = 0;
+        long lastId = 0;
+        long lastLat = 0;
+        long lastLon = 0;
+        long lastTimestamp = 0;
+        long lastChangeset = 0;
+        long lastUid = 0;
+        long lastUserSid = 0;
+        for (int i = 0; i < n; i++) {
+            NodeData node = nodes.get(i);
+            LatLon ll = node.getCoor();
+            long lat = ll != null ? Math.round(ll.lat() * 1e9 / GRANULARITY) : 0;
+            long lon = ll != null ? Math.round(ll.lon() * 1e9 / GRANULARITY) : 0;
+            User user = node.getUser();
+            long uid = user != null ? Math.max(user.getId(), 0) : 0;
+            long userSid = user != null ? strings.index(user.getName()) : 0;
+            ids[i] = node.getUniqueId() - lastId;
+            lats[i] = lat - lastLat;
+            lons[i] = lon - lastLon;
+            versions[i] = node.getVersion();
+            timestamps[i] = node.getRawTimestamp() - lastTimestamp;
+            changesets[i] = node.getChangesetId() - lastChangeset;
+            uids[i] = uid - lastUid;
+            userSids[i] = userSid - lastUserSid;
+            lastId = node.getUniqueId();
+            lastLat = lat;
+            lastLon = lon;
+            lastTimestamp = node.getRawTimestamp();
+            lastChangeset = node.getChangesetId();
+            lastUid = uid;
+            lastUserSid = userSid;
+            for (Map.Entry<String, String> tag : node.getKeys().entrySet()) {
+                keysVals[kv++] = strings.index(tag.getKey());
+                keysVals[kv++] = strings.index(tag.getValue());
+            }
+            keysVals[kv++] = 0;
+        }
+        ProtobufEncoder dense = new ProtobufEncoder()
+                .varints(1, ids, n, true)
+                .message(5, new ProtobufEncoder()
+                        .varints(1, versions, n, false)
+                        .varints(2, timestamps, n, true)
+                        .varints(3, changesets, n, true)
+                        .varints(4, uids, n, true)
+                        .varints(5, userSids, n, true))
+                .varints(8, lats, n, true)
+                .varints(9, lons, n, true);
+        // keys_vals may be omitted if no node has tags
+        if (kv > n) {
+            dense.varints(10, keysVals, kv, false);
+        }
+        group.message(2, dense);
+    }
+
+    private void writeWays(List<WayData> ways, StringTable strings, ProtobufEncoder group) {
+        for (WayData way : ways) {
+            ProtobufEncoder encoder = new ProtobufEncoder().varint(1, way.getUniqueId());
+            writeTagsAndInfo(way, strings, encoder);
+            long[] refs = new long[way.getNodesCount()];
+            long last = 0;
+            for (int i = 0; i < refs.length; i++) {
+                long id = way.getNodeId(i);
+                refs[i] = id - last;
+                last = id;
+            }
+            encoder.varints(8, refs, refs.length, true);
+            group.message(3, encoder);
+        }
+    }
+
+    private void writeRelations(List<RelationData> relations, StringTable strings, ProtobufEncoder group) {
+        for (RelationData relation : relations) {
+            ProtobufEncoder encoder = new ProtobufEncoder().varint(1, relation.getUniqueId());
+            writeTagsAndInfo(relation, strings, encoder);
+            int n = relation.getMembersCount();
+            long[] roles = new long[n];
+            long[] memberIds = new long[n];
+            long[] types = new long[n];
+            long last = 0;
+            for (int i = 0; i < n; i++) {
+                OsmPrimitiveType type = relation.getMemberType(i);
+                roles[i] = strings.index(relation.getRole(i));
+                memberIds[i] = relation.getMemberId(i) - last;
+                last = relation.getMemberId(i);
+                types[i] = type == OsmPrimitiveType.NODE ? 0 : type == OsmPrimitiveType.WAY ? 1 : 2;
+            }
+            encoder.varints(8, roles, n, false).varints(9, memberIds, n, true).varints(10, types, n, false);
+            group.message(4, encoder);
+        }
+    }
+
+    private static void writeTagsAndInfo(IPrimitive p, StringTable strings, ProtobufEncoder encoder) {
+        Map<String, String> tags = p.getKeys();
+        long[] keys = new long[tags.size()];
+        long[] vals = new long[tags.size()];
+        int i = 0;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            keys[i] = strings.index(tag.getKey());
+            vals[i++] = strings.index(tag.getValue());
+        }
+        encoder.varints(2, keys, i, false).varints(3, vals, i, false);
+        ProtobufEncoder info = new ProtobufEncoder()
+                .varint(1, p.getVersion())
+                .varint(2, p.getRawTimestamp())
+                .varint(3, p.getChangesetId());
+        User user = p.getUser();
+        if (user != null) {
+            // uid is an int32 field: a negative value would take ten bytes, and it is not an OSM user anyway
+            if (user.getId() > 0) {
+                info.varint(4, user.getId());
+            }
+            info.varint(5, strings.index(user.getName()));
+        }
+        encoder.message(4, info);
+    }
+
+    private void writeBlob(String type, ProtobufEncoder data) throws IOException {
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream(data.size() / 2 + 64);
+        deflater.reset();
+        try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(zlib, deflater)) {
+            data.writeTo(deflaterStream);
+        }
+        blob.reset();
+        blob.varint(2, data.size());
+        blob.bytes(3, zlib.toByteArray());
+        blobHeader.reset();
+        blobHeader.string(1, type);
+        blobHeader.varint(3, blob.size());
+        out.writeInt(blobHeader.size());
+        blobHeader.writeTo(out);
+        blob.writeTo(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        out.close();
+    }
+
+    /**
+     * The string table of a data block. The first string is always the empty one, as it is used as delimiter.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        StringTable() {
+            index("");
+        }
+
+        int index(String s) {
+            return indexes.computeIfAbsent(s, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+
+        ProtobufEncoder encode() {
+            ProtobufEncoder table = new ProtobufEncoder();
+            for (String s : strings) {
+                table.string(1, s);
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal decoder of <a href="https://developers.google.com/protocol-buffers/docs/encoding">Protocol Buffers</a> messages,
+ * reading the fields of a message in sequence without any generated code.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * while (decoder.next()) {
+ *     switch (decoder.field()) {
+ *     case 1: id = decoder.varint(); break;
+ *     default: decoder.skip();
+ *     }
+ * }
+ * </pre>
+ */
+final class ProtobufDecoder {
+
+    static final int WIRE_TYPE_VARINT = 0;
+    static final int WIRE_TYPE_FIXED64 = 1;
+    static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+    static final int WIRE_TYPE_FIXED32 = 5;
+
+    private static final long[] EMPTY = new long[0];
+
+    private final byte[] buffer;
+    private int pos;
+    private final int end;
+    private int tag;
+
+    /**
+     * Constructs a new {@code ProtobufDecoder} reading the whole given buffer.
+     * @param buffer the encoded message
+     */
+    ProtobufDecoder(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Constructs a new {@code ProtobufDecoder} reading a part of the given buffer.
+     * @param buffer the buffer
+     * @param offset the offset of the encoded message in the buffer
+     * @param length the length of the encoded message
+     */
+    ProtobufDecoder(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Reads the key of the next field.
+     * @return {@code true} if there is a next field, {@code false} at the end of the message
+     * @throws IllegalDataException if the message is malformed
+     */
+    boolean next() throws IllegalDataException {
+        if (pos >= end) {
+            return false;
+        }
+        tag = (int) rawVarint();
+        return true;
+    }
+
+    /**
+     * Returns the number of the current field.
+     * @return the field number
+     */
+    int field() {
+        return tag >>> 3;
+    }
+
+    /**
+     * Returns the wire type of the current field.
+     * @return the wire type
+     */
+    int wireType() {
+        return tag & 7;
+    }
+
+    /**
+     * Determines if there are bytes left to read in the message.
+     * @return {@code true} if there are bytes left to read
+     */
+    boolean hasRemaining() {
+        return pos < end;
+    }
+
+    /**
+     * Reads the value of the current field, of type {@code int32}, {@code int64}, {@code uint32}, {@code uint64} or {@code enum}.
+     * @return the value
+     * @throws IllegalDataException if the message is malformed
+     */
+    long varint() throws IllegalDataException {
+        return rawVarint();
+    }
+
+    /**
+     * Reads the value of the current field, of type {@code sint32} or {@code sint64}.
+     * @return the value
+     * @throws IllegalDataException if the message is malformed
+     */
+    long sint64() throws IllegalDataException {
+        return zigZag(rawVarint());
+    }
+
+    /**
+     * Reads the value of the current field, of type {@code bool}.
+     * @return the value
+     * @throws IllegalDataException if the message is malformed
+     */
+    boolean bool() throws IllegalDataException {
+        return rawVarint() != 0;
+    }
+
+    /**
+     * Reads the value of the current field, of type {@code bytes}.
+     * @return the value
+     * @throws IllegalDataException if the message is malformed
+     */
+    byte[] bytes() throws IllegalDataException {
+        int length = length();
+        byte[] result = Arrays.copyOfRange(buffer, pos, pos + length);
+        pos += length;
+        return result;
+    }
+
+    /**
+     * Reads the value of the current field, of type {@code string}.
+     * @return the value
+     * @throws IllegalDataException if the message is malformed
+     */
+    String string() throws IllegalDataException {
+        int length = length();
+        String result = new String(buffer, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return result;
+    }
+
+    /**
+     * Reads the value of the current field, of type message.
+     * @return a decoder of the embedded message
+     * @throws IllegalDataException if the message is malformed
+     */
+    ProtobufDecoder message() throws IllegalDataException {
+        int length = length();
+        ProtobufDecoder result = new ProtobufDecoder(buffer, pos, length);
+        pos += length;
+        return result;
+    }
+
+    /**
+     * Reads the values of the current repeated varint field, either packed or not, after the given values.
+     * @param previous the values of the field read so far, or {@code null}
+     * @param zigZag {@code true} for {@code sint32} or {@code sint64} fields
+     * @return the values of the field read so far, including those of the current field
+     * @throws IllegalDataException if the message is malformed
+     */
+    long[] varints(long[] previous, boolean zigZag) throws IllegalDataException {
+        long[] result;
+        int i;
+        if (wireType() == WIRE_TYPE_LENGTH_DELIMITED) {
+            int length = length();
+            int count = 0;
+            for (int j = pos; j < pos + length; j++) {
+                if (buffer[j] >= 0) {
+                    count++;
+                }
+            }
+            i = previous == null ? 0 : previous.length;
+            result = previous == null ? new long[count] : Arrays.copyOf(previous, i + count);
+            int packedEnd = pos + length;
+            while (pos < packedEnd && i < result.length) {
+                result[i++] = zigZag ? zigZag(rawVarint()) : rawVarint();
+            }
+            if (pos != packedEnd || i != result.length) {
+                throw malformed();
+            }
+        } else {
+            i = previous == null ? 0 : previous.length;
+            result = previous == null ? new long[1] : Arrays.copyOf(previous, i + 1);
+            result[i] = zigZag ? sint64() : varint();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the given values, or an empty array if they are {@code null}.
+     * @param values values read by {@link #varints}, or {@code null} if the field was missing
+     * @return the values, never {@code null}
+     */
+    static long[] orEmpty(long[] values) {
+        return values != null ? values : EMPTY;
+    }
+
+    /**
+     * Skips the value of the current field.
+     * @throws IllegalDataException if the message is malformed
+     */
+    void skip() throws IllegalDataException {
+        switch (wireType()) {
+        case WIRE_TYPE_VARINT:
+            rawVarint();
+            break;
+        case WIRE_TYPE_FIXED64:
+            advance(8);
+            break;
+        case WIRE_TYPE_LENGTH_DELIMITED:
+            advance(length());
+            break;
+        case WIRE_TYPE_FIXED32:
+            advance(4);
+            break;
+        default:
+            throw new IllegalDataException(tr("Unsupported protocol buffers wire type: {0}", wireType()));
+        }
+    }
+
+    private void advance(int length) throws IllegalDataException {
+        if (length < 0 || length > end - pos) {
+            throw malformed();
+        }
+        pos += length;
+    }
+
+    private int length() throws IllegalDataException {
+        long length = rawVarint();
+        if (length < 0 || length > end - pos) {
+            throw malformed();
+        }
+        return (int) length;
+    }
+
+    private long rawVarint() throws IllegalDataException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= end) {
+                throw malformed();
+            }
+            byte b = buffer[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw malformed();
+    }
+
+    private static long zigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static IllegalDataException malformed() {
+        return new IllegalDataException(tr("Malformed protocol buffers message"));
+    }
+}
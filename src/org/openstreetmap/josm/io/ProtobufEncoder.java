@@ -0,0 +1,173 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal encoder of <a href="https://developers.google.com/protocol-buffers/docs/encoding">Protocol Buffers</a> messages,
+ * writing the fields of a message in sequence into a growing buffer.
+ * @see ProtobufDecoder
+ */
+final class ProtobufEncoder {
+
+    private byte[] buffer = new byte[256];
+    private int size;
+
+    /**
+     * Writes a field of type {@code int32}, {@code int64}, {@code uint32}, {@code uint64}, {@code bool} or {@code enum}.
+     * @param field the field number
+     * @param value the value
+     * @return this
+     */
+    ProtobufEncoder varint(int field, long value) {
+        key(field, ProtobufDecoder.WIRE_TYPE_VARINT);
+        rawVarint(value);
+        return this;
+    }
+
+    /**
+     * Writes a field of type {@code sint32} or {@code sint64}.
+     * @param field the field number
+     * @param value the value
+     * @return this
+     */
+    ProtobufEncoder sint64(int field, long value) {
+        return varint(field, zigZag(value));
+    }
+
+    /**
+     * Writes a field of type {@code bytes}.
+     * @param field the field number
+     * @param value the value
+     * @return this
+     */
+    ProtobufEncoder bytes(int field, byte[] value) {
+        return bytes(field, value, value.length);
+    }
+
+    /**
+     * Writes a field of type {@code bytes}.
+     * @param field the field number
+     * @param value the buffer containing the value
+     * @param length the length of the value, at the beginning of the buffer
+     * @return this
+     */
+    ProtobufEncoder bytes(int field, byte[] value, int length) {
+        key(field, ProtobufDecoder.WIRE_TYPE_LENGTH_DELIMITED);
+        rawVarint(length);
+        ensureCapacity(length);
+        System.arraycopy(value, 0, buffer, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Writes a field of type {@code string}.
+     * @param field the field number
+     * @param value the value
+     * @return this
+     */
+    ProtobufEncoder string(int field, String value) {
+        return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a field of type message.
+     * @param field the field number
+     * @param message the embedded message
+     * @return this
+     */
+    ProtobufEncoder message(int field, ProtobufEncoder message) {
+        return bytes(field, message.buffer, message.size);
+    }
+
+    /**
+     * Writes a packed repeated field of varints.
+     * @param field the field number
+     * @param values the values
+     * @param count the number of values, at the beginning of the array
+     * @param zigZag {@code true} for {@code sint32} or {@code sint64} fields
+     * @return this
+     */
+    ProtobufEncoder varints(int field, long[] values, int count, boolean zigZag) {
+        if (count > 0) {
+            int length = 0;
+            for (int i = 0; i < count; i++) {
+                length += varintSize(zigZag ? zigZag(values[i]) : values[i]);
+            }
+            key(field, ProtobufDecoder.WIRE_TYPE_LENGTH_DELIMITED);
+            rawVarint(length);
+            for (int i = 0; i < count; i++) {
+                rawVarint(zigZag ? zigZag(values[i]) : values[i]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the size of the encoded message.
+     * @return the size in bytes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the encoded message.
+     * @return a copy of the encoded message
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Writes the encoded message to the given stream.
+     * @param out the stream
+     * @throws IOException in case of I/O error
+     */
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    /**
+     * Clears the message, so that the encoder can be reused.
+     */
+    void reset() {
+        size = 0;
+    }
+
+    private void key(int field, int wireType) {
+        rawVarint((field << 3) | wireType);
+    }
+
+    private void rawVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private static int varintSize(long value) {
+        int result = 1;
+        while ((value & ~0x7FL) != 0) {
+            result++;
+            value >>>= 7;
+        }
+        return result;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensureCapacity(int length) {
+        if (size + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+        }
+    }
+}
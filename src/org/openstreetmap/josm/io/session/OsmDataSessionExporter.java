@@ -7,6 +7,7 @@ import java.io.PrintWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 
+import org.openstreetmap.josm.data.osm.DataSetSnapshot;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.io.OsmWriter;
 import org.openstreetmap.josm.io.OsmWriterFactory;
@@ -27,14 +28,10 @@ public class OsmDataSessionExporter extends GenericSessionExporter<OsmDataLayer>
 
     @Override
     protected void addDataFile(OutputStream out) {
+        DataSetSnapshot snapshot = layer.data.snapshot();
         Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
-        OsmWriter w = OsmWriterFactory.createOsmWriter(new PrintWriter(writer), false, layer.data.getVersion());
-        layer.data.getReadLock().lock();
-        try {
-            w.write(layer.data);
-            w.flush();
-        } finally {
-            layer.data.getReadLock().unlock();
-        }
+        OsmWriter w = OsmWriterFactory.createOsmWriter(new PrintWriter(writer), false, snapshot.getVersion());
+        w.write(snapshot);
+        w.flush();
     }
 }
@@ -0,0 +1,103 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.openstreetmap.josm.data.osm.INode;
+import org.openstreetmap.josm.data.osm.MultipolygonBuilder;
+import org.openstreetmap.josm.data.osm.MultipolygonBuilder.JoinedPolygon;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.tools.Geometry.PolygonIntersection;
+
+/**
+ * A multipolygon prepared for repeated containment queries.
+ * <p>
+ * The rings of the multipolygon are joined once, each ring is a {@link PreparedPolygon}, and the inner rings
+ * of each outer ring are determined in advance. The results are the same as the ones of
+ * {@link Geometry#isNodeInsideMultiPolygon} and {@link Geometry#isPolygonInsideMultiPolygon} without predicate.
+ * <p>
+ * This class is thread safe.
+ */
+public final class PreparedMultipolygon {
+
+    private static final class PreparedOuter {
+        private final PreparedPolygon polygon;
+        private final List<PreparedPolygon> inners;
+
+        PreparedOuter(PreparedPolygon polygon, List<PreparedPolygon> inners) {
+            this.polygon = polygon;
+            this.inners = inners;
+        }
+    }
+
+    private final List<PreparedOuter> outers;
+
+    /**
+     * Prepares a multipolygon.
+     * @param multipolygon the multipolygon relation
+     */
+    public PreparedMultipolygon(Relation multipolygon) {
+        outers = prepare(multipolygon);
+    }
+
+    private static List<PreparedOuter> prepare(Relation multipolygon) {
+        final Pair<List<JoinedPolygon>, List<JoinedPolygon>> outerInner;
+        try {
+            outerInner = MultipolygonBuilder.joinWays(multipolygon);
+        } catch (MultipolygonBuilder.JoinedPolygonCreationException ex) {
+            Logging.trace(ex);
+            Logging.debug("Invalid multipolygon " + multipolygon);
+            return Collections.emptyList();
+        }
+        List<PreparedPolygon> inners = outerInner.b.stream()
+                .map(in -> new PreparedPolygon(in.nodes, in.area))
+                .collect(Collectors.toList());
+        List<PreparedOuter> result = new ArrayList<>(outerInner.a.size());
+        for (JoinedPolygon out : outerInner.a) {
+            PreparedPolygon outer = new PreparedPolygon(out.nodes, out.area);
+            result.add(new PreparedOuter(outer, inners.stream()
+                    .filter(in -> PreparedPolygon.polygonIntersection(in, outer) == PolygonIntersection.FIRST_INSIDE_SECOND)
+                    .collect(Collectors.toList())));
+        }
+        return result;
+    }
+
+    /**
+     * Tests if a node is inside this multipolygon, as {@link Geometry#isNodeInsideMultiPolygon} does.
+     * @param node the node to test
+     * @return {@code true} if the node is inside this multipolygon
+     */
+    public boolean contains(INode node) {
+        for (PreparedOuter out : outers) {
+            if (out.polygon.contains(node) && out.inners.stream().noneMatch(in -> in.contains(node))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests if a polygon is inside this multipolygon, as {@link Geometry#isPolygonInsideMultiPolygon} does.
+     * If the polygon consists of exactly one node, then it is checked whether that node is inside this multipolygon.
+     * @param nodes the nodes of the polygon to test
+     * @return {@code true} if the polygon is inside this multipolygon
+     */
+    public boolean contains(List<? extends INode> nodes) {
+        if (nodes.size() == 1) {
+            return contains(nodes.get(0));
+        }
+        PreparedPolygon polygon = new PreparedPolygon(nodes);
+        for (PreparedOuter out : outers) {
+            PolygonIntersection intersection = PreparedPolygon.polygonIntersection(polygon, out.polygon);
+            if ((intersection == PolygonIntersection.FIRST_INSIDE_SECOND || intersection == PolygonIntersection.CROSSING)
+                    && out.inners.stream().noneMatch(in ->
+                            PreparedPolygon.polygonIntersection(polygon, in) == PolygonIntersection.FIRST_INSIDE_SECOND)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
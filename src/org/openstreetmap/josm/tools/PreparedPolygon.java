@@ -0,0 +1,384 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.tools;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.util.List;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.INode;
+import org.openstreetmap.josm.tools.Geometry.PolygonIntersection;
+
+/**
+ * A polygon prepared for repeated containment and intersection queries.
+ * <p>
+ * The edges of the polygon are bucketed into horizontal bands of the same height, so that a point query only
+ * looks at the edges crossing the band of the point, instead of all edges of the polygon. The results are the same
+ * as the ones of {@link Geometry#nodeInsidePolygon} and {@link Geometry#polygonIntersection(List, List)}:
+ * <ul>
+ * <li>{@link #contains(INode)} is an exact replacement of {@link Geometry#nodeInsidePolygon},</li>
+ * <li>{@link #polygonIntersection(PreparedPolygon, PreparedPolygon)} first checks with the edge index whether the
+ * boundaries of the polygons come close to each other. If not, one polygon is either inside the other one
+ * or outside of it, which is decided with two point queries. Otherwise, the areas are intersected as usual.</li>
+ * </ul>
+ * The coordinates of the nodes are copied when the polygon is prepared, so it must be prepared again when the nodes
+ * are moved, or when the projection changes.
+ * <p>
+ * This class is thread safe.
+ */
+public final class PreparedPolygon {
+
+    /** Average number of edges per band */
+    private static final int EDGES_PER_BAND = 4;
+    /** Maximum number of bands */
+    private static final int MAX_BANDS = 1 << 14;
+    /** Maximum average number of bands crossed by an edge, to bound the size of the index */
+    private static final int MAX_BANDS_PER_EDGE = 8;
+    /** Distance (in east/north units) below which boundaries are considered to touch each other */
+    private static final double TOUCH_DISTANCE = 1e-6;
+
+    private final List<? extends INode> nodes;
+    /** Determines if the coordinates of all nodes are known */
+    private final boolean known;
+    /** Points of the polygon, starting with the last node so that the edge {@code i} goes from point {@code i-1} to point {@code i} */
+    private final double[] xs;
+    private final double[] ys;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+    private int bandCount;
+    private double bandHeight;
+    /** Position in {@link #bandEdges} of the first edge of each band, plus the end position */
+    private int[] bandStart;
+    private int[] bandEdges;
+    private volatile Area area;
+    private volatile Boolean simple;
+
+    /**
+     * Prepares a polygon.
+     * @param nodes the nodes of the polygon. The polygon is implicitly closed
+     */
+    public PreparedPolygon(List<? extends INode> nodes) {
+        this(nodes, null);
+    }
+
+    /**
+     * Prepares a polygon whose area is already known.
+     * @param nodes the nodes of the polygon. The polygon is implicitly closed
+     * @param area the area of the polygon, as returned by {@link Geometry#getArea}, or {@code null} to compute it when needed
+     */
+    public PreparedPolygon(List<? extends INode> nodes, Area area) {
+        this.nodes = nodes;
+        this.area = area;
+        int n = nodes.size();
+        boolean allKnown = n >= 2;
+        xs = new double[allKnown ? n + 1 : 0];
+        ys = new double[xs.length];
+        for (int i = 0; i < n && allKnown; i++) {
+            INode node = nodes.get(i);
+            EastNorth en = node.isLatLonKnown() ? node.getEastNorth() : null;
+            if (en == null) {
+                allKnown = false;
+            } else {
+                xs[i + 1] = en.east();
+                ys[i + 1] = en.north();
+                minX = Math.min(minX, xs[i + 1]);
+                minY = Math.min(minY, ys[i + 1]);
+                maxX = Math.max(maxX, xs[i + 1]);
+                maxY = Math.max(maxY, ys[i + 1]);
+            }
+        }
+        known = allKnown;
+        if (known) {
+            xs[0] = xs[n];
+            ys[0] = ys[n];
+            buildIndex(n);
+        }
+    }
+
+    private void buildIndex(int edgeCount) {
+        int[] counts;
+        int total;
+        bandCount = Utils.clamp(edgeCount / EDGES_PER_BAND, 1, MAX_BANDS);
+        while (true) {
+            bandHeight = (maxY - minY) / bandCount;
+            if (!(bandHeight > 0)) {
+                bandCount = 1;
+            }
+            counts = new int[bandCount + 1];
+            total = 0;
+            for (int i = 1; i <= edgeCount; i++) {
+                int first = bandOf(Math.min(ys[i - 1], ys[i]));
+                int last = bandOf(Math.max(ys[i - 1], ys[i]));
+                for (int b = first; b <= last; b++) {
+                    counts[b + 1]++;
+                }
+                total += last - first + 1;
+            }
+            if (bandCount == 1 || total <= MAX_BANDS_PER_EDGE * edgeCount) {
+                break;
+            }
+            bandCount /= 2;
+        }
+        for (int b = 0; b < bandCount; b++) {
+            counts[b + 1] += counts[b];
+        }
+        bandStart = counts.clone();
+        bandEdges = new int[total];
+        for (int i = 1; i <= edgeCount; i++) {
+            int first = bandOf(Math.min(ys[i - 1], ys[i]));
+            int last = bandOf(Math.max(ys[i - 1], ys[i]));
+            for (int b = first; b <= last; b++) {
+                bandEdges[counts[b]++] = i;
+            }
+        }
+    }
+
+    private int bandOf(double y) {
+        if (bandCount == 1) {
+            return 0;
+        }
+        // monotonic in y, so that an edge is found in the band of all points between its ends
+        return Utils.clamp((int) ((y - minY) / bandHeight), 0, bandCount - 1);
+    }
+
+    /**
+     * Returns the nodes of this polygon.
+     * @return the nodes of this polygon
+     */
+    public List<? extends INode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the area of this polygon, as returned by {@link Geometry#getArea}.
+     * @return the area of this polygon
+     */
+    public Area getArea() {
+        Area result = area;
+        if (result == null) {
+            result = Geometry.getArea(nodes);
+            area = result;
+        }
+        return result;
+    }
+
+    /**
+     * Tests if a node is inside this polygon, as {@link Geometry#nodeInsidePolygon} does.
+     * @param node the node to test
+     * @return {@code true} if the node is inside this polygon
+     */
+    public boolean contains(INode node) {
+        if (!known) {
+            return false;
+        }
+        EastNorth en = node.getEastNorth();
+        if (en == null) {
+            return false;
+        }
+        double x = en.east();
+        double y = en.north();
+        if (y < minY || y > maxY) {
+            return false;
+        }
+        boolean inside = false;
+        int b = bandOf(y);
+        for (int j = bandStart[b]; j < bandStart[b + 1]; j++) {
+            int i = bandEdges[j];
+            double ox = xs[i - 1];
+            double oy = ys[i - 1];
+            double nx = xs[i];
+            double ny = ys[i];
+            // same test as Geometry.nodeInsidePolygon, with p1 being the lowest end of the edge
+            double p1x = ny > oy ? ox : nx;
+            double p1y = ny > oy ? oy : ny;
+            double p2x = ny > oy ? nx : ox;
+            double p2y = ny > oy ? ny : oy;
+            if ((ny < y) == (y <= oy) && (x - p1x) * (p2y - p1y) < (p2x - p1x) * (y - p1y)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Returns the winding number of this polygon around a point, which is not on its boundary.
+     * @param x east coordinate of the point
+     * @param y north coordinate of the point
+     * @return the winding number
+     */
+    private int windingNumber(double x, double y) {
+        if (y < minY || y > maxY) {
+            return 0;
+        }
+        int wn = 0;
+        int b = bandOf(y);
+        for (int j = bandStart[b]; j < bandStart[b + 1]; j++) {
+            int i = bandEdges[j];
+            double ox = xs[i - 1];
+            double oy = ys[i - 1];
+            double nx = xs[i];
+            double ny = ys[i];
+            double side = (nx - ox) * (y - oy) - (x - ox) * (ny - oy);
+            if (oy <= y) {
+                if (ny > y && side > 0) {
+                    wn++;
+                }
+            } else if (ny <= y && side < 0) {
+                wn--;
+            }
+        }
+        return wn;
+    }
+
+    /**
+     * Determines if this polygon is simple, i.e. if its boundary does not touch itself, apart from consecutive edges
+     * at their common end. There may be false negatives, but no false positives.
+     * @return {@code true} if this polygon is simple
+     */
+    private boolean isSimple() {
+        Boolean result = simple;
+        if (result == null) {
+            result = known && computeSimple();
+            simple = result;
+        }
+        return result;
+    }
+
+    private boolean computeSimple() {
+        int n = xs.length - 1;
+        // previous and next edges, ignoring the edges of zero length
+        int[] previous = new int[n + 1];
+        int[] next = new int[n + 1];
+        int first = 0;
+        int last = 0;
+        int count = 0;
+        for (int i = 1; i <= n; i++) {
+            if (xs[i - 1] != xs[i] || ys[i - 1] != ys[i]) {
+                if (last != 0) {
+                    next[last] = i;
+                    previous[i] = last;
+                } else {
+                    first = i;
+                }
+                last = i;
+                count++;
+            }
+        }
+        if (count < 3) {
+            return false;
+        }
+        next[last] = first;
+        previous[first] = last;
+        for (int i = 1; i <= n; i++) {
+            if (next[i] == 0) {
+                continue;
+            }
+            // consecutive edges going back on each other
+            int k = next[i];
+            if (((xs[i] - xs[i - 1]) * (ys[k] - ys[k - 1]) == (ys[i] - ys[i - 1]) * (xs[k] - xs[k - 1]))
+                    && (xs[i] - xs[i - 1]) * (xs[k] - xs[k - 1]) + (ys[i] - ys[i - 1]) * (ys[k] - ys[k - 1]) < 0) {
+                return false;
+            }
+            int lastBand = bandOf(Math.max(ys[i - 1], ys[i]));
+            for (int b = bandOf(Math.min(ys[i - 1], ys[i])); b <= lastBand; b++) {
+                for (int j = bandStart[b]; j < bandStart[b + 1]; j++) {
+                    int e = bandEdges[j];
+                    if (e > i && next[e] != 0 && e != next[i] && e != previous[i]
+                            && segmentsTouch(xs[i - 1], ys[i - 1], xs[i], ys[i], xs[e - 1], ys[e - 1], xs[e], ys[e])) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if the boundary of this polygon comes close to the boundary of another one.
+     * There may be false positives, but no false negatives.
+     * @param other the other polygon
+     * @return {@code true} if the boundaries may touch or cross each other
+     */
+    private boolean boundaryTouches(PreparedPolygon other) {
+        if (other.xs.length > xs.length) {
+            return other.boundaryTouches(this);
+        }
+        // iterate over the edges of the smallest polygon, and look up the edges of this one in the index
+        for (int k = 1; k < other.xs.length; k++) {
+            double ax = other.xs[k - 1];
+            double ay = other.ys[k - 1];
+            double bx = other.xs[k];
+            double by = other.ys[k];
+            double segMinY = Math.min(ay, by) - TOUCH_DISTANCE;
+            double segMaxY = Math.max(ay, by) + TOUCH_DISTANCE;
+            if (segMaxY < minY || segMinY > maxY
+                    || Math.max(ax, bx) + TOUCH_DISTANCE < minX || Math.min(ax, bx) - TOUCH_DISTANCE > maxX) {
+                continue;
+            }
+            int last = bandOf(segMaxY);
+            for (int b = bandOf(segMinY); b <= last; b++) {
+                for (int j = bandStart[b]; j < bandStart[b + 1]; j++) {
+                    int i = bandEdges[j];
+                    if (segmentsTouch(ax, ay, bx, by, xs[i - 1], ys[i - 1], xs[i], ys[i])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean segmentsTouch(double ax, double ay, double bx, double by,
+            double cx, double cy, double dx, double dy) {
+        if (Math.max(ax, bx) + TOUCH_DISTANCE < Math.min(cx, dx) || Math.max(cx, dx) + TOUCH_DISTANCE < Math.min(ax, bx)
+         || Math.max(ay, by) + TOUCH_DISTANCE < Math.min(cy, dy) || Math.max(cy, dy) + TOUCH_DISTANCE < Math.min(ay, by)) {
+            return false;
+        }
+        double abLength = Math.hypot(bx - ax, by - ay);
+        double cdLength = Math.hypot(dx - cx, dy - cy);
+        double c = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        double d = (bx - ax) * (dy - ay) - (by - ay) * (dx - ax);
+        double a = (dx - cx) * (ay - cy) - (dy - cy) * (ax - cx);
+        double b = (dx - cx) * (by - cy) - (dy - cy) * (bx - cx);
+        // an end close to the other segment (or its line)
+        if (Math.abs(c) <= TOUCH_DISTANCE * abLength || Math.abs(d) <= TOUCH_DISTANCE * abLength
+         || Math.abs(a) <= TOUCH_DISTANCE * cdLength || Math.abs(b) <= TOUCH_DISTANCE * cdLength) {
+            return true;
+        }
+        return (c > 0) != (d > 0) && (a > 0) != (b > 0);
+    }
+
+    /**
+     * Tests if two polygons intersect, as {@link Geometry#polygonIntersection(List, List)} does.
+     * @param first first polygon
+     * @param second second polygon
+     * @return intersection kind
+     */
+    public static PolygonIntersection polygonIntersection(PreparedPolygon first, PreparedPolygon second) {
+        Area a1 = first.getArea();
+        Area a2 = second.getArea();
+        if (a1.isEmpty() || a2.isEmpty() || !a1.getBounds2D().intersects(a2.getBounds2D())) {
+            return PolygonIntersection.OUTSIDE;
+        }
+        if (first.known && second.known && !first.boundaryTouches(second)) {
+            // The boundaries are disjoint, so the winding number of each polygon is the same on the whole boundary
+            // of the other one. If the first polygon is inside the second one but not the opposite, then their
+            // intersection is the first polygon, and so on. The areas of self-intersecting polygons are not always
+            // found equal to their intersection, so they are left to the general case.
+            boolean firstInSecond = second.windingNumber(first.xs[0], first.ys[0]) != 0;
+            boolean secondInFirst = first.windingNumber(second.xs[0], second.ys[0]) != 0;
+            if (!firstInSecond && !secondInFirst) {
+                return PolygonIntersection.OUTSIDE;
+            } else if (firstInSecond != secondInFirst && first.isSimple() && second.isSimple()) {
+                Rectangle bounds = (firstInSecond ? a1 : a2).getBounds();
+                if (bounds.getHeight() * bounds.getWidth() <= 1.0) {
+                    return PolygonIntersection.OUTSIDE;
+                }
+                return firstInSecond ? PolygonIntersection.FIRST_INSIDE_SECOND : PolygonIntersection.SECOND_INSIDE_FIRST;
+            }
+        }
+        return Geometry.polygonIntersection(a1, a2);
+    }
+}
@@ -0,0 +1,93 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.actions.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.TagIndex;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler;
+import org.openstreetmap.josm.data.osm.search.SearchMode;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test measures the time needed to search the primitives of the neubrandenburg-file.
+ */
+public class SearchActionPerformanceTest {
+    private static final String DATA_FILE = "data_nodist/neubrandenburg.osm.bz2";
+
+    private static DataSet ds;
+    private static OsmDataLayer layer;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     * @throws Exception if the data file cannot be read
+     */
+    @BeforeClass
+    public static void load() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        TagIndex.PREFERENCE_ENABLED.put(true);
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(DATA_FILE))) {
+            ds = OsmReader.parseDataSet(in, null);
+        }
+        layer = new OsmDataLayer(ds, "neubrandenburg", null);
+        MainApplication.getLayerManager().addLayer(layer);
+    }
+
+    /**
+     * Remove the data layer and restore the default preference.
+     */
+    @AfterClass
+    public static void clear() {
+        MainApplication.getLayerManager().removeLayer(layer);
+        TagIndex.PREFERENCE_ENABLED.put(false);
+    }
+
+    private static void search(String expression) throws Exception {
+        SearchCompiler.Match matcher = SearchCompiler.compile(expression);
+        long expected = ds.allPrimitives().stream().filter(matcher).count();
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer(expression);
+        int found = 0;
+        for (int i = 0; i < 10; i++) {
+            found = SearchAction.searchAndReturn(expression, SearchMode.replace).size();
+        }
+        timer.done();
+        assertEquals(expression, expected, found);
+        assertTrue(expression, found > 0);
+    }
+
+    /**
+     * Measures the time needed to search with tag, type and area criteria.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testSearch() throws Exception {
+        search("type:node indownloadedarea highway=*");
+        search("areasize:100-1000 building=* type:way");
+        search("child(type:way highway=*) type:node");
+        search("Straße | nodes:100-");
+    }
+}
@@ -0,0 +1,105 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test measures the time needed to merge a large data set into an edited one with {@link DataSetMerger}.
+ * <p>
+ * For this, we use the neubrandenburg-file, in which some primitives are modified in both data sets.
+ */
+public class DataSetMergerPerformanceTest {
+    private static final String DATA_FILE = "data_nodist/neubrandenburg.osm.bz2";
+    private static final int CONFLICT_RATIO = 20;
+    private static final int NEW_NODES = 5000;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     */
+    @BeforeClass
+    public static void createJOSMFixture() {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+    }
+
+    private static DataSet loadData() throws Exception {
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(DATA_FILE))) {
+            return OsmReader.parseDataSet(in, null);
+        }
+    }
+
+    private static void modify(DataSet ds, String value) {
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            if (p.getUniqueId() % CONFLICT_RATIO == 0) {
+                p.put("name", value);
+                p.setModified(true);
+            }
+        }
+    }
+
+    private static void addNewNodes(DataSet ds, double lat) {
+        for (int i = 0; i < NEW_NODES; i++) {
+            ds.addPrimitive(new Node(new LatLon(lat, i * 0.0001)));
+        }
+    }
+
+    /**
+     * Measures the time needed to merge a data set whose primitives are in conflict with an edited data set.
+     * @throws Exception if the data file cannot be read
+     */
+    @Test
+    public void testMergeConflicts() throws Exception {
+        DataSet my = loadData();
+        DataSet their = loadData();
+        modify(my, "my");
+        modify(their, "their");
+
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer("DataSetMerger with conflicts");
+        DataSetMerger merger = new DataSetMerger(my, their);
+        merger.merge();
+        timer.done();
+        assertFalse(merger.getConflicts().isEmpty());
+    }
+
+    /**
+     * Measures the time needed to merge new primitives into a data set which also contains new primitives.
+     * @throws Exception if the data file cannot be read
+     */
+    @Test
+    public void testMergeNewPrimitives() throws Exception {
+        DataSet my = loadData();
+        addNewNodes(my, 1);
+        DataSet their = new DataSet();
+        addNewNodes(their, 2);
+        int size = my.allPrimitives().size();
+
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer("DataSetMerger with " + NEW_NODES + " new nodes");
+        DataSetMerger merger = new DataSetMerger(my, their);
+        merger.merge();
+        timer.done();
+        assertEquals(size + NEW_NODES, my.allPrimitives().size());
+    }
+}
@@ -7,9 +7,16 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.InputStream;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
@@ -19,6 +26,8 @@ import org.junit.rules.Timeout;
 import org.openstreetmap.josm.PerformanceTestUtils;
 import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
 import org.openstreetmap.josm.data.osm.OsmDataGenerator.KeyValueDataGenerator;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -31,6 +40,8 @@ public class KeyValuePerformanceTest {
     private static final int PUT_RUNS = 10000;
     private static final int GET_RUNS = 100000;
     private static final int TEST_STRING_COUNT = 10000;
+    /** Estimated size of an entry of the interner table: a weak reference with a hash and a next entry */
+    private static final long TAG_SET_ENTRY_SIZE = 40;
     private static final int STRING_INTERN_TESTS = 5000000;
     private static final double[] TAG_NODE_RATIOS = new double[] {.05, .3, 3, 20, 200};
     private ArrayList<String> testStrings = new ArrayList<>();
@@ -217,4 +228,69 @@ public class KeyValuePerformanceTest {
             timer.done();
         }
     }
+
+    /**
+     * Measure the memory saved by sharing the tag arrays of the primitives having the same tags.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @JOSMTestRules.OverrideTimeout(10 * 60 * 1000)
+    public void testKeyValueMemory() throws Exception {
+        DataSet ds;
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File("data_nodist/neubrandenburg.osm.bz2"))) {
+            ds = OsmReader.parseDataSet(in, null);
+        }
+        long tagged = 0;
+        long unsharedBytes = 0;
+        long sharedBytes = 0;
+        Set<String[]> arrays = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            String[] keys = p.keys;
+            if (keys != null) {
+                tagged++;
+                unsharedBytes += getArraySize(keys);
+                if (arrays.add(keys)) {
+                    sharedBytes += getArraySize(keys);
+                }
+            }
+        }
+        // each interned tag set has a weak reference entry in the table of the interner, and a slot in its table
+        long tableBytes = arrays.stream().filter(a -> a.length <= 2 * TagSetInterner.MAX_INTERNED_TAGS).count()
+                * (TAG_SET_ENTRY_SIZE + 2 * 4L);
+        long savedBytes = unsharedBytes - sharedBytes - tableBytes;
+        System.out.println(tagged + " tagged primitives, " + arrays.size() + " distinct tag sets, "
+                + savedBytes / 1024 + " KiB saved out of " + unsharedBytes / 1024 + " KiB of tag arrays, "
+                + "including the " + tableBytes / 1024 + " KiB of the interner table");
+        PerformanceTestUtils.measurementPlotsPluginOutput("Tag arrays memory saved (KiB)", savedBytes / 1024d);
+        assertTrue(savedBytes > 0);
+
+        List<String[]> copies = new ArrayList<>();
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            if (p.keys != null) {
+                copies.add(p.keys.clone());
+            }
+        }
+        for (int threads : new int[] {1, 4}) {
+            TagSetInterner interner = new TagSetInterner();
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                PerformanceTestTimer timer = PerformanceTestUtils.startTimer(
+                        "intern " + copies.size() + " tag arrays with " + threads + " threads");
+                pool.submit(() -> copies.parallelStream().forEach(interner::intern)).get();
+                timer.done();
+            } finally {
+                pool.shutdown();
+            }
+            assertTrue(interner.size() < arrays.size());
+        }
+    }
+
+    /**
+     * Estimates the size of an array of references, with compressed references.
+     * @param array the array
+     * @return the size of the array, in bytes
+     */
+    private static long getArraySize(Object[] array) {
+        return (16 + 4L * array.length + 7) / 8 * 8;
+    }
 }
@@ -0,0 +1,121 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test compares the build time and the query latency of {@link PackedRTree} and {@link QuadBuckets}.
+ * <p>
+ * For this, we use the nodes and ways of the neubrandenburg-file, queried with random bounding boxes of various sizes.
+ */
+public class PackedRTreePerformanceTest {
+    private static final String DATA_FILE = "data_nodist/neubrandenburg.osm.bz2";
+    private static final int QUERIES = 20000;
+    private static final double[] QUERY_SIZES = {0.0005, 0.005, 0.05};
+
+    private static List<Node> nodes;
+    private static List<Way> ways;
+    private static BBox bounds;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     * @throws Exception if the data file cannot be read
+     */
+    @BeforeClass
+    public static void loadData() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        DataSet ds;
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(DATA_FILE))) {
+            ds = OsmReader.parseDataSet(in, null);
+        }
+        nodes = ds.getNodes().stream().filter(n -> n.getBBox().isValid()).collect(Collectors.toList());
+        ways = ds.getWays().stream().filter(w -> w.getBBox().isValid()).collect(Collectors.toList());
+        bounds = new BBox();
+        nodes.forEach(n -> bounds.add(n.getBBox()));
+    }
+
+    /**
+     * Measures the time needed to index all nodes.
+     */
+    @Test
+    public void testBuildNodes() {
+        PerformanceTestUtils.runPerformanceTest("QuadBuckets build (nodes)", () -> new QuadBuckets<Node>().addAll(nodes));
+        PerformanceTestUtils.runPerformanceTest("PackedRTree build (nodes)", () -> new PackedRTree<>(nodes));
+    }
+
+    /**
+     * Measures the time needed to index all ways.
+     */
+    @Test
+    public void testBuildWays() {
+        PerformanceTestUtils.runPerformanceTest("QuadBuckets build (ways)", () -> new QuadBuckets<Way>().addAll(ways));
+        PerformanceTestUtils.runPerformanceTest("PackedRTree build (ways)", () -> new PackedRTree<>(ways));
+    }
+
+    /**
+     * Measures the time needed to run {@link #QUERIES} searches on the nodes and ways,
+     * and checks that both indexes find the same number of primitives.
+     */
+    @Test
+    public void testSearch() {
+        QuadBuckets<Node> qbNodes = new QuadBuckets<>();
+        qbNodes.addAll(nodes);
+        QuadBuckets<Way> qbWays = new QuadBuckets<>();
+        qbWays.addAll(ways);
+        PackedRTree<Node> treeNodes = new PackedRTree<>(nodes);
+        PackedRTree<Way> treeWays = new PackedRTree<>(ways);
+        for (double size : QUERY_SIZES) {
+            List<BBox> queries = randomQueries(size);
+            int[] found = new int[2];
+            PerformanceTestUtils.runPerformanceTest("QuadBuckets " + QUERIES + " searches of " + size + "°", () -> {
+                found[0] = 0;
+                for (BBox bbox : queries) {
+                    found[0] += qbNodes.search(bbox).size() + qbWays.search(bbox).size();
+                }
+            });
+            PerformanceTestUtils.runPerformanceTest("PackedRTree " + QUERIES + " searches of " + size + "°", () -> {
+                found[1] = 0;
+                for (BBox bbox : queries) {
+                    found[1] += treeNodes.search(bbox).size() + treeWays.search(bbox).size();
+                }
+            });
+            assertEquals(found[0], found[1]);
+        }
+    }
+
+    private static List<BBox> randomQueries(double size) {
+        Random random = new Random(42);
+        List<BBox> queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            double lon = bounds.getTopLeftLon() + random.nextDouble() * bounds.width();
+            double lat = bounds.getBottomRightLat() + random.nextDouble() * bounds.height();
+            queries.add(new BBox(lon, lat, lon + size, lat + size));
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,126 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test compares the build time and the lookup latency of {@link PrimitiveIdIndex} and of the {@link Storage}
+ * with a {@link Storage.PrimitiveIdHash} it replaces in {@link DataSet}.
+ * <p>
+ * For this, we use the primitives of the neubrandenburg-file, looked up by id in random order.
+ */
+public class PrimitiveIdIndexPerformanceTest {
+    private static final String DATA_FILE = "data_nodist/neubrandenburg.osm.bz2";
+    private static final int LOOKUP_ROUNDS = 10;
+
+    private static List<OsmPrimitive> primitives;
+    private static long[] ids;
+    private static OsmPrimitiveType[] types;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     * @throws Exception if the data file cannot be read
+     */
+    @BeforeClass
+    public static void loadData() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        DataSet ds;
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(DATA_FILE))) {
+            ds = OsmReader.parseDataSet(in, null);
+        }
+        primitives = new ArrayList<>(ds.allPrimitives());
+        List<OsmPrimitive> shuffled = new ArrayList<>(primitives);
+        Collections.shuffle(shuffled, new Random(42));
+        ids = new long[shuffled.size()];
+        types = new OsmPrimitiveType[shuffled.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = shuffled.get(i).getUniqueId();
+            types[i] = shuffled.get(i).getType();
+        }
+    }
+
+    private static Storage<OsmPrimitive> buildStorage() {
+        Storage<OsmPrimitive> storage = new Storage<>(new Storage.PrimitiveIdHash(), true);
+        for (OsmPrimitive p : primitives) {
+            storage.add(p);
+        }
+        return storage;
+    }
+
+    private static PrimitiveIdIndex<OsmPrimitive> buildIndex() {
+        PrimitiveIdIndex<OsmPrimitive> index = new PrimitiveIdIndex<>();
+        for (OsmPrimitive p : primitives) {
+            index.add(p);
+        }
+        return index;
+    }
+
+    /**
+     * Measures the time needed to index all primitives, one by one and in bulk.
+     */
+    @Test
+    public void testBuild() {
+        PerformanceTestUtils.runPerformanceTest("Storage build", PrimitiveIdIndexPerformanceTest::buildStorage);
+        PerformanceTestUtils.runPerformanceTest("PrimitiveIdIndex build", PrimitiveIdIndexPerformanceTest::buildIndex);
+        PerformanceTestUtils.runPerformanceTest("PrimitiveIdIndex bulk build", () -> new PrimitiveIdIndex<>().addAll(primitives));
+    }
+
+    /**
+     * Measures the time needed to look up all primitives by id {@link #LOOKUP_ROUNDS} times,
+     * and checks that both indexes find all primitives.
+     */
+    @Test
+    public void testLookup() {
+        Map<PrimitiveId, OsmPrimitive> storage = buildStorage().foreignKey(new Storage.PrimitiveIdHash());
+        PrimitiveIdIndex<OsmPrimitive> index = buildIndex();
+        int[] found = new int[2];
+        PerformanceTestUtils.runPerformanceTest("Storage " + LOOKUP_ROUNDS + "x" + ids.length + " lookups", () -> {
+            found[0] = 0;
+            for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (storage.get(new SimplePrimitiveId(ids[i], types[i])) != null) {
+                        found[0]++;
+                    }
+                }
+            }
+        });
+        PerformanceTestUtils.runPerformanceTest("PrimitiveIdIndex " + LOOKUP_ROUNDS + "x" + ids.length + " lookups", () -> {
+            found[1] = 0;
+            for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (index.get(ids[i], types[i]) != null) {
+                        found[1]++;
+                    }
+                }
+            }
+        });
+        assertEquals(LOOKUP_ROUNDS * ids.length, found[0]);
+        assertEquals(found[0], found[1]);
+    }
+}
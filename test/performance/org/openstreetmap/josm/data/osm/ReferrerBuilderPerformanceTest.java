@@ -0,0 +1,142 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test compares the time needed to register the referrers of ways and relations one at a time,
+ * as done by {@link Way#setNodes} and {@link Relation#setMembers}, and with a {@link ReferrerBuilder}.
+ * <p>
+ * For this, we use the ways and relations of the neubrandenburg-file, and ways sharing the same nodes.
+ */
+public class ReferrerBuilderPerformanceTest {
+    private static final String DATA_FILE = "data_nodist/neubrandenburg.osm.bz2";
+    private static final int SHARED_NODES = 10;
+    private static final int WAYS_PER_SHARED_NODE = 5000;
+
+    private static List<Way> ways;
+    private static List<List<Node>> wayNodes;
+    private static List<Relation> relations;
+    private static List<List<RelationMember>> relationMembers;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     * @throws Exception if the data file cannot be read
+     */
+    @BeforeClass
+    public static void loadData() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        DataSet ds;
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(DATA_FILE))) {
+            ds = OsmReader.parseDataSet(in, null);
+        }
+        ways = new ArrayList<>(ds.getWays());
+        wayNodes = new ArrayList<>();
+        for (Way w : ways) {
+            wayNodes.add(w.getNodes());
+        }
+        relations = new ArrayList<>(ds.getRelations());
+        relationMembers = new ArrayList<>();
+        for (Relation r : relations) {
+            relationMembers.add(r.getMembers());
+        }
+    }
+
+    private static void clear() {
+        ways.forEach(w -> w.setNodes(null));
+        relations.forEach(r -> r.setMembers(null));
+    }
+
+    private static int countReferrers() {
+        int count = 0;
+        for (Way w : ways) {
+            for (Node n : w.getNodes()) {
+                count += n.getReferrers().size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Measures the time needed to register the referrers one at a time and in bulk, and checks that they are the same.
+     */
+    @Test
+    public void testBuild() {
+        clear();
+        PerformanceTestUtils.runPerformanceTest("Register referrers one at a time", () -> {
+            for (int i = 0; i < ways.size(); i++) {
+                ways.get(i).setNodes(wayNodes.get(i));
+            }
+            for (int i = 0; i < relations.size(); i++) {
+                relations.get(i).setMembers(relationMembers.get(i));
+            }
+        });
+        int expected = countReferrers();
+        clear();
+        PerformanceTestUtils.runPerformanceTest("Register referrers with ReferrerBuilder", () -> {
+            ReferrerBuilder builder = new ReferrerBuilder();
+            for (int i = 0; i < ways.size(); i++) {
+                builder.setNodes(ways.get(i), wayNodes.get(i));
+            }
+            for (int i = 0; i < relations.size(); i++) {
+                builder.setMembers(relations.get(i), relationMembers.get(i));
+            }
+            builder.build();
+        });
+        assertEquals(expected, countReferrers());
+    }
+
+    /**
+     * Measures the time needed to register the referrers of nodes shared by many ways, one at a time and in bulk.
+     */
+    @Test
+    public void testSharedNodes() {
+        List<Way> sharingWays = new ArrayList<>();
+        List<List<Node>> sharingWayNodes = new ArrayList<>();
+        for (int i = 0; i < SHARED_NODES; i++) {
+            Node shared = new Node(1);
+            for (int j = 0; j < WAYS_PER_SHARED_NODE; j++) {
+                sharingWays.add(new Way());
+                sharingWayNodes.add(Arrays.asList(shared, new Node(1)));
+            }
+        }
+        PerformanceTestUtils.runPerformanceTest("Register referrers of shared nodes one at a time", () -> {
+            sharingWays.forEach(w -> w.setNodes(null));
+            for (int i = 0; i < sharingWays.size(); i++) {
+                sharingWays.get(i).setNodes(sharingWayNodes.get(i));
+            }
+        });
+        PerformanceTestUtils.runPerformanceTest("Register referrers of shared nodes with ReferrerBuilder", () -> {
+            sharingWays.forEach(w -> w.setNodes(null));
+            ReferrerBuilder builder = new ReferrerBuilder();
+            for (int i = 0; i < sharingWays.size(); i++) {
+                builder.setNodes(sharingWays.get(i), sharingWayNodes.get(i));
+            }
+            builder.build();
+        });
+    }
+}
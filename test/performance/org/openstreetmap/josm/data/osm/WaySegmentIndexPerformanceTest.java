@@ -0,0 +1,124 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test measures the time needed to find the way segments close to a point, on a data set with very long ways.
+ */
+public class WaySegmentIndexPerformanceTest {
+    private static final int WAY_COUNT = 10;
+    private static final int WAY_SIZE = 50_000;
+    private static final int SEARCH_COUNT = 5_000;
+    private static final double DISTANCE = 0.0005;
+
+    private static DataSet ds;
+    private static List<LatLon> points;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test: a few coastline-like ways crossing the same area.
+     */
+    @BeforeClass
+    public static void createDataSet() {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        Random random = new Random(42);
+        ds = new DataSet();
+        for (int i = 0; i < WAY_COUNT; i++) {
+            List<Node> nodes = new ArrayList<>();
+            double lat = 50 + random.nextDouble();
+            double lon = 10 + random.nextDouble();
+            for (int j = 0; j < WAY_SIZE; j++) {
+                Node node = new Node(new LatLon(lat, lon));
+                ds.addPrimitive(node);
+                nodes.add(node);
+                lat = Math.min(51, Math.max(50, lat + (random.nextDouble() - 0.5) * 0.002));
+                lon = Math.min(11, Math.max(10, lon + (random.nextDouble() - 0.5) * 0.002));
+            }
+            nodes.add(nodes.get(0));
+            Way way = new Way();
+            way.setNodes(nodes);
+            way.put("natural", "coastline");
+            ds.addPrimitive(way);
+        }
+        points = new ArrayList<>();
+        for (int i = 0; i < SEARCH_COUNT; i++) {
+            points.add(new LatLon(50 + random.nextDouble(), 10 + random.nextDouble()));
+        }
+    }
+
+    /**
+     * Measures the time needed to find the segments whose bounding box is close to a point, by testing all the segments
+     * of the ways found by the data set, then with the segment index of the ways.
+     */
+    @Test
+    public void testSearchWaySegments() {
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer("all segments of " + SEARCH_COUNT + " searches");
+        int expected = 0;
+        for (LatLon point : points) {
+            BBox bbox = new BBox(point.lon(), point.lat(), DISTANCE);
+            for (Way way : ds.searchWays(bbox)) {
+                for (int i = 0; i < way.getNodesCount() - 1; i++) {
+                    BBox segment = new BBox(way.getNode(i));
+                    segment.add(way.getNode(i + 1));
+                    if (segment.intersects(bbox)) {
+                        expected++;
+                    }
+                }
+            }
+        }
+        timer.done();
+
+        // build the index of the ways first
+        ds.getWays().forEach(Way::getSegmentIndex);
+        timer = PerformanceTestUtils.startTimer("indexed segments of " + SEARCH_COUNT + " searches");
+        int found = 0;
+        for (LatLon point : points) {
+            found += ds.searchWaySegments(new BBox(point.lon(), point.lat(), DISTANCE), w -> true).size();
+        }
+        timer.done();
+        assertEquals(expected, found);
+        assertTrue(found > 0);
+    }
+
+    /**
+     * Measures the time needed to find the nearest segments of a point.
+     */
+    @Test
+    public void testSearchNearestWaySegments() {
+        ds.getWays().forEach(Way::getSegmentIndex);
+        List<EastNorth> centers = new ArrayList<>();
+        points.forEach(p -> centers.add(ProjectionRegistry.getProjection().latlon2eastNorth(p)));
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer("nearest segments of " + SEARCH_COUNT + " searches");
+        int found = 0;
+        for (EastNorth center : centers) {
+            found += ds.searchNearestWaySegments(center, 50, 5, w -> true).size();
+        }
+        timer.done();
+        assertTrue(found > 0);
+    }
+}
@@ -0,0 +1,23 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+/**
+ * Performance test of {@code StyledMapRenderer} with tiled rendering.
+ */
+public class TiledStyledMapRendererPerformanceTest extends StyledMapRendererPerformanceTest {
+
+    @BeforeClass
+    public static void load() throws Exception {
+        StyledMapRendererPerformanceTest.load();
+        StyledMapRenderer.PREFERENCE_TILED_RENDERING.put(true);
+    }
+
+    @AfterClass
+    public static void clean() throws Exception {
+        StyledMapRenderer.PREFERENCE_TILED_RENDERING.put(false);
+        StyledMapRendererPerformanceTest.clean();
+    }
+}
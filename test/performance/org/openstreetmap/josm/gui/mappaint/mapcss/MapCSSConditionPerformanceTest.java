@@ -2,6 +2,7 @@
 package org.openstreetmap.josm.gui.mappaint.mapcss;
 
 import java.util.EnumSet;
+import java.util.function.Predicate;
 
 import org.junit.Test;
 import org.openstreetmap.josm.PerformanceTestUtils;
@@ -28,6 +29,60 @@ public class MapCSSConditionPerformanceTest {
         }
     }
 
+    /**
+     * Test the performance of all OP entries compiled for a fixed reference value.
+     */
+    @Test
+    public void testAllOpsCompiled() {
+        for (Op op : Op.values()) {
+            getCompiledRunner(op).run();
+        }
+        for (Op op : Op.values()) {
+            PerformanceTestUtils.runPerformanceTest("Condition.Op.compile." + op, getCompiledRunner(op));
+        }
+    }
+
+    private Runnable getCompiledRunner(Op op) {
+        if (EnumSet.of(Op.LESS, Op.LESS_OR_EQUAL, Op.GREATER, Op.GREATER_OR_EQUAL).contains(op)) {
+            Predicate<String> p1 = op.compile("0.2");
+            Predicate<String> p2 = op.compile("0.1");
+            Predicate<String> p3 = op.compile("192.312");
+            Predicate<String> p4 = op.compile("0.2983");
+            Predicate<String> p5 = op.compile("1000");
+            return () -> {
+                for (int i = 0; i < 10000; i++) {
+                    p1.test(null);
+                    p2.test("nan");
+                    p3.test("0.2983");
+                    p4.test("0.2983");
+                    p5.test("2983");
+                    p5.test("1000");
+                }
+            };
+        } else {
+            int runs = EnumSet.of(Op.ONE_OF, Op.REGEX, Op.NREGEX).contains(op) ? 10000 : 100000;
+            Predicate<String> p1 = op.compile("v1");
+            Predicate<String> p2 = op.compile("k1");
+            Predicate<String> p3 = op.compile("abc");
+            Predicate<String> p4 = op.compile("longvaluelongvaluelongvaluelongvalue");
+            Predicate<String> p5 = op.compile("192.312");
+            Predicate<String> p6 = op.compile("0.2983");
+            Predicate<String> p7 = op.compile("\\d+");
+            return () -> {
+                for (int i = 0; i < runs; i++) {
+                    p1.test("k1");
+                    p2.test("k1");
+                    p1.test("");
+                    p3.test(null);
+                    p4.test("extreamlylongkeyextreamlylongkeyextreamlylongkeyextreamlylongkey");
+                    p5.test("0.2983");
+                    p6.test("0.2983");
+                    p7.test("2983");
+                }
+            };
+        }
+    }
+
     private void runTest(Op op) {
         Runnable r = getRunner(op);
         PerformanceTestUtils.runPerformanceTest("Condition.Op." + op, r);
@@ -0,0 +1,99 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.mappaint.Environment;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.ChildOrParentSelector;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test measures the time needed to evaluate the {@code ∈} and {@code ⧉} selectors on all primitives
+ * of the neubrandenburg-file, as the validator does.
+ */
+public class MapCSSGeometrySelectorPerformanceTest {
+    private static final String DATA_FILE = "data_nodist/neubrandenburg.osm.bz2";
+
+    private static DataSet ds;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     * @throws Exception if the data file cannot be read
+     */
+    @BeforeClass
+    public static void load() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(DATA_FILE))) {
+            ds = OsmReader.parseDataSet(in, null);
+        }
+    }
+
+    /**
+     * Clean up the cache.
+     */
+    @AfterClass
+    public static void clear() {
+        PreparedGeometryCache.getInstance().clear(ds);
+    }
+
+    private static ChildOrParentSelector parse(String css) {
+        MapCSSStyleSource source = new MapCSSStyleSource(css);
+        source.loadStyleSource();
+        assertEquals(1, source.rules.size());
+        return (ChildOrParentSelector) source.rules.get(0).selector;
+    }
+
+    private static int run(String name, String css) {
+        ChildOrParentSelector selector = parse(css);
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer(name);
+        int matches = 0;
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            if (selector.matches(new Environment(p))) {
+                matches++;
+            }
+        }
+        timer.done();
+        return matches;
+    }
+
+    /**
+     * Measures the time needed to find the nodes and buildings inside areas.
+     */
+    @Test
+    public void testElementOf() {
+        assertTrue(run("∈ nodes", "node[amenity] ∈ *[landuse] {}") > 0);
+        assertTrue(run("∈ ways", "way[building] ∈ *[landuse] {}") > 0);
+    }
+
+    /**
+     * Measures the time needed to find the crossing areas.
+     */
+    @Test
+    public void testCrossing() {
+        assertTrue(run("⧉ ways", "area:closed[building] ⧉ area:closed[landuse] {}") > 0);
+    }
+}
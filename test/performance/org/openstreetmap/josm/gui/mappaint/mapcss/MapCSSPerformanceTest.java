@@ -14,11 +14,15 @@ import org.junit.Test;
 import org.openstreetmap.josm.JOSMFixture;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer;
 import org.openstreetmap.josm.data.preferences.sources.SourceEntry;
 import org.openstreetmap.josm.data.preferences.sources.SourceType;
 import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.ElemStyles;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
 import org.openstreetmap.josm.gui.mappaint.MapRendererPerformanceTest;
+import org.openstreetmap.josm.gui.mappaint.StyleSignatureCache;
 import org.openstreetmap.josm.io.Compression;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.OsmReader;
@@ -68,7 +72,12 @@ public class MapCSSPerformanceTest {
     }
 
     void loadStyle() {
+        loadStyle(true);
+    }
+
+    void loadStyle(boolean compile) {
         System.out.print("Loading style '"+STYLE_FILE+"' ...");
+        MapCSSCompiler.COMPILE_STYLES.put(compile);
         MapCSSStyleSource source = new MapCSSStyleSource(
             new SourceEntry(
                 SourceType.MAP_PAINT_STYLE,
@@ -120,4 +129,55 @@ public class MapCSSPerformanceTest {
         System.out.println("");
         System.out.println("Rendering took "+time+" ms.");
     }
+
+    /**
+     * Measures time for style generation, with and without compiling the style.
+     * @throws IOException if any I/O error occurs
+     * @throws IllegalDataException if any invalid data is found
+     */
+    @Test
+    public void measureTimeForStyleGeneration() throws IllegalDataException, IOException {
+        loadData();
+        StyleSignatureCache.CACHE_SIZE.put(0);
+        // alternate both modes several times, so that they are measured with the same JIT state
+        for (int i = 0; i < 3; i++) {
+            for (boolean compile : new boolean[] {false, true}) {
+                loadStyle(compile);
+                ElemStyles styles = MapPaintStyles.getStyles();
+                long time = timed(() -> {
+                    for (OsmPrimitive osm : ds.allPrimitives()) {
+                        styles.generateStyles(osm, 5, false);
+                    }
+                });
+                System.out.println("Style generation " + (compile ? "(compiled)" : "(interpreted)") + " took " + time + " ms.");
+            }
+        }
+        StyleSignatureCache.CACHE_SIZE.put(null);
+    }
+
+    /**
+     * Measures time for style generation, with and without the style signature cache.
+     * @throws IOException if any I/O error occurs
+     * @throws IllegalDataException if any invalid data is found
+     */
+    @Test
+    public void measureTimeForStyleGenerationWithSignatureCache() throws IllegalDataException, IOException {
+        loadData();
+        loadStyle();
+        ElemStyles styles = MapPaintStyles.getStyles();
+        for (int i = 0; i < 3; i++) {
+            for (int size : new int[] {0, StyleSignatureCache.CACHE_SIZE.getDefaultValue()}) {
+                StyleSignatureCache.CACHE_SIZE.put(size);
+                styles.getSignatureCache().clear();
+                long time = timed(() -> {
+                    for (OsmPrimitive osm : ds.allPrimitives()) {
+                        styles.generateStyles(osm, 5, false);
+                    }
+                });
+                System.out.println("Style generation " + (size > 0 ? "(with" : "(without") + " signature cache) took " + time + " ms.");
+            }
+        }
+        System.out.println("Signature cache: " + styles.getSignatureCache());
+        StyleSignatureCache.CACHE_SIZE.put(null);
+    }
 }
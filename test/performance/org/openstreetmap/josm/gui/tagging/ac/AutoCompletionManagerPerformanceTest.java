@@ -0,0 +1,120 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.tagging.ac;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test measures the time needed to get the autocompletion keys and values after each change of the
+ * neubrandenburg-file.
+ */
+public class AutoCompletionManagerPerformanceTest {
+    private static final String DATA_FILE = "data_nodist/neubrandenburg.osm.bz2";
+    private static final int EDIT_COUNT = 50;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test.
+     */
+    @BeforeClass
+    public static void createJOSMFixture() {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+    }
+
+    private static DataSet load() throws Exception {
+        try (InputStream in = Compression.getUncompressedFileInputStream(new File(DATA_FILE))) {
+            return OsmReader.parseDataSet(in, null);
+        }
+    }
+
+    /**
+     * Edits the tags of primitives, and gets the keys and the highway values after each edit.
+     * @param name the name of the timer
+     * @param rebuild if {@code true}, a new manager is created after each edit, so that its caches are rebuilt
+     * @return the last keys and values
+     * @throws Exception if an error occurs
+     */
+    private static List<Object> editAndComplete(String name, boolean rebuild) throws Exception {
+        DataSet ds = load();
+        AutoCompletionManager manager = new AutoCompletionManager(ds);
+        ds.addDatasetDeltaListener(manager);
+        List<OsmPrimitive> primitives = new ArrayList<>(ds.allPrimitives());
+        List<Object> result = new ArrayList<>();
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer(name);
+        for (int i = 0; i < EDIT_COUNT; i++) {
+            OsmPrimitive p = primitives.get(i * primitives.size() / EDIT_COUNT);
+            p.remove("highway");
+            p.put("note", "edit " + i);
+            if (rebuild) {
+                ds.removeDatasetDeltaListener(manager);
+                manager = new AutoCompletionManager(ds);
+                ds.addDatasetDeltaListener(manager);
+            }
+            result.clear();
+            result.add(manager.getTagKeys());
+            result.add(manager.getTagValues("highway"));
+        }
+        timer.done();
+        return result;
+    }
+
+    /**
+     * Measures the time needed to get the keys and values after each edit, with the counts updated
+     * incrementally and with the caches rebuilt.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testEditAndComplete() throws Exception {
+        List<Object> expected = editAndComplete("rebuild after " + EDIT_COUNT + " edits", true);
+        List<Object> found = editAndComplete("update after " + EDIT_COUNT + " edits", false);
+        assertEquals(expected.toString(), found.toString());
+    }
+
+    /**
+     * Measures the time needed to filter the values by prefix.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testFilter() throws Exception {
+        DataSet ds = load();
+        AutoCompletionManager manager = new AutoCompletionManager(ds);
+        AutoCompletionList list = new AutoCompletionList();
+        manager.populateWithTagValues(list, "name");
+        manager.populateWithTagValues(list, "addr:street");
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer("filter " + list.getSet().size() + " values");
+        int found = 0;
+        for (int i = 0; i < 1000; i++) {
+            for (String prefix : new String[] {"A", "Ne", "Neu", "Str", "Z"}) {
+                list.applyFilter(prefix);
+                found += list.getFilteredSize();
+            }
+        }
+        timer.done();
+        assertTrue(found > 0);
+    }
+}
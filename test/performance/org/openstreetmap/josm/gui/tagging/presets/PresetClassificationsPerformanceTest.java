@@ -0,0 +1,110 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.tagging.presets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.PerformanceTestUtils;
+import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
+import org.openstreetmap.josm.gui.tagging.presets.TaggingPresetSelector.PresetClassification;
+import org.openstreetmap.josm.gui.tagging.presets.TaggingPresetSelector.PresetClassifications;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * This test measures the time needed to search the default presets while a search text is typed.
+ */
+public class PresetClassificationsPerformanceTest {
+    private static final int REPEAT_COUNT = 20;
+
+    private static Collection<TaggingPreset> presets;
+    private static List<String> searches;
+
+    /**
+     * Global timeout applied to all test methods.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public Timeout globalTimeout = Timeout.seconds(15*60);
+
+    /**
+     * Prepare the test: load the default presets, and type a few searches one character after the other.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void loadPresets() throws Exception {
+        JOSMFixture.createPerformanceTestFixture().init(true);
+        presets = TaggingPresetReader.readAll("resource://data/defaultpresets.xml", true);
+        searches = new ArrayList<>();
+        for (String search : new String[] {"building", "bus stop", "parking", "bakery", "recycling", "drinking water"}) {
+            for (int i = 1; i <= search.length(); i++) {
+                searches.add(search.substring(0, i));
+            }
+        }
+    }
+
+    /**
+     * Searches the presets by testing all of them, as done without search index.
+     * @param classifications the classifications of the presets
+     * @param search the search text
+     * @return the number of presets found
+     */
+    private static int searchAll(PresetClassifications classifications, String search) {
+        String[] nameWords = search.split("\\s");
+        int found = 0;
+        for (PresetClassification pc : classifications) {
+            if (pc.isMatchingName(nameWords) > 0 || pc.isMatchingGroup(nameWords) > 0 || pc.isMatchingTags(nameWords) > 0) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Measures the time needed to build the search index and to search the presets, with and without the index.
+     */
+    @Test
+    public void testSearch() {
+        PresetClassifications classifications = new PresetClassifications();
+        classifications.loadPresets(presets);
+
+        PerformanceTestTimer timer = PerformanceTestUtils.startTimer("test all presets for " + searches.size() + " searches");
+        int expected = 0;
+        for (int i = 0; i < REPEAT_COUNT; i++) {
+            for (String search : searches) {
+                expected += searchAll(classifications, search);
+            }
+        }
+        timer.done();
+
+        List<TaggingPreset> searchable = new ArrayList<>();
+        classifications.forEach(pc -> searchable.add(pc.preset));
+        timer = PerformanceTestUtils.startTimer("build search index of " + searchable.size() + " presets");
+        TaggingPresetSearchIndex index = new TaggingPresetSearchIndex(searchable);
+        timer.done();
+        assertEquals(searchable, index.getPresets());
+
+        // the first search uses the index built in the background, if any, or builds it
+        classifications.getMatchingPresets("", false, true, null, Collections.emptyList());
+        timer = PerformanceTestUtils.startTimer("search index for " + searches.size() + " searches");
+        int found = 0;
+        for (int i = 0; i < REPEAT_COUNT; i++) {
+            for (String search : searches) {
+                found += classifications.getMatchingPresets(search, false, true, null, Collections.emptyList()).size();
+            }
+        }
+        timer.done();
+        assertEquals(expected, found);
+        assertTrue(found > 0);
+    }
+}
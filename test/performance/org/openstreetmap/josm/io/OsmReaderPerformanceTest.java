@@ -1,6 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.io;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.ByteArrayInputStream;
@@ -18,6 +19,8 @@ import org.openstreetmap.josm.JOSMFixture;
 import org.openstreetmap.josm.PerformanceTestUtils;
 import org.openstreetmap.josm.PerformanceTestUtils.PerformanceTestTimer;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.spi.preferences.Config;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -65,6 +68,81 @@ public class OsmReaderPerformanceTest {
         runTest(".osm-file", true);
     }
 
+    /**
+     * Simulates a read of a .osm file (from memory) with an increasing number of threads.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testThreads() throws Exception {
+        InputStream is = loadFile(true);
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            PerformanceTestTimer timer = PerformanceTestUtils.startTimer("load .osm-file " + TIMES + " times with " + threads + " threads");
+            DataSet ds = null;
+            for (int i = 0; i < TIMES; i++) {
+                is.reset();
+                ds = OsmReader.parseDataSet(is, null, threads);
+            }
+            timer.done();
+            assertNotNull(ds);
+        }
+    }
+
+    /**
+     * Simulates a read of the same data from a .osm.pbf file (from memory) with an increasing number of threads.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testPbf() throws Exception {
+        ByteArrayOutputStream pbf = new ByteArrayOutputStream();
+        try (PbfWriter writer = new PbfWriter(pbf)) {
+            writer.write(OsmReader.parseDataSet(loadFile(true), null));
+        }
+        InputStream is = new ByteArrayInputStream(pbf.toByteArray());
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            PerformanceTestTimer timer = PerformanceTestUtils.startTimer("load .osm.pbf-file " + TIMES + " times with " + threads + " threads");
+            DataSet ds = null;
+            for (int i = 0; i < TIMES; i++) {
+                is.reset();
+                ds = new PbfReader(threads).doParseDataSet(is, null);
+            }
+            timer.done();
+            assertNotNull(ds);
+        }
+    }
+
+    /**
+     * Reports the heap retained per node by a loaded .osm file, with the projected node coordinates
+     * stored on the Java heap and outside of it.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    @SuppressFBWarnings(value = "DM_GC", justification = "Performance test code")
+    public void testHeapPerNode() throws Exception {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            Config.getPref().putBoolean("osm.node-coordinates.off-heap", offHeap);
+            InputStream is = loadFile(true);
+            long before = usedHeap();
+            DataSet ds = OsmReader.parseDataSet(is, null);
+            // fill the cache of projected coordinates, as rendering would
+            ds.getNodes().forEach(Node::getEastNorth);
+            long after = usedHeap();
+            assertEquals(offHeap, ds.getNodeCoordinateStore().isOffHeap());
+            PerformanceTestUtils.measurementPlotsPluginOutput("heap per node" + (offHeap ? ", off-heap" : "") + " (bytes)",
+                    (double) (after - before) / ds.getNodes().size());
+        }
+        Config.getPref().put("osm.node-coordinates.off-heap", null);
+    }
+
+    @SuppressFBWarnings(value = "DM_GC", justification = "Performance test code")
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     private void runTest(String what, boolean decompressBeforeRead) throws IllegalDataException, IOException {
         InputStream is = loadFile(decompressBeforeRead);
         PerformanceTestTimer timer = PerformanceTestUtils.startTimer("load " + what + " " + TIMES + " times");
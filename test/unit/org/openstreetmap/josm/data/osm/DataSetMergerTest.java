@@ -11,14 +11,23 @@ import static org.junit.Assert.fail;
 
 import java.io.StringWriter;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.openstreetmap.josm.data.conflict.Conflict;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.data.projection.Projections;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
@@ -1053,4 +1062,175 @@ public class DataSetMergerTest {
         assertEquals(new LatLon(1, 1), n.getCoor());
         assertTrue(n.isModified());
     }
+
+    /**
+     * Merges a download into an edited data set: only the primitives modified on both sides are in conflict,
+     * and the unchanged nodes and ways are not moved nor reindexed.
+     */
+    @Test
+    public void testMergeDownload() {
+        List<Node> myNodes = new ArrayList<>();
+        List<Node> theirNodes = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            Node n = new Node(new LatLon(i, i));
+            n.setOsmId(i, 1);
+            my.addPrimitive(n);
+            myNodes.add(n);
+            Node n2 = new Node(new LatLon(i, i));
+            n2.setOsmId(i, 1);
+            their.addPrimitive(n2);
+            theirNodes.add(n2);
+        }
+        Way myWay = new Way(1, 1);
+        myWay.setNodes(myNodes);
+        my.addPrimitive(myWay);
+        Way theirWay = new Way(1, 1);
+        theirWay.setNodes(theirNodes);
+        their.addPrimitive(theirWay);
+        List<Conflict<?>> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i += 3) {
+            myNodes.get(i).put("name", "my");
+            myNodes.get(i).setModified(true);
+            theirNodes.get(i).put("name", "their");
+            theirNodes.get(i).setModified(true);
+            expected.add(new Conflict<>(myNodes.get(i), theirNodes.get(i)));
+        }
+        List<DatasetDelta> deltas = new ArrayList<>();
+        my.addDatasetDeltaListener(deltas::add);
+
+        DataSetMerger visitor = new DataSetMerger(my, their);
+        visitor.merge();
+
+        List<Conflict<?>> conflicts = new ArrayList<>(visitor.getConflicts().get());
+        conflicts.sort(Comparator.comparingLong(c -> c.getMy().getUniqueId()));
+        assertEquals(expected, conflicts);
+        assertEquals(1, deltas.size());
+        assertTrue(deltas.get(0).getMovedNodes().isEmpty());
+        assertTrue(deltas.get(0).getWayNodesChanged().isEmpty());
+        assertEquals(myNodes, myWay.getNodes());
+        assertEquals(1, myNodes.get(1).getReferrers().size());
+    }
+
+    private static Node node(DataSet ds, long id, int version, double lat) {
+        Node n = new Node(new LatLon(lat, 10));
+        n.setOsmId(id, version);
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    private static Way way(DataSet ds, long id, int version, long... nodeIds) {
+        Way w = new Way(id, version);
+        for (long nodeId : nodeIds) {
+            w.addNode((Node) ds.getPrimitiveById(nodeId, OsmPrimitiveType.NODE));
+        }
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    /**
+     * Merges a download with several kinds of changes into an edited data set, and checks the merged primitives
+     * and the conflicts, in the order in which they are found.
+     */
+    @Test
+    public void testMergeDownloadChanges() {
+        List<Node> myNodes = new ArrayList<>();
+        List<Node> theirNodes = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            myNodes.add(node(my, i, 1, i));
+            theirNodes.add(node(their, i, 1, i));
+        }
+        Way myWay1 = way(my, 1, 1, 7, 8, 9, 10);
+        Way theirWay1 = way(their, 1, 1, 7, 8, 9, 10);
+        Way myWay2 = way(my, 2, 1, 11, 12);
+        Way theirWay2 = way(their, 2, 1, 11, 12);
+        Relation myRelation = new Relation(1, 1);
+        myRelation.setMembers(Arrays.asList(new RelationMember("outer", myWay1), new RelationMember("", myNodes.get(0))));
+        my.addPrimitive(myRelation);
+        Relation theirRelation = new Relation(1, 1);
+        theirRelation.setMembers(Arrays.asList(new RelationMember("outer", theirWay1), new RelationMember("", theirNodes.get(0))));
+        their.addPrimitive(theirRelation);
+
+        // node 1 modified in my data set
+        myNodes.get(0).put("name", "my");
+        myNodes.get(0).setModified(true);
+        // node 2 downloaded in a newer version
+        theirNodes.get(1).put("name", "their");
+        theirNodes.get(1).setOsmId(2, 2);
+        // node 3 modified on both sides
+        myNodes.get(2).put("name", "my");
+        myNodes.get(2).setModified(true);
+        theirNodes.get(2).put("name", "their");
+        theirNodes.get(2).setOsmId(3, 2);
+        // node 4 deleted in my data set and modified on the server
+        myNodes.get(3).setDeleted(true);
+        theirNodes.get(3).put("name", "their");
+        theirNodes.get(3).setOsmId(4, 2);
+        // node 5 deleted in my data set only
+        myNodes.get(4).setDeleted(true);
+        // node 6 moved on the server
+        theirNodes.get(5).setCoor(new LatLon(6, 11));
+        theirNodes.get(5).setOsmId(6, 2);
+        // node 8 removed from way 1 on the server
+        theirWay1.removeNode(theirNodes.get(7));
+        theirWay1.setOsmId(1, 2);
+        // way 2 modified on both sides
+        myWay2.put("highway", "my");
+        myWay2.setModified(true);
+        theirWay2.put("highway", "their");
+        theirWay2.setOsmId(2, 2);
+        // first member of the relation removed on the server
+        theirRelation.removeMember(0);
+        theirRelation.setOsmId(1, 2);
+        // new nodes, the first one semantically equal on both sides
+        Node myNew = new Node(new LatLon(20, 20));
+        myNew.put("ref", "1");
+        my.addPrimitive(myNew);
+        Node theirNew = new Node(new LatLon(20, 20));
+        theirNew.put("ref", "1");
+        their.addPrimitive(theirNew);
+        Node theirOtherNew = new Node(new LatLon(21, 21));
+        theirOtherNew.put("ref", "2");
+        their.addPrimitive(theirOtherNew);
+
+        // the conflicts are found in the order in which the source primitives are merged: nodes, ways, then relations
+        Map<OsmPrimitive, Conflict<?>> conflicts = new HashMap<>();
+        conflicts.put(theirNodes.get(2), new Conflict<>(myNodes.get(2), theirNodes.get(2)));
+        conflicts.put(theirNodes.get(3), new Conflict<>(myNodes.get(3), theirNodes.get(3)));
+        conflicts.put(theirWay2, new Conflict<>(myWay2, theirWay2));
+        List<Conflict<?>> expected = new ArrayList<>();
+        for (Collection<? extends OsmPrimitive> primitives : Arrays.asList(their.getNodes(), their.getWays(), their.getRelations())) {
+            primitives.stream().map(conflicts::get).filter(Objects::nonNull).forEach(expected::add);
+        }
+
+        DataSetMerger visitor = new DataSetMerger(my, their);
+        visitor.merge();
+
+        assertEquals(expected, new ArrayList<>(visitor.getConflicts().get()));
+
+        assertEquals("my", myNodes.get(0).get("name"));
+        assertTrue(myNodes.get(0).isModified());
+        assertEquals("their", myNodes.get(1).get("name"));
+        assertEquals(2, myNodes.get(1).getVersion());
+        assertFalse(myNodes.get(1).isModified());
+        assertEquals("my", myNodes.get(2).get("name"));
+        assertTrue(myNodes.get(3).isDeleted());
+        assertTrue(myNodes.get(4).isDeleted());
+        assertEquals(new LatLon(6, 11), myNodes.get(5).getCoor());
+        assertEquals(2, myNodes.get(5).getVersion());
+        assertEquals(Arrays.asList(myNodes.get(6), myNodes.get(8), myNodes.get(9)), myWay1.getNodes());
+        assertEquals(2, myWay1.getVersion());
+        assertTrue(myNodes.get(7).getReferrers().isEmpty());
+        assertEquals("my", myWay2.get("highway"));
+        assertEquals(Arrays.asList(new RelationMember("", myNodes.get(0))), myRelation.getMembers());
+        assertEquals(2, myRelation.getVersion());
+
+        assertSame(myNew, my.getPrimitiveById(myNew));
+        assertEquals(1, my.getNodes().stream().filter(n -> "1".equals(n.get("ref"))).count());
+        Node mergedNew = my.getNodes().stream().filter(n -> "2".equals(n.get("ref"))).findFirst().get();
+        assertNotSame(theirOtherNew, mergedNew);
+        assertEquals(new LatLon(21, 21), mergedNew.getCoor());
+        assertEquals(12 + 2, my.getNodes().size());
+        assertEquals(2, my.getWays().size());
+        assertEquals(1, my.getRelations().size());
+    }
 }
@@ -0,0 +1,135 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.io.OsmWriter;
+import org.openstreetmap.josm.io.OsmWriterFactory;
+import org.openstreetmap.josm.io.PbfWriter;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link DataSetSnapshot} class.
+ */
+public class DataSetSnapshotTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static String toOsm(DataSet ds) {
+        StringWriter sw = new StringWriter();
+        OsmWriter w = OsmWriterFactory.createOsmWriter(new PrintWriter(sw), false, ds.getVersion());
+        w.write(ds);
+        w.flush();
+        return sw.toString();
+    }
+
+    private static String toOsm(DataSetSnapshot snapshot) {
+        StringWriter sw = new StringWriter();
+        OsmWriter w = OsmWriterFactory.createOsmWriter(new PrintWriter(sw), false, snapshot.getVersion());
+        w.write(snapshot);
+        w.flush();
+        return sw.toString();
+    }
+
+    /**
+     * Test that a snapshot is not affected by the later changes of the data set.
+     */
+    @Test
+    public void testPointInTime() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(new LatLon(1, 1));
+        Node n2 = new Node(new LatLon(2, 2));
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        w.put("highway", "residential");
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(w);
+        Relation r = new Relation();
+        r.addMember(new RelationMember("outer", w));
+        ds.addPrimitive(r);
+
+        DataSetSnapshot snapshot = ds.snapshot();
+        String expected = toOsm(ds);
+        assertEquals(4, snapshot.size());
+        assertEquals(expected, toOsm(snapshot));
+
+        n1.setCoor(new LatLon(3, 3));
+        w.put("name", "foo");
+        w.removeNode(n2);
+        r.setMembers(null);
+        ds.addPrimitive(new Node(LatLon.ZERO));
+        ds.setUploadPolicy(UploadPolicy.BLOCKED);
+
+        assertEquals(expected, toOsm(snapshot));
+        assertEquals(toOsm(ds), toOsm(ds.snapshot()));
+        assertEquals(new LatLon(1, 1), snapshot.getNodes().stream()
+                .filter(n -> n.getUniqueId() == n1.getUniqueId()).findFirst().get().getCoor());
+        assertEquals(UploadPolicy.NORMAL, snapshot.getUploadPolicy());
+    }
+
+    /**
+     * Test that the tag arrays are shared with the primitives of the data set.
+     */
+    @Test
+    public void testSharedTags() {
+        Node n = new Node(LatLon.ZERO);
+        n.put("amenity", "bench");
+        DataSet ds = new DataSet(n);
+        NodeData data = ds.snapshot().getNodes().get(0);
+        assertSame(n.keys, data.keys);
+        n.put("backrest", "yes");
+        assertNotSame(n.keys, data.keys);
+        assertEquals(1, data.getNumKeys());
+    }
+
+    /**
+     * Test that a data set created from a snapshot has the same contents as the original one.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testCopy() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/restriction.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        ds.getWays().stream().filter(w -> w.getReferrers().isEmpty()).findFirst().get().setDeleted(true);
+        ds.lock();
+        DataSet copy = new DataSet(ds.snapshot());
+        assertTrue(copy.isLocked());
+        assertEquals(ds.allPrimitives().size(), copy.allPrimitives().size());
+        assertEquals(toOsm(ds), toOsm(copy));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (PbfWriter w = new PbfWriter(expected)) {
+            w.write(ds);
+        }
+        try (PbfWriter w = new PbfWriter(actual)) {
+            w.write(copy.snapshot());
+        }
+        assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    }
+}
@@ -3,17 +3,22 @@ package org.openstreetmap.josm.data.osm;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSelectionListener.SelectionChangeEvent;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -28,7 +33,7 @@ public class DataSetTest {
      */
     @Rule
     @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
-    public JOSMTestRules test = new JOSMTestRules();
+    public JOSMTestRules test = new JOSMTestRules().projection();
 
     /**
      * Unit test of method {@link DataSet#searchRelations}.
@@ -166,6 +171,98 @@ public class DataSetTest {
         assertEquals(Arrays.asList(n3, n1), new ArrayList<>(ds.getSelected()));
     }
 
+    /**
+     * Test the differences reported by selection change events, including the shortcuts for empty selections.
+     */
+    @Test
+    public void testSelectionEvents() {
+        final DataSet ds = new DataSet();
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Node n3 = new Node(3);
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(n3);
+        List<SelectionChangeEvent> events = new ArrayList<>();
+        ds.addSelectionListener(events::add);
+
+        ds.setSelected(n1, n2);
+        assertEquals(new HashSet<>(Arrays.asList(n1, n2)), events.get(0).getAdded());
+        assertTrue(events.get(0).getRemoved().isEmpty());
+
+        ds.setSelected(n2, n1);
+        assertEquals(1, events.size());
+
+        ds.setSelected(n2, n3);
+        assertEquals(Collections.singleton(n3), events.get(1).getAdded());
+        assertEquals(Collections.singleton(n1), events.get(1).getRemoved());
+
+        ds.clearSelection(n2, n3);
+        assertTrue(events.get(2).getSelection().isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(n2, n3)), events.get(2).getRemoved());
+        assertTrue(ds.selectionEmpty());
+
+        ds.addSelected(n3, n1);
+        assertEquals(Arrays.asList(n3, n1), new ArrayList<>(events.get(3).getSelection()));
+        assertEquals(Arrays.asList(n3, n1), new ArrayList<>(events.get(3).getAdded()));
+
+        ds.clearSelection();
+        assertTrue(events.get(4).getAdded().isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(n1, n3)), events.get(4).getRemoved());
+        assertEquals(5, events.size());
+        assertFalse(n1.isSelected());
+    }
+
+    /**
+     * Test that the selection stays consistent when the slots of removed primitives are reused,
+     * including for the differences computed lazily by the listeners.
+     */
+    @Test
+    public void testSelectionSlotReuse() {
+        final DataSet ds = new DataSet();
+        Node n1 = new Node(1);
+        Node n2 = new Node(2);
+        Way w1 = new Way(1);
+        Relation r1 = new Relation(1);
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(w1);
+        ds.addPrimitive(r1);
+        assertNotEquals(w1.getSlot(), r1.getSlot());
+        List<SelectionChangeEvent> events = new ArrayList<>();
+        ds.addSelectionListener(events::add);
+
+        ds.setSelected(n1, w1);
+        ds.setSelected(n2, w1, r1);
+        SelectionChangeEvent event = events.get(1);
+        assertTrue(w1.isSelected());
+        assertTrue(r1.isSelected());
+
+        // n1 gets the slot of n2 when added again, the differences computed afterwards must not change
+        int slot = n2.getSlot();
+        ds.removePrimitive(n1);
+        ds.removePrimitive(n2);
+        ds.addPrimitive(n1);
+        Node n3 = new Node(3);
+        ds.addPrimitive(n3);
+        assertEquals(slot, n1.getSlot());
+        assertFalse(n1.isSelected());
+        assertFalse(n3.isSelected());
+        assertTrue(w1.isSelected());
+        assertEquals(Arrays.asList(n2, r1), new ArrayList<>(event.getAdded()));
+        assertEquals(Collections.singleton(n1), event.getRemoved());
+
+        ds.addSelected(n1, n3);
+        assertEquals(Arrays.asList(w1, r1, n1, n3), new ArrayList<>(ds.getAllSelected()));
+        ds.toggleSelected(n3, w1);
+        assertEquals(Arrays.asList(r1, n1), new ArrayList<>(ds.getAllSelected()));
+        assertFalse(w1.isSelected());
+        assertFalse(n3.isSelected());
+        assertTrue(n1.isSelected());
+        ds.setSelected(n1, r1);
+        assertEquals(5, events.size());
+    }
+
     /**
      * Unit test for {@link DataSet#DataSet(DataSet)}.
      */
@@ -193,6 +290,46 @@ public class DataSetTest {
         assertEqualsDataSet(ds, new DataSet(ds));
     }
 
+    /**
+     * Unit test for {@link DataSet#DataSet(DataSet)} - the copies keep the filter state and the other flags,
+     * also when the data set is locked.
+     */
+    @Test
+    public void testCopyConstructorFlags() {
+        DataSet ds = new DataSet();
+        Node hidden = new Node(LatLon.SOUTH_POLE);
+        Node disabled = new Node(LatLon.NORTH_POLE);
+        Node preserved = new Node(LatLon.ZERO);
+        ds.addPrimitive(hidden);
+        ds.addPrimitive(disabled);
+        ds.addPrimitive(preserved);
+        hidden.setDisabledState(true);
+        disabled.setDisabledState(false);
+        disabled.setHighlighted(true);
+        preserved.setPreserved(true);
+
+        DataSet copy = new DataSet(ds);
+        Node hiddenCopy = (Node) copy.getPrimitiveById(hidden);
+        Node disabledCopy = (Node) copy.getPrimitiveById(disabled);
+        Node preservedCopy = (Node) copy.getPrimitiveById(preserved);
+        assertTrue(hiddenCopy.isDisabledAndHidden());
+        assertTrue(disabledCopy.isDisabled());
+        assertFalse(disabledCopy.isDisabledAndHidden());
+        assertTrue(disabledCopy.isHighlighted());
+        assertTrue(preservedCopy.isPreserved());
+        assertFalse(preservedCopy.isDisabled());
+
+        Way way = new Way();
+        way.setNodes(Arrays.asList(hidden, disabled));
+        ds.addPrimitive(way);
+        way.setDisabledState(true);
+        ds.lock();
+        copy = new DataSet(ds);
+        assertTrue(copy.isLocked());
+        assertTrue(((Way) copy.getPrimitiveById(way)).isDisabledAndHidden());
+        assertTrue(((Node) copy.getPrimitiveById(hidden)).isDisabledAndHidden());
+    }
+
     /**
      * Unit test for {@link DataSet#mergeFrom} - Policies.
      */
@@ -228,6 +365,42 @@ public class DataSetTest {
         assertTrue(ds1.isLocked());
     }
 
+    /**
+     * Unit test of methods {@link DataSet#searchNearestNodes} and {@link DataSet#searchNearestWaySegments}.
+     */
+    @Test
+    public void testSearchNearest() {
+        DataSet ds = new DataSet();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Node n = new Node(new LatLon(50 + (i % 20) * 0.001, 10 + i * 0.0001));
+            ds.addPrimitive(n);
+            nodes.add(n);
+        }
+        Way way = new Way();
+        way.setNodes(nodes);
+        ds.addPrimitive(way);
+        Way other = new Way();
+        other.setNodes(nodes.subList(500, 502));
+        ds.addPrimitive(other);
+
+        EastNorth center = nodes.get(500).getEastNorth().add(3, 4);
+        List<Node> nearestNodes = ds.searchNearestNodes(center, 1000, 5, n -> true);
+        List<Node> expectedNodes = new ArrayList<>(nodes);
+        expectedNodes.sort(Comparator.comparingDouble(n -> n.getEastNorth().distance(center)));
+        assertEquals(expectedNodes.subList(0, 5), nearestNodes);
+        assertEquals(nodes.get(500), ds.searchNearestNodes(center, 5.1, 5, n -> true).get(0));
+        assertTrue(ds.searchNearestNodes(center, 4.9, 5, n -> true).isEmpty());
+        assertTrue(ds.searchNearestNodes(center, 1000, 5, n -> n.hasKey("name")).isEmpty());
+
+        List<WaySegment> nearestSegments = ds.searchNearestWaySegments(center, 1000, 3, w -> true);
+        assertEquals(3, nearestSegments.size());
+        assertEquals(new HashSet<>(Arrays.asList(new WaySegment(way, 500), new WaySegment(other, 0))),
+                new HashSet<>(nearestSegments.subList(0, 2)));
+        assertEquals(Collections.singletonList(new WaySegment(way, 500)), ds.searchNearestWaySegments(center, 1000, 1, w -> w == way));
+        assertTrue(ds.searchNearestWaySegments(center, 1000, 3, w -> false).isEmpty());
+    }
+
     private static void assertEqualsDataSet(DataSet ds1, DataSet ds2) {
         assertEquals(new ArrayList<>(ds1.getNodes()), new ArrayList<>(ds2.getNodes()));
         assertEquals(new ArrayList<>(ds1.getWays()), new ArrayList<>(ds2.getWays()));
@@ -0,0 +1,187 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.event.DatasetDelta;
+import org.openstreetmap.josm.data.osm.event.DatasetDeltaListener;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link FilterModel} class.
+ */
+public class FilterModelTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    private static Filter filter(String text, boolean hiding, boolean inverted) {
+        Filter filter = new Filter();
+        filter.text = text;
+        filter.hiding = hiding;
+        filter.inverted = inverted;
+        return filter;
+    }
+
+    private static Map<OsmPrimitive, List<Boolean>> getStates(DataSet ds) {
+        Map<OsmPrimitive, List<Boolean>> states = new HashMap<>();
+        for (OsmPrimitive p : ds.allNonDeletedCompletePrimitives()) {
+            states.put(p, Arrays.asList(p.isDisabled(), p.isDisabledAndHidden(), p.getDisabledType(), p.getHiddenType()));
+        }
+        return states;
+    }
+
+    /**
+     * Runs the filters on the changes of the data set, and checks that the result is the one of a full run.
+     */
+    private static void check(FilterModel model, DataSet ds, List<DatasetDelta> deltas, Runnable change) {
+        deltas.clear();
+        ds.beginUpdate();
+        try {
+            change.run();
+        } finally {
+            ds.endUpdate();
+        }
+        assertEquals(1, deltas.size());
+        model.executeFilters(deltas.get(0));
+        Map<OsmPrimitive, List<Boolean>> states = getStates(ds);
+        int disabledCount = model.getDisabledCount();
+        int disabledAndHiddenCount = model.getDisabledAndHiddenCount();
+
+        model.executeFilters();
+        assertEquals(getStates(ds), states);
+        assertEquals(model.getDisabledCount(), disabledCount);
+        assertEquals(model.getDisabledAndHiddenCount(), disabledAndHiddenCount);
+    }
+
+    /**
+     * Test that the filters run on the changes of the data set give the same results as the filters run on all primitives.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testExecuteFiltersOnDelta() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        OsmDataLayer layer = new OsmDataLayer(ds, "test", null);
+        MainApplication.getLayerManager().addLayer(layer);
+        List<DatasetDelta> deltas = new ArrayList<>();
+        DatasetDeltaListener listener = deltas::add;
+        ds.addDatasetDeltaListener(listener);
+        try {
+            FilterModel model = new FilterModel();
+            model.addFilter(filter("building=*", true, false));
+            model.addFilter(filter("child landuse=*", false, false));
+            model.addFilter(filter("areasize:0-20000000000", false, false));
+            model.addFilter(filter("parent (child natural=water)", true, false));
+            model.addFilter(filter("type:relation | highway=* | child highway=*", false, true));
+            model.executeFilters();
+            int hidden = model.getDisabledAndHiddenCount();
+            assertTrue(hidden > 0);
+            assertTrue(model.getDisabledCount() > 0);
+
+            List<Way> ways = new ArrayList<>(ds.getWays());
+            List<Relation> relations = new ArrayList<>(ds.getRelations());
+            Way way = ways.stream().filter(w -> !w.hasKey("building") && w.getReferrers().isEmpty()).findFirst().get();
+            check(model, ds, deltas, () -> way.put("building", "yes"));
+            assertTrue(way.isDisabledAndHidden());
+            assertTrue(model.getDisabledAndHiddenCount() > hidden);
+
+            check(model, ds, deltas, () -> way.firstNode().setCoor(new LatLon(way.firstNode().lat() + 1, way.firstNode().lon())));
+            check(model, ds, deltas, () -> {
+                Node node = new Node(way.firstNode().getCoor());
+                ds.addPrimitive(node);
+                way.addNode(1, node);
+            });
+            check(model, ds, deltas, () -> way.setDeleted(true));
+            assertFalse(way.isDisabled());
+
+            Relation relation = relations.stream().filter(Relation::isMultipolygon).findFirst().get();
+            check(model, ds, deltas, () -> relation.put("natural", "water"));
+            check(model, ds, deltas, () -> relation.put("type", "site"));
+            check(model, ds, deltas, () -> relation.addMember(new RelationMember("outer", ways.get(0))));
+            check(model, ds, deltas, () -> {
+                Way landuse = new Way();
+                landuse.setNodes(ways.get(1).getNodes());
+                landuse.put("landuse", "forest");
+                ds.addPrimitive(landuse);
+            });
+            check(model, ds, deltas, () -> ways.get(2).getNodes().forEach(n -> n.put("fixme", "yes")));
+            Set<OsmPrimitive> affected = FilterModel.getAffectedPrimitives(deltas.get(0), 0);
+            assertEquals(ways.get(2).getNodesCount() - (ways.get(2).isClosed() ? 1 : 0), affected.size());
+        } finally {
+            ds.removeDatasetDeltaListener(listener);
+            MainApplication.getLayerManager().removeLayer(layer);
+        }
+    }
+
+    /**
+     * Test that the filter states inherited from ways and multipolygons are updated along with them.
+     */
+    @Test
+    public void testInheritedStates() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(LatLon.ZERO);
+        Node n2 = new Node(new LatLon(0.001, 0));
+        Node n3 = new Node(new LatLon(0.001, 0.001));
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(n3);
+        Way way = new Way();
+        way.setNodes(Arrays.asList(n1, n2, n3, n1));
+        ds.addPrimitive(way);
+        Relation relation = new Relation();
+        relation.put("type", "multipolygon");
+        relation.addMember(new RelationMember("outer", way));
+        ds.addPrimitive(relation);
+        OsmDataLayer layer = new OsmDataLayer(ds, "test", null);
+        MainApplication.getLayerManager().addLayer(layer);
+        List<DatasetDelta> deltas = new ArrayList<>();
+        DatasetDeltaListener listener = deltas::add;
+        ds.addDatasetDeltaListener(listener);
+        try {
+            FilterModel model = new FilterModel();
+            model.addFilter(filter("building=*", true, false));
+            model.executeFilters();
+            assertEquals(0, model.getDisabledAndHiddenCount());
+
+            check(model, ds, deltas, () -> relation.put("building", "yes"));
+            assertTrue(way.isDisabledAndHidden());
+            assertTrue(n1.isDisabledAndHidden());
+            assertEquals(5, model.getDisabledAndHiddenCount());
+
+            check(model, ds, deltas, () -> relation.put("type", "site"));
+            assertFalse(way.isDisabled());
+            assertFalse(n1.isDisabled());
+            assertEquals(1, model.getDisabledAndHiddenCount());
+        } finally {
+            ds.removeDatasetDeltaListener(listener);
+            MainApplication.getLayerManager().removeLayer(layer);
+        }
+    }
+}
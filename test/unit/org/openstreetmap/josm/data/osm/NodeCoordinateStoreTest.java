@@ -0,0 +1,184 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of the {@code NodeCoordinateStore} class.
+ */
+public class NodeCoordinateStoreTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection();
+
+    private static void testCache(NodeCoordinateStore store) {
+        int slot = store.allocate();
+        assertNull(store.getEastNorth(slot, "a"));
+        store.setEastNorth(slot, "a", new EastNorth(1, 2));
+        assertEquals(new EastNorth(1, 2), store.getEastNorth(slot, "a"));
+        assertNull(store.getEastNorth(slot, "b"));
+        store.setEastNorth(slot, "b", new EastNorth(3, 4));
+        assertEquals(new EastNorth(3, 4), store.getEastNorth(slot, "b"));
+        assertNull(store.getEastNorth(slot, "a"));
+        store.invalidate(slot);
+        assertNull(store.getEastNorth(slot, "b"));
+        store.setEastNorth(slot, "b", new EastNorth(3, 4));
+        store.invalidateAll();
+        assertNull(store.getEastNorth(slot, "b"));
+    }
+
+    /**
+     * Unit test of the cache of projected coordinates, on heap.
+     */
+    @Test
+    public void testCacheOnHeap() {
+        testCache(new NodeCoordinateStore(false));
+    }
+
+    /**
+     * Unit test of the cache of projected coordinates, off heap.
+     */
+    @Test
+    public void testCacheOffHeap() {
+        NodeCoordinateStore store = new NodeCoordinateStore(true);
+        assertTrue(store.isOffHeap());
+        testCache(store);
+    }
+
+    /**
+     * Unit test of slot allocation and growth.
+     */
+    @Test
+    public void testAllocation() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            NodeCoordinateStore store = new NodeCoordinateStore(offHeap);
+            assertEquals(0, store.capacity());
+            int n = NodeCoordinateStore.CHUNK_SIZE * 3 + 5;
+            for (int i = 0; i < n; i++) {
+                assertEquals(i, store.allocate());
+                store.setEastNorth(i, "a", new EastNorth(i, -i));
+            }
+            assertEquals(n, store.size());
+            assertTrue(store.capacity() >= n);
+            for (int i = 0; i < n; i++) {
+                assertEquals(new EastNorth(i, -i), store.getEastNorth(i, "a"));
+            }
+            store.release(5);
+            store.release(7);
+            assertEquals(n - 2, store.size());
+            // released slots are reused first, without their cached coordinates
+            assertEquals(7, store.allocate());
+            assertNull(store.getEastNorth(7, "a"));
+            assertEquals(5, store.allocate());
+            assertEquals(n, store.allocate());
+        }
+    }
+
+    /**
+     * Unit test of many projection cache keys.
+     */
+    @Test
+    public void testManyCacheKeys() {
+        NodeCoordinateStore store = new NodeCoordinateStore(false);
+        int slot1 = store.allocate();
+        int slot2 = store.allocate();
+        store.setEastNorth(slot1, 0, new EastNorth(0, 0));
+        for (int i = 1; i < 100; i++) {
+            store.setEastNorth(slot2, i, new EastNorth(i, i));
+            assertEquals(new EastNorth(i, i), store.getEastNorth(slot2, i));
+        }
+        assertNull(store.getEastNorth(slot1, 0));
+    }
+
+    /**
+     * Unit test of the integration with {@link Node} and {@link DataSet}.
+     */
+    @Test
+    public void testNodeInDataSet() {
+        DataSet ds = new DataSet();
+        Node n = new Node(new LatLon(10, 20));
+        assertNotNull(n.getEastNorth());
+        ds.addPrimitive(n);
+        NodeCoordinateStore store = ds.getNodeCoordinateStore();
+        assertEquals(1, store.size());
+        EastNorth en = n.getEastNorth();
+        assertEquals(ProjectionRegistry.getProjection().latlon2eastNorth(n.getCoor()), en);
+        n.setCoor(new LatLon(11, 21));
+        assertNotEquals(en, n.getEastNorth());
+        assertEquals(ProjectionRegistry.getProjection().latlon2eastNorth(n.getCoor()), n.getEastNorth());
+
+        ProjectionRegistry.setProjection(Projections.getProjectionByCode("EPSG:4326"));
+        assertEquals(new EastNorth(21, 11), n.getEastNorth());
+
+        ds.removePrimitive(n);
+        assertEquals(0, store.size());
+        assertEquals(new EastNorth(21, 11), n.getEastNorth());
+    }
+
+    /**
+     * Unit test of the projected coordinates given to a node which does not belong to a dataset.
+     */
+    @Test
+    public void testDetachedNode() {
+        EastNorth en = new EastNorth(1234567.891, 6543210.987);
+        Node n = new Node(en);
+        assertEquals(en, n.getEastNorth());
+        DataSet ds = new DataSet();
+        ds.addPrimitive(n);
+        assertEquals(en, n.getEastNorth());
+        ds.removePrimitive(n);
+        assertEquals(en, n.getEastNorth());
+        n.setCoor(new LatLon(10, 20));
+        assertEquals(ProjectionRegistry.getProjection().latlon2eastNorth(n.getCoor()), n.getEastNorth());
+    }
+
+    /**
+     * Unit test that concurrent readers never see the cache key of a write with the coordinates of another one.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testConcurrentReadsAndWrites() throws InterruptedException {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            NodeCoordinateStore store = new NodeCoordinateStore(offHeap);
+            int slot = store.allocate();
+            AtomicBoolean torn = new AtomicBoolean();
+            Thread reader = new Thread(() -> {
+                for (int i = 0; i < 200_000 && !torn.get(); i++) {
+                    EastNorth a = store.getEastNorth(slot, "a");
+                    EastNorth b = store.getEastNorth(slot, "b");
+                    if ((a != null && (a.east() != a.north() || a.east() < 0)) || (b != null && (b.east() != b.north() || b.east() > 0))) {
+                        torn.set(true);
+                    }
+                }
+            });
+            reader.start();
+            for (int i = 1; reader.isAlive(); i++) {
+                // the coordinates cached for "a" are positive, those cached for "b" are negative
+                store.setEastNorth(slot, (i & 1) == 0 ? "a" : "b", (i & 1) == 0 ? new EastNorth(i, i) : new EastNorth(-i, -i));
+            }
+            reader.join();
+            assertFalse(torn.get());
+        }
+    }
+}
@@ -103,4 +103,27 @@ public class NodeTest {
     public void testLoadIAE() {
         new Node().load(new WayData());
     }
+
+    /**
+     * Test that the coordinates are kept exactly, whether they can be stored in fixed point or not.
+     */
+    @Test
+    public void testExactCoordinates() {
+        Node n = new Node();
+        assertFalse(n.isLatLonKnown());
+        assertNull(n.getCoor());
+        assertTrue(Double.isNaN(n.lat()));
+        for (LatLon ll : new LatLon[] {
+                new LatLon(52.1234567, 13.7654321), new LatLon(-89.9999999, -179.9999999), new LatLon(0.1, 0.2),
+                new LatLon(52.12345678901, 13.1 / 3), new LatLon(-0.0, 0), new LatLon(95, 600), LatLon.ZERO}) {
+            n.setCoor(ll);
+            assertTrue(n.isLatLonKnown());
+            assertEquals(0, Double.compare(ll.lat(), n.lat()));
+            assertEquals(0, Double.compare(ll.lon(), n.lon()));
+            assertEquals(ll, n.getCoor());
+        }
+        n.setCoor(null);
+        assertFalse(n.isLatLonKnown());
+        assertNull(n.getCoor());
+    }
 }
@@ -0,0 +1,151 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PackedRTree} and {@link PackedSpatialIndex}.
+ */
+public class PackedRTreeTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection();
+
+    private static LatLon randomLatLon(Random random) {
+        return new LatLon(random.nextDouble() * 2 + 50, random.nextDouble() * 2 + 10);
+    }
+
+    private static BBox randomBBox(Random random) {
+        LatLon ll = randomLatLon(random);
+        double size = random.nextDouble() * 0.1;
+        return new BBox(ll.lon(), ll.lat(), ll.lon() + size, ll.lat() + size);
+    }
+
+    private static <T extends IPrimitive> Set<T> bruteForce(Collection<T> primitives, BBox bbox) {
+        return primitives.stream().filter(p -> p.getBBox().isValid() && p.getBBox().intersects(bbox)).collect(Collectors.toSet());
+    }
+
+    /**
+     * Test that search results are the same as with {@link QuadBuckets}.
+     */
+    @Test
+    public void testSearch() {
+        Random random = new Random(42);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            nodes.add(new Node(randomLatLon(random)));
+        }
+        PackedRTree<Node> tree = new PackedRTree<>(nodes);
+        QuadBuckets<Node> qb = new QuadBuckets<>();
+        qb.addAll(nodes);
+        assertEquals(nodes.size(), tree.size());
+        for (int i = 0; i < 200; i++) {
+            BBox bbox = randomBBox(random);
+            List<Node> result = tree.search(bbox);
+            assertEquals(new HashSet<>(qb.search(bbox)), new HashSet<>(result));
+            assertEquals(result.size(), new HashSet<>(result).size());
+        }
+        for (Node n : nodes) {
+            assertTrue(tree.contains(n));
+        }
+        assertFalse(tree.contains(new Node(randomLatLon(random))));
+        assertTrue(new PackedRTree<Node>(new ArrayList<>()).search(randomBBox(random)).isEmpty());
+    }
+
+    /**
+     * Test that a single primitive, or primitives at the same location, can be indexed.
+     */
+    @Test
+    public void testDegenerate() {
+        Node n = new Node(new LatLon(1, 2));
+        PackedRTree<Node> tree = new PackedRTree<>(Collections.singletonList(n));
+        assertEquals(1, tree.search(n.getBBox()).size());
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            nodes.add(new Node(new LatLon(1, 2)));
+        }
+        tree = new PackedRTree<>(nodes);
+        assertEquals(100, tree.search(n.getBBox()).size());
+    }
+
+    /**
+     * Test that the spatial index of a dataset stays consistent while primitives are added, moved and removed.
+     */
+    @Test
+    public void testDataSetModifications() {
+        Random random = new Random(42);
+        DataSet ds = new DataSet();
+        List<Node> nodes = new ArrayList<>();
+        List<Way> ways = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Node n = new Node(randomLatLon(random));
+            ds.addPrimitive(n);
+            nodes.add(n);
+        }
+        for (int i = 0; i < 1000; i++) {
+            Way w = new Way();
+            w.addNode(nodes.get(random.nextInt(nodes.size())));
+            w.addNode(nodes.get(random.nextInt(nodes.size())));
+            ds.addPrimitive(w);
+            ways.add(w);
+        }
+        Way incomplete = new Way(12345);
+        ds.addPrimitive(incomplete);
+        ds.buildSpatialIndexes();
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 200; i++) {
+                Node n = nodes.get(random.nextInt(nodes.size()));
+                switch (random.nextInt(3)) {
+                case 0:
+                    n.setCoor(randomLatLon(random));
+                    break;
+                case 1:
+                    if (n.getReferrers().isEmpty()) {
+                        ds.removePrimitive(n);
+                        nodes.remove(n);
+                    }
+                    break;
+                default:
+                    Node added = new Node(randomLatLon(random));
+                    ds.addPrimitive(added);
+                    nodes.add(added);
+                }
+            }
+            for (int i = 0; i < 20; i++) {
+                BBox bbox = randomBBox(random);
+                assertEquals(bruteForce(nodes, bbox), new HashSet<>(ds.searchNodes(bbox)));
+                assertEquals(bruteForce(ways, bbox), new HashSet<>(ds.searchWays(bbox)));
+            }
+        }
+        for (Node n : nodes) {
+            assertTrue(ds.containsNode(n));
+        }
+        for (Way w : ways) {
+            assertTrue(ds.containsWay(w));
+        }
+        assertTrue(ds.containsWay(incomplete));
+    }
+}
@@ -0,0 +1,85 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of the {@code PrimitiveBitSet} class.
+ */
+public class PrimitiveBitSetTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    /**
+     * Test the membership, copies and comparisons of bit sets.
+     */
+    @Test
+    public void testBits() {
+        DataSet ds = new DataSet();
+        Node n = new Node(1);
+        Way w = new Way(1);
+        Relation r = new Relation(1);
+        ds.addPrimitive(n);
+        ds.addPrimitive(w);
+        ds.addPrimitive(r);
+
+        PrimitiveBitSet bits = PrimitiveBitSet.of(ds, Arrays.asList(n, r));
+        assertTrue(bits.contains(n));
+        assertFalse(bits.contains(w));
+        assertTrue(bits.contains(r));
+        assertFalse(bits.contains(new Node(1)));
+
+        PrimitiveBitSet copy = bits.copy();
+        assertEquals(bits, copy);
+        assertTrue(copy.add(w));
+        assertTrue(copy.remove(n));
+        assertNotEquals(bits, copy);
+        assertTrue(bits.contains(n));
+        assertFalse(copy.contains(n));
+        assertTrue(copy.contains(w));
+        assertEquals(PrimitiveBitSet.of(ds, Arrays.asList(r, w)), copy);
+        assertNotEquals(PrimitiveBitSet.of(new DataSet(), Arrays.asList()), new PrimitiveBitSet(ds));
+
+        assertFalse(copy.add(new Way(2)));
+        assertNull(PrimitiveBitSet.of(ds, Arrays.asList(n, new Node(2))));
+    }
+
+    /**
+     * Test that slots are released and reused when primitives leave the data set.
+     */
+    @Test
+    public void testSlots() {
+        DataSet ds = new DataSet();
+        Way w1 = new Way(1);
+        Way w2 = new Way(2);
+        assertEquals(-1, w1.getSlot());
+        ds.addPrimitive(w1);
+        ds.addPrimitive(w2);
+        assertEquals(0, w1.getSlot());
+        assertEquals(1, w2.getSlot());
+        int generation = ds.getSlotGeneration();
+        ds.removePrimitive(w1);
+        assertEquals(-1, w1.getSlot());
+        assertNotEquals(generation, ds.getSlotGeneration());
+        Relation r = new Relation(1);
+        ds.addPrimitive(r);
+        assertEquals(0, r.getSlot());
+    }
+}
@@ -0,0 +1,142 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link PrimitiveIdIndex} class.
+ */
+public class PrimitiveIdIndexTest {
+
+    /**
+     * Test that primitives of different types with the same id are distinct.
+     */
+    @Test
+    public void testTypes() {
+        PrimitiveIdIndex<PrimitiveId> index = new PrimitiveIdIndex<>();
+        SimplePrimitiveId node = new SimplePrimitiveId(1, OsmPrimitiveType.NODE);
+        SimplePrimitiveId way = new SimplePrimitiveId(1, OsmPrimitiveType.WAY);
+        assertTrue(index.add(node));
+        assertTrue(index.add(way));
+        assertFalse(index.add(new SimplePrimitiveId(1, OsmPrimitiveType.NODE)));
+        assertEquals(2, index.size());
+        assertSame(node, index.get(1, OsmPrimitiveType.NODE));
+        assertSame(way, index.get(new SimplePrimitiveId(1, OsmPrimitiveType.WAY)));
+        assertNull(index.get(1, OsmPrimitiveType.RELATION));
+        assertTrue(index.contains(new SimplePrimitiveId(1, OsmPrimitiveType.WAY)));
+        assertTrue(index.remove(new SimplePrimitiveId(1, OsmPrimitiveType.NODE)));
+        assertFalse(index.remove(node));
+        assertNull(index.get(1, OsmPrimitiveType.NODE));
+        assertSame(way, index.get(1, OsmPrimitiveType.WAY));
+    }
+
+    /**
+     * Compares random additions and removals with a {@link HashMap}.
+     */
+    @Test
+    public void testRandom() {
+        Random random = new Random(42);
+        PrimitiveIdIndex<PrimitiveId> index = new PrimitiveIdIndex<>();
+        Map<PrimitiveId, PrimitiveId> expected = new HashMap<>();
+        OsmPrimitiveType[] types = {OsmPrimitiveType.NODE, OsmPrimitiveType.WAY, OsmPrimitiveType.RELATION};
+        for (int i = 0; i < 100_000; i++) {
+            SimplePrimitiveId id = new SimplePrimitiveId(random.nextInt(5_000) - 2_500, types[random.nextInt(3)]);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id) != null, index.remove(id));
+            } else {
+                assertEquals(expected.putIfAbsent(id, id) == null, index.add(id));
+            }
+            assertEquals(expected.size(), index.size());
+        }
+        for (PrimitiveId id : expected.keySet()) {
+            assertSame(expected.get(id), index.get(id));
+        }
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(index));
+        index.clear();
+        assertTrue(index.isEmpty());
+        assertNull(index.get(expected.keySet().iterator().next()));
+    }
+
+    /**
+     * Test that the set can be modified while being iterated, and that bulk additions are supported.
+     */
+    @Test
+    public void testSafeIterator() {
+        PrimitiveIdIndex<PrimitiveId> index = new PrimitiveIdIndex<>();
+        List<PrimitiveId> ids = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            ids.add(new SimplePrimitiveId(i, OsmPrimitiveType.NODE));
+        }
+        assertTrue(index.addAll(ids));
+        assertFalse(index.addAll(ids.subList(0, 10)));
+        int count = 0;
+        for (PrimitiveId id : index) {
+            index.remove(id);
+            index.add(new SimplePrimitiveId(-id.getUniqueId(), OsmPrimitiveType.NODE));
+            count++;
+        }
+        assertEquals(1000, count);
+        assertEquals(1000, index.size());
+        assertNull(index.get(1, OsmPrimitiveType.NODE));
+        assertEquals(new SimplePrimitiveId(-1, OsmPrimitiveType.NODE), index.get(-1, OsmPrimitiveType.NODE));
+        assertTrue(index.containsAll(Arrays.asList(new SimplePrimitiveId(-1000, OsmPrimitiveType.NODE))));
+    }
+
+    /**
+     * Test that the lookups concurrent with modifications always find the primitives which stay in the set.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        PrimitiveIdIndex<PrimitiveId> index = new PrimitiveIdIndex<>();
+        List<PrimitiveId> stable = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            stable.add(new SimplePrimitiveId(i, OsmPrimitiveType.NODE));
+        }
+        index.addAll(stable);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(42);
+            for (int i = 0; i < 200_000; i++) {
+                SimplePrimitiveId id = new SimplePrimitiveId(1000 + random.nextInt(5_000), types()[random.nextInt(3)]);
+                if (id.getUniqueId() > 1000 || id.getType() != OsmPrimitiveType.NODE) {
+                    if (!index.add(id)) {
+                        index.remove(id);
+                    }
+                }
+            }
+            done.set(true);
+        });
+        writer.start();
+        int missed = 0;
+        do {
+            for (PrimitiveId id : stable) {
+                if (index.get(id.getUniqueId(), id.getType()) != id) {
+                    missed++;
+                }
+            }
+        } while (!done.get());
+        writer.join();
+        assertEquals(0, missed);
+        assertEquals(1000, stable.stream().filter(index::contains).count());
+    }
+
+    private static OsmPrimitiveType[] types() {
+        return new OsmPrimitiveType[] {OsmPrimitiveType.NODE, OsmPrimitiveType.WAY, OsmPrimitiveType.RELATION};
+    }
+}
@@ -9,9 +9,11 @@ import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -22,6 +24,8 @@ import org.openstreetmap.josm.data.projection.Projections;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.io.OsmReader;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.tools.JosmRuntimeException;
+import org.openstreetmap.josm.tools.Logging;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -37,6 +41,8 @@ public class QuadBucketsTest {
     @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
     public JOSMTestRules test = new JOSMTestRules();
 
+    private static final BBox WORLD = new BBox(-180, -90, 180, 90);
+
     @SuppressWarnings("unchecked")
     private void removeAllTest(DataSet ds) throws ReflectiveOperationException {
         List<Node> allNodes = new ArrayList<>(ds.getNodes());
@@ -44,36 +50,35 @@ public class QuadBucketsTest {
         List<Relation> allRelations = new ArrayList<>(ds.getRelations());
 
         QuadBucketPrimitiveStore<Node, Way, Relation> s = (QuadBucketPrimitiveStore<Node, Way, Relation>) getPrivateField(ds, "store");
-        QuadBuckets<Node> nodes = (QuadBuckets<Node>) getPrivateField(s, "nodes");
-        QuadBuckets<Way> ways = (QuadBuckets<Way>) getPrivateField(s, "ways");
+        PackedSpatialIndex<Node> nodes = (PackedSpatialIndex<Node>) getPrivateField(s, "nodes");
+        PackedSpatialIndex<Way> ways = (PackedSpatialIndex<Way>) getPrivateField(s, "ways");
         Collection<Relation> relations = (Collection<Relation>) getPrivateField(s, "relations");
 
-        int expectedCount = allNodes.size();
-        for (OsmPrimitive o: allNodes) {
-            ds.removePrimitive(o);
-            checkIterator(nodes, --expectedCount);
+        Set<Node> expectedNodes = new HashSet<>(allNodes);
+        for (Node n: allNodes) {
+            ds.removePrimitive(n);
+            expectedNodes.remove(n);
+            checkContents(nodes, expectedNodes);
         }
-        expectedCount = allWays.size();
-        for (OsmPrimitive o: allWays) {
-            ds.removePrimitive(o);
-            checkIterator(ways, --expectedCount);
+        Set<Way> expectedWays = new HashSet<>(allWays);
+        for (Way w: allWays) {
+            ds.removePrimitive(w);
+            expectedWays.remove(w);
+            checkContents(ways, expectedWays);
         }
         for (OsmPrimitive o: allRelations) {
             ds.removePrimitive(o);
         }
-        Assert.assertTrue(nodes.isEmpty());
-        Assert.assertTrue(ways.isEmpty());
+        Assert.assertEquals(0, nodes.size());
+        Assert.assertEquals(0, ways.size());
         Assert.assertTrue(relations.isEmpty());
     }
 
-    private void checkIterator(Collection<? extends OsmPrimitive> col, int expectedCount) {
-        int count = 0;
-        Iterator<? extends OsmPrimitive> it = col.iterator();
-        while (it.hasNext()) {
-            count++;
-            it.next();
-        }
-        Assert.assertEquals(expectedCount, count);
+    private static <T extends OsmPrimitive> void checkContents(PackedSpatialIndex<T> index, Set<T> expected) {
+        Assert.assertEquals(expected.size(), index.size());
+        List<T> found = index.search(WORLD);
+        Assert.assertEquals(expected.size(), found.size());
+        Assert.assertEquals(expected, new HashSet<>(found));
     }
 
     /**
@@ -260,4 +265,42 @@ public class QuadBucketsTest {
         }
         Assert.assertEquals(0, qb.size());
     }
+
+    /**
+     * Test that a primitive cannot be added twice, before and after the index is built,
+     * and that a primitive which is not in a data set cannot be added.
+     * @throws ReflectiveOperationException if the store cannot be accessed
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAddTwice() throws ReflectiveOperationException {
+        DataSet ds = new DataSet();
+        QuadBucketPrimitiveStore<Node, Way, Relation> store = (QuadBucketPrimitiveStore<Node, Way, Relation>) getPrivateField(ds, "store");
+        Node n1 = new Node(1);
+        n1.setCoor(new LatLon(10, 20));
+        Node n2 = new Node(2);
+        Way w = new Way(3);
+        w.setNodes(Arrays.asList(n1));
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(w);
+        for (OsmPrimitive p : Arrays.asList(n1, n2, w, new Node(4), new Way(5))) {
+            try {
+                store.addPrimitive(p);
+                Assert.fail("added twice or outside of a data set: " + p);
+            } catch (JosmRuntimeException e) {
+                Logging.trace(e);
+            }
+        }
+        Assert.assertEquals(Arrays.asList(n1), store.searchNodes(WORLD));
+        Assert.assertEquals(Arrays.asList(w), store.searchWays(WORLD));
+        for (OsmPrimitive p : Arrays.asList(n1, n2, w)) {
+            try {
+                store.addPrimitive(p);
+                Assert.fail("added twice: " + p);
+            } catch (JosmRuntimeException e) {
+                Logging.trace(e);
+            }
+        }
+    }
 }
@@ -0,0 +1,92 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link ReferrerBuilder} class.
+ */
+public class ReferrerBuilderTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    /**
+     * Test that repeated nodes and members are registered once, after the existing referrers.
+     */
+    @Test
+    public void testBuild() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(LatLon.ZERO);
+        Node n2 = new Node(LatLon.NORTH_POLE);
+        Node n3 = new Node(LatLon.SOUTH_POLE);
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(n3);
+        Way existing = new Way();
+        existing.setNodes(Arrays.asList(n1, n2));
+        ds.addPrimitive(existing);
+
+        ReferrerBuilder builder = new ReferrerBuilder();
+        Way closed = new Way();
+        builder.setNodes(closed, Arrays.asList(n1, n2, n3, n1));
+        ds.addPrimitive(closed);
+        Relation r = new Relation();
+        ds.addPrimitive(r);
+        builder.setMembers(r, Arrays.asList(new RelationMember("outer", closed), new RelationMember("", n3),
+                new RelationMember("", closed)));
+        assertTrue(n3.getReferrers().isEmpty());
+
+        builder.build();
+        assertEquals(Arrays.asList(existing, closed), n1.getReferrers());
+        assertEquals(Arrays.asList(existing, closed), n2.getReferrers());
+        assertEquals(Arrays.asList(closed, r), n3.getReferrers());
+        assertEquals(Collections.singletonList(r), closed.getReferrers());
+
+        // the builder can be reused, and the referrers are still maintained as usual
+        builder.build();
+        assertEquals(Collections.singletonList(r), closed.getReferrers());
+        closed.removeNode(n3);
+        assertEquals(Collections.singletonList(r), n3.getReferrers());
+        r.removeMember(1);
+        assertTrue(n3.getReferrers().isEmpty());
+    }
+
+    /**
+     * Test that the referrers of a parsed data set are the same as those of a copy built one primitive at a time.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testParsedDataSet() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/restriction.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        DataSet copy = new DataSet(ds);
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            assertEquals(p.toString(), p.getReferrers().size(), copy.getPrimitiveById(p).getReferrers().size());
+            for (OsmPrimitive referrer : p.getReferrers()) {
+                assertTrue(copy.getPrimitiveById(p).getReferrers().contains(copy.getPrimitiveById(referrer)));
+            }
+        }
+    }
+}
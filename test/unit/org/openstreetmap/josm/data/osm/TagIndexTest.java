@@ -0,0 +1,183 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Match;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link TagIndex} class.
+ */
+public class TagIndexTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    /**
+     * Enables the tag index, disabled by default.
+     */
+    @Before
+    public void setUp() {
+        TagIndex.PREFERENCE_ENABLED.put(true);
+    }
+
+    /**
+     * Restores the default preference.
+     */
+    @After
+    public void tearDown() {
+        TagIndex.PREFERENCE_ENABLED.put(false);
+    }
+
+    private static final String[] EXPRESSIONS = {
+        "building=yes", "building=*", "type=multipolygon", "landuse:", "name:Park", "building?", "level<3",
+        "building=yes && name=*", "type=multipolygon | building=yes", "building=yes | foo", "-building=*",
+        "Building=yes", "building~ye", "*=yes", "nosuchkey=*",
+    };
+
+    private static DataSet loadDataSet() throws Exception {
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            return OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    /**
+     * Test that the index follows the changes of the data set.
+     */
+    @Test
+    public void testUpdate() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(LatLon.ZERO);
+        n1.put("amenity", "bench");
+        ds.addPrimitive(n1);
+        TagIndex index = ds.getTagIndex();
+        assertSame(index, ds.getTagIndex());
+        assertEquals(Collections.singletonList(n1), index.get("amenity", "bench"));
+
+        Node n2 = new Node(LatLon.NORTH_POLE);
+        n2.put("amenity", "bench");
+        n2.put("backrest", "yes");
+        ds.addPrimitive(n2);
+        assertEquals(new HashSet<>(Arrays.asList(n1, n2)), new HashSet<>(index.get("amenity")));
+        assertEquals(2, index.count("amenity", "bench"));
+        assertEquals(new HashSet<>(Arrays.asList("amenity", "backrest")), new HashSet<>(index.getKeys()));
+
+        n1.put("amenity", "waste_basket");
+        assertEquals(Collections.singletonList(n2), index.get("amenity", "bench"));
+        assertEquals(Collections.singletonList(n1), index.get("amenity", "waste_basket"));
+        assertEquals(2, index.count("amenity"));
+
+        n2.remove("backrest");
+        assertEquals(0, index.count("backrest"));
+        assertEquals(Collections.singletonList("amenity"), index.getKeys());
+
+        // deleted primitives stay in the data set, and in the index
+        n2.setDeleted(true);
+        assertEquals(1, index.count("amenity", "bench"));
+        assertEquals(Collections.singletonList("waste_basket"), index.getValues("amenity", p -> !p.isDeleted()));
+        assertEquals(Collections.singletonList("bench"), index.getValues("amenity", OsmPrimitive::isDeleted));
+        assertEquals(Collections.singletonList("amenity"), index.getKeys(p -> !p.isDeleted()));
+        assertTrue(index.getKeys(p -> p == n2 && !p.isDeleted()).isEmpty());
+        ds.removePrimitive(n2);
+        assertEquals(0, index.count("amenity", "bench"));
+        assertTrue(index.get("amenity", "bench").isEmpty());
+
+        ds.clear();
+        assertNotSame(index, ds.getTagIndex());
+        assertEquals(0, ds.getTagIndex().count("amenity"));
+    }
+
+    /**
+     * Test that no index is created when disabled by preference.
+     */
+    @Test
+    public void testDisabled() {
+        DataSet ds = new DataSet();
+        TagIndex.PREFERENCE_ENABLED.put(false);
+        assertNull(ds.getTagIndex());
+        TagIndex.PREFERENCE_ENABLED.put(true);
+        assertNotNull(ds.getTagIndex());
+    }
+
+    /**
+     * Test that the candidates found in the index include all primitives matching search expressions.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testCandidates() throws Exception {
+        DataSet ds = loadDataSet();
+        // modify the data set after the creation of the index
+        TagIndex index = ds.getTagIndex();
+        Way way = ds.getWays().iterator().next();
+        way.put("building", "yes");
+        way.put("level", "2");
+        ds.getRelations().iterator().next().remove("type");
+
+        int indexed = 0;
+        for (String expression : EXPRESSIONS) {
+            Match match = SearchCompiler.compile(expression);
+            Set<OsmPrimitive> expected = ds.allPrimitives().stream().filter(match).collect(Collectors.toSet());
+            Collection<OsmPrimitive> candidates = match.getCandidates(index);
+            if (candidates != null) {
+                indexed++;
+                assertTrue(expression, candidates.containsAll(expected));
+                assertEquals(expression, expected, candidates.stream().filter(match).collect(Collectors.toSet()));
+            }
+        }
+        assertEquals(11, indexed);
+    }
+
+    /**
+     * Test that filters give the same results with and without the index.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testFilters() throws Exception {
+        for (String expression : EXPRESSIONS) {
+            for (boolean inverted : new boolean[] {false, true}) {
+                Filter filter = new Filter();
+                filter.text = expression;
+                filter.inverted = inverted;
+                FilterMatcher filterMatcher = new FilterMatcher();
+                filterMatcher.update(Collections.singleton(filter));
+
+                DataSet ds = loadDataSet();
+                FilterWorker.executeFilters(ds.allPrimitives(), filterMatcher);
+                Set<OsmPrimitive> expected = ds.allPrimitives().stream().filter(OsmPrimitive::isDisabled).collect(Collectors.toSet());
+                filterMatcher.setTagIndex(ds.getTagIndex());
+                FilterWorker.executeFilters(ds.allPrimitives(), filterMatcher);
+                assertEquals(expression, expected,
+                        ds.allPrimitives().stream().filter(OsmPrimitive::isDisabled).collect(Collectors.toSet()));
+            }
+        }
+    }
+}
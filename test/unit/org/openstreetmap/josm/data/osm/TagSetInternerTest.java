@@ -0,0 +1,130 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link TagSetInterner} class.
+ */
+public class TagSetInternerTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    /**
+     * Test that primitives with the same tags share their tag array, and that it is copied on write.
+     */
+    @Test
+    @SuppressFBWarnings(value = "DM_STRING_CTOR", justification = "test that equals is used and not ==")
+    public void testSharedTags() {
+        Node n1 = new Node();
+        Node n2 = new Node();
+        Way w = new Way();
+        n1.put("building", "yes");
+        n1.put("name", "foo");
+        n2.put(new String("building"), new String("yes"));
+        n2.put("name", "foo");
+        w.setKeys(n1.getKeys());
+        assertSame(n1.keys, n2.keys);
+        assertSame(n1.keys, w.keys);
+        assertEquals("yes", n2.get("building"));
+        assertEquals("yes", n2.get(new String("building")));
+
+        n2.put("name", "bar");
+        assertNotSame(n1.keys, n2.keys);
+        assertEquals("foo", n1.get("name"));
+        assertEquals("foo", w.get("name"));
+        assertEquals("bar", n2.get("name"));
+
+        n2.put("name", "foo");
+        assertSame(n1.keys, n2.keys);
+        n2.remove("name");
+        assertEquals(1, n2.getNumKeys());
+        assertEquals(2, n1.getNumKeys());
+        n2.removeAll();
+        assertNull(n2.keys);
+        assertEquals("yes", n1.get("building"));
+    }
+
+    /**
+     * Test that the order of the tags is kept.
+     */
+    @Test
+    public void testOrder() {
+        String[] a = {"a", "1", "b", "2"};
+        String[] b = {"b", "2", "a", "1"};
+        TagSetInterner interner = new TagSetInterner();
+        assertSame(a, interner.intern(a));
+        assertSame(b, interner.intern(b));
+        assertSame(a, interner.intern(new String[] {"a", "1", "b", "2"}));
+        assertEquals(2, interner.size());
+    }
+
+    /**
+     * Test that the large tag sets are not interned.
+     */
+    @Test
+    public void testLargeTagSets() {
+        String[] a = {"a", "1", "b", "2", "c", "3"};
+        TagSetInterner interner = new TagSetInterner();
+        assertSame(a, interner.intern(a));
+        String[] b = a.clone();
+        assertSame(b, interner.intern(b));
+        assertEquals(0, interner.size());
+    }
+
+    /**
+     * Test that threads interning the same tag sets at the same time get the same arrays.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        TagSetInterner interner = new TagSetInterner();
+        int threadCount = 4;
+        int setCount = 10_000;
+        String[][][] results = new String[threadCount][setCount][];
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final String[][] result = results[t];
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < setCount; i++) {
+                        result[i] = interner.intern(new String[] {"ref", Integer.toString(i), "building", "yes"});
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < setCount; i++) {
+            assertEquals(Integer.toString(i), results[0][i][1]);
+            for (int t = 1; t < threadCount; t++) {
+                assertSame(results[0][i], results[t][i]);
+            }
+        }
+        assertEquals(setCount, interner.size());
+    }
+}
@@ -0,0 +1,137 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link WaySegmentIndex}.
+ */
+public class WaySegmentIndexTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection();
+
+    private static Way randomWalk(Random random, int size) {
+        List<Node> nodes = new ArrayList<>();
+        double lat = 50;
+        double lon = 10;
+        for (int i = 0; i < size; i++) {
+            nodes.add(new Node(new LatLon(lat, lon)));
+            lat += (random.nextDouble() - 0.5) * 0.01;
+            lon += (random.nextDouble() - 0.3) * 0.01;
+        }
+        Way way = new Way();
+        way.setNodes(nodes);
+        return way;
+    }
+
+    private static int[] bruteForce(Way way, BBox bbox) {
+        return IntStream.range(0, way.getNodesCount() - 1).filter(i -> {
+            BBox segment = new BBox(way.getNode(i));
+            segment.add(way.getNode(i + 1));
+            return segment.intersects(bbox);
+        }).toArray();
+    }
+
+    /**
+     * Test that the segments found are those whose bounding box intersects the searched one, in the order of the way.
+     */
+    @Test
+    public void testSearch() {
+        Random random = new Random(42);
+        for (int size : new int[] {0, 1, 2, 3, 16, 17, 256, 257, 5000}) {
+            Way way = randomWalk(random, size);
+            WaySegmentIndex index = way.getSegmentIndex();
+            assertEquals(Math.max(0, size - 1), index.size());
+            BBox all = way.getBBox();
+            for (int i = 0; i < 100 && size > 0; i++) {
+                Node n = way.getNode(random.nextInt(size));
+                double r = random.nextDouble() * 0.02;
+                BBox bbox = new BBox(n.lon(), n.lat(), r);
+                assertArrayEquals(bruteForce(way, bbox), index.search(bbox));
+            }
+            if (size > 0) {
+                assertArrayEquals(IntStream.range(0, size - 1).toArray(), index.search(all));
+            }
+            assertEquals(0, index.search(new BBox(0, 0, 1, 1)).length);
+        }
+    }
+
+    /**
+     * Test that the segments having a node without coordinates are never found.
+     */
+    @Test
+    public void testIncompleteNodes() {
+        Way way = randomWalk(new Random(42), 50);
+        List<Node> nodes = way.getNodes();
+        nodes.set(20, new Node(20));
+        way.setNodes(nodes);
+        int[] found = way.getSegmentIndex().search(new BBox(-180, -90, 180, 90));
+        assertEquals(47, found.length);
+        assertTrue(Arrays.binarySearch(found, 19) < 0);
+        assertTrue(Arrays.binarySearch(found, 20) < 0);
+    }
+
+    /**
+     * Test that the index cached with a way is dropped when its nodes change or move.
+     */
+    @Test
+    public void testCache() {
+        DataSet ds = new DataSet();
+        Way way = randomWalk(new Random(42), 100);
+        way.getNodes().forEach(ds::addPrimitive);
+        ds.addPrimitive(way);
+        WaySegmentIndex index = way.getSegmentIndex();
+        assertSame(index, way.getSegmentIndex());
+
+        Node node = way.getNode(50);
+        node.setCoor(new LatLon(node.lat() + 1, node.lon()));
+        assertNotSame(index, way.getSegmentIndex());
+        assertArrayEquals(new int[] {49, 50}, way.getSegmentIndex().search(new BBox(node)));
+
+        index = way.getSegmentIndex();
+        way.removeNode(node);
+        assertNotSame(index, way.getSegmentIndex());
+        assertEquals(98, way.getSegmentIndex().size());
+        assertEquals(0, way.getSegmentIndex().search(new BBox(node)).length);
+    }
+
+    /**
+     * Test that the index is dropped when the nodes of a way are replaced, and that ways without segments are skipped.
+     */
+    @Test
+    public void testSetNodes() {
+        DataSet ds = new DataSet();
+        Way way = randomWalk(new Random(42), 3);
+        way.getNodes().forEach(ds::addPrimitive);
+        ds.addPrimitive(way);
+        BBox bbox = way.getBBox();
+        assertEquals(2, ds.searchWaySegments(bbox, w -> true).size());
+
+        way.setNodes(Collections.emptyList());
+        assertEquals(0, way.getSegmentIndex().size());
+        assertEquals(0, ds.searchWaySegments(bbox, w -> true).size());
+    }
+}
@@ -0,0 +1,174 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.command.CommandTest.CommandTestDataWithRelation;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link DatasetDelta} class.
+ */
+public class DatasetDeltaTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    /**
+     * Test that the events of an update are coalesced per primitive.
+     */
+    @Test
+    public void testCoalescing() {
+        CommandTestDataWithRelation data = new CommandTestDataWithRelation();
+        DataSet ds = data.layer.getDataSet();
+        List<DatasetDelta> deltas = new ArrayList<>();
+        ds.addDatasetDeltaListener(deltas::add);
+
+        Node added = new Node(LatLon.ZERO);
+        ds.beginUpdate();
+        try {
+            ds.addPrimitive(added);
+            added.put("name", "new");
+            Node temporary = new Node(LatLon.ZERO);
+            ds.addPrimitive(temporary);
+            ds.removePrimitive(temporary);
+            data.existingWay.put("name", "a");
+            data.existingWay.put("name", "b");
+            data.existingNode.setCoor(LatLon.NORTH_POLE);
+            data.existingNode.setCoor(LatLon.SOUTH_POLE);
+            data.existingRelation.addMember(new RelationMember("", added));
+            data.existingNode2.setDeleted(true);
+            data.existingNode2.put("name", "deleted");
+            assertTrue(deltas.isEmpty());
+        } finally {
+            ds.endUpdate();
+        }
+
+        assertEquals(1, deltas.size());
+        DatasetDelta delta = deltas.get(0);
+        assertEquals(Collections.singleton(added), delta.getAdded());
+        assertEquals(Collections.singleton(data.existingNode2), delta.getRemoved());
+        assertEquals(Collections.singleton(data.existingWay), delta.getTagsChanged());
+        assertEquals(Collections.singleton(data.existingNode), delta.getMovedNodes());
+        assertEquals(Collections.singleton(data.existingRelation), delta.getRelationMembersChanged());
+        assertTrue(delta.getWayNodesChanged().isEmpty());
+        assertFalse(delta.isDataSetChanged());
+        assertFalse(delta.isEmpty());
+    }
+
+    /**
+     * Test that the delta of a big update is complete.
+     */
+    @Test
+    public void testBigUpdate() {
+        DataSet ds = new DataSet();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Node n = new Node(LatLon.ZERO);
+            ds.addPrimitive(n);
+            nodes.add(n);
+        }
+        List<DatasetDelta> deltas = new ArrayList<>();
+        List<AbstractDatasetChangedEvent> events = new ArrayList<>();
+        ds.addDatasetDeltaListener(deltas::add);
+        ds.addDataSetListener(new DataSetListenerAdapter(events::add));
+        ds.beginUpdate();
+        try {
+            nodes.forEach(n -> n.put("amenity", "bench"));
+        } finally {
+            ds.endUpdate();
+        }
+        assertEquals(1, events.size());
+        assertNull(((DataChangedEvent) events.get(0)).getEvents());
+        assertEquals(1, deltas.size());
+        assertEquals(new HashSet<>(nodes), deltas.get(0).getTagsChanged());
+    }
+
+    /**
+     * Test the merge of consecutive deltas.
+     */
+    @Test
+    public void testMerge() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(LatLon.ZERO);
+        Node n2 = new Node(LatLon.ZERO);
+        DatasetDelta delta1 = new DatasetDelta(ds);
+        delta1.addEvent(new PrimitivesAddedEvent(ds, Collections.singleton(n1), false));
+        delta1.addEvent(new PrimitivesRemovedEvent(ds, Collections.singleton(n2), false));
+        DatasetDelta delta2 = new DatasetDelta(ds);
+        delta2.addEvent(new PrimitivesRemovedEvent(ds, Collections.singleton(n1), false));
+        delta2.addEvent(new PrimitivesAddedEvent(ds, Collections.singleton(n2), false));
+        delta2.addEvent(new TagsChangedEvent(ds, n2, Collections.emptyMap()));
+        delta2.addEvent(new FilterChangedEvent(ds));
+
+        DatasetDelta merged = new DatasetDelta(ds);
+        merged.merge(delta1);
+        merged.merge(delta2);
+        // n1 was added then removed, n2 was removed then added again
+        assertEquals(Collections.singleton(n2), merged.getAdded());
+        assertEquals(Collections.singleton(n2), merged.getRemoved());
+        assertTrue(merged.getTagsChanged().isEmpty());
+        assertTrue(merged.isFiltersChanged());
+
+        merged.addEvent(new DataChangedEvent(ds, new ArrayList<>(Arrays.asList(
+                new PrimitivesRemovedEvent(ds, Collections.singleton(n2), false)))));
+        assertTrue(merged.getAdded().isEmpty());
+        assertEquals(Collections.singleton(n2), merged.getRemoved());
+        merged.addEvent(new DataChangedEvent(ds));
+        assertTrue(merged.isDataSetChanged());
+    }
+
+    /**
+     * Test that the deltas of the active data set are propagated.
+     */
+    @Test
+    public void testEventManager() {
+        List<DatasetDelta> deltas = new ArrayList<>();
+        // the unique instance is no longer registered to the layer manager once the test framework reset it
+        DatasetEventManager manager = new DatasetEventManager();
+        manager.addDatasetDeltaListener(deltas::add, FireMode.IMMEDIATELY);
+        try {
+            CommandTestDataWithRelation data1 = new CommandTestDataWithRelation();
+            CommandTestDataWithRelation data2 = new CommandTestDataWithRelation();
+            MainApplication.getLayerManager().setActiveLayer(data1.layer);
+            deltas.clear();
+
+            data1.existingNode.put("name", "foo");
+            assertEquals(1, deltas.size());
+            assertEquals(Collections.singleton(data1.existingNode), deltas.get(0).getTagsChanged());
+
+            data2.existingNode.put("name", "foo");
+            assertEquals(1, deltas.size());
+
+            MainApplication.getLayerManager().setActiveLayer(data2.layer);
+            assertEquals(2, deltas.size());
+            assertTrue(deltas.get(1).isDataSetChanged());
+            assertEquals(data2.layer.getDataSet(), deltas.get(1).getDataset());
+        } finally {
+            MainApplication.getLayerManager().removeActiveLayerChangeListener(manager);
+        }
+    }
+}
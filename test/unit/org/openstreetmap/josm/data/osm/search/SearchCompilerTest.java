@@ -706,6 +706,29 @@ public class SearchCompilerTest {
         }
     }
 
+    /**
+     * Unit test of method {@link Match#isThreadSafe}.
+     * @throws SearchParseError if an error has been encountered while compiling
+     */
+    @Test
+    public void testThreadSafe() throws SearchParseError {
+        for (String search : new String[] {"foo=bar", "foo~ba.*", "-foo | bar=* | type:way", "name:\"x\" xor id:1-10",
+                "new or modified or deleted", "nodes:2- ways:1 tags:3 areasize:10- waylength:-100",
+                "child (foo=bar) parent (role:inner)", "user:foo timestamp:2010/2011 nth:1 closed untagged",
+                "selected incomplete allindownloadedarea"}) {
+            assertTrue(search, SearchCompiler.compile(search).isThreadSafe());
+        }
+
+        TaggingPreset testPreset = new TaggingPreset();
+        testPreset.name = "Test Preset Name";
+        TaggingPresets.readFromPreferences();
+        TaggingPresets.addTaggingPresets(Collections.singletonList(testPreset));
+        for (String search : new String[] {"preset:\"Test Preset Name\"", "foo=bar | preset:\"Test Preset Name\"",
+                "-preset:\"Test Preset Name\"", "child preset:\"Test Preset Name\""}) {
+            assertFalse(search, SearchCompiler.compile(search).isThreadSafe());
+        }
+    }
+
     /**
      * Unit test of methods {@link Match#equals} and {@link Match#hashCode}, including all subclasses.
      */
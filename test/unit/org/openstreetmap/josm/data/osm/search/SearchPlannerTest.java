@@ -0,0 +1,133 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.TagIndex;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.And;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler.Match;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link SearchPlanner} class.
+ */
+public class SearchPlannerTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    /**
+     * Enables the tag index, disabled by default.
+     */
+    @Before
+    public void setUp() {
+        TagIndex.PREFERENCE_ENABLED.put(true);
+    }
+
+    /**
+     * Restores the default preference.
+     */
+    @After
+    public void tearDown() {
+        TagIndex.PREFERENCE_ENABLED.put(false);
+    }
+
+    private static final String[] EXPRESSIONS = {
+        "building=yes type:way", "areasize:0-100000000 building=yes", "type:node indownloadedarea", "indownloadedarea",
+        "allindownloadedarea", "type:way closed building=*", "building=yes | type:relation", "-building=* type:way nodes:4",
+        "parent(type:way building=*) type:node", "child(type:relation) type:way closed", "type:node type:way",
+        "(building=yes | landuse=*) (areasize:0-100000000 | closed)", "building=yes ^ closed", "-(type:way indownloadedarea)",
+        "type:relation indownloadedarea | name=* type:node", "indownloadedarea building=* -closed", "foo nosuchkey=*",
+    };
+
+    private static DataSet loadDataSet() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        ds.addDataSource(new DataSource(new Bounds(50, -120, 70, -90), "test"));
+        ds.addDataSource(new DataSource(new Bounds(30, 0, 60, 60), "test"));
+        return ds;
+    }
+
+    /**
+     * Test that the optimized expressions and their candidates give the same results as the compiled expressions.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testResults() throws Exception {
+        DataSet ds = loadDataSet();
+        int indexed = 0;
+        for (String expression : EXPRESSIONS) {
+            Match match = SearchCompiler.compile(expression);
+            Set<OsmPrimitive> expected = ds.allPrimitives().stream().filter(match).collect(Collectors.toSet());
+            Match optimized = SearchPlanner.optimize(match, ds);
+            assertEquals(expression, expected, ds.allPrimitives().stream().filter(optimized).collect(Collectors.toSet()));
+            Collection<OsmPrimitive> candidates = SearchPlanner.getCandidates(match, ds);
+            if (candidates != null) {
+                indexed++;
+                assertTrue(expression, candidates.containsAll(expected));
+                assertTrue(expression, candidates.size() < ds.allPrimitives().size());
+            }
+        }
+        assertTrue(indexed > 10);
+    }
+
+    /**
+     * Test that the cheapest and most selective operands are tested first.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testOrder() throws Exception {
+        DataSet ds = loadDataSet();
+        Match optimized = SearchPlanner.optimize(SearchCompiler.compile("areasize:0-1000 type:node building=yes"), ds);
+        assertEquals("building=yes && type=node && areasize=0-1000", optimized.toString());
+        assertTrue(optimized instanceof And);
+
+        optimized = SearchPlanner.optimize(SearchCompiler.compile("nosuchkey=* | type:node | closed"), ds);
+        assertEquals("type=node || closed || nosuchkey=*", optimized.toString());
+
+        optimized = SearchPlanner.optimize(SearchCompiler.compile("-(closed name=* type:way)"), ds);
+        assertEquals("!type=way && name=* && closed", optimized.toString());
+    }
+
+    /**
+     * Test that the type restrictions are pushed down to the spatial searches.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testCandidates() throws Exception {
+        DataSet ds = loadDataSet();
+        Collection<OsmPrimitive> candidates = SearchPlanner.getCandidates(SearchCompiler.compile("type:way indownloadedarea"), ds);
+        assertNotNull(candidates);
+        assertTrue(candidates.stream().allMatch(p -> p.getType() == OsmPrimitiveType.WAY));
+        assertEquals(0, SearchPlanner.getCandidates(SearchCompiler.compile("type:node type:way"), ds).size());
+        assertNull(SearchPlanner.getCandidates(SearchCompiler.compile("allindownloadedarea"), ds));
+    }
+}
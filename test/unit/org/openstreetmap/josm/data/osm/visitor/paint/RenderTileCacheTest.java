@@ -0,0 +1,153 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.NavigatableComponent.ZoomChangeListener;
+import org.openstreetmap.josm.gui.mappaint.ElemStyles;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link RenderTileCache} class.
+ */
+public class RenderTileCacheTest {
+
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().mapStyles().projection();
+
+    private static final int VIEW_WIDTH = 600;
+    private static final int VIEW_HEIGHT = 400;
+
+    private static BufferedImage render(DataSet ds, ElemStyles styles, EastNorth center, double scale, RenderTileCache cache) {
+        NavigatableComponent nc = new NavigatableComponent() {
+            {
+                setBounds(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+                updateLocationState();
+            }
+
+            @Override
+            protected boolean isVisibleOnScreen() {
+                return true;
+            }
+
+            @Override
+            public Point getLocationOnScreen() {
+                return new Point(0, 0);
+            }
+        };
+        nc.zoomTo(center, scale);
+        BufferedImage image = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+        StyledMapRenderer smr = new StyledMapRenderer(g, nc, false);
+        smr.setStyles(styles);
+        smr.setRenderTileCache(cache);
+        // painting the tiles must not change the zoom of any view
+        AtomicInteger zoomChanges = new AtomicInteger();
+        ZoomChangeListener listener = zoomChanges::incrementAndGet;
+        NavigatableComponent.addZoomChangeListener(listener);
+        try {
+            smr.render(ds, false, nc.getRealBounds());
+        } finally {
+            NavigatableComponent.removeZoomChangeListener(listener);
+        }
+        g.dispose();
+        assertEquals(0, zoomChanges.get());
+        return image;
+    }
+
+    private static void assertSimilar(String message, BufferedImage expected, BufferedImage actual) {
+        int differences = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    if (Math.abs(((e >> shift) & 0xff) - ((a >> shift) & 0xff)) > 8) {
+                        differences++;
+                        break;
+                    }
+                }
+            }
+        }
+        // antialiased pixels may differ slightly, as the tiles are composited on the background,
+        // and the tiles also show the icons of the nodes just outside of the view
+        assertTrue(message + ": " + differences, differences <= expected.getWidth() * expected.getHeight() / 1_000);
+    }
+
+    /**
+     * Test that the cached tiles are reused when panning, and painted again when the data changes.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testRenderTileCache() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        ElemStyles styles = MapPaintStyles.getStyles();
+        RenderTileCache cache = new RenderTileCache();
+        ds.addDataSetListener(cache);
+
+        ProjectionBounds pb = new ProjectionBounds();
+        for (Node n : ds.getNodes()) {
+            pb.extend(n.getEastNorth());
+        }
+        EastNorth center = pb.getCenter();
+        double scale = Math.max(pb.maxEast - pb.minEast, pb.maxNorth - pb.minNorth) / VIEW_WIDTH;
+
+        assertSimilar("initial", render(ds, styles, center, scale, null), render(ds, styles, center, scale, cache));
+        long painted = cache.getPaintedTiles();
+        assertTrue(cache.toString(), painted > 0);
+        assertEquals(0, cache.getReusedTiles());
+
+        // repaint
+        assertSimilar("repaint", render(ds, styles, center, scale, null), render(ds, styles, center, scale, cache));
+        assertEquals(cache.toString(), painted, cache.getPaintedTiles());
+        assertEquals(cache.toString(), painted, cache.getReusedTiles());
+
+        // pan by 100 pixels
+        EastNorth panned = center.add(100 * scale, 50 * scale);
+        assertSimilar("pan", render(ds, styles, panned, scale, null), render(ds, styles, panned, scale, cache));
+        assertTrue(cache.toString(), cache.getReusedTiles() > painted);
+
+        // change the data
+        Way way = ds.getWays().stream().filter(w -> w.hasKey("building") || w.hasKey("landuse")).findFirst()
+                .orElseGet(() -> ds.getWays().iterator().next());
+        Node node = way.firstNode();
+        node.setEastNorth(node.getEastNorth().add(20 * scale, 20 * scale));
+        way.put("name", "changed");
+        long reused = cache.getReusedTiles();
+        assertSimilar("edit", render(ds, styles, panned, scale, null), render(ds, styles, panned, scale, cache));
+        assertTrue(cache.toString(), cache.getReusedTiles() > reused);
+    }
+}
@@ -4,9 +4,26 @@ package org.openstreetmap.josm.data.osm.visitor.paint;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer.StyleRecord;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.gui.mappaint.RenderingHelper;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import nl.jqno.equalsverifier.EqualsVerifier;
 import nl.jqno.equalsverifier.Warning;
 
@@ -17,6 +34,13 @@ import nl.jqno.equalsverifier.Warning;
  */
 public class StyledMapRendererTest {
 
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
     /**
      * Tests the floatToFixed function.
      */
@@ -88,4 +112,57 @@ public class StyledMapRendererTest {
             .suppress(Warning.NONFINAL_FIELDS)
             .verify();
     }
+
+    /**
+     * Test that tiled rendering gives the same image as rendering the whole view at once.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testTiledRendering() throws Exception {
+        StyledMapRenderer.PREFERENCE_TILE_SIZE.put(100);
+        try {
+            for (String file : new String[] {"multipolygon.osm", "restriction.osm"}) {
+                DataSet ds;
+                try (InputStream in = new FileInputStream("data_nodist/" + file)) {
+                    ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+                }
+                BBox box = new BBox();
+                for (Node n : ds.getNodes()) {
+                    box.add(n.getCoor());
+                }
+                Bounds bounds = new Bounds(box.getBottomRight().lat(), box.getTopLeft().lon(),
+                        box.getTopLeft().lat(), box.getBottomRight().lon());
+                ProjectionBounds pb = new ProjectionBounds();
+                pb.extend(ProjectionRegistry.getProjection().latlon2eastNorth(bounds.getMin()));
+                pb.extend(ProjectionRegistry.getProjection().latlon2eastNorth(bounds.getMax()));
+                RenderingHelper.StyleData sd = new RenderingHelper.StyleData();
+                sd.styleUrl = "resource://styles/standard/elemstyles.mapcss";
+                RenderingHelper rh = new RenderingHelper(ds, bounds, (pb.maxEast - pb.minEast) / 800, Collections.singleton(sd));
+
+                StyledMapRenderer.PREFERENCE_TILED_RENDERING.put(false);
+                BufferedImage expected = rh.render();
+                StyledMapRenderer.PREFERENCE_TILED_RENDERING.put(true);
+                BufferedImage actual = rh.render();
+
+                int differences = 0;
+                for (int y = 0; y < expected.getHeight(); y++) {
+                    for (int x = 0; x < expected.getWidth(); x++) {
+                        int e = expected.getRGB(x, y);
+                        int a = actual.getRGB(x, y);
+                        for (int shift = 0; shift < 32; shift += 8) {
+                            if (Math.abs(((e >> shift) & 0xff) - ((a >> shift) & 0xff)) > 8) {
+                                differences++;
+                                break;
+                            }
+                        }
+                    }
+                }
+                // antialiased pixels may differ slightly, as the tiles are composited on the background
+                assertTrue(file + ": " + differences, differences <= expected.getWidth() * expected.getHeight() / 10_000);
+            }
+        } finally {
+            StyledMapRenderer.PREFERENCE_TILED_RENDERING.put(StyledMapRenderer.PREFERENCE_TILED_RENDERING.getDefaultValue());
+            StyledMapRenderer.PREFERENCE_TILE_SIZE.put(StyledMapRenderer.PREFERENCE_TILE_SIZE.getDefaultValue());
+        }
+    }
 }
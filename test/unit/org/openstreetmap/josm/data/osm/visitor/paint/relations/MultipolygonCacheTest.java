@@ -0,0 +1,179 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint.relations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link MultipolygonCache} class.
+ */
+public class MultipolygonCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    private static List<Relation> getMultipolygons(DataSet ds) {
+        return ds.getRelations().stream().filter(Relation::isMultipolygon).collect(Collectors.toList());
+    }
+
+    private static DataSet loadData() throws Exception {
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            return OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    /**
+     * Test the hit and miss counts and the estimated size of the cache.
+     * @throws Exception if the data cannot be loaded
+     */
+    @Test
+    public void testMetrics() throws Exception {
+        MultipolygonCache cache = MultipolygonCache.getInstance();
+        DataSet ds = loadData();
+        Relation r = getMultipolygons(ds).get(0);
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        long size = cache.getEstimatedSize();
+
+        Multipolygon mp = cache.get(r);
+        assertEquals(misses + 1, cache.getMisses());
+        assertTrue(cache.getEstimatedSize() > size);
+        assertSame(mp, cache.get(r));
+        assertEquals(hits + 1, cache.getHits());
+
+        cache.clear(ds);
+        assertEquals(size, cache.getEstimatedSize());
+    }
+
+    /**
+     * Test that the least recently used multipolygons are evicted when the cache is full.
+     * @throws Exception if the data cannot be loaded
+     */
+    @Test
+    public void testEviction() throws Exception {
+        MultipolygonCache cache = MultipolygonCache.getInstance();
+        DataSet ds = loadData();
+        List<Relation> relations = getMultipolygons(ds);
+        // the multipolygons cached by other tests would be evicted as well
+        cache.clear();
+        MultipolygonCache.MAX_SIZE.put(0);
+        long evictions = cache.getEvictions();
+        try {
+            for (Relation r : relations) {
+                assertNotNull(cache.get(r));
+            }
+            assertEquals(evictions + relations.size(), cache.getEvictions());
+            assertEquals(0, cache.getEstimatedSize());
+        } finally {
+            MultipolygonCache.MAX_SIZE.remove();
+            cache.clear(ds);
+        }
+    }
+
+    /**
+     * Test that a multipolygon requested concurrently by several painting threads is built only once.
+     * @throws Exception if the data cannot be loaded
+     */
+    @Test
+    public void testConcurrentGet() throws Exception {
+        MultipolygonCache cache = MultipolygonCache.getInstance();
+        DataSet ds = loadData();
+        List<Relation> relations = getMultipolygons(ds);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            long misses = cache.getMisses();
+            List<Future<List<Multipolygon>>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> relations.stream().map(cache::get).collect(Collectors.toList())));
+            }
+            List<Multipolygon> first = futures.get(0).get();
+            for (Future<List<Multipolygon>> future : futures) {
+                List<Multipolygon> multipolygons = future.get();
+                for (int i = 0; i < relations.size(); i++) {
+                    assertSame(first.get(i), multipolygons.get(i));
+                }
+            }
+            assertEquals(misses + relations.size(), cache.getMisses());
+        } finally {
+            executor.shutdown();
+            cache.clear(ds);
+        }
+    }
+
+    /**
+     * Test that the multipolygons of a data set are assembled in background.
+     * @throws Exception if the data cannot be loaded
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+        MultipolygonCache cache = MultipolygonCache.getInstance();
+        DataSet ds = loadData();
+        List<Relation> relations = getMultipolygons(ds);
+        assertFalse(relations.isEmpty());
+        try {
+            ForkJoinTask<?> task = cache.prefetch(ds);
+            assertNotNull(task);
+            task.join();
+            long misses = cache.getMisses();
+            long hits = cache.getHits();
+            for (Relation r : relations) {
+                assertNotNull(cache.get(r));
+            }
+            assertEquals(misses, cache.getMisses());
+            assertEquals(hits + relations.size(), cache.getHits());
+        } finally {
+            cache.clear(ds);
+        }
+    }
+
+    /**
+     * Test that a data set cleared while its multipolygons are assembled in background is not cached again.
+     * @throws Exception if the data cannot be loaded
+     */
+    @Test
+    public void testPrefetchAfterClear() throws Exception {
+        MultipolygonCache cache = MultipolygonCache.getInstance();
+        DataSet ds = loadData();
+        List<Relation> relations = getMultipolygons(ds);
+        long size = cache.getEstimatedSize();
+        try {
+            ForkJoinTask<?> task = cache.prefetch(ds);
+            assertNotNull(task);
+            cache.clear(ds);
+            task.join();
+            assertEquals(size, cache.getEstimatedSize());
+            long misses = cache.getMisses();
+            assertNotNull(cache.get(relations.get(0)));
+            assertEquals(misses + 1, cache.getMisses());
+        } finally {
+            cache.clear(ds);
+        }
+    }
+}
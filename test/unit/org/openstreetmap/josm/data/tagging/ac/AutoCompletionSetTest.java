@@ -0,0 +1,72 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.tagging.ac;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link AutoCompletionSet}.
+ */
+public class AutoCompletionSetTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static List<String> values(Collection<AutoCompletionItem> items) {
+        return items.stream().map(AutoCompletionItem::getValue).collect(Collectors.toList());
+    }
+
+    /**
+     * Test that the priorities of the items of a same value are merged.
+     */
+    @Test
+    public void testAdd() {
+        AutoCompletionSet set = new AutoCompletionSet();
+        assertTrue(set.addAll(Arrays.asList("residential", "primary"), AutoCompletionPriority.IS_IN_DATASET));
+        assertTrue(set.addAll(Arrays.asList("service", "primary"), AutoCompletionPriority.IS_IN_STANDARD));
+        assertFalse(set.addAll(Arrays.asList("service"), AutoCompletionPriority.IS_IN_STANDARD));
+        assertEquals(Arrays.asList("primary", "residential", "service"), values(set));
+        assertEquals(AutoCompletionPriority.IS_IN_STANDARD_AND_IN_DATASET, set.first().getPriority());
+
+        AutoCompletionSet copy = new AutoCompletionSet();
+        copy.addAll(set);
+        assertTrue(copy.contains("primary"));
+        assertTrue(copy.remove("primary"));
+        assertFalse(copy.contains("primary"));
+        assertEquals(Arrays.asList("residential", "service"), values(copy));
+    }
+
+    /**
+     * Test the lookup of the items starting with a prefix.
+     */
+    @Test
+    public void testGetItemsStartingWith() {
+        AutoCompletionSet set = new AutoCompletionSet();
+        set.addAll(Arrays.asList("primary", "primary_link", "path", "residential", "pr"), AutoCompletionPriority.IS_IN_DATASET);
+        set.addUserInput(Arrays.asList("proposed"));
+        set.add(new AutoCompletionItem("primary_link", AutoCompletionPriority.IS_IN_STANDARD));
+        assertEquals(Arrays.asList("proposed", "primary_link", "pr", "primary"), values(set.getItemsStartingWith("pr")));
+        assertEquals(Arrays.asList("primary_link", "primary"), values(set.getItemsStartingWith("prim")));
+        assertEquals(values(new ArrayList<>(set)), values(set.getItemsStartingWith("")));
+        assertEquals(Collections.emptyList(), values(set.getItemsStartingWith("q")));
+        assertEquals(Collections.emptyList(), values(set.getItemsStartingWith("Pr")));
+    }
+}
@@ -0,0 +1,227 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.Component;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.validation.tests.CrossingWays;
+import org.openstreetmap.josm.data.validation.tests.DuplicateNode;
+import org.openstreetmap.josm.data.validation.tests.DuplicatedWayNodes;
+import org.openstreetmap.josm.data.validation.tests.MapCSSTagChecker;
+import org.openstreetmap.josm.data.validation.tests.SelfIntersectingWay;
+import org.openstreetmap.josm.data.validation.tests.TagChecker;
+import org.openstreetmap.josm.data.validation.tests.UnclosedWays;
+import org.openstreetmap.josm.data.validation.tests.UntaggedNode;
+import org.openstreetmap.josm.gui.progress.AbstractProgressMonitor;
+import org.openstreetmap.josm.gui.progress.CancelHandler;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressTaskId;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link ValidationRunner} class.
+ */
+public class ValidationRunnerTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection().presets();
+
+    private static List<Test> createTests() throws Exception {
+        List<Test> tests = Arrays.asList(new TagChecker(), new MapCSSTagChecker(), new UntaggedNode(), new DuplicatedWayNodes(),
+                new SelfIntersectingWay(), new UnclosedWays(), new DuplicateNode(), new CrossingWays.Ways());
+        for (Test t : tests) {
+            t.initialize();
+        }
+        return tests;
+    }
+
+    private static List<String> describe(List<TestError> errors) {
+        return errors.stream().map(e -> e.getTester().getName() + " " + e.getCode() + " " + e.getSeverity() + " " + e.getMessage()
+                + " " + e.getDescription() + " " + e.getPrimitives().stream().map(OsmPrimitive::getUniqueId).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Test that running tests in parallel gives the same errors, in the same order, as running them one after another.
+     * @throws Exception if any error occurs
+     */
+    @org.junit.Test
+    public void testSameErrorsAsSequentialRun() throws Exception {
+        for (String file : new String[] {"multipolygon.osm", "restriction.osm"}) {
+            Collection<OsmPrimitive> primitives;
+            try (InputStream in = new FileInputStream("data_nodist/" + file)) {
+                DataSet ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+                primitives = ds.allPrimitives();
+            }
+            List<Test> tests = createTests();
+            List<TestError> expected = new ArrayList<>();
+            for (Test t : tests) {
+                t.startTest(null);
+                t.visit(primitives);
+                t.endTest();
+                expected.addAll(t.getErrors());
+            }
+            assertFalse(expected.isEmpty());
+
+            assertEquals(file, describe(expected), describe(new ValidationRunner(createTests(), null).run(primitives, null)));
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                for (int i = 0; i < 3; i++) {
+                    assertEquals(file, describe(expected), describe(new ValidationRunner(createTests(), pool).run(primitives, null)));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test that the tests which are not thread-safe are run one after another in the calling thread.
+     * @throws Exception if any error occurs
+     */
+    @org.junit.Test
+    public void testNotThreadSafeTestsRunSequentially() throws Exception {
+        Collection<OsmPrimitive> primitives;
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            primitives = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE).allPrimitives();
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<Test> tests = new ArrayList<>(createTests());
+        for (int i = 0; i < 4; i++) {
+            // not thread-safe, like a test sharing static state with the other instances
+            UntaggedNode sharingTest = new UntaggedNode() {
+                @Override
+                public boolean isThreadSafe() {
+                    return false;
+                }
+
+                @Override
+                public void startTest(ProgressMonitor monitor) {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    threads.add(Thread.currentThread());
+                    super.startTest(monitor);
+                }
+
+                @Override
+                public void endTest() {
+                    super.endTest();
+                    running.decrementAndGet();
+                }
+            };
+            sharingTest.initialize();
+            tests.add(sharingTest);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new ValidationRunner(tests, pool).run(primitives, null);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, maxRunning.get());
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    }
+
+    /**
+     * Test that the tests are skipped once the progress monitor is canceled, and that their progress is reported.
+     * @throws Exception if any error occurs
+     */
+    @org.junit.Test
+    public void testCancel() throws Exception {
+        Collection<OsmPrimitive> primitives;
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            primitives = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE).allPrimitives();
+        }
+        List<String> texts = new ArrayList<>();
+        ProgressMonitor monitor = new AbstractProgressMonitor(new CancelHandler()) {
+            @Override
+            protected void doBeginTask() {
+                // Do nothing
+            }
+
+            @Override
+            protected void doFinishTask() {
+                // Do nothing
+            }
+
+            @Override
+            protected void doSetIntermediate(boolean value) {
+                // Do nothing
+            }
+
+            @Override
+            protected void doSetTitle(String title) {
+                // Do nothing
+            }
+
+            @Override
+            protected void doSetCustomText(String title) {
+                texts.add(title);
+            }
+
+            @Override
+            protected void updateProgress(double value) {
+                // Do nothing
+            }
+
+            @Override
+            public void setProgressTaskId(ProgressTaskId taskId) {
+                // Do nothing
+            }
+
+            @Override
+            public ProgressTaskId getProgressTaskId() {
+                return null;
+            }
+
+            @Override
+            public Component getWindowParent() {
+                return null;
+            }
+        };
+        List<Test> tests = new ArrayList<>(createTests());
+        UntaggedNode cancelingTest = new UntaggedNode() {
+            @Override
+            public void endTest() {
+                progressMonitor.cancel();
+                super.endTest();
+            }
+        };
+        cancelingTest.initialize();
+        tests.add(1, cancelingTest);
+        monitor.beginTask("");
+        List<TestError> errors = new ValidationRunner(tests, null).run(primitives, monitor);
+        assertEquals(Arrays.asList(tr("Test {0}/{1}: Starting {2}", 1, tests.size(), tests.get(0).getName()),
+                tr("Test {0}/{1}: Starting {2}", 2, tests.size(), tests.get(1).getName())), texts);
+        assertTrue(errors.stream().allMatch(e -> e.getTester() == tests.get(0) || e.getTester() == cancelingTest));
+        assertTrue(monitor.isCanceled());
+    }
+}
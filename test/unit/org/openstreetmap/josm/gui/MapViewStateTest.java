@@ -3,6 +3,7 @@ package org.openstreetmap.josm.gui;
 
 import static org.junit.Assert.assertEquals;
 
+import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.util.Arrays;
@@ -59,6 +60,21 @@ public class MapViewStateTest {
         assertEquals("north", 4, center.getEastNorth().north(), 0.01);
     }
 
+    /**
+     * Test {@link MapViewState#usingViewArea}
+     */
+    @Test
+    public void testUsingViewArea() {
+        MapViewState area = state.usingViewArea(new Rectangle(100, 50, 30, 20));
+        assertEquals(30, area.getViewWidth(), 0.01);
+        assertEquals(20, area.getViewHeight(), 0.01);
+        assertEquals(state.getScale(), area.getScale(), 0);
+        for (Point2D p : Arrays.asList(new Point2D.Double(100, 50), new Point2D.Double(130, 70), new Point2D.Double(-5, 300))) {
+            EastNorth en = state.getForView(p.getX(), p.getY()).getEastNorth();
+            assertHasViewCoords(p.getX() - 100, p.getY() - 50, area.getPointFor(en));
+        }
+    }
+
     /**
      * Test {@link MapViewState#getCenter()} returns map view center.
      */
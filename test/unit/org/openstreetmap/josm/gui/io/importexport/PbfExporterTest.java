@@ -0,0 +1,102 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.io.importexport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.swing.JOptionPane;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.io.PbfReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.testutils.mockers.JOptionPaneSimpleMocker;
+
+import com.google.common.collect.ImmutableMap;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PbfExporter} class.
+ */
+public class PbfExporterTest {
+
+    /**
+     * Setup test.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences();
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static OsmDataLayer createLayer(File file) throws Exception {
+        String osm = "<osm version='0.6'>"
+                + "<node id='1' version='1' lat='1.0' lon='2.0'><tag k='amenity' v='bench'/></node>"
+                + "<node id='2' version='3' lat='1.5' lon='2.5'/>"
+                + "<way id='3' version='2'><nd ref='1'/><nd ref='2'/><tag k='highway' v='path'/></way>"
+                + "</osm>";
+        DataSet ds = OsmReader.parseDataSet(new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8)), null);
+        OsmDataLayer layer = new OsmDataLayer(ds, "pbf layer", file);
+        layer.onPostDownloadFromServer();
+        return layer;
+    }
+
+    /**
+     * Test that a layer without changes is exported and marked as saved.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testExport() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "test.osm.pbf");
+        OsmDataLayer layer = createLayer(file);
+        assertTrue(layer.requiresSaveToFile());
+        PbfExporter exporter = new PbfExporter();
+        assertTrue(PbfExporter.isExportable(layer.data));
+        exporter.exportData(file, layer);
+        assertFalse(exporter.isCanceled());
+        assertFalse(layer.requiresSaveToFile());
+        try (InputStream in = new FileInputStream(file)) {
+            DataSet read = PbfReader.parseDataSet(in, null);
+            assertEquals(2, read.getNodes().size());
+            assertEquals(1, read.getWays().size());
+        }
+    }
+
+    /**
+     * Test that a layer with changes is not exported, and stays unsaved.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testRefuseChanges() throws Exception {
+        final JOptionPaneSimpleMocker mocker = new JOptionPaneSimpleMocker(ImmutableMap.of(
+            "<html>The layer pbf layer contains new, modified or deleted objects.<br>"
+          + "The .osm.pbf format cannot store these changes, the layer has not been saved.<br>"
+          + "Please save it as an .osm file.</html>", JOptionPane.OK_OPTION));
+        File file = new File(temporaryFolder.getRoot(), "test.osm.pbf");
+        OsmDataLayer layer = createLayer(file);
+        layer.data.getNodes().iterator().next().setModified(true);
+        PbfExporter exporter = new PbfExporter();
+        assertFalse(PbfExporter.isExportable(layer.data));
+        exporter.exportData(file, layer);
+        assertTrue(exporter.isCanceled());
+        assertTrue(layer.requiresSaveToFile());
+        assertFalse(file.exists());
+        assertEquals(1, mocker.getInvocationLog().size());
+    }
+}
@@ -0,0 +1,111 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.mappaint.RenderingCLI.TileJob;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Tests the batch mode of {@link RenderingCLI}.
+ */
+public class RenderingCLIBatchTest {
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().projection().territories();
+
+    /**
+     * Temporary folder for the rendered tiles
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test of {@link RenderingCLI#readTileJobs}.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testReadTileJobs() throws Exception {
+        List<TileJob> jobs = RenderingCLI.readTileJobs(new BufferedReader(new StringReader(
+                "# comment\n19/292949/174587\n\n 0/0/0 world.png \n")), "tiles/{z}/{x}/{y}.png");
+        assertEquals(2, jobs.size());
+        assertEquals("19/292949/174587", jobs.get(0).toString());
+        assertEquals("tiles/19/292949/174587.png", jobs.get(0).output);
+        Bounds bounds = jobs.get(0).getBounds();
+        assertEquals(51.40091918770498, bounds.getMinLat(), 1e-9);
+        assertEquals(21.152114868164077, bounds.getMinLon(), 1e-9);
+        assertEquals(51.4013475612123, bounds.getMaxLat(), 1e-9);
+        assertEquals(21.15280151367189, bounds.getMaxLon(), 1e-9);
+        assertEquals("world.png", jobs.get(1).output);
+    }
+
+    /**
+     * Test of {@link RenderingCLI#readTileJobs} with an invalid tile.
+     * @throws Exception if an error occurs
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadTileJobsInvalid() throws Exception {
+        RenderingCLI.readTileJobs(new BufferedReader(new StringReader("2/4/0\n")), "{z}/{x}/{y}.png");
+    }
+
+    /**
+     * Test of {@link RenderingCLI#getPyramid}.
+     */
+    @Test
+    public void testGetPyramid() {
+        Bounds tile = new Bounds(51.40091918770498, 21.152114868164077, 51.4013475612123, 21.15280151367189, false);
+        List<TileJob> jobs = RenderingCLI.getPyramid(tile, 18, 20, "{z}/{x}/{y}.png");
+        assertEquals(1 + 1 + 4, jobs.size());
+        assertEquals("18/146474/87293", jobs.get(0).toString());
+        assertEquals("19/292949/174587", jobs.get(1).toString());
+        assertEquals("20/585898/349174", jobs.get(2).toString());
+        assertEquals("20/585899/349175", jobs.get(5).toString());
+    }
+
+    /**
+     * Test that a pyramid of tiles is rendered.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testRenderBatch() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/restriction.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        String output = folder.getRoot().getPath() + "/{z}/{x}/{y}.png";
+        RenderingCLI cli = new RenderingCLI();
+        cli.parseArguments(new String[] {"--style", "resource://styles/standard/elemstyles.mapcss",
+                "--pyramid", "15-16", "--threads", "2", "--output", output});
+        List<TileJob> jobs = RenderingCLI.getPyramid(ds.getDataSourceBounds().get(0), 15, 16, output);
+        assertEquals(jobs.size(), cli.renderBatch(ds));
+        assertTrue(ds.isLocked());
+        for (TileJob job : jobs) {
+            BufferedImage image = ImageIO.read(new File(job.output));
+            assertEquals(256, image.getWidth());
+            assertEquals(256, image.getHeight());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.preferences.sources.SourceEntry;
+import org.openstreetmap.josm.data.preferences.sources.SourceType;
+import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSStyleSource;
+import org.openstreetmap.josm.gui.mappaint.styleelement.LineElement;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.tools.Utils;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link StyleSignatureCache} class.
+ */
+public class StyleSignatureCacheTest {
+
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    private static ElemStyles createStyles(StyleSource source) {
+        source.loadStyleSource();
+        assertTrue(source.getErrors().toString(), source.getErrors().isEmpty());
+        ElemStyles styles = new ElemStyles();
+        styles.add(source);
+        return styles;
+    }
+
+    private static List<String> describe(ElemStyles styles, DataSet ds, double scale) {
+        List<String> result = new ArrayList<>();
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            result.add(p.getPrimitiveId() + " " + styles.generateStyles(p, scale, false));
+        }
+        return result;
+    }
+
+    /**
+     * Test that the standard style gives the same styles with and without the cache.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testStandardStyle() throws Exception {
+        ElemStyles styles = createStyles(new MapCSSStyleSource(new SourceEntry(SourceType.MAP_PAINT_STYLE,
+                "resource://styles/standard/elemstyles.mapcss", "standard", "standard style", true)));
+        for (String file : new String[] {"multipolygon.osm", "restriction.osm", "direction-arrows.osm"}) {
+            try (InputStream in = new FileInputStream("data_nodist/" + file)) {
+                DataSet ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+                for (double scale : new double[] {0.1, 5, 1000}) {
+                    StyleSignatureCache.CACHE_SIZE.put(0);
+                    List<String> expected = describe(styles, ds, scale);
+                    StyleSignatureCache.CACHE_SIZE.put(null);
+                    assertEquals(file, expected, describe(styles, ds, scale));
+                    assertEquals(file, expected, describe(styles, ds, scale));
+                }
+            }
+        }
+        StyleSignatureCache cache = styles.getSignatureCache();
+        assertTrue(cache.toString(), cache.getHits() > cache.getMisses());
+    }
+
+    /**
+     * Test that primitives whose styles depend on their parents are cached with the result of the parent selectors,
+     * or not cached at all when a declaration depends on the parents.
+     */
+    @Test
+    public void testContextDependentRules() {
+        ElemStyles styles = createStyles(new MapCSSStyleSource(
+                "way[highway] { width: 2; color: blue; }\n" +
+                "relation[type=route] > way[highway] { color: red; }\n" +
+                "way[waterway] { width: 3; color: cyan; }\n" +
+                "way[railway] { width: 1; color: #00ff00; text: parent_tag(\"name\"); }\n"));
+        DataSet ds = new DataSet();
+        List<Way> ways = new ArrayList<>();
+        for (String tag : new String[] {"highway", "highway", "waterway", "waterway", "railway", "railway"}) {
+            Node n1 = new Node(new LatLon(0, ways.size()));
+            Node n2 = new Node(new LatLon(1, ways.size()));
+            Way w = new Way();
+            w.addNode(n1);
+            w.addNode(n2);
+            w.put(tag, "yes");
+            ds.addPrimitive(n1);
+            ds.addPrimitive(n2);
+            ds.addPrimitive(w);
+            ways.add(w);
+        }
+        Relation route = new Relation();
+        route.put("type", "route");
+        route.addMember(new RelationMember("", ways.get(0)));
+        ds.addPrimitive(route);
+
+        Color[] expected = {Color.RED, Color.BLUE, Color.CYAN, Color.CYAN, Color.GREEN, Color.GREEN};
+        StyleSignatureCache cache = styles.getSignatureCache();
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < ways.size(); j++) {
+                LineElement line = Utils.find(styles.generateStyles(ways.get(j), 1, false).a, LineElement.class);
+                assertEquals(expected[j], line.color);
+            }
+        }
+        assertEquals(3, cache.getMisses());
+        assertEquals(5, cache.getHits());
+        assertEquals(4, cache.getBypasses());
+        assertEquals(3, cache.size());
+    }
+
+    /**
+     * Test that the least recently used entries are evicted when the cache is full.
+     */
+    @Test
+    public void testEviction() {
+        ElemStyles styles = createStyles(new MapCSSStyleSource("node[name] { symbol-shape: circle; }"));
+        StyleSignatureCache.CACHE_SIZE.put(8);
+        try {
+            StyleSignatureCache cache = styles.getSignatureCache();
+            for (int i = 0; i < 100; i++) {
+                Node n = new Node(LatLon.ZERO);
+                n.put("name", Integer.toString(i));
+                styles.generateStyles(n, 1, false);
+                assertTrue(cache.toString(), cache.size() <= 8);
+            }
+            assertEquals(100, cache.getMisses());
+            assertEquals(0, cache.getHits());
+
+            // the least recently used entries are evicted first
+            Node recent = new Node(LatLon.ZERO);
+            recent.put("name", "92");
+            Node old = new Node(LatLon.ZERO);
+            old.put("name", "93");
+            styles.generateStyles(recent, 1, false);
+            for (int i = 100; i < 106; i++) {
+                Node n = new Node(LatLon.ZERO);
+                n.put("name", Integer.toString(i));
+                styles.generateStyles(n, 1, false);
+                styles.generateStyles(recent, 1, false);
+            }
+            assertEquals(7, cache.getHits());
+            styles.generateStyles(old, 1, false);
+            assertEquals(7, cache.getHits());
+            assertEquals(107, cache.getMisses());
+        } finally {
+            StyleSignatureCache.CACHE_SIZE.put(null);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.gui.mappaint.mapcss;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.Context;
@@ -32,6 +34,38 @@ public class ConditionFactoryTest {
         ConditionFactory.createKeyValueCondition("name", "Rodovia ([A-Z]{2,3}-[0-9]{2,4}", Op.REGEX, Context.PRIMITIVE, false);
     }
 
+    /**
+     * Tests that compiled operations give the same results as {@link Op#eval}.
+     */
+    @Test
+    public void testCompiledOps() {
+        String[] values = {null, "", "v1", "k1", "0.2983", "192.312", "2983", "-1", "nan", "a;b", "a ; b", " a;b ", "a;;b", "a;", ";a",
+                "a\t;\nb", "ab;a b", "\\d+"};
+        for (Op op : Op.values()) {
+            for (String prototype : values) {
+                if (prototype == null) {
+                    continue;
+                }
+                for (String value : values) {
+                    String message = op + " " + value + " " + prototype;
+                    Object expected;
+                    try {
+                        expected = op.eval(value, prototype);
+                    } catch (RuntimeException e) {
+                        expected = e.getClass();
+                    }
+                    Object actual;
+                    try {
+                        actual = op.compile(prototype).test(value);
+                    } catch (RuntimeException e) {
+                        actual = e.getClass();
+                    }
+                    assertEquals(message, expected, actual);
+                }
+            }
+        }
+    }
+
     /**
      * Tests that {@code PseudoClasses} satisfies utility class criterias.
      * @throws ReflectiveOperationException if an error occurs
@@ -0,0 +1,107 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.preferences.sources.SourceEntry;
+import org.openstreetmap.josm.data.preferences.sources.SourceType;
+import org.openstreetmap.josm.gui.mappaint.Cascade;
+import org.openstreetmap.josm.gui.mappaint.Environment;
+import org.openstreetmap.josm.gui.mappaint.MultiCascade;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link MapCSSCompiler}.
+ */
+public class MapCSSCompilerTest {
+
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    private static MapCSSStyleSource loadStyle(boolean compile) {
+        MapCSSCompiler.COMPILE_STYLES.put(compile);
+        MapCSSStyleSource source = new MapCSSStyleSource(new SourceEntry(SourceType.MAP_PAINT_STYLE,
+                "resource://styles/standard/elemstyles.mapcss", "standard", "standard style", true));
+        source.loadStyleSource();
+        assertTrue(source.getErrors().toString(), source.getErrors().isEmpty());
+        return source;
+    }
+
+    private static List<String> describe(MapCSSStyleSource source, DataSet ds, double scale) {
+        List<String> result = new ArrayList<>();
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            MultiCascade mc = new MultiCascade();
+            source.apply(mc, p, scale, false);
+            StringBuilder sb = new StringBuilder(p.getPrimitiveId() + " " + mc.range);
+            for (Entry<String, Cascade> e : mc.getLayers()) {
+                sb.append(' ').append(e.getKey()).append('=').append(e.getValue());
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Test that the compiled standard style gives the same cascades as the interpreted one.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testStandardStyle() throws Exception {
+        MapCSSStyleSource interpreted = loadStyle(false);
+        MapCSSStyleSource compiled = loadStyle(true);
+        assertTrue(compiled.nodeRules.getRuleCandidates(new Node()).next()
+                instanceof MapCSSCompiler.CompiledRule);
+        for (String file : new String[] {"multipolygon.osm", "restriction.osm", "direction-arrows.osm"}) {
+            try (InputStream in = new FileInputStream("data_nodist/" + file)) {
+                DataSet ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+                for (double scale : new double[] {0.1, 5, 1000}) {
+                    assertEquals(file, describe(interpreted, ds, scale), describe(compiled, ds, scale));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that functions are called without reflection, and with the same handling of null arguments.
+     */
+    @Test
+    public void testFunctions() {
+        Node n = new Node();
+        n.put("name", "abc");
+        Environment env = new Environment(n, new MultiCascade(), Environment.DEFAULT_LAYER, null);
+        Expression tag = ExpressionFactory.createFunctionExpression("tag", Collections.singletonList(new LiteralExpression("name")));
+        Expression upper = ExpressionFactory.createFunctionExpression("upper", Collections.singletonList(tag));
+        Expression compiled = MapCSSCompiler.compile(upper);
+        assertNotSame(upper, compiled);
+        assertEquals("ABC", compiled.evaluate(env));
+        n.remove("name");
+        assertNull(compiled.evaluate(env));
+        Expression atan2 = ExpressionFactory.createFunctionExpression("atan2",
+                Arrays.asList(new LiteralExpression("1"), new LiteralExpression(1f)));
+        assertEquals(atan2.evaluate(env), MapCSSCompiler.compile(atan2).evaluate(env));
+    }
+}
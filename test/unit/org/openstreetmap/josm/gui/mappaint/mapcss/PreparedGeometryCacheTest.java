@@ -0,0 +1,120 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.mappaint.Environment;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.ChildOrParentSelector;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.tools.PreparedPolygon;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PreparedGeometryCache}.
+ */
+public class PreparedGeometryCacheTest {
+
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    private static ChildOrParentSelector parse(String css) {
+        MapCSSStyleSource source = new MapCSSStyleSource(css);
+        source.loadStyleSource();
+        assertEquals(1, source.rules.size());
+        return (ChildOrParentSelector) source.rules.get(0).selector;
+    }
+
+    private static Node node(DataSet ds, double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    private static Way square(DataSet ds, double lat, double lon, double size) {
+        Node n1 = node(ds, lat, lon);
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, node(ds, lat + size, lon), node(ds, lat + size, lon + size), node(ds, lat, lon + size), n1));
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    /**
+     * Test that the prepared geometries are cached and invalidated when their nodes or members change.
+     */
+    @Test
+    public void testInvalidation() {
+        PreparedGeometryCache cache = PreparedGeometryCache.getInstance();
+        DataSet ds = new DataSet();
+        Way way = square(ds, 0, 0, 0.01);
+        Relation multipolygon = new Relation();
+        multipolygon.put("type", "multipolygon");
+        multipolygon.addMember(new RelationMember("outer", way));
+        ds.addPrimitive(multipolygon);
+        try {
+            PreparedPolygon polygon = cache.getPolygon(way);
+            assertSame(polygon, cache.getPolygon(way));
+            assertSame(cache.getMultipolygon(multipolygon), cache.getMultipolygon(multipolygon));
+            assertEquals(2, cache.size(ds));
+
+            // moving a node invalidates the way and the multipolygon
+            way.firstNode().setCoor(new LatLon(-0.001, 0));
+            assertEquals(0, cache.size(ds));
+            assertNotSame(polygon, cache.getPolygon(way));
+
+            cache.getMultipolygon(multipolygon);
+            multipolygon.removeMembersFor(way);
+            assertEquals(1, cache.size(ds));
+            way.addNode(1, node(ds, 0.005, -0.001));
+            assertEquals(0, cache.size(ds));
+        } finally {
+            cache.clear(ds);
+        }
+    }
+
+    /**
+     * Test that the {@code ∈} and {@code ⧉} selectors take the changes of the data set into account.
+     */
+    @Test
+    public void testSelectors() {
+        DataSet ds = new DataSet();
+        Way way = square(ds, 0, 0, 0.01);
+        way.put("amenity", "parking");
+        Node node = node(ds, 0.005, 0.005);
+        node.put("amenity", "parking");
+        Way crossing = square(ds, 0.005, 0.005, 0.01);
+        crossing.put("building", "yes");
+        ChildOrParentSelector contains = parse("node[amenity] ∈ *[amenity] {}");
+        ChildOrParentSelector crosses = parse("way[building] ⧉ way[amenity] {}");
+        try {
+            assertTrue(contains.matches(new Environment(way)));
+            assertTrue(crosses.matches(new Environment(way)));
+            node.setCoor(new LatLon(0.02, 0.02));
+            crossing.getNodes().forEach(n -> n.setCoor(new LatLon(n.lat() + 0.1, n.lon())));
+            assertFalse(contains.matches(new Environment(way)));
+            assertFalse(crosses.matches(new Environment(way)));
+            node.setCoor(new LatLon(0.001, 0.001));
+            assertTrue(contains.matches(new Environment(way)));
+        } finally {
+            PreparedGeometryCache.getInstance().clear(ds);
+        }
+    }
+}
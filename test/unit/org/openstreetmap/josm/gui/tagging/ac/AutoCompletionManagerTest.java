@@ -1,9 +1,23 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.gui.tagging.ac;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.TagIndex;
 import org.openstreetmap.josm.gui.tagging.ac.AutoCompletionManager.UserInputTag;
 import org.openstreetmap.josm.testutils.JOSMTestRules;
 
@@ -20,7 +34,7 @@ public class AutoCompletionManagerTest {
      */
     @Rule
     @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
-    public JOSMTestRules test = new JOSMTestRules();
+    public JOSMTestRules test = new JOSMTestRules().preferences();
 
     /**
      * Unit test of methods {@link UserInputTag#equals} and {@link UserInputTag#hashCode}.
@@ -31,4 +45,75 @@ public class AutoCompletionManagerTest {
         EqualsVerifier.forClass(UserInputTag.class).usingGetClass()
             .verify();
     }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private static void testUpdate() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(LatLon.ZERO);
+        n1.put("amenity", "bench");
+        ds.addPrimitive(n1);
+        AutoCompletionManager manager = new AutoCompletionManager(ds);
+        ds.addDatasetDeltaListener(manager);
+        assertEquals(set("amenity"), new HashSet<>(manager.getDataKeys()));
+
+        Node n2 = new Node(LatLon.NORTH_POLE);
+        n2.put("amenity", "bench");
+        n2.put("backrest", "yes");
+        ds.addPrimitive(n2);
+        assertEquals(set("amenity", "backrest"), new HashSet<>(manager.getDataKeys()));
+        assertEquals(Collections.singletonList("bench"), manager.getDataValues("amenity"));
+
+        // a value disappears along with its last use
+        n1.put("amenity", "waste_basket");
+        assertEquals(set("bench", "waste_basket"), new HashSet<>(manager.getDataValues("amenity")));
+        n2.setDeleted(true);
+        assertEquals(Collections.singletonList("amenity"), manager.getDataKeys());
+        assertEquals(Collections.singletonList("waste_basket"), manager.getDataValues("amenity"));
+        n2.setDeleted(false);
+        assertEquals(set("bench", "waste_basket"), new HashSet<>(manager.getDataValues("amenity")));
+
+        Relation r1 = new Relation();
+        r1.addMember(new RelationMember("inner", n1));
+        r1.addMember(new RelationMember("outer", n2));
+        ds.addPrimitive(r1);
+        assertEquals(set("inner", "outer"), new HashSet<>(manager.getMemberRoles()));
+        Relation r2 = new Relation();
+        r2.addMember(new RelationMember("inner", n2));
+        ds.addPrimitive(r2);
+        r1.removeMembersFor(n1);
+        assertEquals(set("inner", "outer"), new HashSet<>(manager.getMemberRoles()));
+        r2.setDeleted(true);
+        assertEquals(set("outer"), new HashSet<>(manager.getMemberRoles()));
+        r1.setMember(0, new RelationMember("stop", n2));
+        assertEquals(set("stop"), new HashSet<>(manager.getMemberRoles()));
+        ds.removePrimitive(r1);
+        assertTrue(manager.getMemberRoles().isEmpty());
+
+        ds.clear();
+        assertTrue(manager.getDataKeys().isEmpty());
+    }
+
+    /**
+     * Test that the cached keys, values and roles follow the changes of the data set.
+     */
+    @Test
+    public void testUpdateWithTagIndex() {
+        TagIndex.PREFERENCE_ENABLED.put(true);
+        try {
+            testUpdate();
+        } finally {
+            TagIndex.PREFERENCE_ENABLED.put(false);
+        }
+    }
+
+    /**
+     * Test that the cached keys, values and roles follow the changes of the data set, without tag index.
+     */
+    @Test
+    public void testUpdateWithoutTagIndex() {
+        testUpdate();
+    }
 }
@@ -1,10 +1,12 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.gui.tagging.presets;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -77,4 +79,64 @@ public class PresetClassificationsTest {
                 .contains("Public Transport Route (Rail)"));
         assertFalse("railway=tram should not match 'Bus'", getMatchingPresetNames("route", tram).toString().contains("Bus"));
     }
+
+    /**
+     * Classifies the presets by testing the words of each of them, as done before the search index.
+     */
+    private static List<String> getMatchingPresetsWithoutIndex(String searchText, boolean inTags) {
+        String[] groupWords = null;
+        String[] nameWords = searchText.split("\\s");
+        if (searchText.contains("/")) {
+            groupWords = searchText.substring(0, searchText.lastIndexOf('/')).split("[\\s/]");
+            nameWords = searchText.substring(searchText.indexOf('/') + 1).split("\\s");
+        }
+        List<PresetClassification> result = new ArrayList<>();
+        for (PresetClassification pc : classifications) {
+            if (groupWords != null && pc.isMatchingGroup(groupWords) == 0) {
+                continue;
+            }
+            int classification = 0;
+            int matchName = pc.isMatchingName(nameWords);
+            if (matchName > 0) {
+                classification = 300 + matchName;
+            } else {
+                if (groupWords == null && pc.isMatchingGroup(nameWords) > 0) {
+                    classification = 200 + pc.isMatchingGroup(nameWords);
+                }
+                if (classification == 0 && inTags && pc.isMatchingTags(nameWords) > 0) {
+                    classification = 100 + pc.isMatchingTags(nameWords);
+                }
+            }
+            if (classification > 0) {
+                result.add(pc);
+                pc.classification = classification;
+            }
+        }
+        result.sort(null);
+        return result.stream().map(PresetClassification::toString).collect(Collectors.toList());
+    }
+
+    /**
+     * Test that the presets found with the search index and their classifications are the ones found by testing all presets.
+     */
+    @Test
+    public void testSearchIndex() {
+        List<String> searches = new ArrayList<>();
+        for (String word : new String[] {"building", "bus stop", "parking"}) {
+            for (int i = 0; i <= word.length(); i++) {
+                searches.add(word.substring(0, i));
+            }
+        }
+        Collections.addAll(searches, " ", "a  b", "ildi", "op", "ki", "cafe\u0301", "caf\u00e9", "shop/", "shop/bak", "transport/bus st",
+                "highway", "amenity", "yes", "xyz", "Bus", "x");
+        for (String search : searches) {
+            for (boolean inTags : new boolean[] {false, true}) {
+                List<String> expected = getMatchingPresetsWithoutIndex(search, inTags);
+                List<String> found = classifications.getMatchingPresets(search, false, inTags, null, Collections.emptyList())
+                        .stream().map(PresetClassification::toString).collect(Collectors.toList());
+                assertEquals(search, expected, found);
+            }
+        }
+        assertTrue(getMatchingPresetsWithoutIndex("bus", true).size() > 10);
+    }
 }
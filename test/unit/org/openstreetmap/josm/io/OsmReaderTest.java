@@ -4,6 +4,7 @@ package org.openstreetmap.josm.io;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -11,11 +12,25 @@ import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.IPrimitive;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
@@ -72,6 +87,73 @@ public class OsmReaderTest {
                 ("<?xml version='1.0' encoding='UTF-8'?>" + osm).getBytes(StandardCharsets.UTF_8))) {
             assertTrue(OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE).allPrimitives().isEmpty());
         }
+        assertTrue(parseInParallel(("<?xml version='1.0' encoding='UTF-8'?>" + osm).getBytes(StandardCharsets.UTF_8), 1)
+                .allPrimitives().isEmpty());
+    }
+
+    /**
+     * Parses data in parallel.
+     * @param data OSM data
+     * @param blockSize minimal size of the blocks parsed in parallel
+     * @return parsed data set
+     * @throws IllegalDataException if an error was found while parsing the data
+     */
+    private static DataSet parseInParallel(byte[] data, int blockSize) throws IllegalDataException {
+        return new OsmReader(3, blockSize).doParseDataSet(new ByteArrayInputStream(data), NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Asserts that two data sets parsed from the same data are the same.
+     * New primitives are expected to have been created in the same order, i.e. their ids have the same order.
+     * @param expected expected data set
+     * @param actual actual data set
+     */
+    private static void assertSameDataSet(DataSet expected, DataSet actual) {
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getRemark(), actual.getRemark());
+        assertEquals(expected.getDownloadPolicy(), actual.getDownloadPolicy());
+        assertEquals(expected.getUploadPolicy(), actual.getUploadPolicy());
+        assertEquals(expected.isLocked(), actual.isLocked());
+        assertEquals(expected.getDataSourceBounds(), actual.getDataSourceBounds());
+        assertEquals(expected.getChangeSetTags(), actual.getChangeSetTags());
+        List<OsmPrimitive> expectedPrimitives = sortedById(expected);
+        List<OsmPrimitive> actualPrimitives = sortedById(actual);
+        assertEquals(expectedPrimitives.size(), actualPrimitives.size());
+        Map<Long, Long> newIds = new HashMap<>();
+        for (int i = 0; i < expectedPrimitives.size(); i++) {
+            if (actualPrimitives.get(i).isNew()) {
+                newIds.put(actualPrimitives.get(i).getUniqueId(), expectedPrimitives.get(i).getUniqueId());
+            }
+        }
+        ToLongFunction<IPrimitive> id = p -> p.isNew() ? newIds.get(p.getUniqueId()) : p.getUniqueId();
+        for (int i = 0; i < expectedPrimitives.size(); i++) {
+            OsmPrimitive p = expectedPrimitives.get(i);
+            OsmPrimitive q = actualPrimitives.get(i);
+            assertEquals(p.getType(), q.getType());
+            assertEquals(p.getUniqueId(), id.applyAsLong(q));
+            assertTrue(p.toString(), p.hasEqualTechnicalAttributes(q));
+            assertEquals(p.getKeys(), q.getKeys());
+            assertSame(p.getUser(), q.getUser());
+            assertEquals(p.isIncomplete(), q.isIncomplete());
+            assertEquals(p.getReferrers().size(), q.getReferrers().size());
+            if (p instanceof Node) {
+                assertTrue(p.toString(), p.hasEqualSemanticAttributes(q));
+            } else if (p instanceof Way) {
+                assertEquals(((Way) p).getNodes().stream().mapToLong(Node::getUniqueId).boxed().collect(Collectors.toList()),
+                        ((Way) q).getNodes().stream().mapToLong(id).boxed().collect(Collectors.toList()));
+            } else {
+                assertEquals(((Relation) p).getMembers().stream().map(m -> m.getRole() + m.getType() + m.getUniqueId())
+                        .collect(Collectors.toList()),
+                        ((Relation) q).getMembers().stream().map(m -> m.getRole() + m.getType() + id.applyAsLong(m.getMember()))
+                        .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    private static List<OsmPrimitive> sortedById(DataSet ds) {
+        List<OsmPrimitive> primitives = new ArrayList<>(ds.allPrimitives());
+        primitives.sort(Comparator.comparing(OsmPrimitive::getType).thenComparingLong(OsmPrimitive::getUniqueId));
+        return primitives;
     }
 
     /**
@@ -118,10 +200,13 @@ public class OsmReaderTest {
      * @throws Exception if any error occurs
      */
     private static DataSet testValidData(String osm) throws Exception {
-        try (InputStream in = new ByteArrayInputStream(
-                ("<?xml version='1.0' encoding='UTF-8'?>" + osm).getBytes(StandardCharsets.UTF_8))) {
-            return OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        byte[] data = ("<?xml version='1.0' encoding='UTF-8'?>" + osm).getBytes(StandardCharsets.UTF_8);
+        DataSet ds;
+        try (InputStream in = new ByteArrayInputStream(data)) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
         }
+        assertSameDataSet(ds, parseInParallel(data, 1));
+        return ds;
     }
 
     /**
@@ -131,13 +216,21 @@ public class OsmReaderTest {
      * @throws Exception if any error occurs
      */
     private static void testInvalidData(String osm, String expectedError) throws Exception {
-        try (InputStream in = new ByteArrayInputStream(
-                ("<?xml version='1.0' encoding='UTF-8'?>" + osm).getBytes(StandardCharsets.UTF_8))) {
+        byte[] data = ("<?xml version='1.0' encoding='UTF-8'?>" + osm).getBytes(StandardCharsets.UTF_8);
+        try (InputStream in = new ByteArrayInputStream(data)) {
             OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
             fail("should throw exception");
         } catch (IllegalDataException e) {
             assertEquals(expectedError, e.getMessage());
         }
+        try {
+            parseInParallel(data, 1);
+            fail("should throw exception");
+        } catch (IllegalDataException e) {
+            // the number of bytes read is not known precisely when parsing in parallel
+            assertEquals(expectedError.replaceFirst("\\. \\d+ bytes have been read$", ""),
+                    e.getMessage().replaceFirst("\\. \\d+ bytes have been read$", ""));
+        }
     }
 
     /**
@@ -356,4 +449,49 @@ public class OsmReaderTest {
                 "</osm>");
         assertEquals("runtime error: Query ran out of memory in \"query\" at line 5.", ds.getRemark());
     }
+
+    /**
+     * Test that parsing in parallel results in the same data set as parsing serially.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testParallel() throws Exception {
+        for (String file : new String[] {"data_nodist/restriction.osm", "data_nodist/multipolygon.osm", "data_nodist/Join_Areas_Tests.osm"}) {
+            byte[] data = Files.readAllBytes(Paths.get(file));
+            DataSet expected = OsmReader.parseDataSet(new ByteArrayInputStream(data), NullProgressMonitor.INSTANCE);
+            for (int blockSize : new int[] {1, 1000, 1 << 20}) {
+                assertSameDataSet(expected, parseInParallel(data, blockSize));
+            }
+        }
+    }
+
+    /**
+     * Test that documents having a document type declaration are parsed like by the serial reader.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testParallelDocumentTypeDeclaration() throws Exception {
+        testInvalidData("<!DOCTYPE osm [<!ENTITY name 'Main street'>]>\n<osm version='0.6'>\n"
+                + "<node id='1' lat='1' lon='1' version='1'><tag k='name' v='&name;'/></node>\n</osm>",
+                "Line 3 column 65: The entity \"name\" was referenced, but not declared.");
+        DataSet ds = testValidData("<!DOCTYPE osm>\n<osm version='0.6'>\n"
+                + "<node id='1' lat='1' lon='1' version='1'><tag k='name' v='Main street'/></node>\n"
+                + "<node id='2' lat='2' lon='2' version='1'/>\n</osm>");
+        assertEquals("Main street", ds.getPrimitiveById(1, OsmPrimitiveType.NODE).get("name"));
+        assertEquals(2, ds.getNodes().size());
+    }
+
+    /**
+     * Test that errors found while parsing in parallel are located in the whole document.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testParallelErrorLocation() throws Exception {
+        testInvalidData("<osm version='0.6'>\n<node id='1' lat='1' lon='1' version='1'/>\n  <node id='2' uid='nan'/></osm>",
+                "Illegal value for attribute 'uid'. Got 'nan'. (at line 3, column 27). 127 bytes have been read");
+        testInvalidData("<osm version='0.6'>\n<node id='1' lat='1' lon='1' version='1'/>\n  <node id='2' version='1'></osm>",
+                "Line 3 column 30: The element type \"node\" must be terminated by the matching end-tag \"</node>\".");
+        testInvalidData("<osm version='0.6'>\n<node id='1' lat='1' lon='1' version='1'/>\n  <node id='2' version='1'",
+                "Line 3 column 27: XML document structures must start and end within the same entity.");
+    }
 }
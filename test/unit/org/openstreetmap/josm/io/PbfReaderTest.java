@@ -0,0 +1,244 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PbfReader} class.
+ */
+public class PbfReaderTest {
+
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static DataSet parse(String file, int threads) throws Exception {
+        try (InputStream in = new FileInputStream(TestUtils.getTestDataRoot() + "pbf/" + file)) {
+            return new PbfReader(threads).doParseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    private static DataSet parse(byte[] data) throws IllegalDataException {
+        return new PbfReader(2).doParseDataSet(new ByteArrayInputStream(data), NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Test a file made of zlib compressed blobs, with dense nodes, ways and relations.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testDenseNodes() throws Exception {
+        for (int threads : new int[] {1, 3}) {
+            DataSet ds = parse("dense.osm.pbf", threads);
+            assertEquals("0.6", ds.getVersion());
+            assertEquals(4, ds.getNodes().size());
+            assertEquals(1, ds.getWays().size());
+            assertEquals(1, ds.getRelations().size());
+
+            DataSource source = ds.getDataSources().iterator().next();
+            assertEquals("test", source.origin);
+            assertEquals(new Bounds(49.0, 8.0, 49.5, 8.1), source.bounds);
+
+            Node n1 = (Node) ds.getPrimitiveById(1, OsmPrimitiveType.NODE);
+            assertEquals(new LatLon(49.01, 8.01), n1.getCoor());
+            assertEquals(1, n1.getVersion());
+            assertEquals(1500000000, n1.getRawTimestamp());
+            assertEquals(100, n1.getChangesetId());
+            assertEquals(10, n1.getUser().getId());
+            assertEquals("alice", n1.getUser().getName());
+            assertEquals("bench", n1.get("amenity"));
+            assertEquals("Café", n1.get("name"));
+
+            Node n4 = (Node) ds.getPrimitiveById(4, OsmPrimitiveType.NODE);
+            assertEquals(new LatLon(49.04, 8.005), n4.getCoor());
+            assertEquals(3, n4.getVersion());
+            assertEquals(1500000300, n4.getRawTimestamp());
+            assertEquals(102, n4.getChangesetId());
+            assertEquals("bob", n4.getUser().getName());
+            assertFalse(n4.hasKeys());
+
+            Way w = (Way) ds.getPrimitiveById(10, OsmPrimitiveType.WAY);
+            assertEquals(Arrays.asList(1L, 2L, 3L, 1L), w.getNodes().stream().map(Node::getId).collect(Collectors.toList()));
+            assertTrue(w.isClosed());
+            assertEquals("residential", w.get("highway"));
+            assertEquals("Main Street", w.get("name"));
+            assertEquals(2, w.getVersion());
+            assertEquals("alice", w.getUser().getName());
+
+            Relation r = (Relation) ds.getPrimitiveById(100, OsmPrimitiveType.RELATION);
+            assertEquals(Arrays.asList(new RelationMember("outer", w), new RelationMember("", n4)), r.getMembers());
+            assertEquals("multipolygon", r.get("type"));
+            assertEquals(104, r.getChangesetId());
+            assertEquals(Collections.singletonList(r), n4.getReferrers());
+        }
+    }
+
+    /**
+     * Test a file made of raw blobs, with non-dense nodes, granularity and offsets, an unknown block type,
+     * and a way referring to a node missing from the file.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testNodesWithOffsets() throws Exception {
+        for (int threads : new int[] {1, 3}) {
+            DataSet ds = parse("nodes.osm.pbf", threads);
+            assertTrue(ds.getDataSources().isEmpty());
+
+            Node n5 = (Node) ds.getPrimitiveById(5, OsmPrimitiveType.NODE);
+            assertEquals(new LatLon(1.5, -2.25), n5.getCoor());
+            assertEquals(1500000, n5.getRawTimestamp());
+            assertEquals("carol", n5.getUser().getName());
+            assertEquals("bakery", n5.get("shop"));
+
+            Node n6 = (Node) ds.getPrimitiveById(6, OsmPrimitiveType.NODE);
+            assertEquals(new LatLon(-0.5, -1.0), n6.getCoor());
+            assertEquals(4, n6.getVersion());
+            assertEquals(1500002, n6.getRawTimestamp());
+            assertNull(n6.getUser());
+
+            Way w = (Way) ds.getPrimitiveById(20, OsmPrimitiveType.WAY);
+            assertEquals(3, w.getNodesCount());
+            assertEquals("footway", w.get("highway"));
+            Node n77 = w.getNode(2);
+            assertEquals(77, n77.getId());
+            assertTrue(n77.isIncomplete());
+        }
+    }
+
+    private static byte[] file(ProtobufEncoder header, ProtobufEncoder... blocks) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(result);
+        writeBlob(out, "OSMHeader", header);
+        for (ProtobufEncoder block : blocks) {
+            writeBlob(out, "OSMData", block);
+        }
+        return result.toByteArray();
+    }
+
+    private static void writeBlob(DataOutputStream out, String type, ProtobufEncoder data) throws IOException {
+        ProtobufEncoder blob = new ProtobufEncoder().bytes(1, data.toByteArray());
+        ProtobufEncoder blobHeader = new ProtobufEncoder().string(1, type).varint(3, blob.size());
+        out.writeInt(blobHeader.size());
+        blobHeader.writeTo(out);
+        blob.writeTo(out);
+    }
+
+    private static ProtobufEncoder header() {
+        return new ProtobufEncoder().string(4, "OsmSchema-V0.6");
+    }
+
+    private static ProtobufEncoder block(ProtobufEncoder group) {
+        return new ProtobufEncoder().message(1, new ProtobufEncoder().string(1, "").string(1, "key")).message(2, group);
+    }
+
+    private static void testInvalidData(byte[] data, String expectedError) throws IOException {
+        try {
+            parse(data);
+            fail("should throw exception");
+        } catch (IllegalDataException e) {
+            assertEquals(expectedError, e.getMessage());
+        }
+    }
+
+    /**
+     * Test that files requiring unsupported features are rejected.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testUnsupportedFeature() throws Exception {
+        testInvalidData(file(header().string(4, "HistoricalInformation")), "Unsupported PBF required feature: HistoricalInformation");
+    }
+
+    /**
+     * Test that data blocks must follow the header block.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testMissingHeader() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeBlob(new DataOutputStream(out), "OSMData", new ProtobufEncoder());
+        testInvalidData(out.toByteArray(), "Missing OSMHeader block before OSMData block");
+    }
+
+    /**
+     * Test truncated and malformed data.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testMalformedData() throws Exception {
+        byte[] data = file(header(), block(new ProtobufEncoder().message(1, new ProtobufEncoder().sint64(1, 1).varint(4, 0))));
+        try {
+            parse(Arrays.copyOf(data, data.length - 3));
+            fail("should throw exception");
+        } catch (IllegalDataException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        testInvalidData(new byte[] {0x7f, 0, 0, 0}, "Invalid PBF blob header size: 2130706432");
+        testInvalidData(file(header().bytes(1, new byte[] {(byte) 0x80})), "Malformed protocol buffers message");
+    }
+
+    /**
+     * Test that primitives without metadata are rejected like in .osm files.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testMissingVersion() throws Exception {
+        testInvalidData(file(header(), block(new ProtobufEncoder().message(1, new ProtobufEncoder().sint64(1, 1)))),
+                "Missing attribute 'version' on OSM primitive with ID 1.");
+    }
+
+    /**
+     * Test invalid string table indexes, coordinates and changeset ids.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testInvalidValues() throws Exception {
+        ProtobufEncoder info = new ProtobufEncoder().varint(1, 1);
+        testInvalidData(file(header(), block(new ProtobufEncoder().message(1, new ProtobufEncoder()
+                .sint64(1, 1).varints(2, new long[] {1}, 1, false).varints(3, new long[] {2}, 1, false).message(4, info)))),
+                "Invalid PBF string table index: 2");
+        testInvalidData(file(header(), block(new ProtobufEncoder().message(1, new ProtobufEncoder()
+                .sint64(1, 1).message(4, info).sint64(8, 1_000_000_000L)))),
+                "Illegal value for attributes 'lat', 'lon' on node with ID 1. Got '100.0', '0.0'.");
+        testInvalidData(file(header(), block(new ProtobufEncoder().message(2, new ProtobufEncoder()
+                .varints(1, new long[] {1, 1}, 2, true).varints(8, new long[] {0}, 1, true).varints(9, new long[] {0}, 1, true)))),
+                "Invalid PBF dense nodes");
+        testInvalidData(file(header(), block(new ProtobufEncoder().message(1, new ProtobufEncoder()
+                .sint64(1, 1).message(4, new ProtobufEncoder().varint(1, 1).varint(3, 1L << 32))))),
+                "Illegal value for attribute 'changeset'. Got 4294967296.");
+    }
+}
@@ -0,0 +1,144 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PbfWriter} class.
+ */
+public class PbfWriterTest {
+
+    /**
+     * Setup rule
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules();
+
+    private static DataSet roundtrip(DataSet ds) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PbfWriter writer = new PbfWriter(out)) {
+            writer.write(ds);
+        }
+        return PbfReader.parseDataSet(new ByteArrayInputStream(out.toByteArray()), NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Describes the primitives of the given data set, with coordinates rounded to the precision of the writer
+     * and new primitives identified by their creation order, as their ids are not kept when reading.
+     * @param ds data set
+     * @return the description of each primitive
+     */
+    private static List<String> describe(DataSet ds) {
+        List<OsmPrimitive> primitives = new ArrayList<>(ds.allPrimitives());
+        primitives.sort(Comparator.comparing(OsmPrimitive::getType).thenComparing(OsmPrimitive::isNew)
+                .thenComparingLong(p -> Math.abs(p.getUniqueId())));
+        Map<OsmPrimitive, String> ids = new HashMap<>();
+        int rank = 0;
+        for (OsmPrimitive p : primitives) {
+            ids.put(p, p.getType() + (p.isNew() ? " new " + rank++ : " " + p.getUniqueId()));
+        }
+        return primitives.stream().map(p -> {
+            StringBuilder sb = new StringBuilder(ids.get(p) + " v" + p.getVersion() + " cs" + p.getChangesetId()
+                    + " t" + p.getRawTimestamp() + " " + p.getUser() + " " + p.getKeys() + " incomplete=" + p.isIncomplete());
+            if (p instanceof Node) {
+                LatLon ll = ((Node) p).getCoor();
+                sb.append(String.format(Locale.ROOT, " %.7f %.7f", ll.lat(), ll.lon()));
+            } else if (p instanceof Way) {
+                sb.append(' ').append(((Way) p).getNodes().stream().map(ids::get).collect(Collectors.toList()));
+            } else {
+                sb.append(' ').append(((Relation) p).getMembers().stream()
+                        .map(m -> m.getRole() + '/' + ids.get(m.getMember())).collect(Collectors.toList()));
+            }
+            return sb.toString();
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Test that .osm files are written and read back without loss.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testRoundtrip() throws Exception {
+        for (String file : new String[] {"restriction.osm", "relation_sort.osm", "multipolygon.osm", "direction-arrows.osm"}) {
+            try (InputStream in = new FileInputStream("data_nodist/" + file)) {
+                DataSet ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+                DataSet read = roundtrip(ds);
+                assertEquals(file, describe(ds), describe(read));
+                assertEquals(file, ds.getDataSourceBounds(), read.getDataSourceBounds());
+            }
+        }
+    }
+
+    /**
+     * Test that new primitives are written with their negative ids, that deleted primitives are not written,
+     * and that local users are written by name only.
+     * @throws Exception if any error occurs
+     */
+    @Test
+    public void testNewAndDeletedPrimitives() throws Exception {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(new LatLon(-33.8688197, 151.2092955));
+        Node n2 = new Node(new LatLon(48.8566, 2.3522));
+        Node deleted = new Node(new LatLon(0, 0));
+        n1.put("name", "Sydney");
+        n1.setUser(User.createLocalUser("local"));
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(deleted);
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        w.setUser(User.createLocalUser("local way"));
+        ds.addPrimitive(w);
+        deleted.setDeleted(true);
+        ds.addDataSource(new DataSource(new Bounds(-34, 151, -33, 152), "a"));
+        ds.addDataSource(new DataSource(new Bounds(48, 2, 49, 3), "b"));
+
+        DataSet read = roundtrip(ds);
+        assertEquals(2, read.getNodes().size());
+        assertEquals(1, read.getWays().size());
+        Way w2 = read.getWays().iterator().next();
+        assertTrue(w2.isNew());
+        Node n = w2.getNode(0);
+        assertTrue(n.isNew());
+        assertEquals(n1.getCoor(), n.getCoor());
+        assertEquals("Sydney", n.get("name"));
+        assertEquals("local", n.getUser().getName());
+        assertFalse(n.getUser().isOsmUser());
+        assertEquals("local way", w2.getUser().getName());
+        assertFalse(w2.getUser().isOsmUser());
+        assertFalse(w2.getNode(1).hasKeys());
+        assertEquals(new Bounds(-34, 2, 49, 152), read.getDataSourceBounds().get(0));
+    }
+}
@@ -0,0 +1,126 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.JOSMTestRules;
+import org.openstreetmap.josm.tools.Geometry.PolygonIntersection;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Unit tests of {@link PreparedPolygon} and {@link PreparedMultipolygon} classes.
+ */
+public class PreparedPolygonTest {
+
+    /**
+     * Primitives need preferences and projection.
+     */
+    @Rule
+    @SuppressFBWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+    public JOSMTestRules test = new JOSMTestRules().preferences().projection();
+
+    private static List<Node> randomPolygon(Random random, List<Node> shared) {
+        double lat = random.nextDouble() * 0.01;
+        double lon = random.nextDouble() * 0.01;
+        double radius = random.nextDouble() * 0.005;
+        int n = 3 + random.nextInt(30);
+        boolean simple = random.nextBoolean();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!shared.isEmpty() && random.nextInt(10) == 0) {
+                nodes.add(shared.get(random.nextInt(shared.size())));
+            } else {
+                double angle = simple ? 2 * Math.PI * i / n : random.nextDouble() * 2 * Math.PI;
+                double r = radius * (0.5 + random.nextDouble() / 2);
+                nodes.add(new Node(new LatLon(lat + r * Math.sin(angle), lon + r * Math.cos(angle))));
+            }
+        }
+        if (random.nextBoolean()) {
+            nodes.add(nodes.get(0));
+        }
+        shared.addAll(nodes);
+        return nodes;
+    }
+
+    /**
+     * Test that {@link PreparedPolygon#contains} gives the same results as {@link Geometry#nodeInsidePolygon}.
+     */
+    @Test
+    public void testContains() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            List<Node> polygon = randomPolygon(random, new ArrayList<>());
+            PreparedPolygon prepared = new PreparedPolygon(polygon);
+            for (int j = 0; j < 100; j++) {
+                Node n = j < polygon.size() ? polygon.get(j)
+                        : new Node(new LatLon(random.nextDouble() * 0.01, random.nextDouble() * 0.01));
+                assertEquals(Geometry.nodeInsidePolygon(n, polygon), prepared.contains(n));
+            }
+        }
+        Node n = new Node(LatLon.ZERO);
+        assertFalse(new PreparedPolygon(Arrays.asList(n, new Node())).contains(n));
+        assertFalse(new PreparedPolygon(Arrays.asList(n)).contains(n));
+    }
+
+    /**
+     * Test that {@link PreparedPolygon#polygonIntersection} gives the same results as {@link Geometry#polygonIntersection}.
+     */
+    @Test
+    public void testPolygonIntersection() {
+        Random random = new Random(42);
+        int[] counts = new int[PolygonIntersection.values().length];
+        for (int i = 0; i < 5000; i++) {
+            List<Node> shared = new ArrayList<>();
+            List<Node> first = randomPolygon(random, shared);
+            List<Node> second = randomPolygon(random, random.nextBoolean() ? shared : new ArrayList<>());
+            PolygonIntersection expected = Geometry.polygonIntersection(first, second);
+            assertEquals(expected, PreparedPolygon.polygonIntersection(new PreparedPolygon(first), new PreparedPolygon(second)));
+            counts[expected.ordinal()]++;
+        }
+        for (int count : counts) {
+            assertFalse(count == 0);
+        }
+    }
+
+    /**
+     * Test that {@link PreparedMultipolygon} gives the same results as {@link Geometry#isNodeInsideMultiPolygon}
+     * and {@link Geometry#isPolygonInsideMultiPolygon}.
+     * @throws Exception if the data cannot be loaded
+     */
+    @Test
+    public void testMultipolygon() throws Exception {
+        DataSet ds;
+        try (InputStream in = new FileInputStream("data_nodist/multipolygon.osm")) {
+            ds = OsmReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+        for (Relation r : ds.getRelations()) {
+            if (r.isMultipolygon()) {
+                PreparedMultipolygon prepared = new PreparedMultipolygon(r);
+                for (Node n : ds.searchNodes(r.getBBox())) {
+                    assertEquals(Geometry.isNodeInsideMultiPolygon(n, r, null), prepared.contains(n));
+                }
+                for (Way w : ds.searchWays(r.getBBox())) {
+                    assertEquals(Geometry.isPolygonInsideMultiPolygon(w.getNodes(), r, null), prepared.contains(w.getNodes()));
+                }
+            }
+        }
+    }
+}